@@ -15,6 +15,7 @@ Feature: Account features
     When user creates remote account
     Then account is created
 
+  @dividend
   Scenario: Create remote account (dividend block)
     Given user, who wants to create account
     When user creates remote account in dividend block
@@ -30,6 +31,7 @@ Feature: Account features
     When user creates remote account with custom key
     Then account is created
 
+  @dividend
   Scenario: Create remote account (custom key, dividend block)
     Given user, who wants to create account
     When user creates remote account with custom key in dividend block
@@ -42,8 +44,10 @@ Feature: Account features
     And transaction can be authorised with new key
     And account change key transaction is present in log
 
+  @exclusive
   Scenario: Check log
     Given user log
 
+  @exclusive
   Scenario: Check transaction
     Given transaction ids
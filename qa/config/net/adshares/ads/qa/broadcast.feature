@@ -51,8 +51,10 @@ Feature: Broadcast message
     When one of them sends many broadcast ASCII messages
     Then all of them can read it
 
+  @exclusive
   Scenario: Check log
     Given user log
 
+  @exclusive
   Scenario: Check transaction
     Given transaction ids
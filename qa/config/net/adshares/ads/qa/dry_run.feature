@@ -12,8 +12,10 @@ Feature: Dry-run
     When regular user sends to main with dry-run
     And main user sends transfer using tx data
 
+  @exclusive
   Scenario: Check log
     Given user log
 
+  @exclusive
   Scenario: Check transaction
     Given transaction ids
\ No newline at end of file
@@ -16,8 +16,10 @@ Feature: Fee sharing
     When collect all logs
     Then profit shared is as expected
 
+  @exclusive
   Scenario: Check log
     Given user log
 
+  @exclusive
   Scenario: Check transaction
     Given transaction ids
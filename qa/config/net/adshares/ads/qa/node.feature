@@ -11,8 +11,10 @@ Feature: Node features
     When user changes own node key
     Then node key is changed
 
+  @exclusive
   Scenario: Check log
     Given user log
 
+  @exclusive
   Scenario: Check transaction
     Given transaction ids
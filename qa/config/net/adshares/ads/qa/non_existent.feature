@@ -21,8 +21,10 @@ Feature: non-existent u/n
         When retrieves from non-existent user in node
         Then transfer to invalid address is rejected
 
+    @exclusive
     Scenario: Check log
         Given user log
 
+    @exclusive
     Scenario: Check transaction
         Given transaction ids
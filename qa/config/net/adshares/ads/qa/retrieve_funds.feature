@@ -27,8 +27,10 @@ Feature: Retrieve funds
     When account is not active for RETRIEVE_DELAY time
     And user requests retrieve but it is not accepted
 
+  @exclusive
   Scenario: Check log
     Given user log
 
+  @exclusive
   Scenario: Check transaction
     Given transaction ids
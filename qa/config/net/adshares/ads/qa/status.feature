@@ -42,8 +42,10 @@ Feature: Status features
     When user tries to set out of range node status
     Then change status transaction is rejected
 
+  @exclusive
   Scenario: Check log
     Given user log
 
+  @exclusive
   Scenario: Check transaction
     Given transaction ids
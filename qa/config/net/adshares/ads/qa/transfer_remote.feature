@@ -63,8 +63,10 @@ Feature: Remote transfers
     Then receiver balance is as expected (changed by amount)
     And sender balance is as expected (changed by amount and fee)
 
+  @exclusive
   Scenario: Check log
     Given user log
 
+  @exclusive
   Scenario: Check transaction
     Given transaction ids
@@ -15,8 +15,10 @@ Feature: Vip key features
     Then vip keys are changed
     And all vip keys are correct
 
+  @exclusive
   Scenario: Check log
     Given user log
 
+  @exclusive
   Scenario: Check transaction
     Given transaction ids
@@ -20,10 +20,10 @@
 package net.adshares.ads.qa;
 
 import cucumber.api.CucumberOptions;
-import cucumber.api.junit.Cucumber;
+import net.adshares.ads.qa.runner.AdsCucumber;
 import org.junit.runner.RunWith;
 
-@RunWith(Cucumber.class)
+@RunWith(AdsCucumber.class)
 @CucumberOptions(plugin = {"pretty", "cucumber.runtime.formatter.Slf4jFormatter"})
 //@CucumberOptions(plugin = {"pretty", "cucumber.runtime.formatter.Slf4jFormatter"}, tags = "@account")
 //@CucumberOptions(plugin = {"pretty", "cucumber.runtime.formatter.Slf4jFormatter"}, tags = "@broadcast")
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last known msid and hash of accounts. Transactions, which use cached values, do not need preceding get_me call.
+ * <p>
+ * Cache is updated from "account" object (e.g. get_me, get_log responses) and from accepted transactions.
+ */
+public class AccountStateCache {
+
+    private static AccountStateCache instance;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, AccountState> states = new ConcurrentHashMap<>();
+
+    private AccountStateCache() {
+    }
+
+    public static synchronized AccountStateCache getInstance() {
+        if (instance == null) {
+            instance = new AccountStateCache();
+        }
+        return instance;
+    }
+
+    /**
+     * @param address account address
+     * @return last known state of account or null, if state is unknown
+     */
+    public AccountState get(String address) {
+        return states.get(address);
+    }
+
+    /**
+     * Removes account state. Next transaction will be preceded by get_me.
+     *
+     * @param address account address
+     */
+    public void invalidate(String address) {
+        log.debug("invalidate {}", address);
+        states.remove(address);
+    }
+
+    /**
+     * Updates cache with all "account" objects found in response.
+     *
+     * @param resp client response, it can contain several json documents
+     */
+    public void update(String resp) {
+        update(null, resp);
+    }
+
+    /**
+     * Updates cache with all "account" objects found in response. If response contains accepted transaction,
+     * state of sender account is set to state after this transaction.
+     *
+     * @param senderAddress address of transaction sender or null, if response is not for transaction
+     * @param resp          client response, it can contain several json documents
+     */
+    public void update(String senderAddress, String resp) {
+        for (String document : ResponseSplitter.split(resp)) {
+            try {
+                updateFromDocument(senderAddress, document);
+            } catch (IOException | IllegalStateException | NumberFormatException e) {
+                log.debug("Cannot read account state: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * Reads only "account" and "tx" objects of document, other values are skipped.
+     *
+     * @param senderAddress address of transaction sender or null
+     * @param document      json document
+     * @throws IOException when document is malformed
+     */
+    private void updateFromDocument(String senderAddress, String document) throws IOException {
+        Map.Entry<String, AccountState> account = null;
+        AccountState stateAfterTx = null;
+        try (JsonReader reader = new JsonReader(new StringReader(document))) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("account".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    account = readAccount(reader);
+                } else if ("tx".equals(name) && senderAddress != null && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    stateAfterTx = readTransaction(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+        }
+
+        // account object can describe state before transaction, therefore transaction is applied last
+        if (account != null) {
+            states.put(account.getKey(), account.getValue());
+        }
+        if (stateAfterTx != null) {
+            states.put(senderAddress, stateAfterTx);
+        }
+    }
+
+    /**
+     * @param reader reader positioned at account object
+     * @return account address and state or null, if object does not contain address, msid and hash
+     * @throws IOException when object is malformed
+     */
+    private Map.Entry<String, AccountState> readAccount(JsonReader reader) throws IOException {
+        String address = null;
+        String hash = null;
+        int msid = -1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "address":
+                    address = reader.nextString();
+                    break;
+                case "msid":
+                    msid = Integer.parseInt(reader.nextString());
+                    break;
+                case "hash":
+                    hash = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (address == null || hash == null || msid < 0) {
+            return null;
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(address, new AccountState(msid, hash));
+    }
+
+    /**
+     * @param reader reader positioned at tx object
+     * @return state of account after transaction or null, if transaction was not accepted
+     * @throws IOException when object is malformed
+     */
+    private AccountState readTransaction(JsonReader reader) throws IOException {
+        boolean hasId = false;
+        String hashOut = null;
+        int msid = -1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    hasId = true;
+                    reader.skipValue();
+                    break;
+                case "account_msid":
+                    msid = Integer.parseInt(reader.nextString());
+                    break;
+                case "account_hashout":
+                    hashOut = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        // transaction without id was not accepted (e.g. dry-run), therefore account state did not change
+        return (hasId && hashOut != null && msid >= 0) ? new AccountState(msid + 1, hashOut) : null;
+    }
+
+    /**
+     * Account msid and hash.
+     */
+    public static class AccountState {
+        private final int msid;
+        private final String hash;
+
+        AccountState(int msid, String hash) {
+            this.msid = msid;
+            this.hash = hash;
+        }
+
+        /**
+         * @return number of last sent message
+         */
+        public int getMsid() {
+            return msid;
+        }
+
+        /**
+         * @return account hash
+         */
+        public String getHash() {
+            return hash;
+        }
+    }
+}
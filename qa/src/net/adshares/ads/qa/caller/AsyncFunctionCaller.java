@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import net.adshares.ads.qa.caller.command.*;
+import net.adshares.ads.qa.data.UserData;
+import net.adshares.ads.qa.util.LogEventTimestamp;
+import net.adshares.ads.qa.util.Poller;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade for {@link FunctionCaller}. Calls are run on bounded thread pool and retries
+ * are scheduled on timer, so no thread is blocked while waiting for next attempt.
+ * <p>
+ * Facade is bound to function caller of scenario, therefore dry-run flag of scenario is respected.
+ * Every call is run by its own fork of that caller, so concurrent calls do not share last request and response.
+ */
+public class AsyncFunctionCaller {
+
+    private static final String SYSTEM_PROP_THREADS = "ads.async.threads";
+    private static final int DEFAULT_THREADS = 32;
+
+    private static final ExecutorService executor;
+    private static final ScheduledExecutorService scheduler;
+
+    static {
+        int threads = Integer.getInteger(SYSTEM_PROP_THREADS, DEFAULT_THREADS);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ads-async-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ads-async-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private final FunctionCaller functionCaller;
+
+    /**
+     * @param functionCaller function caller, which executes calls
+     */
+    public AsyncFunctionCaller(FunctionCaller functionCaller) {
+        this.functionCaller = functionCaller;
+    }
+
+    /**
+     * @return asynchronous facade for function caller of current scenario
+     */
+    public static AsyncFunctionCaller getInstance() {
+        return new AsyncFunctionCaller(FunctionCaller.getInstance());
+    }
+
+    public CompletableFuture<String> broadcast(BroadcastTransaction broadcastTransaction) {
+        return call(fc -> fc.broadcast(broadcastTransaction));
+    }
+
+    public CompletableFuture<String> changeAccountKey(UserData userData, String publicKey, String signature) {
+        return call(fc -> fc.changeAccountKey(userData, publicKey, signature));
+    }
+
+    public CompletableFuture<String> changeNodeKey(UserData userData, String publicKey) {
+        return call(fc -> fc.changeNodeKey(userData, publicKey));
+    }
+
+    public CompletableFuture<String> createAccount(CreateAccountTransaction createAccountTransaction) {
+        return call(fc -> fc.createAccount(createAccountTransaction));
+    }
+
+    public CompletableFuture<String> createNode(UserData userData) {
+        return call(fc -> fc.createNode(userData));
+    }
+
+    public CompletableFuture<String> decodeRaw(DecodeRawCommand commandObj) {
+        return call(fc -> fc.decodeRaw(commandObj));
+    }
+
+    public CompletableFuture<String> getAccount(UserData userData, String address) {
+        return call(fc -> fc.getAccount(userData, address));
+    }
+
+    public CompletableFuture<String> getAccounts(UserData userData, int node) {
+        return call(fc -> fc.getAccounts(userData, node));
+    }
+
+    public CompletableFuture<String> getAccounts(UserData userData, int node, String blockTime) {
+        return call(fc -> fc.getAccounts(userData, node, blockTime));
+    }
+
+    /**
+     * Calls get_block until block information is available.
+     *
+     * @param userData user data
+     * @return future response
+     */
+    public CompletableFuture<String> getBlock(UserData userData) {
+        FunctionCaller fc = functionCaller.fork();
+        return poll(fc.getBlockPoller(), () -> fc.getBlockSingleCall(userData));
+    }
+
+    public CompletableFuture<String> getBroadcast(UserData userData, String blockTime) {
+        return call(fc -> fc.getBroadcast(userData, blockTime));
+    }
+
+    public CompletableFuture<String> getMe(UserData userData) {
+        return call(fc -> fc.getMe(userData));
+    }
+
+    public CompletableFuture<String> getMessage(UserData userData, String messageId) {
+        return call(fc -> fc.getMessage(userData, messageId));
+    }
+
+    public CompletableFuture<String> getMessageList(UserData userData, String blockTime) {
+        return call(fc -> fc.getMessageList(userData, blockTime));
+    }
+
+    public CompletableFuture<String> getLog(GetLogCommand getLogCommand) {
+        return call(fc -> fc.getLog(getLogCommand));
+    }
+
+    public CompletableFuture<String> getLog(UserData userData) {
+        return call(fc -> fc.getLog(userData));
+    }
+
+    public CompletableFuture<String> getLog(UserData userData, long fromTimeStamp) {
+        return call(fc -> fc.getLog(userData, fromTimeStamp));
+    }
+
+    public CompletableFuture<String> getLog(UserData userData, LogEventTimestamp logEventTimeStamp) {
+        return call(fc -> fc.getLog(userData, logEventTimeStamp));
+    }
+
+    /**
+     * Calls get_transaction until transaction information is available.
+     *
+     * @param userData user data
+     * @param txid     transaction id
+     * @return future response
+     */
+    public CompletableFuture<String> getTransaction(UserData userData, String txid) {
+        FunctionCaller fc = functionCaller.fork();
+        return fc.getTransactionPoller().pollAsync(() -> updateBlocks(fc, userData)
+                .thenApplyAsync(ignored -> fc.getTransactionSingleCall(userData, txid), executor), scheduler);
+    }
+
+    /**
+     * Calls get_blocks until all blocks are updated. No thread is blocked between calls.
+     *
+     * @param fc       function caller
+     * @param userData user data
+     * @return future, which is completed, when blocks are updated
+     */
+    private CompletableFuture<Void> updateBlocks(FunctionCaller fc, UserData userData) {
+        return poll(fc.getUpdateBlocksPoller(), () -> fc.getBlocks(userData)).thenAccept(fc::checkUpdatedBlocks);
+    }
+
+    public CompletableFuture<String> getVipKeys(UserData userData, String vipHash) {
+        return call(fc -> fc.getVipKeys(userData, vipHash));
+    }
+
+    public CompletableFuture<String> logAccount(UserData userData) {
+        return call(fc -> fc.logAccount(userData));
+    }
+
+    public CompletableFuture<String> retrieveFunds(UserData userData, String remoteAddress) {
+        return call(fc -> fc.retrieveFunds(userData, remoteAddress));
+    }
+
+    public CompletableFuture<String> sendOne(SendOneTransaction sendOneTransaction) {
+        return call(fc -> fc.sendOne(sendOneTransaction));
+    }
+
+    public CompletableFuture<String> sendMany(SendManyTransaction sendManyTransaction) {
+        return call(fc -> fc.sendMany(sendManyTransaction));
+    }
+
+    public CompletableFuture<String> setAccountStatus(UserData userData, String address, int status) {
+        return call(fc -> fc.setAccountStatus(userData, address, status));
+    }
+
+    public CompletableFuture<String> setAccountStatus(UserData userData, String address, String status) {
+        return call(fc -> fc.setAccountStatus(userData, address, status));
+    }
+
+    public CompletableFuture<String> setNodeStatus(UserData userData, String nodeId, int status) {
+        return call(fc -> fc.setNodeStatus(userData, nodeId, status));
+    }
+
+    public CompletableFuture<String> setNodeStatus(UserData userData, String nodeId, String status) {
+        return call(fc -> fc.setNodeStatus(userData, nodeId, status));
+    }
+
+    public CompletableFuture<String> unsetAccountStatus(UserData userData, String address, int status) {
+        return call(fc -> fc.unsetAccountStatus(userData, address, status));
+    }
+
+    public CompletableFuture<String> unsetAccountStatus(UserData userData, String address, String status) {
+        return call(fc -> fc.unsetAccountStatus(userData, address, status));
+    }
+
+    public CompletableFuture<String> unsetNodeStatus(UserData userData, String nodeId, int status) {
+        return call(fc -> fc.unsetNodeStatus(userData, nodeId, status));
+    }
+
+    public CompletableFuture<String> unsetNodeStatus(UserData userData, String nodeId, String status) {
+        return call(fc -> fc.unsetNodeStatus(userData, nodeId, status));
+    }
+
+    public CompletableFuture<List<String>> callBatch(BatchCommand batchCommand) {
+        return call(fc -> fc.callBatch(batchCommand));
+    }
+
+    public CompletableFuture<String> callCustomCommand(CustomCommand customCommand) {
+        return call(fc -> fc.callCustomCommand(customCommand));
+    }
+
+    /**
+     * Waits for result. Assertion errors and runtime exceptions thrown by call are rethrown without wrapping,
+     * so step fails with original reason.
+     *
+     * @param future future result
+     * @param <T>    result type
+     * @return result
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs call on thread pool.
+     *
+     * @param call call
+     * @param <T>  result type
+     * @return future result
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(call, executor);
+    }
+
+    /**
+     * Runs call on thread pool with own fork of function caller.
+     *
+     * @param call call
+     * @param <T>  result type
+     * @return future result
+     */
+    private <T> CompletableFuture<T> call(Function<FunctionCaller, T> call) {
+        return supply(() -> call.apply(functionCaller.fork()));
+    }
+
+    /**
+     * Polls call on thread pool. Next attempt is scheduled on timer, so no thread is blocked between attempts.
+     *
+     * @param poller poller, which decides when polling ends
+     * @param call   call
+     * @param <T>    result type
+     * @return future result, see {@link Poller#pollAsync(Supplier, Executor, ScheduledExecutorService)}
+     */
+    public <T> CompletableFuture<T> poll(Poller<T> poller, Supplier<T> call) {
+        return poller.pollAsync(call, executor, scheduler);
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Store of recorded client responses. In record mode every call is appended to cassette file,
+ * in replay mode responses are read from cassette instead of calling client.
+ * <p>
+ * Cassette is single append-only binary file. It starts with header (magic number and version) followed
+ * by records:
+ * <pre>
+ * int    key length
+ * byte[] key (UTF-8)
+ * int    ordinal - number of previous calls with the same key
+ * long   call duration in milliseconds
+ * int    response length
+ * byte[] response (UTF-8)
+ * </pre>
+ * File is memory mapped and indexed once, responses are decoded when they are requested.
+ * If the same call was recorded more than once, the last record is used.
+ */
+public class Cassette {
+
+    private static final String SYSTEM_PROP_MODE = "ads.cassette";
+    private static final String SYSTEM_PROP_FILE = "ads.cassette.file";
+    private static final String DEFAULT_FILE = "cassette.bin";
+    /**
+     * "ADSC"
+     */
+    private static final int MAGIC = 0x41445343;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    /**
+     * Request fields, which values differ between runs (timestamps, hashes, signatures). They are removed
+     * from key, so the same call is found, although its parameters changed.
+     */
+    private static final Pattern VOLATILE_FIELD_PATTERN = Pattern.compile(
+            "\"(msid|hash|from|block|time|signature|confirm|txid|message_id|viphash)\":(\"[^\"]*\"|[^,}]*)");
+
+    public enum Mode {
+        /**
+         * Cassette is not used.
+         */
+        OFF,
+        /**
+         * Calls are executed and recorded.
+         */
+        RECORD,
+        /**
+         * Calls are not executed, recorded responses are returned.
+         */
+        REPLAY
+    }
+
+    private static Cassette instance;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Mode mode;
+    private final File file;
+    /**
+     * Number of calls with the same key in current run
+     */
+    private final Map<String, AtomicInteger> ordinals = new ConcurrentHashMap<>();
+    /**
+     * Records by key and ordinal, loaded in replay mode
+     */
+    private Map<String, Record> index;
+    private MappedByteBuffer buffer;
+    private DataOutputStream output;
+
+    private Cassette() {
+        this(getModeProperty(), new File(System.getProperty(SYSTEM_PROP_FILE, DEFAULT_FILE)));
+    }
+
+    /**
+     * @param mode cassette mode
+     * @param file cassette file
+     */
+    Cassette(Mode mode, File file) {
+        this.mode = mode;
+        this.file = file;
+        if (mode == Mode.RECORD) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "ads-cassette-close"));
+        }
+    }
+
+    private static Mode getModeProperty() {
+        String modeName = System.getProperty(SYSTEM_PROP_MODE);
+        return (modeName == null || modeName.isEmpty()) ? Mode.OFF : Mode.valueOf(modeName.toUpperCase());
+    }
+
+    public static synchronized Cassette getInstance() {
+        if (instance == null) {
+            instance = new Cassette();
+        }
+        return instance;
+    }
+
+    /**
+     * @return cassette mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return true, if recorded responses are returned instead of calling client
+     */
+    public boolean isReplay() {
+        return mode == Mode.REPLAY;
+    }
+
+    /**
+     * Creates key of call. Whitespace outside strings and values of volatile fields are removed from requests.
+     *
+     * @param scenarioId id of scenario
+     * @param subject    address of user or other identifier of call target
+     * @param isDryRun   true, if call is dry-run
+     * @param requests   list of requests
+     * @return key
+     */
+    public String createKey(String scenarioId, String subject, boolean isDryRun, List<String> requests) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(scenarioId).append('\n').append(subject).append('\n').append(isDryRun ? 'D' : 'R');
+        for (String request : requests) {
+            sb.append('\n').append(VOLATILE_FIELD_PATTERN.matcher(removeWhitespace(request)).replaceAll("\"$1\""));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends call to cassette.
+     *
+     * @param key        key of call
+     * @param response   response
+     * @param durationMs call duration in milliseconds
+     */
+    public synchronized void record(String key, String response, long durationMs) {
+        int ordinal = nextOrdinal(key);
+        try {
+            if (output == null) {
+                boolean isNew = file.length() == 0;
+                output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+                if (isNew) {
+                    output.writeInt(MAGIC);
+                    output.writeInt(VERSION);
+                }
+            }
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(keyBytes.length);
+            output.write(keyBytes);
+            output.writeInt(ordinal);
+            output.writeLong(durationMs);
+            output.writeInt(responseBytes.length);
+            output.write(responseBytes);
+            // record is flushed, so cassette is usable even if run is interrupted
+            output.flush();
+        } catch (IOException e) {
+            log.error("Cannot write to cassette {}", file);
+            log.error(e.toString());
+        }
+    }
+
+    /**
+     * Returns recorded response.
+     *
+     * @param key key of call
+     * @return recorded response or null, if call was not recorded
+     */
+    public String replay(String key) {
+        int ordinal = nextOrdinal(key);
+        Record record = getIndex().get(key + '\n' + ordinal);
+        if (record == null) {
+            return null;
+        }
+        log.debug("replay response recorded in {} ms", record.durationMs);
+        byte[] bytes = new byte[record.length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(record.position);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int nextOrdinal(String key) {
+        return ordinals.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+    }
+
+    private synchronized Map<String, Record> getIndex() {
+        if (index == null) {
+            index = load();
+        }
+        return index;
+    }
+
+    /**
+     * Maps cassette file and reads keys of all records. Truncated record at the end of file is skipped.
+     *
+     * @return records by key and ordinal
+     */
+    private Map<String, Record> load() {
+        long startTime = System.currentTimeMillis();
+        Map<String, Record> records = new HashMap<>();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read cassette " + file, e);
+        }
+
+        if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalStateException("Invalid cassette " + file);
+        }
+        while (buffer.hasRemaining()) {
+            int recordStart = buffer.position();
+            try {
+                byte[] keyBytes = new byte[buffer.getInt()];
+                buffer.get(keyBytes);
+                int ordinal = buffer.getInt();
+                long durationMs = buffer.getLong();
+                int length = buffer.getInt();
+                int position = buffer.position();
+                buffer.position(position + length);
+                records.put(new String(keyBytes, StandardCharsets.UTF_8) + '\n' + ordinal,
+                        new Record(position, length, durationMs));
+            } catch (RuntimeException e) {
+                log.warn("Truncated cassette record at {}, it is skipped", recordStart);
+                break;
+            }
+        }
+        log.info("Cassette {} loaded: {} records in {} ms", file, records.size(),
+                System.currentTimeMillis() - startTime);
+        return records;
+    }
+
+    private synchronized void close() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                log.error(e.toString());
+            }
+            output = null;
+        }
+    }
+
+    /**
+     * Removes whitespace, which is outside strings.
+     *
+     * @param request json request
+     * @return request without whitespace
+     */
+    private static String removeWhitespace(String request) {
+        StringBuilder sb = new StringBuilder(request.length());
+        boolean inString = false;
+        boolean isEscaped = false;
+        for (int i = 0; i < request.length(); i++) {
+            char c = request.charAt(i);
+            if (inString) {
+                if (isEscaped) {
+                    isEscaped = false;
+                } else if (c == '\\') {
+                    isEscaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (Character.isWhitespace(c)) {
+                continue;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Location of recorded response in cassette file.
+     */
+    private static class Record {
+        private final int position;
+        private final int length;
+        private final long durationMs;
+
+        private Record(int position, int length, long durationMs) {
+            this.position = position;
+            this.length = length;
+            this.durationMs = durationMs;
+        }
+    }
+}
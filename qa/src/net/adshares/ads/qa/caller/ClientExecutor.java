@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import net.adshares.ads.qa.data.UserData;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Backend, which delivers client requests to node and returns responses in the same json format as ADS client.
+ * <p>
+ * Implementation can be selected with "ads.client" system property. Custom implementation must have
+ * public no-argument constructor.
+ * <p>
+ * Built-in implementations use ADS client binary ({@link ProcessClientExecutor}, {@link ClientSessionPool})
+ * or in-process simulated network.
+ */
+public interface ClientExecutor {
+
+    /**
+     * Sends requests on behalf of user.
+     *
+     * @param userData user data: node host, office port, account address and secret
+     * @param requests list of json requests, which are executed one after another
+     * @param isDryRun true, if transactions should be only verified, but not sent to network
+     * @return json responses for all requests, one after another
+     * @throws RequestsSentException when requests were delivered, but responses were not received completely
+     * @throws IOException           when requests cannot be delivered
+     */
+    String execute(UserData userData, List<String> requests, boolean isDryRun) throws IOException;
+}
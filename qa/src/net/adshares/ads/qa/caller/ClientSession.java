@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived ADS client process. Requests are written to client's stdin as newline-delimited json,
+ * responses are read from stdout in the same order. Responses are returned as they were printed by client.
+ * <p>
+ * Session relies on client protocol: client reads one request per line from stdin, answers it with exactly one
+ * json document on stdout before reading next line and exits, when stdin is closed. Text outside documents
+ * (e.g. warnings) is skipped.
+ * <p>
+ * When number of responses does not match number of requests or response is not terminated, output cannot be
+ * assigned to requests anymore, therefore session is closed.
+ */
+class ClientSession implements Closeable {
+
+    /**
+     * Timeout for single response in milliseconds
+     */
+    private static final long RESPONSE_TIMEOUT = 60000L;// 60,000 ms = 1 min.
+    /**
+     * Timeout for probe response in milliseconds
+     */
+    private static final long PROBE_TIMEOUT = 5000L;// 5,000 ms = 5 s.
+    /**
+     * Read-only request used as probe. get_me is answered by every client and refreshes its account state.
+     */
+    private static final String PROBE_REQUEST = "{\"run\":\"get_me\"}";
+    /**
+     * Marker put in response queue, when client's stdout is closed
+     */
+    private static final String END_OF_STREAM = new String("");
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Process process;
+    private final Writer writer;
+    private final Runnable onClose;
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+    private volatile boolean isClosed;
+    /**
+     * True, when client started printing document, which is not finished yet
+     */
+    private volatile boolean isInDocument;
+    private volatile long lastUsedTime;
+
+    /**
+     * Starts ADS client process.
+     *
+     * @param command client command line (binary and options)
+     * @param onClose action run once, when session is closed (e.g. release of work directory)
+     * @throws IOException when process cannot be started
+     */
+    ClientSession(List<String> command, Runnable onClose) throws IOException {
+        this.onClose = onClose;
+        process = new ProcessBuilder(command).start();
+        writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        lastUsedTime = System.currentTimeMillis();
+
+        startDaemon(this::readResponses, "ads-session-out");
+        startDaemon(this::readErrors, "ads-session-err");
+    }
+
+    /**
+     * Sends requests to client and waits for all responses.
+     *
+     * @param requests list of json requests
+     * @return list of json responses, one for each request
+     * @throws RequestsSentException when requests were sent, but responses were not received completely
+     * @throws IOException           when client process is not available
+     */
+    List<String> execute(List<String> requests) throws IOException {
+        return execute(requests, RESPONSE_TIMEOUT);
+    }
+
+    /**
+     * Sends read-only request to check, if client answers. Session is closed, when probe fails.
+     *
+     * @throws IOException when client does not answer with single complete response in short time
+     */
+    void probe() throws IOException {
+        try {
+            execute(Collections.singletonList(PROBE_REQUEST), PROBE_TIMEOUT);
+        } catch (RequestsSentException e) {
+            // probe is read-only, so caller can safely start new session
+            throw new IOException("Probe failed: " + e.getMessage(), e);
+        }
+        if (!isAlive()) {
+            throw new IOException("Probe failed: unexpected responses from client");
+        }
+    }
+
+    private synchronized List<String> execute(List<String> requests, long timeout) throws IOException {
+        if (!isAlive()) {
+            throw new IOException("Session is closed");
+        }
+        lastUsedTime = System.currentTimeMillis();
+        if (!responses.isEmpty() || isInDocument) {
+            // responses left by previous call would be assigned to wrong requests
+            close();
+            throw new IOException(isInDocument ? "Unterminated response in session"
+                    : "Unexpected responses in session: " + responses.size());
+        }
+
+        List<String> result = new ArrayList<>(requests.size());
+        try {
+            for (String request : requests) {
+                writer.write(request);
+                writer.write('\n');
+            }
+            writer.flush();
+        } catch (IOException e) {
+            // part of requests could be already read by client
+            close();
+            throw new RequestsSentException("Cannot send requests to client", "", e);
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+            String resp;
+            try {
+                resp = responses.poll(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new RequestsSentException("Interrupted while waiting for response",
+                        String.join("\n", result), e);
+            }
+            if (resp == null || resp == END_OF_STREAM) {
+                String reason;
+                if (isInDocument) {
+                    reason = "Unterminated response from client";
+                } else {
+                    reason = (resp == null) ? "No response from client in " + timeout + " ms"
+                            : "Client process terminated";
+                }
+                close();
+                throw new RequestsSentException(String.format("%s, received %d of %d responses",
+                        reason, result.size(), requests.size()), String.join("\n", result));
+            }
+            result.add(resp);
+        }
+
+        // client could print more documents than expected, they are returned with the last response
+        boolean isOutOfSync = false;
+        String extra;
+        while ((extra = responses.poll()) != null) {
+            if (extra != END_OF_STREAM) {
+                log.warn("Extra response from client: {}", extra);
+                result.add(extra);
+            }
+            isOutOfSync = true;
+        }
+        if (isOutOfSync) {
+            close();
+        }
+        lastUsedTime = System.currentTimeMillis();
+        return result;
+    }
+
+    /**
+     * @return true, if client process is running and can accept requests
+     */
+    boolean isAlive() {
+        return !isClosed && process.isAlive();
+    }
+
+    /**
+     * @return time of last use in milliseconds
+     */
+    long getLastUsedTime() {
+        return lastUsedTime;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        try {
+            // closing stdin ends client's read loop
+            writer.close();
+        } catch (IOException e) {
+            log.debug("Cannot close client stdin: {}", e.toString());
+        }
+        try {
+            if (!process.waitFor(1, TimeUnit.SECONDS)) {
+                process.destroy();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+        }
+        onClose.run();
+    }
+
+    private void readResponses() {
+        ResponseSplitter splitter = new ResponseSplitter();
+        StringBuilder document = new StringBuilder();
+        try (Reader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            int c;
+            while ((c = reader.read()) != -1) {
+                switch (splitter.next((char) c)) {
+                    case ResponseSplitter.DOCUMENT_START:
+                        isInDocument = true;
+                        document.append((char) c);
+                        break;
+                    case ResponseSplitter.DOCUMENT_END:
+                        document.append((char) c);
+                        // cleared before response is visible, so next call does not see finished document as open
+                        isInDocument = false;
+                        responses.add(document.toString());
+                        document.setLength(0);
+                        break;
+                    default:
+                        if (document.length() > 0) {
+                            document.append((char) c);
+                        }
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Client output closed: {}", e.toString());
+        } finally {
+            responses.add(END_OF_STREAM);
+        }
+    }
+
+    private void readErrors() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                log.debug("stderr: {}", line);
+            }
+        } catch (IOException e) {
+            log.debug("Client error stream closed: {}", e.toString());
+        }
+    }
+
+    private static void startDaemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import net.adshares.ads.qa.data.UserData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of long-lived ADS client sessions. There is one session for every distinct client command line,
+ * which means one session per user data (host, port, address, secret) and client options.
+ * Every session has own work directory.
+ * <p>
+ * Client must follow one-request-per-line protocol described in {@link ClientSession}. Process being alive
+ * does not prove that, therefore session idle for longer time is probed with read-only request, before it is
+ * taken from pool, and restarted, when probe fails.
+ */
+public class ClientSessionPool implements ClientExecutor {
+
+    private static final String SYSTEM_PROP_IDLE_TIMEOUT = "ads.session.idle";
+    /**
+     * Default time in milliseconds after which unused session is closed
+     */
+    private static final long DEFAULT_IDLE_TIMEOUT = 120000L;// 120,000 ms = 2 min.
+    private static final String SYSTEM_PROP_PROBE_IDLE_TIME = "ads.session.probe";
+    /**
+     * Default time in milliseconds after which unused session is probed, before it is taken from pool
+     */
+    private static final long DEFAULT_PROBE_IDLE_TIME = 5000L;// 5,000 ms = 5 s.
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, ClientSession> sessions = new ConcurrentHashMap<>();
+    private final List<String> clientCommand;
+    private final WorkDirPool workDirPool;
+    private final long idleTimeout;
+    private final long probeIdleTime;
+
+    /**
+     * @param clientCommand client binary and options common for all users, without work directory
+     * @param workDirPool   pool of work directories
+     */
+    ClientSessionPool(List<String> clientCommand, WorkDirPool workDirPool) {
+        this.clientCommand = clientCommand;
+        this.workDirPool = workDirPool;
+        idleTimeout = Long.getLong(SYSTEM_PROP_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT);
+        probeIdleTime = Long.getLong(SYSTEM_PROP_PROBE_IDLE_TIME, DEFAULT_PROBE_IDLE_TIME);
+
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ads-session-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000L, idleTimeout / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdleSessions, period, period, TimeUnit.MILLISECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::closeAll, "ads-session-shutdown"));
+    }
+
+    /**
+     * Sends requests using user's session. Session is started, if it is not present or previous one is not alive.
+     *
+     * @param userData user data
+     * @param requests list of json requests
+     * @param isDryRun true, if transactions should be only verified, but not sent to network
+     * @return json responses separated with new line, one for each request
+     * @throws RequestsSentException when requests were sent, but session did not respond completely
+     * @throws IOException           when session cannot be started
+     */
+    @Override
+    public String execute(UserData userData, List<String> requests, boolean isDryRun) throws IOException {
+        String key = (isDryRun ? "dry-run" : "") + userData.getDataAsEscParams();
+        ClientSession session = borrow(key, userData, isDryRun);
+        try {
+            return String.join("\n", session.execute(requests));
+        } catch (IOException e) {
+            sessions.remove(key, session);
+            session.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all sessions.
+     */
+    public void closeAll() {
+        Iterator<ClientSession> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            it.next().close();
+            it.remove();
+        }
+    }
+
+    private ClientSession borrow(String key, UserData userData, boolean isDryRun) throws IOException {
+        ClientSession session = sessions.get(key);
+        if (session != null && session.isAlive() && isResponsive(session)) {
+            return session;
+        }
+
+        synchronized (this) {
+            session = sessions.get(key);
+            if (session == null || !session.isAlive()) {
+                if (session != null) {
+                    log.info("Restarting client session");
+                    session.close();
+                }
+                session = start(userData, isDryRun);
+                sessions.put(key, session);
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Probes session, which was not used recently. Session, which answered last call, is assumed healthy.
+     *
+     * @param session session
+     * @return true, if session can be used
+     */
+    private boolean isResponsive(ClientSession session) {
+        if (System.currentTimeMillis() - session.getLastUsedTime() < probeIdleTime) {
+            return true;
+        }
+        try {
+            session.probe();
+            return true;
+        } catch (IOException e) {
+            log.warn("Client session is not responsive: {}", e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Starts session in own work directory. Directory is returned to pool, when session is closed.
+     */
+    private ClientSession start(UserData userData, boolean isDryRun) throws IOException {
+        String workDir = workDirPool.acquire();
+        try {
+            return new ClientSession(ProcessClientExecutor.buildCommand(clientCommand, userData, isDryRun, workDir),
+                    () -> workDirPool.release(workDir));
+        } catch (IOException e) {
+            workDirPool.release(workDir);
+            throw e;
+        }
+    }
+
+    private void evictIdleSessions() {
+        long minTime = System.currentTimeMillis() - idleTimeout;
+        Iterator<ClientSession> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            ClientSession session = it.next();
+            if (!session.isAlive() || session.getLastUsedTime() < minTime) {
+                log.debug("Closing idle client session");
+                it.remove();
+                session.close();
+            }
+        }
+    }
+}
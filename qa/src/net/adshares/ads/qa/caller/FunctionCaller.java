@@ -22,6 +22,7 @@ package net.adshares.ads.qa.caller;
 import com.google.gson.*;
 import net.adshares.ads.qa.caller.command.*;
 import net.adshares.ads.qa.data.UserData;
+import net.adshares.ads.qa.sim.SimulatedClientExecutor;
 import net.adshares.ads.qa.stepdefs.TransferUser;
 import net.adshares.ads.qa.util.*;
 import org.apache.commons.exec.CommandLine;
@@ -35,9 +36,9 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -49,23 +50,51 @@ public class FunctionCaller {
      */
     private static final int COMPILATION_TIMEOUT = 300000;// 300000 ms = 5 min.
     /**
-     * Name of temporary file that is created for commands that cannot be called directly in shell
+     * Maximal time of block update in milliseconds. It is time of five get_blocks attempts with 3 s delay.
      */
-    private static final String TEMP_FILE_NAME = "tmp";
+    private static final long UPDATE_BLOCKS_TIMEOUT = 15000L;
     private static final String SYSTEM_PROP_IS_DOCKER = "is.docker";
     private static final String SYSTEM_PROP_DATA_DIR = "dir.data";
+    private static final String SYSTEM_PROP_CLIENT = "ads.client";
+    private static final String CLIENT_PROCESS = "process";
+    private static final String CLIENT_SESSION = "session";
+    private static final String CLIENT_SIMULATOR = "simulator";
+    private static final String SYSTEM_PROP_ACCOUNT_CACHE = "account.cache";
     private static final String DEFAULT_DATA_DIR = "/ads-data";
     private static final String DOCKER_ADS_BINARY = "docker exec -i adshares_ads_1 ads";
     private static final String ADS_BINARY = "ads";
     /**
-     * Regular expression which match when two json responses are returned. It is useful for calls preceded by get_me.
+     * Request for get_me function. It precedes transactions, because client needs current account hash and msid.
      */
-    private static final String DOUBLE_RESP_REGEX = "(?s).*}\\s*\\{";
+    private static final String GET_ME_REQUEST = "{\"run\":\"get_me\"}";
+    private static final String GET_LOG_REQUEST = "{\"run\":\"get_log\", \"from\":\"%d\"}";
+    /**
+     * Functions, which do not change state of network. Requests with them can be sent again.
+     */
+    private static final Set<String> READ_ONLY_FUNCTIONS = new HashSet<>(Arrays.asList(
+            "decode_raw", "get_account", "get_accounts", "get_block", "get_blocks", "get_broadcast", "get_log",
+            "get_me", "get_message", "get_message_list", "get_signatures", "get_transaction", "get_vipkeys"));
     /**
      * True, if test are performed on docker.
      * False, if locally.
      */
     private boolean isDocker;
+    /**
+     * Backend, which starts new client process for every call. It is also used, when other backend fails.
+     */
+    private static ClientExecutor processExecutor;
+    /**
+     * Backend for client requests, shared by all instances.
+     */
+    private static ClientExecutor clientExecutor;
+    /**
+     * Work directories of client processes, shared by all instances.
+     */
+    private static WorkDirPool workDirPool;
+    /**
+     * True, if transactions use cached account msid and hash instead of preceding get_me call.
+     */
+    private boolean isAccountCacheEnabled;
     /**
      * Blockchain client application
      */
@@ -87,23 +116,52 @@ public class FunctionCaller {
     /**
      * Last request processed by esc
      */
-    private String lastRequest;
+    private volatile String lastRequest;
     /**
      * Last response from esc
      */
-    private String lastResponse;
+    private volatile String lastResponse;
     /**
      * Dry-run, if true, transaction won't be send to network
      */
     private boolean isDryRun;
+    /**
+     * Id of scenario, which uses this instance. It is used as part of cassette key.
+     */
+    private final String scenarioId;
+    /**
+     * True, if instance is not bound to scenario. Its calls are not recorded in cassette and do not update
+     * account state cache.
+     */
+    private final boolean isDetached;
+    /**
+     * Store of recorded responses
+     */
+    private final Cassette cassette = Cassette.getInstance();
+    /**
+     * Persistent cache of finalised log events
+     */
+    private final LogCache logCache = LogCache.getInstance();
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    private static FunctionCaller instance;
+    /**
+     * Instance for current thread. Cucumber runs each scenario in single thread and new instance is created
+     * at the beginning of every scenario, therefore dry-run flag, last request and response are not shared
+     * between scenarios.
+     */
+    private static final ThreadLocal<FunctionCaller> instance = ThreadLocal.withInitial(FunctionCaller::new);
 
 
     private FunctionCaller() {
+        this("", false);
+    }
+
+    private FunctionCaller(String scenarioId, boolean isDetached) {
+        this.scenarioId = scenarioId;
+        this.isDetached = isDetached;
         isDocker = "1".equals(System.getProperty(SYSTEM_PROP_IS_DOCKER));
+        isAccountCacheEnabled = !isDetached && !"0".equals(System.getProperty(SYSTEM_PROP_ACCOUNT_CACHE));
 
         dataDir = System.getProperty(SYSTEM_PROP_DATA_DIR, DEFAULT_DATA_DIR);
         // remove '/', if is present at the end of dir
@@ -123,13 +181,87 @@ public class FunctionCaller {
         // options:
         // -n (--nice)
         clientAppOpts = " -n0 -w " + tmpDir;
+        synchronized (FunctionCaller.class) {
+            if (clientExecutor == null) {
+                // work directory is given to every client process separately
+                List<String> clientCommand = Arrays.asList(clientApp.concat(" -n0").split(" "));
+                List<String> sysCmdPrefixList = sysCmdPrefix.isEmpty()
+                        ? Collections.emptyList() : Arrays.asList(sysCmdPrefix.trim().split(" "));
+                workDirPool = new WorkDirPool(tmpDir, sysCmdPrefixList);
+                processExecutor = new ProcessClientExecutor(clientCommand, workDirPool);
+                clientExecutor = createClientExecutor(System.getProperty(SYSTEM_PROP_CLIENT, CLIENT_PROCESS),
+                        clientCommand);
+            }
+        }
     }
 
-    public static FunctionCaller getInstance() {
-        if (instance == null) {
-            instance = new FunctionCaller();
+    /**
+     * Creates backend for client requests.
+     *
+     * @param name          "process", "session", "simulator" or name of class implementing ClientExecutor
+     * @param clientCommand client binary and options common for all users
+     * @return client executor
+     */
+    private ClientExecutor createClientExecutor(String name, List<String> clientCommand) {
+        if (CLIENT_PROCESS.equals(name)) {
+            return processExecutor;
+        }
+        if (CLIENT_SESSION.equals(name)) {
+            return new ClientSessionPool(clientCommand, workDirPool);
+        }
+        if (CLIENT_SIMULATOR.equals(name)) {
+            return new SimulatedClientExecutor();
+        }
+        try {
+            return (ClientExecutor) Class.forName(name).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid " + SYSTEM_PROP_CLIENT + " value: " + name, e);
         }
-        return instance;
+    }
+
+    /**
+     * @return function caller of current scenario
+     */
+    public static FunctionCaller getInstance() {
+        return instance.get();
+    }
+
+    /**
+     * Creates new function caller for scenario, which is run in current thread.
+     *
+     * @param scenarioId id of scenario, it identifies recorded responses in cassette
+     */
+    public static void startScenario(String scenarioId) {
+        instance.set(new FunctionCaller(scenarioId, false));
+    }
+
+    /**
+     * Creates function caller, which is not bound to any scenario. Its calls are not recorded in cassette
+     * and do not update account state cache, so it can be used by background threads.
+     *
+     * @return detached function caller
+     */
+    public static FunctionCaller createDetached() {
+        return new FunctionCaller("", true);
+    }
+
+    /**
+     * Creates function caller for the same scenario with the same dry-run flag. It has own last request
+     * and response, so it can be used concurrently with this instance.
+     *
+     * @return function caller
+     */
+    public FunctionCaller fork() {
+        FunctionCaller functionCaller = new FunctionCaller(scenarioId, isDetached);
+        functionCaller.setDryRun(isDryRun);
+        return functionCaller;
+    }
+
+    /**
+     * Releases function caller of scenario, which was run in current thread.
+     */
+    public static void endScenario() {
+        instance.remove();
     }
 
     /**
@@ -152,11 +284,7 @@ public class FunctionCaller {
      */
     public String changeAccountKey(UserData userData, String publicKey, String signature) {
         log.debug("changeAccountKey");
-        String command = String.format("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"change_account_key\", \"public_key\":\"%s\", \"confirm\":\"%s\"}') | ", publicKey, signature)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, String.format("{\"run\":\"change_account_key\", \"public_key\":\"%s\", \"confirm\":\"%s\"}", publicKey, signature));
     }
 
     /**
@@ -168,11 +296,7 @@ public class FunctionCaller {
      */
     public String changeNodeKey(UserData userData, String publicKey) {
         log.debug("changeNodeKey");
-        String command = String.format("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"change_node_key\", \"public_key\":\"%s\"}') | ", publicKey)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, String.format("{\"run\":\"change_node_key\", \"public_key\":\"%s\"}", publicKey));
     }
 
     /**
@@ -193,11 +317,7 @@ public class FunctionCaller {
      */
     public String createNode(UserData userData) {
         log.debug("createNode");
-        String command = "(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"create_node\"}') | "
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, "{\"run\":\"create_node\"}");
     }
 
     /**
@@ -208,9 +328,7 @@ public class FunctionCaller {
      */
     public String decodeRaw(DecodeRawCommand commandObj) {
         log.debug(commandObj.toStringLogger());
-        String command = commandObj.toStringCommand().concat(" | ").concat(clientApp).concat(clientAppOpts)
-                .concat(commandObj.getSenderData().getDataAsEscParams());
-        return callFunction(command);
+        return callClient(commandObj.getSenderData(), commandObj.getRequests());
     }
 
     /**
@@ -222,9 +340,7 @@ public class FunctionCaller {
      */
     public String getAccount(UserData userData, String address) {
         log.debug("getAccount {}", address);
-        String command = String.format("echo '{\"run\":\"get_account\", \"address\":\"%s\"}' | ", address)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command);
+        return callClient(userData, String.format("{\"run\":\"get_account\", \"address\":\"%s\"}", address));
     }
 
     /**
@@ -248,9 +364,7 @@ public class FunctionCaller {
      */
     public String getAccounts(UserData userData, int node, String blockTime) {
         log.debug("getAccounts node={}, block={}", node, blockTime);
-        String command = String.format("echo '{\"run\":\"get_accounts\", \"node\":%d, \"block\":\"%s\"}' | ", node, blockTime)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command);
+        return callClient(userData, String.format("{\"run\":\"get_accounts\", \"node\":%d, \"block\":\"%s\"}", node, blockTime));
     }
 
     /**
@@ -261,59 +375,62 @@ public class FunctionCaller {
      * @return response: json when request was correct, empty otherwise
      */
     public String getBlock(UserData userData) {
-        String resp = null;
+        return getBlockPoller().poll(() -> getBlockSingleCall(userData));
+    }
 
+    /**
+     * @return poller, which calls get_block until block information is available
+     */
+    Poller<String> getBlockPoller() {
         // block info is not available for short time after block change,
         // expected delay is longer after node creation,
         // therefore there is delay - it cannot be "wait for next block"
-        int attempt = 0;
         final long delay = 3000L;
-        final int attemptMax = (int) (EscConst.BLOCK_PERIOD_MS / delay);
-        log.trace("attemptMax = {}", attemptMax);
-        while (attempt++ < attemptMax) {
-            resp = FunctionCaller.getInstance().getBlockSingleCall(userData);
-            JsonObject o = Utils.convertStringToJsonObject(resp);
-            if (o.has("error")) {
-                String errorDesc = o.get("error").getAsString();
-                log.debug("Error occurred: {}", errorDesc);
-                assertThat("Unexpected error for get_block request.", errorDesc,
-                        equalTo(EscConst.Error.GET_BLOCK_INFO_FAILED));
-            } else {
-                JsonArray arr = o.getAsJsonObject("block").getAsJsonArray("nodes");
-                // special node 0 is on the list but it is shouldn't be counted in total
-                int nodesCount = arr.size() - 1;
-                int vipNodeCount = 0;
-                for (JsonElement je : arr) {
-                    int status = je.getAsJsonObject().get("status").getAsInt();
-                    if (EscUtils.isStatusVip(status)) {
-                        ++vipNodeCount;
-                    }
-                }
-
-                if (Integer.min(nodesCount, EscConst.VIP_MAX) != vipNodeCount) {
-                    String reason = new AssertReason.Builder().msg("Incorrect number of vip nodes")
-                            .msg("nodes count: " + nodesCount)
-                            .msg("VIP_MAX:     " + EscConst.VIP_MAX)
-                            .msg("vip count:   " + vipNodeCount)
-                            .res(resp).build();
-                    Assert.fail(reason);
-                }
-
-                log.debug("getBlock resp in {} attempt", attempt);
-                return resp;
-            }
+        return new Poller.Builder<String>("get_block")
+                .until(this::isBlockAvailable)
+                .backoff(Poller.Backoff.fixed(delay))
+                .jitter(0.1)
+                .maxAttempts((int) (EscConst.BLOCK_PERIOD_MS / delay))
+                .failReason("Cannot get block info after delay")
+                .build();
+    }
 
-            assertThat("Cannot get block info after delay", attempt < attemptMax);
+    /**
+     * Checks get_block response. Fails, if response contains unexpected error or incorrect number of vip nodes.
+     *
+     * @param resp get_block response
+     * @return true, if block information is available, false otherwise
+     */
+    boolean isBlockAvailable(String resp) {
+        JsonObject o = Utils.convertStringToJsonObject(resp);
+        if (o.has("error")) {
+            String errorDesc = o.get("error").getAsString();
+            log.debug("Error occurred: {}", errorDesc);
+            assertThat("Unexpected error for get_block request.", errorDesc,
+                    equalTo(EscConst.Error.GET_BLOCK_INFO_FAILED));
+            return false;
+        }
 
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        JsonArray arr = o.getAsJsonObject("block").getAsJsonArray("nodes");
+        // special node 0 is on the list but it is shouldn't be counted in total
+        int nodesCount = arr.size() - 1;
+        int vipNodeCount = 0;
+        for (JsonElement je : arr) {
+            int status = je.getAsJsonObject().get("status").getAsInt();
+            if (EscUtils.isStatusVip(status)) {
+                ++vipNodeCount;
             }
         }
 
-        assertThat("Cannot get response", resp, notNullValue());
-        return resp;
+        if (Integer.min(nodesCount, EscConst.VIP_MAX) != vipNodeCount) {
+            String reason = new AssertReason.Builder().msg("Incorrect number of vip nodes")
+                    .msg("nodes count: " + nodesCount)
+                    .msg("VIP_MAX:     " + EscConst.VIP_MAX)
+                    .msg("vip count:   " + vipNodeCount)
+                    .res(resp).build();
+            Assert.fail(reason);
+        }
+        return true;
     }
 
     /**
@@ -322,11 +439,9 @@ public class FunctionCaller {
      * @param userData user data
      * @return response: json when request was correct, empty otherwise
      */
-    private String getBlockSingleCall(UserData userData) {
+    String getBlockSingleCall(UserData userData) {
         log.debug("getBlock");
-        String command = ("echo '{\"run\":\"get_block\"}' | ")
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command);
+        return callClient(userData, "{\"run\":\"get_block\"}");
     }
 
     /**
@@ -335,38 +450,47 @@ public class FunctionCaller {
      *
      * @param userData user data
      */
-    private void updateBlocks(UserData userData) {
-        int attempt = 0;
-        int attemptMax = 5;
+    void updateBlocks(UserData userData) {
+        checkUpdatedBlocks(getUpdateBlocksPoller().poll(() -> getBlocks(userData)));
+    }
 
-        while (attempt++ < attemptMax) {
-            String resp = getBlocks(userData);
-            JsonObject o = Utils.convertStringToJsonObject(resp);
-            if (o.has("error")) {
-                String errorDescription = o.get("error").getAsString();
-
-                if (EscConst.Error.GET_SIGNATURE_UNAVAILABLE.equals(errorDescription)) {
-                    try {
-                        Thread.sleep(3000);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    continue;
-                }
+    /**
+     * @return poller, which calls get_blocks until all blocks are updated
+     */
+    Poller<String> getUpdateBlocksPoller() {
+        // If updated_blocks == 0, then all blocks are updated.
+        // Next attempt is needed, when blocks were updated or signatures are not available yet.
+        return new Poller.Builder<String>("get_blocks")
+                .until(r -> {
+                    JsonObject o = Utils.convertStringToJsonObject(r);
+                    return !o.has("error") && 0 == o.get("updated_blocks").getAsInt();
+                })
+                .terminal(r -> {
+                    String errorDescription = EscUtils.getErrorDescription(r);
+                    return !errorDescription.isEmpty()
+                            && !EscConst.Error.GET_SIGNATURE_UNAVAILABLE.equals(errorDescription);
+                })
+                .backoff(Poller.Backoff.exponential(250L, 3000L))
+                .timeout(UPDATE_BLOCKS_TIMEOUT)
+                .failReason("Didn't update blocks in expected time.")
+                .build();
+    }
 
-                String reason = new AssertReason.Builder().msg("Unexpected error for get_blocks: " + errorDescription)
-                        .req(FunctionCaller.getInstance().getLastRequest())
-                        .res(FunctionCaller.getInstance().getLastResponse())
-                        .build();
-                Assert.fail(reason);
-            } else {
-                if (0 == o.get("updated_blocks").getAsInt()) {
-                    // If updated_blocks == 0, then all blocks are updated.
-                    return;
-                }
-            }
+    /**
+     * Checks last get_blocks response of update. Fails, if response contains unexpected error.
+     *
+     * @param resp get_blocks response
+     */
+    void checkUpdatedBlocks(String resp) {
+        JsonObject o = Utils.convertStringToJsonObject(resp);
+        if (o.has("error")) {
+            String reason = new AssertReason.Builder()
+                    .msg("Unexpected error for get_blocks: " + o.get("error").getAsString())
+                    .req(getLastRequest())
+                    .res(getLastResponse())
+                    .build();
+            Assert.fail(reason);
         }
-        assertThat("Didn't update blocks in expected attempts.", attempt, lessThan(attemptMax));
     }
 
     /**
@@ -375,11 +499,9 @@ public class FunctionCaller {
      * @param userData user data
      * @return response: json when request was correct, empty otherwise
      */
-    private String getBlocks(UserData userData) {
+    String getBlocks(UserData userData) {
         log.debug("getBlocks");
-        String command = ("echo '{\"run\":\"get_blocks\"}' | ")
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command);
+        return callClient(userData, "{\"run\":\"get_blocks\"}");
     }
 
 //    /**
@@ -401,9 +523,7 @@ public class FunctionCaller {
      */
     public String getBroadcast(UserData userData, String blockTime) {
         log.debug("getBroadcast");
-        String command = String.format("echo '{\"run\":\"get_broadcast\", \"from\":\"%s\"}' | ", blockTime)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command);
+        return callClient(userData, String.format("{\"run\":\"get_broadcast\", \"from\":\"%s\"}", blockTime));
     }
 
     /**
@@ -414,9 +534,7 @@ public class FunctionCaller {
      */
     public String getMe(UserData userData) {
         log.debug("getMe");
-        String command = ("echo '{\"run\":\"get_me\"}' | ")
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command);
+        return updateAccountState(callClient(userData, GET_ME_REQUEST));
     }
 
     /**
@@ -428,9 +546,7 @@ public class FunctionCaller {
      */
     public String getMessage(UserData userData, String messageId) {
         log.debug("getMessage");
-        String command = String.format("echo '{\"run\":\"get_message\", \"message_id\":\"%s\"}' | ", messageId)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command);
+        return callClient(userData, String.format("{\"run\":\"get_message\", \"message_id\":\"%s\"}", messageId));
     }
 
 //    /**
@@ -459,9 +575,7 @@ public class FunctionCaller {
      */
     public String getMessageList(UserData userData, String blockTime) {
         log.debug("getMessageList");
-        String command = String.format("echo '{\"run\":\"get_message_list\", \"block\":\"%s\"}' | ", blockTime)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command);
+        return callClient(userData, String.format("{\"run\":\"get_message_list\", \"block\":\"%s\"}", blockTime));
     }
 
     /**
@@ -471,7 +585,7 @@ public class FunctionCaller {
      * @return response: json when request was correct, empty otherwise
      */
     public String getLog(GetLogCommand getLogCommand) {
-        return callCommand(getLogCommand);
+        return updateAccountState(callCommand(getLogCommand));
     }
 
     /**
@@ -493,9 +607,11 @@ public class FunctionCaller {
      */
     public String getLog(UserData userData, long fromTimeStamp) {
         log.debug("getLog from {}", fromTimeStamp);
-        String command = String.format("echo '{\"run\":\"get_log\", \"from\":\"%d\"}' | ", fromTimeStamp)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command);
+        if (logCache.isEnabled() && !cassette.isReplay()) {
+            return updateAccountState(logCache.getLog(userData.getAddress(), fromTimeStamp,
+                    from -> callClient(userData, String.format(GET_LOG_REQUEST, from))));
+        }
+        return updateAccountState(callClient(userData, String.format(GET_LOG_REQUEST, fromTimeStamp)));
     }
 
     /**
@@ -556,39 +672,45 @@ public class FunctionCaller {
      * @return response: json when request was correct, empty otherwise
      */
     public String getTransaction(UserData userData, String txid) {
-        String resp = null;
+        return getTransactionPoller().poll(() -> {
+            updateBlocks(userData);
+            return getTransactionSingleCall(userData, txid);
+        });
+    }
 
-        // transaction info is not available for short time after transaction commit,
+    /**
+     * @return poller, which calls get_transaction until transaction information is available
+     */
+    Poller<String> getTransactionPoller() {
+        // transaction info is available after block with transaction is closed,
         // expected delay is longer after node creation,
-        // therefore there is delay - it cannot be "wait for next block"
-        int attempt = 0;
-        final long delay = EscConst.BLOCK_PERIOD_MS;
-        final int attemptMax = 3;
-        log.trace("attemptMax = {}", attemptMax);
-        while (attempt++ < attemptMax) {
-            updateBlocks(userData);
-            resp = getTransactionSingleCall(userData, txid);
-            JsonObject o = Utils.convertStringToJsonObject(resp);
-            if (o.has("error")) {
-                String errorDesc = o.get("error").getAsString();
-                log.debug("Error occurred: {}", errorDesc);
-
-                boolean isExpectedError = EscConst.Error.FAILED_TO_PROVIDE_TX_INFO.equals(errorDesc)
-                        || EscConst.Error.FAILED_TO_LOAD_HASH.equals(errorDesc);
-                assertThat("Unexpected error for get_transaction request: " + errorDesc, isExpectedError);
-                assertThat("Cannot get transaction info after delay.", attempt < attemptMax);
-                try {
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            } else {
-                return resp;
-            }
-        }
+        // therefore next attempts are at the beginning of following blocks
+        return new Poller.Builder<String>("get_transaction")
+                .until(this::isTransactionAvailable)
+                .backoff(Poller.Backoff.blockAligned(1000L))
+                .maxAttempts(3)
+                .failReason("Cannot get transaction info after delay.")
+                .build();
+    }
 
-        assertThat("Cannot get response.", resp, notNullValue());
-        return resp;
+    /**
+     * Checks get_transaction response. Fails, if response contains unexpected error.
+     *
+     * @param resp get_transaction response
+     * @return true, if transaction information is available, false otherwise
+     */
+    boolean isTransactionAvailable(String resp) {
+        JsonObject o = Utils.convertStringToJsonObject(resp);
+        if (o.has("error")) {
+            String errorDesc = o.get("error").getAsString();
+            log.debug("Error occurred: {}", errorDesc);
+
+            boolean isExpectedError = EscConst.Error.FAILED_TO_PROVIDE_TX_INFO.equals(errorDesc)
+                    || EscConst.Error.FAILED_TO_LOAD_HASH.equals(errorDesc);
+            assertThat("Unexpected error for get_transaction request: " + errorDesc, isExpectedError);
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -598,11 +720,9 @@ public class FunctionCaller {
      * @param txid     transaction id
      * @return response: json when request was correct, empty otherwise
      */
-    private String getTransactionSingleCall(UserData userData, String txid) {
+    String getTransactionSingleCall(UserData userData, String txid) {
         log.debug("getTransaction {}", txid);
-        String command = String.format("echo '{\"run\":\"get_transaction\", \"txid\":\"%s\"}' | ", txid)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command);
+        return callClient(userData, String.format("{\"run\":\"get_transaction\", \"txid\":\"%s\"}", txid));
     }
 
     /**
@@ -614,9 +734,7 @@ public class FunctionCaller {
      */
     public String getVipKeys(UserData userData, String vipHash) {
         log.debug("getVipKeys for vip hash {}", vipHash);
-        String command = String.format("echo '{\"run\":\"get_vipkeys\", \"viphash\":\"%s\"}' | ", vipHash)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command);
+        return callClient(userData, String.format("{\"run\":\"get_vipkeys\", \"viphash\":\"%s\"}", vipHash));
     }
 
     /**
@@ -627,9 +745,7 @@ public class FunctionCaller {
      */
     public String logAccount(UserData userData) {
         log.debug("logAccount");
-        String command = ("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"log_account\"}') | ")
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        return callFunction(command).replaceFirst(DOUBLE_RESP_REGEX, "{");
+        return callTransaction(userData, "{\"run\":\"log_account\"}");
     }
 
     /**
@@ -641,11 +757,7 @@ public class FunctionCaller {
      */
     public String retrieveFunds(UserData userData, String remoteAddress) {
         log.debug("retrieveFunds by {} from {}", userData.getAddress(), remoteAddress);
-        String command = String.format("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"retrieve_funds\", \"address\":\"%s\"}') | ", remoteAddress)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, String.format("{\"run\":\"retrieve_funds\", \"address\":\"%s\"}", remoteAddress));
     }
 
     /**
@@ -670,11 +782,109 @@ public class FunctionCaller {
 
     private String sendTransaction(AbstractTransaction transaction) {
         log.debug(transaction.toStringLogger());
-        String command = transaction.toStringCommand().concat(" | ").concat(clientApp).concat(clientAppOpts)
-                .concat(transaction.getSenderData().getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        UserData userData = transaction.getSenderData();
+        if (transaction.isAccountStateSet() || !userData.getAddress().equals(transaction.getSenderAddress())) {
+            // account state was set explicitly or transaction is sent on behalf of other account
+            String resp = callClient(userData, transaction.getRequests());
+            if (isAccountCacheEnabled) {
+                AccountStateCache.getInstance().update(transaction.getSenderAddress(), resp);
+            }
+            return ResponseSplitter.getLast(resp);
+        }
+
+        return callTransaction(userData, state -> {
+            if (state == null) {
+                return transaction.getRequests();
+            }
+            // transaction object is left unchanged, so it can be reused by caller
+            transaction.setAccountMsid(state.getMsid());
+            transaction.setAccountHash(state.getHash());
+            List<String> requests = transaction.getRequests();
+            transaction.clearAccountState();
+            return requests;
+        });
+    }
+
+    /**
+     * Calls transaction function, which needs account msid and hash.
+     *
+     * @param userData user data
+     * @param request  json request without msid and hash
+     * @return response: json when request was correct, empty otherwise
+     */
+    private String callTransaction(UserData userData, String request) {
+        return callTransaction(userData, state -> (state == null)
+                ? Arrays.asList(GET_ME_REQUEST, request)
+                : Collections.singletonList(String.format("%s, \"msid\":%d, \"hash\":\"%s\"}",
+                request.substring(0, request.lastIndexOf('}')), state.getMsid(), state.getHash())));
+    }
+
+    /**
+     * Calls transaction function. If account state is cached, it is passed in request instead of preceding get_me.
+     * When transaction with cached state is rejected because of msid or hash mismatch, state is invalidated
+     * and transaction is sent again with get_me. Other errors are returned unchanged.
+     *
+     * @param userData user data
+     * @param requests function, which creates requests for account state (null, when state is unknown)
+     * @return response: json when request was correct, empty otherwise
+     */
+    private String callTransaction(UserData userData,
+                                   Function<AccountStateCache.AccountState, List<String>> requests) {
+        AccountStateCache cache = AccountStateCache.getInstance();
+        String address = userData.getAddress();
+        AccountStateCache.AccountState state = isAccountCacheEnabled ? cache.get(address) : null;
+
+        String resp = callClient(userData, requests.apply(state));
+        if (state != null && isAccountStateRejected(resp)) {
+            // cached state can be outdated, e.g. when account was used by other client
+            log.debug("Cached account state is outdated, sending transaction with get_me");
+            cache.invalidate(address);
+            resp = callClient(userData, requests.apply(null));
+        }
+
+        if (isAccountCacheEnabled) {
+            if (ResponseSplitter.split(resp).isEmpty()) {
+                // transaction status is unknown
+                cache.invalidate(address);
+            } else {
+                cache.update(address, resp);
+            }
+        }
+        return ResponseSplitter.getLast(resp);
+    }
+
+    /**
+     * Updates account state cache with response.
+     *
+     * @param resp response
+     * @return response
+     */
+    private String updateAccountState(String resp) {
+        if (isAccountCacheEnabled) {
+            AccountStateCache.getInstance().update(resp);
+        }
+        return resp;
+    }
+
+    /**
+     * @param resp transaction response
+     * @return true, if transaction was rejected, because msid or hash did not match account state
+     */
+    private boolean isAccountStateRejected(String resp) {
+        try {
+            JsonElement element = new JsonParser().parse(ResponseSplitter.getLast(resp));
+            if (!element.isJsonObject() || !element.getAsJsonObject().has("error")) {
+                return false;
+            }
+            JsonElement error = element.getAsJsonObject().get("error");
+            if (!error.isJsonPrimitive()) {
+                return false;
+            }
+            String errorDesc = error.getAsString();
+            return EscConst.Error.BAD_MSID.equals(errorDesc) || EscConst.Error.BAD_HASH.equals(errorDesc);
+        } catch (JsonParseException e) {
+            return false;
+        }
     }
 
     /**
@@ -687,11 +897,7 @@ public class FunctionCaller {
      */
     public String setAccountStatus(UserData userData, String address, int status) {
         log.debug("setAccountStatus {}->{}: status {} (bin)", userData.getAddress(), address, Integer.toBinaryString(status));
-        String command = String.format("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"set_account_status\", \"address\":\"%s\", \"status\":\"%d\"}') | ", address, status)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, String.format("{\"run\":\"set_account_status\", \"address\":\"%s\", \"status\":\"%d\"}", address, status));
     }
 
     /**
@@ -706,11 +912,7 @@ public class FunctionCaller {
         log.debug("setAccountStatus {}->{}: status {} (bin)", userData.getAddress(), address, status);
         BigInteger bi = new BigInteger(status, 2);
         String statusDec = bi.toString(10);
-        String command = String.format("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"set_account_status\", \"address\":\"%s\", \"status\":\"%s\"}') | ", address, statusDec)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, String.format("{\"run\":\"set_account_status\", \"address\":\"%s\", \"status\":\"%s\"}", address, statusDec));
     }
 
     /**
@@ -724,11 +926,7 @@ public class FunctionCaller {
     public String setNodeStatus(UserData userData, String nodeId, int status) {
         int node = Integer.valueOf(nodeId, 16);
         log.debug("setNodeStatus {}->node {} (dec): status {} (bin)", userData.getAddress(), node, Integer.toBinaryString(status));
-        String command = String.format("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"set_node_status\", \"node\":\"%s\", \"status\":\"%d\"}') | ", node, status)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, String.format("{\"run\":\"set_node_status\", \"node\":\"%s\", \"status\":\"%d\"}", node, status));
     }
 
     /**
@@ -744,11 +942,7 @@ public class FunctionCaller {
         log.debug("setNodeStatus {}->node {} (dec): status {} (bin)", userData.getAddress(), node, status);
         BigInteger bi = new BigInteger(status, 2);
         String statusDec = bi.toString(10);
-        String command = String.format("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"set_node_status\", \"node\":\"%s\", \"status\":\"%s\"}') | ", node, statusDec)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, String.format("{\"run\":\"set_node_status\", \"node\":\"%s\", \"status\":\"%s\"}", node, statusDec));
     }
 
     /**
@@ -761,11 +955,7 @@ public class FunctionCaller {
      */
     public String unsetAccountStatus(UserData userData, String address, int status) {
         log.debug("unsetAccountStatus {}->{}: status {} (bin)", userData.getAddress(), address, Integer.toBinaryString(status));
-        String command = String.format("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"unset_account_status\", \"address\":\"%s\", \"status\":\"%d\"}') | ", address, status)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, String.format("{\"run\":\"unset_account_status\", \"address\":\"%s\", \"status\":\"%d\"}", address, status));
     }
 
     /**
@@ -780,11 +970,7 @@ public class FunctionCaller {
         log.debug("unsetAccountStatus {}->{}: status {} (bin)", userData.getAddress(), address, status);
         BigInteger bi = new BigInteger(status, 2);
         String statusDec = bi.toString(10);
-        String command = String.format("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"unset_account_status\", \"address\":\"%s\", \"status\":\"%s\"}') | ", address, statusDec)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, String.format("{\"run\":\"unset_account_status\", \"address\":\"%s\", \"status\":\"%s\"}", address, statusDec));
     }
 
     /**
@@ -798,11 +984,7 @@ public class FunctionCaller {
     public String unsetNodeStatus(UserData userData, String nodeId, int status) {
         int node = Integer.valueOf(nodeId, 16);
         log.debug("unsetNodeStatus {}->node {} (dec): status {} (bin)", userData.getAddress(), node, Integer.toBinaryString(status));
-        String command = String.format("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"unset_node_status\", \"node\":\"%s\", \"status\":\"%d\"}') | ", node, status)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, String.format("{\"run\":\"unset_node_status\", \"node\":\"%s\", \"status\":\"%d\"}", node, status));
     }
 
     /**
@@ -818,87 +1000,237 @@ public class FunctionCaller {
         log.debug("unsetNodeStatus {}->node {} (dec): status {} (bin)", userData.getAddress(), node, status);
         BigInteger bi = new BigInteger(status, 2);
         String statusDec = bi.toString(10);
-        String command = String.format("(echo '{\"run\":\"get_me\"}';echo '{\"run\":\"unset_node_status\", \"node\":\"%s\", \"status\":\"%s\"}') | ", node, statusDec)
-                .concat(clientApp).concat(clientAppOpts).concat(userData.getDataAsEscParams());
-        String output = callFunction(command);
-        output = output.replaceFirst(DOUBLE_RESP_REGEX, "{");
-        return output;
+        return callTransaction(userData, String.format("{\"run\":\"unset_node_status\", \"node\":\"%s\", \"status\":\"%s\"}", node, statusDec));
     }
 
     private String callCommand(AbstractCommand abstractCommand) {
         log.debug(abstractCommand.toStringLogger());
-        String command = abstractCommand.toStringCommand().concat(" | ")
-                .concat(clientApp).concat(clientAppOpts).concat(abstractCommand.getSenderData().getDataAsEscParams());
+        return callClient(abstractCommand.getSenderData(), abstractCommand.getRequests());
+    }
 
-        return callFunction(command);
+    /**
+     * Calls all commands from batch in single client call.
+     *
+     * @param batchCommand batch of commands
+     * @return list of responses, one for each command in batch
+     */
+    public List<String> callBatch(BatchCommand batchCommand) {
+        log.debug(batchCommand.toStringLogger());
+        String resp = callClient(batchCommand.getSenderData(), batchCommand.getRequests());
+        return batchCommand.assignResponses(ResponseSplitter.split(resp));
     }
 
     public String callCustomCommand(CustomCommand customCommand) {
-        return callCommand(customCommand);
+        log.debug(customCommand.toStringLogger());
+        // custom commands can be malformed on purpose, therefore they are always called in new client process
+        return callClient(processExecutor, customCommand.getSenderData(), customCommand.getRequests());
     }
 
     /**
-     * Calls command in sh shell.
+     * Calls ADS client.
      *
-     * @param cmd command
+     * @param userData user data
+     * @param requests json requests
      * @return stdout response
      */
-    private String callFunction(String cmd) {
+    private String callClient(UserData userData, String... requests) {
+        return callClient(userData, Arrays.asList(requests));
+    }
+
+    /**
+     * Calls ADS client using selected backend.
+     *
+     * @param userData user data
+     * @param requests list of json requests
+     * @return response, responses for subsequent requests follow one after another
+     */
+    private String callClient(UserData userData, List<String> requests) {
+        return callClient(clientExecutor, userData, requests);
+    }
+
+    /**
+     * Calls ADS client. If backend fails, requests are sent again in new client process.
+     *
+     * @param executor backend for client requests
+     * @param userData user data
+     * @param requests list of json requests
+     * @return response, responses for subsequent requests follow one after another
+     */
+    private String callClient(ClientExecutor executor, UserData userData, List<String> requests) {
+        // shell equivalent of request is logged, so it can be easily repeated
+        String cmd = toShellCommand(userData, requests);
         log.debug("request: {}", cmd);
         lastRequest = cmd;
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
-        PumpStreamHandler streamHandler = new PumpStreamHandler(outputStream, errorStream);
-
-        CommandLine cmdLine = new CommandLine("/bin/sh");
+        String resp = callCassette(userData.getAddress(), requests, () -> execute(executor, userData, requests));
+        BlockWatcher.getInstance().observe(resp);
 
-        if (cmd.length() < 12000) {
-            cmdLine.addArgument("-c").addArgument(cmd, false);
-        } else {
-            log.debug("command length {}", cmd.length());
-            // when command is too long it is not possible to call it using sh shell
-            // command is saved to file and file is new command
+        log.debug("resp: {}", resp);
+        if ("".equals(resp)) {
+            log.warn("Empty response for: {}", cmd);
+        }
+        lastResponse = resp;
+        return resp;
+    }
 
-            PrintWriter writer;
+    /**
+     * Sends requests to ADS client. If backend fails before requests were sent or all requests are read-only,
+     * requests are sent again in new client process. Otherwise responses received before failure are returned,
+     * because transactions could be already executed.
+     *
+     * @param executor backend for client requests
+     * @param userData user data
+     * @param requests list of json requests
+     * @return response, responses for subsequent requests follow one after another
+     */
+    private String execute(ClientExecutor executor, UserData userData, List<String> requests) {
+        if (executor != processExecutor) {
             try {
-                writer = new PrintWriter(TEMP_FILE_NAME, "UTF-8");
-                writer.println(cmd);
-                writer.close();
-            } catch (FileNotFoundException e) {
-                log.error("File not found");
-                log.error(e.toString());
-            } catch (UnsupportedEncodingException uee) {
-                log.error("Unsupported Encoding");
-                log.error(uee.toString());
+                return executor.execute(userData, requests, isDryRun);
+            } catch (RequestsSentException e) {
+                if (!isReadOnly(requests)) {
+                    log.error("Client executor failed after requests were sent");
+                    log.error(e.toString());
+                    return e.getResponse();
+                }
+                log.warn("Client executor failed, calling new client process for read-only requests");
+                log.warn(e.toString());
+            } catch (IOException e) {
+                log.warn("Client executor failed, calling new client process");
+                log.warn(e.toString());
             }
-            cmdLine.addArgument(TEMP_FILE_NAME);
         }
-
-        DefaultExecutor executor = new DefaultExecutor();
-        executor.setStreamHandler(streamHandler);
-        executor.setWatchdog(new ExecuteWatchdog(60000L));// 60,000 ms = 1 min.
         try {
-            executor.execute(cmdLine);
+            return processExecutor.execute(userData, requests, isDryRun);
         } catch (IOException e) {
             log.error("Cannot read from ESC");
             log.error(e.toString());
+            return "";
         }
-        String resp = outputStream.toString();
+    }
+
+    /**
+     * @param requests list of json requests
+     * @return true, if requests do not change state of network and can be sent again
+     */
+    private boolean isReadOnly(List<String> requests) {
+        if (isDryRun) {
+            return true;
+        }
+        JsonParser parser = new JsonParser();
+        for (String request : requests) {
+            try {
+                JsonElement element = parser.parse(request);
+                if (!element.isJsonObject()) {
+                    return false;
+                }
+                JsonElement run = element.getAsJsonObject().get("run");
+                if (run == null || !run.isJsonPrimitive() || !READ_ONLY_FUNCTIONS.contains(run.getAsString())) {
+                    return false;
+                }
+            } catch (JsonParseException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Executes call or returns its recorded response, depending on cassette mode.
+     *
+     * @param subject  address of user or other identifier of call target
+     * @param requests list of requests
+     * @param call     call, which returns response
+     * @return response
+     */
+    private String callCassette(String subject, List<String> requests, Supplier<String> call) {
+        if (isDetached || cassette.getMode() == Cassette.Mode.OFF) {
+            return call.get();
+        }
+
+        String key = cassette.createKey(scenarioId, subject, isDryRun, requests);
+        if (cassette.isReplay()) {
+            String resp = cassette.replay(key);
+            if (resp == null) {
+                Assert.fail(new AssertReason.Builder().msg("No recorded response in cassette")
+                        .req(lastRequest).build());
+            }
+            return resp;
+        }
+
+        long startTime = System.currentTimeMillis();
+        String resp = call.get();
+        cassette.record(key, resp, System.currentTimeMillis() - startTime);
+        return resp;
+    }
+
+    /**
+     * Converts requests to shell command, which passes requests to ADS client.
+     *
+     * @param userData user data
+     * @param requests list of json requests
+     * @return shell command
+     */
+    private String toShellCommand(UserData userData, List<String> requests) {
+        StringBuilder sb = new StringBuilder();
+        if (requests.size() == 1) {
+            sb.append("echo '").append(requests.get(0)).append("'");
+        } else {
+            sb.append('(');
+            for (String request : requests) {
+                sb.append("echo '").append(request).append("';");
+            }
+            sb.setLength(sb.length() - 1);
+            sb.append(')');
+        }
+        sb.append(" | ").append(clientApp).append(clientAppOpts).append(userData.getDataAsEscParams());
+        return sb.toString();
+    }
+
+    /**
+     * Calls system command in sh shell.
+     *
+     * @param cmd command
+     * @return stdout response
+     */
+    private String callFunction(String cmd) {
+        log.debug("request: {}", cmd);
+        lastRequest = cmd;
+
+        String resp = callCassette("sh", Collections.singletonList(cmd), () -> executeSystemCommand(cmd));
         log.debug("resp: {}", resp);
         if ("".equals(resp)) {
             log.warn("Empty response for: {}", cmd);
         }
 
+        lastResponse = resp;
+        return resp;
+    }
+
+    /**
+     * Executes system command in sh shell.
+     *
+     * @param cmd command
+     * @return stdout response
+     */
+    private String executeSystemCommand(String cmd) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
+        PumpStreamHandler streamHandler = new PumpStreamHandler(outputStream, errorStream);
+
+        CommandLine cmdLine = new CommandLine("/bin/sh");
+        cmdLine.addArgument("-c").addArgument(cmd, false);
+
+        DefaultExecutor executor = new DefaultExecutor();
+        executor.setStreamHandler(streamHandler);
+        executor.setWatchdog(new ExecuteWatchdog(60000L));// 60,000 ms = 1 min.
         try {
-            Utils.deleteDirectory(TEMP_FILE_NAME);
+            executor.execute(cmdLine);
         } catch (IOException e) {
-            log.error("Cannot delete {}", TEMP_FILE_NAME);
+            log.error("Cannot read from ESC");
             log.error(e.toString());
         }
-
-        lastResponse = resp;
-        return resp;
+        return outputStream.toString();
     }
 
     /**
@@ -908,11 +1240,11 @@ public class FunctionCaller {
      * @return timestamp of last event in log or 0, if log is empty
      */
     public LogEventTimestamp getLastEventTimestamp(UserData userData) {
-        JsonObject o = Utils.convertStringToJsonObject(getLog(userData));
+        LogEvaluator.Result result = new LogEvaluator(null, false).evaluate(getLog(userData));
 
-        LogEventTimestamp let = EscUtils.getLastLogEventTimestamp(o);
+        LogEventTimestamp let = result.getLastEventTimestamp();
         log.debug("last log event time: {} ({}) for {}", let, Utils.formatSecondsAsDate(let.getTimestamp()),
-                o.getAsJsonObject("account").get("address").getAsString());
+                result.getAccount().get("address").getAsString());
         return let;
     }
 
@@ -1039,6 +1371,7 @@ public class FunctionCaller {
         // deletes cache
         callFunction(sysCmdPrefix + "rm -rf " + tmpDir);
         callFunction(sysCmdPrefix + "mkdir " + tmpDir);
+        workDirPool.reset();
     }
 
     /**
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import com.google.gson.*;
+import net.adshares.ads.qa.util.EscConst;
+import net.adshares.ads.qa.util.LogEventTimestamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+
+/**
+ * Persistent cache of account logs. Finalised log events do not change, so they are stored on disk and only
+ * events after cached part are downloaded from node, also in next test runs.
+ * <p>
+ * Every account has append-only segment file, which starts with header (magic number and version) followed
+ * by events:
+ * <pre>
+ * long   event time in seconds
+ * int    event length
+ * byte[] event json (UTF-8)
+ * </pre>
+ * and index file, which stores timestamp, from which events are not cached, and length of valid part of segment.
+ * Index is replaced after segment is written, so events of interrupted write are ignored.
+ * Segment is memory mapped and events are decoded only, if they are requested.
+ * <p>
+ * Event is finalised, when it is confirmed and it is older than two block periods. Cache does not know,
+ * whether network was recreated, therefore cache directory must be cleared, when new network is started.
+ */
+public class LogCache {
+
+    private static final String SYSTEM_PROP_DIR = "ads.log.cache";
+    /**
+     * "ADSL"
+     */
+    private static final int MAGIC = 0x4144534C;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final String SEGMENT_EXTENSION = ".seg";
+    private static final String INDEX_EXTENSION = ".idx";
+
+    private static LogCache instance;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * Cache directory or null, if cache is disabled
+     */
+    private final File dir;
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+
+    private LogCache() {
+        this(getDirProperty());
+    }
+
+    /**
+     * @param dir cache directory or null, if cache is disabled
+     */
+    LogCache(File dir) {
+        this.dir = dir;
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create log cache directory " + dir);
+        }
+    }
+
+    private static File getDirProperty() {
+        String dirName = System.getProperty(SYSTEM_PROP_DIR);
+        return (dirName == null || dirName.isEmpty()) ? null : new File(dirName);
+    }
+
+    public static synchronized LogCache getInstance() {
+        if (instance == null) {
+            instance = new LogCache();
+        }
+        return instance;
+    }
+
+    /**
+     * @return true, if cache directory is set
+     */
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Returns get_log response, in which cached events are merged with events downloaded from node.
+     * Node is asked only for events, which are not cached.
+     *
+     * @param address       account address
+     * @param fromTimeStamp log start time in Unix Epoch seconds
+     * @param call          calls get_log from given time
+     * @return get_log response
+     */
+    public String getLog(String address, long fromTimeStamp, LongFunction<String> call) {
+        Segment segment = segments.computeIfAbsent(address, Segment::new);
+        synchronized (segment) {
+            long cursor = segment.getCursor().getTimestamp();
+            long callFrom = Math.max(fromTimeStamp, cursor);
+            String resp = call.apply(callFrom);
+
+            JsonObject o;
+            try {
+                o = new JsonParser().parse(resp).getAsJsonObject();
+            } catch (JsonParseException | IllegalStateException e) {
+                return resp;
+            }
+            if (!o.has("log") || !o.get("log").isJsonArray()) {
+                return resp;
+            }
+            JsonArray fetched = o.getAsJsonArray("log");
+            if (callFrom == cursor) {
+                segment.append(fetched, getFinalisedTime(o, fetched));
+            }
+            if (fromTimeStamp >= cursor) {
+                return resp;
+            }
+
+            JsonArray merged = segment.read(fromTimeStamp, cursor);
+            log.debug("{} cached events for {} from {}", merged.size(), address, fromTimeStamp);
+            merged.addAll(fetched);
+            o.add("log", merged);
+            return o.toString();
+        }
+    }
+
+    /**
+     * @param resp   get_log response
+     * @param events events from response
+     * @return time, before which all events are finalised
+     */
+    private static long getFinalisedTime(JsonObject resp, JsonArray events) {
+        if (!resp.has("current_block_time")) {
+            return 0L;
+        }
+        long finalisedTime = resp.get("current_block_time").getAsLong() - 2L * EscConst.BLOCK_PERIOD;
+        for (JsonElement je : events) {
+            JsonObject entry = je.getAsJsonObject();
+            if (entry.has("confirmed") && !"yes".equals(entry.get("confirmed").getAsString())) {
+                finalisedTime = Math.min(finalisedTime, entry.get("time").getAsLong());
+                break;
+            }
+        }
+        return finalisedTime;
+    }
+
+    /**
+     * Cached log of single account.
+     */
+    private class Segment {
+        private final File segmentFile;
+        private final File indexFile;
+        /**
+         * Timestamp of first event, which is not cached
+         */
+        private LogEventTimestamp cursor;
+        /**
+         * Length of valid part of segment file
+         */
+        private long length;
+        private MappedByteBuffer buffer;
+
+        private Segment(String address) {
+            segmentFile = new File(dir, address + SEGMENT_EXTENSION);
+            indexFile = new File(dir, address + INDEX_EXTENSION);
+            cursor = new LogEventTimestamp(0L, 0);
+            length = HEADER_LENGTH;
+            if (indexFile.isFile()) {
+                loadIndex();
+            }
+        }
+
+        private LogEventTimestamp getCursor() {
+            return cursor;
+        }
+
+        private void loadIndex() {
+            try (DataInputStream input = new DataInputStream(new FileInputStream(indexFile))) {
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                    throw new IOException("Invalid header");
+                }
+                LogEventTimestamp indexCursor = new LogEventTimestamp(input.readLong(), input.readInt());
+                long indexLength = input.readLong();
+                if (indexLength < HEADER_LENGTH || indexLength > segmentFile.length()) {
+                    throw new IOException("Invalid segment length " + indexLength);
+                }
+                cursor = indexCursor;
+                length = indexLength;
+            } catch (IOException e) {
+                log.warn("Invalid log cache index {}, cache is cleared: {}", indexFile, e.toString());
+            }
+        }
+
+        /**
+         * Appends events, which happened before finalised time. Events must start at cursor.
+         *
+         * @param events        events from cursor
+         * @param finalisedTime time, before which all events are finalised
+         */
+        private void append(JsonArray events, long finalisedTime) {
+            if (finalisedTime <= cursor.getTimestamp()) {
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream output = new DataOutputStream(bytes)) {
+                if (length == HEADER_LENGTH) {
+                    output.writeInt(MAGIC);
+                    output.writeInt(VERSION);
+                }
+                for (JsonElement je : events) {
+                    long time = je.getAsJsonObject().get("time").getAsLong();
+                    if (time >= finalisedTime) {
+                        break;
+                    }
+                    byte[] eventBytes = je.toString().getBytes(StandardCharsets.UTF_8);
+                    output.writeLong(time);
+                    output.writeInt(eventBytes.length);
+                    output.write(eventBytes);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            long start = (length == HEADER_LENGTH) ? 0L : length;
+            try (FileChannel channel = FileChannel.open(segmentFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // tail of interrupted write is overwritten
+                channel.truncate(start);
+                channel.write(ByteBuffer.wrap(bytes.toByteArray()), start);
+                channel.force(false);
+                LogEventTimestamp newCursor = new LogEventTimestamp(finalisedTime, 0);
+                long newLength = start + bytes.size();
+                writeIndex(newCursor, newLength);
+                cursor = newCursor;
+                length = newLength;
+                buffer = null;
+            } catch (IOException e) {
+                log.error("Cannot write log cache {}", segmentFile);
+                log.error(e.toString());
+            }
+        }
+
+        private void writeIndex(LogEventTimestamp newCursor, long newLength) throws IOException {
+            File tmpFile = new File(dir, indexFile.getName() + ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new FileOutputStream(tmpFile))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(newCursor.getTimestamp());
+                output.writeInt(newCursor.getEventNum());
+                output.writeLong(newLength);
+            }
+            Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * @param from  start time in seconds
+         * @param until end time in seconds (exclusive)
+         * @return cached events in time range
+         */
+        private JsonArray read(long from, long until) {
+            JsonArray events = new JsonArray();
+            if (length == HEADER_LENGTH) {
+                return events;
+            }
+            if (buffer == null) {
+                try (FileChannel channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot read log cache " + segmentFile, e);
+                }
+            }
+
+            ByteBuffer view = buffer.duplicate();
+            view.position(HEADER_LENGTH);
+            JsonParser parser = new JsonParser();
+            while (view.hasRemaining()) {
+                long time = view.getLong();
+                int eventLength = view.getInt();
+                if (time < from) {
+                    view.position(view.position() + eventLength);
+                    continue;
+                }
+                if (time >= until) {
+                    break;
+                }
+                byte[] eventBytes = new byte[eventLength];
+                view.get(eventBytes);
+                events.add(parser.parse(new String(eventBytes, StandardCharsets.UTF_8)));
+            }
+            return events;
+        }
+    }
+}
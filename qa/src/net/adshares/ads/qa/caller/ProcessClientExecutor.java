@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import net.adshares.ads.qa.data.UserData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Starts new ADS client process for every call. Client is started directly (without shell) and requests
+ * are streamed to its stdin, so there is no limit of request size.
+ */
+public class ProcessClientExecutor implements ClientExecutor {
+
+    /**
+     * Timeout for client process in milliseconds
+     */
+    private static final long TIMEOUT = 60000L;// 60,000 ms = 1 min.
+    /**
+     * Maximal size of stdout in bytes. Longer output fails the call.
+     */
+    private static final int MAX_OUTPUT_SIZE = 64 * 1024 * 1024;
+    /**
+     * Maximal size of stderr in bytes. Longer output is truncated.
+     */
+    private static final int MAX_ERROR_SIZE = 64 * 1024;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final List<String> clientCommand;
+    private final WorkDirPool workDirPool;
+    private final ExecutorService streamExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ads-process-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param clientCommand client binary and options common for all users, without work directory
+     * @param workDirPool   pool of work directories, every process uses own directory
+     */
+    ProcessClientExecutor(List<String> clientCommand, WorkDirPool workDirPool) {
+        this.clientCommand = clientCommand;
+        this.workDirPool = workDirPool;
+    }
+
+    @Override
+    public String execute(UserData userData, List<String> requests, boolean isDryRun) throws IOException {
+        String workDir = workDirPool.acquire();
+        try {
+            return execute(buildCommand(clientCommand, userData, isDryRun, workDir), requests);
+        } finally {
+            workDirPool.release(workDir);
+        }
+    }
+
+    private String execute(List<String> command, List<String> requests) throws IOException {
+        Process process = new ProcessBuilder(command).start();
+
+        Future<String> output = streamExecutor.submit(() -> read(process.getInputStream(), MAX_OUTPUT_SIZE, true));
+        Future<String> error = streamExecutor.submit(() -> read(process.getErrorStream(), MAX_ERROR_SIZE, false));
+        try {
+            // stdin is written in current thread, stdout and stderr are read concurrently,
+            // therefore client is never blocked on full pipe
+            try (Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                for (String request : requests) {
+                    writer.write(request);
+                    writer.write('\n');
+                }
+            } catch (IOException e) {
+                // client can exit before reading all requests, e.g. after malformed one
+                log.debug("Cannot write to client stdin: {}", e.toString());
+            }
+
+            if (!process.waitFor(TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Client did not finish in " + TIMEOUT + " ms");
+            }
+            String errorText = error.get(TIMEOUT, TimeUnit.MILLISECONDS);
+            if (!errorText.isEmpty()) {
+                log.debug("stderr: {}", errorText);
+            }
+            return output.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for client", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Cannot read client output", e);
+        } catch (TimeoutException e) {
+            throw new IOException("Cannot read client output", e);
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Creates client command line for user.
+     *
+     * @param clientCommand client binary and options common for all users
+     * @param userData      user data
+     * @param isDryRun      true, if transactions should be only verified, but not sent to network
+     * @param workDir       client work directory
+     * @return client command line
+     */
+    static List<String> buildCommand(List<String> clientCommand, UserData userData, boolean isDryRun,
+                                     String workDir) {
+        List<String> command = new ArrayList<>(clientCommand);
+        command.add("-w");
+        command.add(workDir);
+        if (isDryRun) {
+            command.add("--dry-run=1");
+        }
+        command.add("-P" + userData.getPort());
+        command.add("-H" + userData.getHost());
+        command.add("-A" + userData.getAddress());
+        command.add("-s" + userData.getSecret());
+        return command;
+    }
+
+    /**
+     * Reads stream until end. Bytes over limit are dropped or, if overflow is fatal, reading stops with error.
+     *
+     * @param inputStream    stream
+     * @param limit          maximal number of stored bytes
+     * @param failOnOverflow true, if exceeding limit is an error
+     * @return stream content
+     * @throws IOException when stream cannot be read or limit is exceeded and overflow is fatal
+     */
+    private String read(InputStream inputStream, int limit, boolean failOnOverflow) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        try (InputStream is = inputStream) {
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                int stored = (int) Math.min(count, Math.max(0, limit - total));
+                outputStream.write(buffer, 0, stored);
+                total += count;
+                if (total > limit && failOnOverflow) {
+                    // closing the pipe makes client fail on next write, so it does not run until timeout
+                    throw new IOException("Client output exceeds limit of " + limit + " bytes");
+                }
+            }
+        }
+        if (total > limit) {
+            log.warn("Client output truncated from {} to {} bytes", total, limit);
+        }
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
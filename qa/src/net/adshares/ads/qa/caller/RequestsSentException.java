@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link ClientExecutor}, when requests were delivered to client, but responses were not received
+ * completely. Requests must not be sent again, because transactions could be already executed.
+ */
+public class RequestsSentException extends IOException {
+
+    private final String response;
+
+    /**
+     * @param message  detail message
+     * @param response responses, which were received before failure, one after another
+     */
+    public RequestsSentException(String message, String response) {
+        super(message);
+        this.response = response;
+    }
+
+    /**
+     * @param message  detail message
+     * @param response responses, which were received before failure, one after another
+     * @param cause    cause
+     */
+    public RequestsSentException(String message, String response, Throwable cause) {
+        super(message, cause);
+        this.response = response;
+    }
+
+    /**
+     * @return responses, which were received before failure, one after another
+     */
+    public String getResponse() {
+        return response;
+    }
+}
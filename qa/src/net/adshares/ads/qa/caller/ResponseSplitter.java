@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits client output, which contains several json documents (one for each request), into separate documents.
+ * Output is scanned once, character by character, and documents are returned as they were printed by client.
+ */
+public class ResponseSplitter {
+
+    /**
+     * Result of {@link #next(char)}: character is outside document or inside it
+     */
+    static final int NONE = 0;
+    /**
+     * Result of {@link #next(char)}: character starts document
+     */
+    static final int DOCUMENT_START = 1;
+    /**
+     * Result of {@link #next(char)}: character ends document
+     */
+    static final int DOCUMENT_END = 2;
+
+    private int depth;
+    private boolean inString;
+    private boolean isEscaped;
+
+    /**
+     * Creates splitter for output read in parts, e.g. from stream. Characters are passed with {@link #next(char)}.
+     */
+    ResponseSplitter() {
+    }
+
+    /**
+     * Splits output into json documents. Text outside documents is skipped.
+     *
+     * @param output client output
+     * @return list of json documents in order of appearance
+     */
+    public static List<String> split(String output) {
+        List<String> documents = new ArrayList<>();
+        ResponseSplitter splitter = new ResponseSplitter();
+        int start = -1;
+
+        for (int i = 0; i < output.length(); i++) {
+            switch (splitter.next(output.charAt(i))) {
+                case DOCUMENT_START:
+                    start = i;
+                    break;
+                case DOCUMENT_END:
+                    documents.add(output.substring(start, i + 1));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Scans next character of output.
+     *
+     * @param c character
+     * @return {@link #DOCUMENT_START}, {@link #DOCUMENT_END} or {@link #NONE}
+     */
+    int next(char c) {
+        if (inString) {
+            if (isEscaped) {
+                isEscaped = false;
+            } else if (c == '\\') {
+                isEscaped = true;
+            } else if (c == '"') {
+                inString = false;
+            }
+            return NONE;
+        }
+
+        switch (c) {
+            case '"':
+                if (depth > 0) {
+                    inString = true;
+                }
+                return NONE;
+            case '{':
+            case '[':
+                return (depth++ == 0) ? DOCUMENT_START : NONE;
+            case '}':
+            case ']':
+                return (depth > 0 && --depth == 0) ? DOCUMENT_END : NONE;
+            default:
+                return NONE;
+        }
+    }
+
+    /**
+     * Returns last json document from output. It is useful for calls preceded by get_me.
+     *
+     * @param output client output
+     * @return last json document or whole output, if there is no complete document
+     */
+    public static String getLast(String output) {
+        List<String> documents = split(output);
+        return documents.isEmpty() ? output : documents.get(documents.size() - 1);
+    }
+}
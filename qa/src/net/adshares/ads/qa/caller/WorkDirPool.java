@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of ADS client work directories. Client stores downloaded blocks in work directory, therefore
+ * clients running concurrently cannot share it. Every client process (or session) acquires directory
+ * for time of use. Released directories are reused, so downloaded blocks are not lost.
+ */
+class WorkDirPool {
+
+    /**
+     * Timeout for creating directory in milliseconds
+     */
+    private static final long MKDIR_TIMEOUT = 10000L;// 10,000 ms = 10 s.
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String baseDir;
+    private final List<String> commandPrefix;
+    private final Deque<String> freeDirs = new ConcurrentLinkedDeque<>();
+    private final Set<String> createdDirs = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicInteger dirCount = new AtomicInteger();
+
+    /**
+     * @param baseDir       directory, in which work directories are created
+     * @param commandPrefix prefix of system commands, e.g. "docker exec -i container", empty when commands
+     *                      are run locally
+     */
+    WorkDirPool(String baseDir, List<String> commandPrefix) {
+        this.baseDir = baseDir;
+        this.commandPrefix = commandPrefix;
+    }
+
+    /**
+     * Acquires work directory, which is not used by other client. Directory is created, if needed.
+     *
+     * @return path to work directory
+     */
+    String acquire() {
+        // the most recently used directory has the most blocks
+        String dir = freeDirs.pollFirst();
+        if (dir == null) {
+            dir = baseDir + "/w" + dirCount.incrementAndGet();
+        }
+        if (!createdDirs.contains(dir)) {
+            create(dir);
+            createdDirs.add(dir);
+        }
+        return dir;
+    }
+
+    /**
+     * Returns work directory to pool.
+     *
+     * @param dir path to work directory
+     */
+    void release(String dir) {
+        freeDirs.offerFirst(dir);
+    }
+
+    /**
+     * Forgets created directories. It must be called, when base directory was deleted.
+     */
+    void reset() {
+        createdDirs.clear();
+    }
+
+    private void create(String dir) {
+        List<String> command = new ArrayList<>(commandPrefix);
+        command.add("mkdir");
+        command.add("-p");
+        command.add(dir);
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            if (!process.waitFor(MKDIR_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                log.warn("Cannot create work directory {} in time", dir);
+            }
+        } catch (IOException e) {
+            log.warn("Cannot create work directory {}: {}", dir, e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while creating work directory {}", dir);
+        }
+    }
+}
@@ -48,12 +48,12 @@ public abstract class AbstractCommand {
     }
 
     /**
-     * @return command for ADS client
+     * @return request in json format, as it is read by ADS client
      */
-    public String toStringCommand() {
+    public String toJsonRequest() {
         StringBuilder sb = new StringBuilder();
 
-        sb.append("echo '{\"run\":\"").append(getName()).append("\"");
+        sb.append("{\"run\":\"").append(getName()).append("\"");
 
         List<String> parameters = getParameters();
         if (parameters != null) {
@@ -63,7 +63,36 @@ public abstract class AbstractCommand {
             }
         }
 
-        sb.append("}'");
+        sb.append("}");
+
+        return sb.toString();
+    }
+
+    /**
+     * @return list of requests in json format, which are sent to ADS client one after another
+     */
+    public List<String> getRequests() {
+        List<String> requests = new ArrayList<>();
+        requests.add(toJsonRequest());
+        return requests;
+    }
+
+    /**
+     * @return command for ADS client
+     */
+    public String toStringCommand() {
+        List<String> requests = getRequests();
+        if (requests.size() == 1) {
+            return String.format("echo '%s'", requests.get(0));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append('(');
+        for (String request : requests) {
+            sb.append("echo '").append(request).append("';");
+        }
+        sb.setLength(sb.length() - 1);
+        sb.append(')');
 
         return sb.toString();
     }
@@ -47,6 +47,28 @@ public abstract class AbstractTransaction extends AbstractCommand {
         this.accountMsid = accountMsid;
     }
 
+    /**
+     * Removes account hash and msid. Transaction will be preceded by get_me.
+     */
+    public void clearAccountState() {
+        this.accountHash = null;
+        this.accountMsid = INVALID;
+    }
+
+    /**
+     * @return true, if both account hash and msid are set
+     */
+    public boolean isAccountStateSet() {
+        return accountHash != null && accountMsid > INVALID;
+    }
+
+    /**
+     * @return address of account, which sends transaction
+     */
+    public String getSenderAddress() {
+        return (sender != null) ? sender : senderData.getAddress();
+    }
+
     public void setSender(String sender) {
         this.sender = sender;
     }
@@ -84,17 +106,11 @@ public abstract class AbstractTransaction extends AbstractCommand {
     }
 
     @Override
-    public String toStringCommand() {
-        StringBuilder sb = new StringBuilder();
-        sb.append('(');
-
-        if (accountHash == null || accountMsid <= INVALID) {
-            sb.append("echo '{\"run\":\"get_me\"}';");
+    public List<String> getRequests() {
+        List<String> requests = super.getRequests();
+        if (!isAccountStateSet()) {
+            requests.add(0, "{\"run\":\"get_me\"}");
         }
-
-        sb.append(super.toStringCommand());
-
-        sb.append(')');
-        return sb.toString();
+        return requests;
     }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller.command;
+
+import net.adshares.ads.qa.data.UserData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Several commands of the same sender, which are executed in single client call.
+ */
+public class BatchCommand extends AbstractCommand {
+
+    private final List<AbstractCommand> commands = new ArrayList<>();
+
+    /**
+     * @param senderData data of user, who will execute all commands
+     */
+    public BatchCommand(UserData senderData) {
+        this.senderData = senderData;
+    }
+
+    /**
+     * Adds command to batch.
+     *
+     * @param command command, which has the same sender as batch
+     * @return this batch
+     */
+    public BatchCommand add(AbstractCommand command) {
+        if (command.getSenderData() != senderData) {
+            throw new IllegalArgumentException("Command sender differs from batch sender");
+        }
+        commands.add(command);
+        return this;
+    }
+
+    /**
+     * @return commands in batch
+     */
+    public List<AbstractCommand> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    @Override
+    protected String getName() {
+        return "batch";
+    }
+
+    @Override
+    public List<String> getRequests() {
+        List<String> requests = new ArrayList<>();
+        for (AbstractCommand command : commands) {
+            requests.addAll(command.getRequests());
+        }
+        return requests;
+    }
+
+    /**
+     * Assigns responses to commands. Command can send more than one request (e.g. transaction is preceded by
+     * get_me), in that case response for the last request is assigned to command.
+     *
+     * @param responses list of responses, one for each request
+     * @return list of responses, one for each command, or null, if command did not get response
+     */
+    public List<String> assignResponses(List<String> responses) {
+        List<String> result = new ArrayList<>(commands.size());
+        int index = 0;
+        for (AbstractCommand command : commands) {
+            index += command.getRequests().size();
+            result.add(index <= responses.size() ? responses.get(index - 1) : null);
+        }
+        return result;
+    }
+
+    @Override
+    public String toStringLogger() {
+        StringBuilder sb = new StringBuilder("batch of ").append(commands.size()).append(':');
+        for (AbstractCommand command : commands) {
+            sb.append(' ').append(command.toStringLogger());
+        }
+        return sb.toString();
+    }
+}
@@ -21,8 +21,18 @@ package net.adshares.ads.qa.caller.command;
 
 import net.adshares.ads.qa.data.UserData;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 public class CustomCommand extends AbstractCommand {
 
+    /**
+     * Pattern of single echo in shell command, group 1 is echoed request
+     */
+    private static final Pattern ECHO_PATTERN = Pattern.compile("echo '([^']*)'");
+
     private String command;
 
     public CustomCommand(UserData senderData, String command) {
@@ -35,6 +45,23 @@ public class CustomCommand extends AbstractCommand {
         return "custom_command";
     }
 
+    /**
+     * @return requests echoed by command or command itself, if it is not shell command
+     */
+    @Override
+    public List<String> getRequests() {
+        List<String> requests = new ArrayList<>();
+        if (command.contains("echo")) {
+            Matcher matcher = ECHO_PATTERN.matcher(command);
+            while (matcher.find()) {
+                requests.add(matcher.group(1));
+            }
+        } else {
+            requests.add(command);
+        }
+        return requests;
+    }
+
     @Override
     public String toStringCommand() {
         if (command.contains("echo")) {
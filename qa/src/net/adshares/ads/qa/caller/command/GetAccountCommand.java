@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller.command;
+
+import net.adshares.ads.qa.data.UserData;
+
+import java.util.List;
+
+public class GetAccountCommand extends AbstractCommand {
+
+    private final String address;
+
+    /**
+     * @param senderData data of user, who will execute command
+     * @param address    address of checked account
+     */
+    public GetAccountCommand(UserData senderData, String address) {
+        this.senderData = senderData;
+        this.address = address;
+    }
+
+    @Override
+    protected String getName() {
+        return "get_account";
+    }
+
+    @Override
+    protected List<String> getParameters() {
+        List<String> parameters = super.getParameters();
+        parameters.add(String.format("\"address\":\"%s\"", address));
+        return parameters;
+    }
+
+    @Override
+    public String toStringLogger() {
+        return String.format("getAccount %s", address);
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.data;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Pool of account leases. Account leased by one owner (scenario or load worker) is not selected for other owners,
+ * so concurrent owners do not collide on msid and hash of the same account.
+ * <p>
+ * Leases are taken without global lock: accounts are selected from snapshot of registry and claimed one by one
+ * with compare-and-set. When other owner claims the same account first, claimed accounts are rolled back
+ * and selection is repeated. Selections start at rotating offset, so leases are spread over all accounts.
+ * <p>
+ * Every lease expires after timeout. Expired lease does not block account anymore, so account of owner, which
+ * has not released lease, is eventually reused.
+ */
+public class AccountLeasePool {
+
+    /**
+     * Maximal time of single park of waiting owner, after it expired leases are checked again
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Kind of account selection
+     */
+    public enum Selection {
+        /**
+         * any accounts
+         */
+        ANY,
+        /**
+         * accounts of single node
+         */
+        SAME_NODE,
+        /**
+         * accounts of distinct nodes
+         */
+        DISTINCT_NODES
+    }
+
+    private final AccountRegistry registry;
+    private final long leaseTimeout;
+    /**
+     * Holds by account address
+     */
+    private final ConcurrentHashMap<String, Hold> holds = new ConcurrentHashMap<>();
+    /**
+     * Owners waiting in {@link #acquire(Object, Selection, int, long)}, first owner is served first
+     */
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger offset = new AtomicInteger();
+    private final AtomicLong holdId = new AtomicLong();
+
+    /**
+     * @param registry     accounts
+     * @param leaseTimeout lease timeout in milliseconds
+     */
+    public AccountLeasePool(AccountRegistry registry, long leaseTimeout) {
+        if (leaseTimeout <= 0) {
+            throw new IllegalArgumentException("Lease timeout must be positive: " + leaseTimeout);
+        }
+        this.registry = registry;
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    /**
+     * Leases accounts without waiting. Owner can lease accounts, which it already holds. This method does not
+     * respect waiting owners, so it should be used by owners, which already hold accounts and cannot wait.
+     *
+     * @param owner     owner of lease
+     * @param selection kind of selection
+     * @param count     number of accounts
+     * @return lease or null, if there are not enough free accounts
+     */
+    public Lease tryAcquire(Object owner, Selection selection, int count) {
+        while (true) {
+            long now = System.currentTimeMillis();
+            List<UserData> users = select(selection, count, user -> isFree(user.getAddress(), owner, now));
+            if (users.size() < count) {
+                return null;
+            }
+            Lease lease = new Lease(this, owner, users, now + leaseTimeout);
+            if (claimAll(lease, now)) {
+                return lease;
+            }
+            // other owner was faster, claimed accounts were rolled back
+        }
+    }
+
+    /**
+     * Leases accounts. When there are not enough free accounts, owner waits until other owners release
+     * their accounts. Waiting owners are served in order of arrival.
+     *
+     * @param owner     owner of lease
+     * @param selection kind of selection
+     * @param count     number of accounts
+     * @param timeout   maximal waiting time in milliseconds
+     * @return lease or null, if accounts were not leased in time or there are not enough accounts at all
+     */
+    public Lease acquire(Object owner, Selection selection, int count, long timeout) {
+        if (waiters.isEmpty()) {
+            Lease lease = tryAcquire(owner, selection, count);
+            if (lease != null) {
+                return lease;
+            }
+        }
+        if (select(selection, count, user -> true).size() < count) {
+            return null;
+        }
+
+        Thread current = Thread.currentThread();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        waiters.add(current);
+        try {
+            while (true) {
+                if (waiters.peek() == current) {
+                    Lease lease = tryAcquire(owner, selection, count);
+                    if (lease != null) {
+                        return lease;
+                    }
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+                if (Thread.interrupted()) {
+                    current.interrupt();
+                    return null;
+                }
+            }
+        } finally {
+            waiters.remove(current);
+            signalNext();
+        }
+    }
+
+    /**
+     * Shares accounts with other owners. Accounts are selected as if they were free, free accounts are preferred.
+     * Shared accounts are held until all owners release them, every owner sees them as held by others.
+     *
+     * @param owner     owner of lease
+     * @param selection kind of selection
+     * @param count     number of accounts
+     * @return lease, it has less than count accounts, if there are not enough accounts
+     */
+    public Lease share(Object owner, Selection selection, int count) {
+        long now = System.currentTimeMillis();
+        List<UserData> users = select(selection, count, user -> isFree(user.getAddress(), owner, now));
+        if (users.size() < count) {
+            users = select(selection, count, user -> true);
+        }
+        Lease lease = new Lease(this, owner, users, now + leaseTimeout);
+        for (UserData user : users) {
+            join(lease, user.getAddress(), now);
+        }
+        return lease;
+    }
+
+    /**
+     * Releases accounts of lease. Accounts, which were taken over after lease had expired, are not affected.
+     * Lease can be released more than once.
+     *
+     * @param lease lease
+     */
+    public void release(Lease lease) {
+        Map<String, Long> ids = lease.takeHoldIds();
+        for (Map.Entry<String, Long> entry : ids.entrySet()) {
+            unhold(entry.getKey(), entry.getValue(), lease.owner);
+        }
+        if (!ids.isEmpty()) {
+            signalNext();
+        }
+    }
+
+    /**
+     * @param address account address
+     * @param owner   owner
+     * @return true, if account is held by owner different from given one
+     */
+    public boolean isHeldByOthers(String address, Object owner) {
+        return !isFree(address, owner, System.currentTimeMillis());
+    }
+
+    private List<UserData> select(Selection selection, int count, Predicate<UserData> isAvailable) {
+        int start = offset.getAndIncrement();
+        switch (selection) {
+            case SAME_NODE:
+                return registry.selectFromSingleNode(count, isAvailable, start);
+            case DISTINCT_NODES:
+                return registry.selectFromDifferentNodes(count, isAvailable, start);
+            case ANY:
+            default:
+                return registry.select(count, isAvailable, start);
+        }
+    }
+
+    private boolean isFree(String address, Object owner, long now) {
+        Hold hold = holds.get(address);
+        return hold == null || hold.isHeldOnlyBy(owner) || hold.expiresAt <= now;
+    }
+
+    /**
+     * Claims all accounts of lease. If any account cannot be claimed, already claimed accounts are released.
+     *
+     * @param lease lease
+     * @param now   current time in milliseconds
+     * @return true, if all accounts were claimed
+     */
+    private boolean claimAll(Lease lease, long now) {
+        for (UserData user : lease.users) {
+            if (!claim(lease, user.getAddress(), now)) {
+                release(lease);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean claim(Lease lease, String address, long now) {
+        while (true) {
+            Hold current = holds.get(address);
+            Hold next;
+            if (current == null || current.expiresAt <= now) {
+                next = new Hold(holdId.incrementAndGet(), lease.owner, lease.expiresAt);
+            } else if (current.isHeldOnlyBy(lease.owner)) {
+                next = current.join(lease.owner, lease.expiresAt);
+            } else {
+                return false;
+            }
+            if (replace(address, current, next)) {
+                lease.holdIds.put(address, next.id);
+                return true;
+            }
+        }
+    }
+
+    private void join(Lease lease, String address, long now) {
+        while (true) {
+            Hold current = holds.get(address);
+            Hold next = (current == null || current.expiresAt <= now)
+                    ? new Hold(holdId.incrementAndGet(), lease.owner, lease.expiresAt)
+                    : current.join(lease.owner, lease.expiresAt);
+            if (replace(address, current, next)) {
+                lease.holdIds.put(address, next.id);
+                return;
+            }
+        }
+    }
+
+    private void unhold(String address, long id, Object owner) {
+        while (true) {
+            Hold current = holds.get(address);
+            if (current == null || current.id != id) {
+                // lease expired and account was taken over
+                return;
+            }
+            Hold next = current.leave(owner);
+            boolean changed = (next == null)
+                    ? holds.remove(address, current)
+                    : holds.replace(address, current, next);
+            if (changed) {
+                return;
+            }
+        }
+    }
+
+    private boolean replace(String address, Hold current, Hold next) {
+        return (current == null)
+                ? holds.putIfAbsent(address, next) == null
+                : holds.replace(address, current, next);
+    }
+
+    private void signalNext() {
+        Thread next = waiters.peek();
+        if (next != null) {
+            LockSupport.unpark(next);
+        }
+    }
+
+    /**
+     * Immutable state of held account. It is replaced with compare-and-set.
+     */
+    private static class Hold {
+        /**
+         * Id of hold, it is kept when other lease joins hold
+         */
+        private final long id;
+        /**
+         * Number of leases by owner, owners are compared by identity
+         */
+        private final Map<Object, Integer> owners;
+        private final long expiresAt;
+
+        private Hold(long id, Object owner, long expiresAt) {
+            this.id = id;
+            this.owners = new IdentityHashMap<>(2);
+            this.owners.put(owner, 1);
+            this.expiresAt = expiresAt;
+        }
+
+        private Hold(long id, Map<Object, Integer> owners, long expiresAt) {
+            this.id = id;
+            this.owners = owners;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @param owner owner
+         * @return true, if account is held only by leases of given owner
+         */
+        private boolean isHeldOnlyBy(Object owner) {
+            return owners.size() == 1 && owners.containsKey(owner);
+        }
+
+        private Hold join(Object owner, long leaseExpiresAt) {
+            Map<Object, Integer> next = new IdentityHashMap<>(owners);
+            next.merge(owner, 1, Integer::sum);
+            return new Hold(id, next, Math.max(expiresAt, leaseExpiresAt));
+        }
+
+        /**
+         * @param owner owner of released lease
+         * @return hold without lease or null, if it was the last lease
+         */
+        private Hold leave(Object owner) {
+            Map<Object, Integer> next = new IdentityHashMap<>(owners);
+            Integer count = next.get(owner);
+            if (count == null) {
+                return this;
+            }
+            if (count == 1) {
+                next.remove(owner);
+            } else {
+                next.put(owner, count - 1);
+            }
+            return next.isEmpty() ? null : new Hold(id, next, expiresAt);
+        }
+    }
+
+    /**
+     * Accounts leased by owner. Lease can be closed in try-with-resources statement.
+     */
+    public static class Lease implements AutoCloseable {
+        private final AccountLeasePool pool;
+        private final Object owner;
+        private final List<UserData> users;
+        private final long expiresAt;
+        /**
+         * Ids of claimed holds by account address
+         */
+        private Map<String, Long> holdIds = new HashMap<>();
+
+        private Lease(AccountLeasePool pool, Object owner, List<UserData> users, long expiresAt) {
+            this.pool = pool;
+            this.owner = owner;
+            this.users = Collections.unmodifiableList(users);
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return leased accounts
+         */
+        public List<UserData> getUsers() {
+            return users;
+        }
+
+        /**
+         * @return expiration time in milliseconds
+         */
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        /**
+         * @return true, if lease has expired
+         */
+        public boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+
+        private synchronized Map<String, Long> takeHoldIds() {
+            Map<String, Long> ids = holdIds;
+            holdIds = new HashMap<>();
+            return ids;
+        }
+
+        @Override
+        public void close() {
+            pool.release(this);
+        }
+    }
+}
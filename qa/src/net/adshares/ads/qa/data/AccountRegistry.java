@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.data;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Indexed registry of accounts. Accounts are indexed by address, by node and main accounts are kept separately,
+ * so lookups do not scan all accounts.
+ * <p>
+ * Registry is copy-on-write: readers use immutable snapshot without locking and every change creates
+ * new snapshot. Changes (cloned accounts) are rare compared to reads.
+ */
+public class AccountRegistry {
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param users accounts in order of genesis file
+     */
+    public AccountRegistry(Collection<UserData> users) {
+        snapshot = new Snapshot(users);
+    }
+
+    /**
+     * @return all accounts in order in which they were added
+     */
+    public List<UserData> getUsers() {
+        return snapshot.users;
+    }
+
+    /**
+     * @param address account address
+     * @return account or null, if there is no account with address
+     */
+    public UserData get(String address) {
+        return snapshot.byAddress.get(address);
+    }
+
+    /**
+     * @param node node ordinal number
+     * @return accounts of node, empty list if node is unknown
+     */
+    public List<UserData> getNodeUsers(int node) {
+        return snapshot.byNode.getOrDefault(node, Collections.emptyList());
+    }
+
+    /**
+     * @return main accounts of all nodes
+     */
+    public List<UserData> getMainUsers() {
+        return snapshot.mainUsers;
+    }
+
+    /**
+     * @return number of nodes
+     */
+    public int getNodeCount() {
+        return snapshot.byNode.size();
+    }
+
+    /**
+     * Adds account at the end of registry. Account with the same address is replaced.
+     *
+     * @param user account
+     */
+    public synchronized void put(UserData user) {
+        List<UserData> users = new ArrayList<>(snapshot.users.size() + 1);
+        for (UserData u : snapshot.users) {
+            if (!u.getAddress().equals(user.getAddress())) {
+                users.add(u);
+            }
+        }
+        users.add(user);
+        snapshot = new Snapshot(users);
+    }
+
+    /**
+     * Selects first count accounts, which match predicate.
+     *
+     * @param count       number of accounts
+     * @param isAvailable predicate for accounts, which can be selected
+     * @return selected accounts, less than count if there are not enough accounts
+     */
+    public List<UserData> select(int count, Predicate<UserData> isAvailable) {
+        return select(count, isAvailable, 0);
+    }
+
+    /**
+     * Selects count accounts, which match predicate. Accounts are visited cyclically starting from offset,
+     * so different offsets spread selections over all accounts.
+     *
+     * @param count       number of accounts
+     * @param isAvailable predicate for accounts, which can be selected
+     * @param offset      index of first visited account, it is taken modulo number of accounts
+     * @return selected accounts, less than count if there are not enough accounts
+     */
+    public List<UserData> select(int count, Predicate<UserData> isAvailable, int offset) {
+        List<UserData> users = snapshot.users;
+        List<UserData> selected = new ArrayList<>(count);
+        int size = users.size();
+        int start = floorMod(offset, size);
+        for (int i = 0; i < size && selected.size() < count; i++) {
+            UserData user = users.get((start + i) % size);
+            if (isAvailable.test(user)) {
+                selected.add(user);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Selects count accounts from first node, which has enough accounts matching predicate. If there is no such
+     * node, accounts of first node with any account matching predicate are selected.
+     *
+     * @param count       number of accounts
+     * @param isAvailable predicate for accounts, which can be selected
+     * @return selected accounts, less than count if there are not enough accounts
+     */
+    public List<UserData> selectFromSingleNode(int count, Predicate<UserData> isAvailable) {
+        return selectFromSingleNode(count, isAvailable, 0);
+    }
+
+    /**
+     * Selects count accounts from single node. Nodes and accounts of node are visited cyclically starting
+     * from offset, so different offsets spread selections over all nodes and accounts.
+     *
+     * @param count       number of accounts
+     * @param isAvailable predicate for accounts, which can be selected
+     * @param offset      offset of first visited node and account, it is taken modulo number of nodes (accounts)
+     * @return selected accounts, less than count if there are not enough accounts
+     */
+    public List<UserData> selectFromSingleNode(int count, Predicate<UserData> isAvailable, int offset) {
+        List<List<UserData>> nodes = snapshot.nodeUsers;
+        List<UserData> first = null;
+        int nodeStart = floorMod(offset, nodes.size());
+        for (int n = 0; n < nodes.size(); n++) {
+            List<UserData> nodeUsers = nodes.get((nodeStart + n) % nodes.size());
+            int size = nodeUsers.size();
+            int start = floorMod(offset, size);
+            List<UserData> selected = new ArrayList<>(count);
+            for (int i = 0; i < size; i++) {
+                UserData user = nodeUsers.get((start + i) % size);
+                if (isAvailable.test(user)) {
+                    selected.add(user);
+                    if (selected.size() == count) {
+                        return selected;
+                    }
+                }
+            }
+            if (first == null && !selected.isEmpty()) {
+                first = selected;
+            }
+        }
+        return (first != null) ? first : new ArrayList<>();
+    }
+
+    /**
+     * Selects count accounts, each from different node. First matching account of every node is selected,
+     * so when accounts are available, only count nodes are visited.
+     *
+     * @param count       number of accounts
+     * @param isAvailable predicate for accounts, which can be selected
+     * @return selected accounts, less than count if there are not enough nodes
+     */
+    public List<UserData> selectFromDifferentNodes(int count, Predicate<UserData> isAvailable) {
+        return selectFromDifferentNodes(count, isAvailable, 0);
+    }
+
+    /**
+     * Selects count accounts, each from different node. Nodes and accounts of node are visited cyclically
+     * starting from offset, so different offsets spread selections over all nodes and accounts.
+     *
+     * @param count       number of accounts
+     * @param isAvailable predicate for accounts, which can be selected
+     * @param offset      offset of first visited node and account, it is taken modulo number of nodes (accounts)
+     * @return selected accounts, less than count if there are not enough nodes
+     */
+    public List<UserData> selectFromDifferentNodes(int count, Predicate<UserData> isAvailable, int offset) {
+        List<List<UserData>> nodes = snapshot.nodeUsers;
+        List<UserData> selected = new ArrayList<>(count);
+        int nodeStart = floorMod(offset, nodes.size());
+        for (int n = 0; n < nodes.size() && selected.size() < count; n++) {
+            List<UserData> nodeUsers = nodes.get((nodeStart + n) % nodes.size());
+            int size = nodeUsers.size();
+            int start = floorMod(offset, size);
+            for (int i = 0; i < size; i++) {
+                UserData user = nodeUsers.get((start + i) % size);
+                if (isAvailable.test(user)) {
+                    selected.add(user);
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static int floorMod(int offset, int size) {
+        return (size == 0) ? 0 : Math.floorMod(offset, size);
+    }
+
+    /**
+     * Immutable indexes of accounts.
+     */
+    private static class Snapshot {
+        private final List<UserData> users;
+        private final Map<String, UserData> byAddress;
+        /**
+         * Accounts by node, nodes are in order of their first account
+         */
+        private final Map<Integer, List<UserData>> byNode;
+        /**
+         * Accounts of nodes, nodes are in the same order as in byNode
+         */
+        private final List<List<UserData>> nodeUsers;
+        private final List<UserData> mainUsers;
+
+        private Snapshot(Collection<UserData> userCollection) {
+            List<UserData> userList = new ArrayList<>(userCollection);
+            Map<String, UserData> addressMap = new HashMap<>(userList.size() * 2);
+            Map<Integer, List<UserData>> nodeMap = new LinkedHashMap<>();
+            List<UserData> mainList = new ArrayList<>();
+            for (UserData user : userList) {
+                addressMap.put(user.getAddress(), user);
+                nodeMap.computeIfAbsent(user.getNode(), node -> new ArrayList<>()).add(user);
+                if (user.isMainAccount()) {
+                    mainList.add(user);
+                }
+            }
+            nodeMap.replaceAll((node, nodeUsers) -> Collections.unmodifiableList(nodeUsers));
+
+            users = Collections.unmodifiableList(userList);
+            byAddress = addressMap;
+            byNode = nodeMap;
+            nodeUsers = new ArrayList<>(nodeMap.values());
+            mainUsers = Collections.unmodifiableList(mainList);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.data;
+
+import com.google.gson.stream.JsonWriter;
+import net.adshares.ads.qa.util.AccountAddress;
+import net.adshares.ads.qa.util.AdsAmount;
+import net.adshares.ads.qa.util.Ed25519;
+import net.adshares.ads.qa.util.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates genesis file of network with given number of nodes and accounts. Every node and account gets
+ * fresh Ed25519 key pair, signature of empty message and address with checksum, so file has the same schema
+ * as {@link Genesis}.
+ * <p>
+ * Keys are generated in chunks on all cores and chunks are written in order as soon as they are ready,
+ * so only few chunks are kept in memory regardless of network size.
+ * <p>
+ * Ed25519 key generation and signing take most of time. For very large networks, key pool can be set:
+ * fixed number of key pairs is generated and accounts use them cyclically (node keys are always unique).
+ * <p>
+ * Usage: {@code GenesisGenerator <nodes> <accounts> <file> [balance [key_pool]]}
+ */
+public class GenesisGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(GenesisGenerator.class);
+    /**
+     * Number of accounts generated in single task
+     */
+    private static final int CHUNK_SIZE = 256;
+    private static final int KEY_LENGTH = 32;
+    private static final AdsAmount DEFAULT_BALANCE = AdsAmount.parse("1000000");
+
+    private final int nodeCount;
+    private final int accountCount;
+    private final AdsAmount balance;
+    private final long startTime;
+    private final int threads;
+    /**
+     * Number of key pairs shared by accounts, 0 if every account has own key pair
+     */
+    private final int keyPoolSize;
+    /**
+     * Seed of keys or null, if keys are random
+     */
+    private final Long seed;
+
+    private GenesisGenerator(Builder builder) {
+        nodeCount = builder.nodeCount;
+        accountCount = builder.accountCount;
+        balance = builder.balance;
+        startTime = builder.startTime;
+        threads = builder.threads;
+        keyPoolSize = builder.keyPoolSize;
+        seed = builder.seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 5) {
+            System.err.println("Usage: GenesisGenerator <nodes> <accounts> <file> [balance [key_pool]]");
+            System.exit(1);
+        }
+        Builder builder = new Builder().nodes(Integer.parseInt(args[0])).accounts(Integer.parseInt(args[1]));
+        if (args.length >= 4) {
+            builder.balance(AdsAmount.parse(args[3]));
+        }
+        if (args.length == 5) {
+            builder.keyPool(Integer.parseInt(args[4]));
+        }
+        builder.build().write(Paths.get(args[2]));
+    }
+
+    /**
+     * Writes genesis file.
+     *
+     * @param path path of file, existing file is overwritten
+     * @throws IOException when file cannot be written
+     */
+    public void write(Path path) throws IOException {
+        long time = System.currentTimeMillis();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            write(writer);
+        }
+        log.info("Genesis {} generated: {} nodes x {} accounts in {} ms", path, nodeCount, accountCount,
+                System.currentTimeMillis() - time);
+    }
+
+    /**
+     * Writes genesis.
+     *
+     * @param writer writer, it is not closed
+     * @throws IOException when genesis cannot be written
+     */
+    public void write(Writer writer) throws IOException {
+        if (!Ed25519.isAvailable()) {
+            throw new IllegalStateException("Ed25519 is not available, Java 15 or newer is required");
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ads-genesis-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Key[] keyPool = (keyPoolSize > 0) ? generateKeyPool(executor) : null;
+
+            JsonWriter json = new JsonWriter(writer);
+            json.setIndent("    ");
+            json.beginObject();
+            json.name("config").beginObject().name("start_time").value(String.valueOf(startTime)).endObject();
+            json.name("nodes").beginArray();
+
+            // chunks are generated ahead of writer, but number of chunks in memory is limited
+            int window = threads * 4;
+            int chunksPerNode = (accountCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            long chunkTotal = (long) nodeCount * chunksPerNode;
+            Deque<Future<Chunk>> pending = new ArrayDeque<>(window);
+            long submitted = 0;
+            for (long written = 0; written < chunkTotal; written++) {
+                while (submitted < chunkTotal && pending.size() < window) {
+                    final long index = submitted++;
+                    int node = (int) (index / chunksPerNode) + 1;
+                    int from = (int) (index % chunksPerNode) * CHUNK_SIZE;
+                    int to = Math.min(from + CHUNK_SIZE, accountCount);
+                    pending.add(executor.submit(() -> generate(index, node, from, to, keyPool)));
+                }
+                writeChunk(json, await(pending.poll()));
+            }
+
+            if (chunkTotal > 0) {
+                // close last node
+                json.endArray().endObject();
+            }
+            json.endArray();
+            json.endObject();
+            json.flush();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates key pool in parallel.
+     *
+     * @param executor executor
+     * @return key pairs
+     * @throws IOException when generation was interrupted
+     */
+    private Key[] generateKeyPool(ExecutorService executor) throws IOException {
+        Key[] keyPool = new Key[keyPoolSize];
+        List<Future<Key[]>> futures = new ArrayList<>();
+        for (int from = 0; from < keyPoolSize; from += CHUNK_SIZE) {
+            // negative indexes give seeds different from seeds of account chunks
+            long index = -1 - from / CHUNK_SIZE;
+            int count = Math.min(CHUNK_SIZE, keyPoolSize - from);
+            futures.add(executor.submit(() -> generateKeys(createRandom(index), count)));
+        }
+        int position = 0;
+        for (Future<Key[]> future : futures) {
+            Key[] keys = await(future);
+            System.arraycopy(keys, 0, keyPool, position, keys.length);
+            position += keys.length;
+        }
+        return keyPool;
+    }
+
+    private <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Genesis generation was interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot generate keys", e.getCause());
+        }
+    }
+
+    private void writeChunk(JsonWriter json, Chunk chunk) throws IOException {
+        if (chunk.nodeKey != null) {
+            if (chunk.node > 1) {
+                // close previous node
+                json.endArray().endObject();
+            }
+            json.beginObject();
+            json.name("public_key").value(chunk.nodeKey.publicKey);
+            json.name("_secret").value(chunk.nodeKey.secret);
+            json.name("_sign").value(chunk.nodeKey.sign);
+            json.name("accounts").beginArray();
+        }
+        String balanceText = balance.toString();
+        for (int i = 0; i < chunk.keys.length; i++) {
+            Key key = chunk.keys[i];
+            json.beginObject();
+            json.name("_address").value(AccountAddress.format(AccountAddress.pack(chunk.node, chunk.from + i)));
+            json.name("balance").value(balanceText);
+            json.name("public_key").value(key.publicKey);
+            json.name("_secret").value(key.secret);
+            json.name("_sign").value(key.sign);
+            json.endObject();
+        }
+    }
+
+    /**
+     * Generates keys of accounts from given range. Node key is generated with first chunk of node.
+     *
+     * @param index   chunk index, it is used to derive seed of chunk
+     * @param node    node ordinal number
+     * @param from    first account (inclusive)
+     * @param to      last account (exclusive)
+     * @param keyPool key pairs shared by accounts or null, if every account has own key pair
+     * @return generated chunk
+     * @throws GeneralSecurityException when key cannot be generated
+     */
+    private Chunk generate(long index, int node, int from, int to, Key[] keyPool) throws GeneralSecurityException {
+        Random random = createRandom(index);
+        Key nodeKey = (from == 0) ? Key.generate(random) : null;
+        Key[] keys;
+        if (keyPool != null) {
+            keys = new Key[to - from];
+            long first = (long) (node - 1) * accountCount + from;
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = keyPool[(int) ((first + i) % keyPool.length)];
+            }
+        } else {
+            keys = generateKeys(random, to - from);
+        }
+        return new Chunk(node, from, nodeKey, keys);
+    }
+
+    private static Key[] generateKeys(Random random, int count) throws GeneralSecurityException {
+        Key[] keys = new Key[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = Key.generate(random);
+        }
+        return keys;
+    }
+
+    /**
+     * @param index chunk index
+     * @return source of secret keys for chunk
+     */
+    private Random createRandom(long index) {
+        // Random with seed derived from chunk index gives the same keys regardless of thread scheduling
+        return (seed != null) ? new Random(seed * 0x9E3779B97F4A7C15L + index) : new SecureRandom();
+    }
+
+    /**
+     * Accounts of node generated in single task
+     */
+    private static class Chunk {
+        private final int node;
+        private final int from;
+        /**
+         * Key of node, it is present in first chunk of node
+         */
+        private final Key nodeKey;
+        private final Key[] keys;
+
+        private Chunk(int node, int from, Key nodeKey, Key[] keys) {
+            this.node = node;
+            this.from = from;
+            this.nodeKey = nodeKey;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * Key pair with signature of empty message, hexadecimal Strings
+     */
+    private static class Key {
+        private final String secret;
+        private final String publicKey;
+        private final String sign;
+
+        private Key(String secret, String publicKey, String sign) {
+            this.secret = secret;
+            this.publicKey = publicKey;
+            this.sign = sign;
+        }
+
+        private static Key generate(Random random) throws GeneralSecurityException {
+            byte[] seed = new byte[KEY_LENGTH];
+            random.nextBytes(seed);
+            return new Key(Utils.byteArrayToHexString(seed), Utils.byteArrayToHexString(Ed25519.getPublicKey(seed)),
+                    Utils.byteArrayToHexString(Ed25519.sign(seed, new byte[0])));
+        }
+    }
+
+    public static class Builder {
+        private int nodeCount = 1;
+        private int accountCount = 1;
+        private AdsAmount balance = DEFAULT_BALANCE;
+        private long startTime = System.currentTimeMillis() / 1000L;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int keyPoolSize;
+        private Long seed;
+
+        /**
+         * @param nodeCount number of nodes, 1 to 65535
+         * @return builder
+         */
+        public Builder nodes(int nodeCount) {
+            this.nodeCount = nodeCount;
+            return this;
+        }
+
+        /**
+         * @param accountCount number of accounts of every node, at least 1
+         * @return builder
+         */
+        public Builder accounts(int accountCount) {
+            this.accountCount = accountCount;
+            return this;
+        }
+
+        /**
+         * @param balance balance of every account
+         * @return builder
+         */
+        public Builder balance(AdsAmount balance) {
+            this.balance = balance;
+            return this;
+        }
+
+        /**
+         * @param startTime network start time in seconds
+         * @return builder
+         */
+        public Builder startTime(long startTime) {
+            this.startTime = startTime;
+            return this;
+        }
+
+        /**
+         * @param threads number of threads, which generate keys
+         * @return builder
+         */
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets number of key pairs shared by accounts. Accounts use key pairs cyclically, so generation time
+         * does not depend on number of accounts.
+         *
+         * @param keyPoolSize number of key pairs, 0 (default) if every account has own key pair
+         * @return builder
+         */
+        public Builder keyPool(int keyPoolSize) {
+            this.keyPoolSize = keyPoolSize;
+            return this;
+        }
+
+        /**
+         * Sets seed of keys, so the same network can be generated again. Keys generated with seed are
+         * predictable and must not be used outside of tests.
+         *
+         * @param seed seed
+         * @return builder
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public GenesisGenerator build() {
+            if (nodeCount < 1 || nodeCount > 0xFFFF) {
+                throw new IllegalArgumentException("Invalid node count: " + nodeCount);
+            }
+            if (accountCount < 1) {
+                throw new IllegalArgumentException("Invalid account count: " + accountCount);
+            }
+            if (threads < 1) {
+                throw new IllegalArgumentException("Invalid thread count: " + threads);
+            }
+            if (keyPoolSize < 0) {
+                throw new IllegalArgumentException("Invalid key pool size: " + keyPoolSize);
+            }
+            if (balance == null || balance.signum() < 0) {
+                throw new IllegalArgumentException("Invalid balance: " + balance);
+            }
+            return new GenesisGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.data;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming reader of genesis file. Only account addresses and secrets are read, other values
+ * (keys, signatures, balances) are skipped without building object graph, so large genesis files
+ * are read in single pass.
+ */
+public class GenesisReader {
+
+    /**
+     * Receives accounts read from genesis file.
+     */
+    @FunctionalInterface
+    public interface AccountHandler {
+        /**
+         * @param nodeIndex index of node in genesis file, first node has index 0
+         * @param address   account address
+         * @param secret    account secret key or null, if it is not present
+         */
+        void account(int nodeIndex, String address, String secret);
+    }
+
+    private GenesisReader() {
+    }
+
+    /**
+     * Reads genesis file.
+     *
+     * @param reader  reader of genesis file
+     * @param handler handler, which receives every account
+     * @return number of nodes
+     * @throws IOException           when genesis cannot be read
+     * @throws IllegalStateException when genesis is not valid json
+     */
+    public static int read(Reader reader, AccountHandler handler) throws IOException {
+        int nodeCount = 0;
+        try (JsonReader jsonReader = new JsonReader(reader)) {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                if ("nodes".equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                    jsonReader.beginArray();
+                    while (jsonReader.hasNext()) {
+                        readNode(jsonReader, nodeCount++, handler);
+                    }
+                    jsonReader.endArray();
+                } else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+        }
+        return nodeCount;
+    }
+
+    private static void readNode(JsonReader jsonReader, int nodeIndex, AccountHandler handler) throws IOException {
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if ("accounts".equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    readAccount(jsonReader, nodeIndex, handler);
+                }
+                jsonReader.endArray();
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+    }
+
+    private static void readAccount(JsonReader jsonReader, int nodeIndex, AccountHandler handler) throws IOException {
+        String address = null;
+        String secret = null;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            switch (jsonReader.nextName()) {
+                case "_address":
+                    address = jsonReader.nextString();
+                    break;
+                case "_secret":
+                    secret = jsonReader.nextString();
+                    break;
+                default:
+                    jsonReader.skipValue();
+                    break;
+            }
+        }
+        jsonReader.endObject();
+        if (address != null) {
+            handler.account(nodeIndex, address, secret);
+        }
+    }
+}
@@ -19,7 +19,9 @@
 
 package net.adshares.ads.qa.data;
 
+import net.adshares.ads.qa.util.AccountAddress;
 import net.adshares.ads.qa.util.EscConst;
+import net.adshares.ads.qa.util.Utils;
 
 import java.math.BigDecimal;
 
@@ -28,20 +30,38 @@ public class UserData {
     private final String port;
     private final String host;
     private final String address;
-    private String secret;
+    /**
+     * Packed address or {@link AccountAddress#INVALID}, if address is not valid
+     */
+    private final long packedAddress;
+    /**
+     * Secret key as bytes, it is null, if secret is not canonical hexadecimal String
+     */
+    private byte[] secretBytes;
+    /**
+     * Secret key, which cannot be stored as bytes
+     */
+    private String secretText;
 
     public UserData(String port, String host, String address, String secret) {
         this.port = port;
         this.host = host;
         this.address = address;
-        this.secret = secret;
+        this.packedAddress = AccountAddress.parse(address);
+        setSecret(secret);
     }
 
-    String getPort() {
+    /**
+     * @return node office port
+     */
+    public String getPort() {
         return port;
     }
 
-    String getHost() {
+    /**
+     * @return node host
+     */
+    public String getHost() {
         return host;
     }
 
@@ -49,11 +69,20 @@ public class UserData {
         return address;
     }
 
+    /**
+     * @return packed address or {@link AccountAddress#INVALID}, if address is not valid
+     */
+    public long getPackedAddress() {
+        return packedAddress;
+    }
+
     /**
      * @return node ordinal number (decimal)
      */
     public int getNode() {
-        return Integer.valueOf(getNodeId(), 16);
+        return (packedAddress != AccountAddress.INVALID)
+                ? AccountAddress.getNode(packedAddress)
+                : Integer.valueOf(getNodeId(), 16);
     }
 
     /**
@@ -63,15 +92,18 @@ public class UserData {
         return address.substring(0, 4);
     }
 
+    /**
+     * @return secret key, it is decoded from bytes on every call
+     */
     public String getSecret() {
-        return secret;
+        return (secretBytes != null) ? Utils.byteArrayToHexString(secretBytes) : secretText;
     }
 
     /**
      * @return data as ESC client parameters
      */
     public String getDataAsEscParams() {
-        return String.format(" -P%s -H%s -A%s -s%s", port, host, address, secret);
+        return String.format(" -P%s -H%s -A%s -s%s", port, host, address, getSecret());
     }
 
     /**
@@ -80,7 +112,25 @@ public class UserData {
      * @param secret new secret key
      */
     public void setSecret(String secret) {
-        this.secret = secret;
+        this.secretBytes = toBytes(secret);
+        this.secretText = (secretBytes == null) ? secret : null;
+    }
+
+    /**
+     * @param secret secret key
+     * @return secret as bytes or null, if secret cannot be restored from bytes (e.g. it is lower case)
+     */
+    private static byte[] toBytes(String secret) {
+        if (secret == null || secret.length() % 2 != 0) {
+            return null;
+        }
+        for (int i = 0; i < secret.length(); i++) {
+            char c = secret.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'A' || c > 'F')) {
+                return null;
+            }
+        }
+        return Utils.hexStringToByteArray(secret);
     }
 
     /**
@@ -89,7 +139,7 @@ public class UserData {
      * @return true, if data belongs to main account in node
      */
     public boolean isMainAccount() {
-        return isMainAccount(this.address);
+        return AccountAddress.isMainAccount(packedAddress);
     }
 
     /**
@@ -99,11 +149,7 @@ public class UserData {
      * @return true, if address belongs to main account in node, false otherwise
      */
     public static boolean isMainAccount(String address) {
-        if (address != null && address.length() == 18) {
-            return "00000000".equals(address.substring(5, 13));
-        } else {
-            return false;
-        }
+        return AccountAddress.isMainAccount(AccountAddress.parse(address));
     }
 
     /**
@@ -113,7 +159,9 @@ public class UserData {
      * @return true, if addresses belong to account in the same node, false otherwise
      */
     public boolean isAccountFromSameNode(String address) {
-        return isAccountFromSameNode(this.address, address);
+        long packed = AccountAddress.parse(address);
+        return packedAddress != AccountAddress.INVALID && packed != AccountAddress.INVALID
+                && AccountAddress.getNode(packedAddress) == AccountAddress.getNode(packed);
     }
 
     /**
@@ -124,11 +172,10 @@ public class UserData {
      * @return true, if addresses belong to accounts in the same node, false otherwise
      */
     public static boolean isAccountFromSameNode(String address1, String address2) {
-        if (address1 != null && address1.length() == 18 && address2 != null && address2.length() == 18) {
-            return address1.substring(0, 4).equals(address2.substring(0, 4));
-        } else {
-            return false;
-        }
+        long packed1 = AccountAddress.parse(address1);
+        long packed2 = AccountAddress.parse(address2);
+        return packed1 != AccountAddress.INVALID && packed2 != AccountAddress.INVALID
+                && AccountAddress.getNode(packed1) == AccountAddress.getNode(packed2);
     }
 
     /**
@@ -19,7 +19,6 @@
 
 package net.adshares.ads.qa.data;
 
-import com.google.gson.Gson;
 import org.junit.Assert;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.util.*;
 
 public class UserDataProvider {
@@ -42,15 +42,30 @@ public class UserDataProvider {
     private static final String DEFAULT_GENESIS_FILE = "genesis.json";
     private static final int STARTING_PORT_INT = 9001;
     private static final String HOST = "esc.dock";
+    /**
+     * System property with lease timeout in milliseconds
+     */
+    private static final String SYSTEM_PROP_LEASE_TIMEOUT = "ads.lease.timeout";
+    private static final long DEFAULT_LEASE_TIMEOUT = 30 * 60 * 1000L;
+    /**
+     * System property with maximal time in milliseconds, which scenario waits for free accounts
+     */
+    private static final String SYSTEM_PROP_LEASE_WAIT = "ads.lease.wait";
+    private static final long DEFAULT_LEASE_WAIT = 10 * 60 * 1000L;
 
     private static UserDataProvider instance;
-    private List<UserData> users;
+    private AccountRegistry registry;
+    private AccountLeasePool leasePool;
+    /**
+     * Leases of scenario, which is run in current thread. It is null, when scenarios are run sequentially.
+     */
+    private final ThreadLocal<List<AccountLeasePool.Lease>> scenarioLeases = new ThreadLocal<>();
 
     private UserDataProvider() {
 
     }
 
-    public static UserDataProvider getInstance() {
+    public static synchronized UserDataProvider getInstance() {
         if (instance == null) {
             instance = new UserDataProvider();
             instance.init();
@@ -72,20 +87,34 @@ public class UserDataProvider {
 
         Assert.assertNotNull("Cannot open network definition file.", bufferedReader);
 
-        Gson gson = new Gson();
-        Genesis json = gson.fromJson(bufferedReader, Genesis.class);
-
-        users = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
+        Runtime runtime = Runtime.getRuntime();
+        long startHeap = runtime.totalMemory() - runtime.freeMemory();
 
-        int portInt = STARTING_PORT_INT;
-        for (Genesis.Node gn : json.getNodes()) {
-            String port = String.valueOf(portInt);
-            for (Genesis.Node.Account acc : gn.getAccounts()) {
-                UserData user = new UserData(port, HOST, acc.getAddress(), acc.getSecret());
-                users.add(user);
-            }
-            portInt++;
+        List<UserData> userList = new ArrayList<>();
+        // port String is shared by all accounts of node
+        List<String> ports = new ArrayList<>();
+        int nodeCount = 0;
+        try {
+            nodeCount = GenesisReader.read(bufferedReader, (nodeIndex, address, secret) -> {
+                while (ports.size() <= nodeIndex) {
+                    ports.add(String.valueOf(STARTING_PORT_INT + ports.size()));
+                }
+                userList.add(new UserData(ports.get(nodeIndex), HOST, address, secret));
+            });
+        } catch (IOException | IllegalStateException e) {
+            log.error(e.toString());
+            Assert.fail("Cannot read network definition file.");
         }
+
+        long heap = runtime.totalMemory() - runtime.freeMemory();
+        log.info("Genesis {} loaded: {} accounts of {} nodes in {} ms, heap used {} kB (change {} kB)", genesisFile,
+                userList.size(), nodeCount, System.currentTimeMillis() - startTime, heap / 1024,
+                (heap - startHeap) / 1024);
+
+        // registry is read by many scenarios and modified only by cloneUser
+        registry = new AccountRegistry(userList);
+        leasePool = new AccountLeasePool(registry, Long.getLong(SYSTEM_PROP_LEASE_TIMEOUT, DEFAULT_LEASE_TIMEOUT));
     }
 
     /**
@@ -94,26 +123,30 @@ public class UserDataProvider {
      * @return node count
      */
     public int getNodeCount() {
-        Set<Integer> nodeSet = new HashSet<>();
-        for (UserData user : users) {
-            nodeSet.add(user.getNode());
-        }
-        return nodeSet.size();
+        return registry.getNodeCount();
     }
 
-    public List<UserData> getMainUserDataList() {
-        ArrayList<UserData> userDataList = new ArrayList<>();
-        for (UserData user : users) {
-            if (user.isMainAccount()) {
-                userDataList.add(user);
-            }
-        }
+    /**
+     * Returns pool of account leases. Load workers, which run outside of scenarios, can lease accounts directly.
+     *
+     * @return lease pool
+     */
+    public AccountLeasePool getLeasePool() {
+        return leasePool;
+    }
 
-        return userDataList;
+    public List<UserData> getMainUserDataList() {
+        return new ArrayList<>(registry.getMainUsers());
     }
 
+    /**
+     * Returns all users. When scenarios are run concurrently, users held by other scenarios are at the end
+     * of list, but they are not held by calling scenario.
+     *
+     * @return list of all users
+     */
     public List<UserData> getUserDataList() {
-        return getUserDataList(users.size());
+        return getUsersInHoldOrder();
     }
 
     public List<UserData> getUserDataList(int count) {
@@ -123,26 +156,9 @@ public class UserDataProvider {
     public List<UserData> getUserDataList(int count, boolean singleNode) {
         log.trace("getUserDataList(count=" + count + ", singleNode=" + singleNode + ")");
 
-        ArrayList<UserData> userData = new ArrayList<>(count);
-        UserData firstUser = null;
-        for (UserData user : users) {
-            if (singleNode) {
-                if (firstUser == null) {
-                    firstUser = user;
-                    userData.add(firstUser);
-                } else {
-                    if (firstUser.isAccountFromSameNode(user.getAddress())) {
-                        userData.add(user);
-                    }
-                }
-            } else {
-                userData.add(user);
-            }
-
-            if (userData.size() == count) {
-                break;
-            }
-        }
+        List<UserData> userData = acquireUsers(singleNode
+                ? AccountLeasePool.Selection.SAME_NODE
+                : AccountLeasePool.Selection.ANY, count);
 
         boolean enoughUsers = count == userData.size();
         if (!enoughUsers) {
@@ -156,25 +172,7 @@ public class UserDataProvider {
     public List<UserData> getUserDataFromDifferentNodes(int count) {
         log.trace("getUserDataFromDifferentNodes(count=" + count + ")");
 
-        ArrayList<UserData> userData = new ArrayList<>(count);
-        for (UserData user : users) {
-            String userAddress = user.getAddress();
-            boolean isSameNode = false;
-            for (UserData addedUser : userData) {
-                isSameNode = addedUser.isAccountFromSameNode(userAddress);
-                if (isSameNode) {
-                    break;
-                }
-            }
-
-            if (!isSameNode) {
-                userData.add(user);
-            }
-
-            if (userData.size() == count) {
-                break;
-            }
-        }
+        List<UserData> userData = acquireUsers(AccountLeasePool.Selection.DISTINCT_NODES, count);
 
         boolean enoughUsers = count == userData.size();
         if (!enoughUsers) {
@@ -192,18 +190,13 @@ public class UserDataProvider {
      * @param userDataToClone user data
      * @param address         address of new user data
      */
-    public UserData cloneUser(UserData userDataToClone, String address) {
+    public synchronized UserData cloneUser(UserData userDataToClone, String address) {
         if (userDataToClone != null && address != null) {
-            users.removeIf(userData -> address.equals(userData.getAddress()));
-
-            String nodeId = address.substring(0, 4);
-            for (UserData user : users) {
-                if (nodeId.equals(user.getNodeId())) {
-                    String port = user.getPort();
-                    String host = user.getHost();
-
-                    UserData u = new UserData(port, host, address, userDataToClone.getSecret());
-                    users.add(u);
+            int node = Integer.valueOf(address.substring(0, 4), 16);
+            for (UserData user : registry.getNodeUsers(node)) {
+                if (!address.equals(user.getAddress())) {
+                    UserData u = new UserData(user.getPort(), user.getHost(), address, userDataToClone.getSecret());
+                    registry.put(u);
 
                     return u;
                 }
@@ -211,10 +204,9 @@ public class UserDataProvider {
 
             // code below works only for local nodes due to default host (HOST constant)
             log.trace("Clone user to new node");
-            int node = Integer.valueOf(nodeId, 16);
             int portAsInt = STARTING_PORT_INT + node - 1;
             UserData u = new UserData(String.valueOf(portAsInt), HOST, address, userDataToClone.getSecret());
-            users.add(u);
+            registry.put(u);
 
             return u;
         }
@@ -222,4 +214,85 @@ public class UserDataProvider {
         return null;
     }
 
+    /**
+     * Starts holding accounts for scenario, which is run in current thread. Until scenario ends, accounts
+     * selected by scenario are leased and not selected for other scenarios, so concurrent scenarios use disjoint
+     * accounts.
+     */
+    public void startScenario() {
+        scenarioLeases.set(new ArrayList<>());
+    }
+
+    /**
+     * Releases accounts leased by scenario, which is run in current thread.
+     */
+    public void endScenario() {
+        List<AccountLeasePool.Lease> leases = scenarioLeases.get();
+        if (leases != null) {
+            scenarioLeases.remove();
+            for (AccountLeasePool.Lease lease : leases) {
+                leasePool.release(lease);
+            }
+        }
+    }
+
+    /**
+     * Selects users for scenario. When scenarios are run concurrently, users leased by other scenarios are
+     * not selected. If there are not enough free users, scenario, which does not hold any user yet, waits until
+     * other scenarios release their users. Scenario, which already holds users, shares users with other scenarios,
+     * so scenarios never wait for each other.
+     *
+     * @param selection kind of selection
+     * @param count     number of needed users
+     * @return selected users
+     */
+    private List<UserData> acquireUsers(AccountLeasePool.Selection selection, int count) {
+        List<AccountLeasePool.Lease> leases = scenarioLeases.get();
+        if (leases == null) {
+            switch (selection) {
+                case SAME_NODE:
+                    return registry.selectFromSingleNode(count, user -> true);
+                case DISTINCT_NODES:
+                    return registry.selectFromDifferentNodes(count, user -> true);
+                case ANY:
+                default:
+                    return registry.select(count, user -> true);
+            }
+        }
+
+        // list of scenario leases identifies scenario as lease owner
+        long wait = Long.getLong(SYSTEM_PROP_LEASE_WAIT, DEFAULT_LEASE_WAIT);
+        AccountLeasePool.Lease lease = leases.isEmpty()
+                ? leasePool.acquire(leases, selection, count, wait)
+                : leasePool.tryAcquire(leases, selection, count);
+        if (lease == null) {
+            log.debug("Not enough free users, users are shared with other scenarios");
+            lease = leasePool.share(leases, selection, count);
+        }
+        leases.add(lease);
+        return new ArrayList<>(lease.getUsers());
+    }
+
+    /**
+     * @return users, which are free or held by current scenario, followed by users held by other scenarios;
+     * order of users is not changed, when scenarios are run sequentially
+     */
+    private List<UserData> getUsersInHoldOrder() {
+        List<AccountLeasePool.Lease> leases = scenarioLeases.get();
+        List<UserData> users = registry.getUsers();
+        if (leases == null) {
+            return new ArrayList<>(users);
+        }
+        List<UserData> available = new ArrayList<>(users.size());
+        List<UserData> heldByOthers = new ArrayList<>();
+        for (UserData user : users) {
+            if (leasePool.isHeldByOthers(user.getAddress(), leases)) {
+                heldByOthers.add(user);
+            } else {
+                available.add(user);
+            }
+        }
+        available.addAll(heldByOthers);
+        return available;
+    }
 }
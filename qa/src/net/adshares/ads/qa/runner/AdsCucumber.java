@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.runner;
+
+import cucumber.api.junit.Cucumber;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.Filterable;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.InitializationError;
+
+import java.io.IOException;
+
+/**
+ * Cucumber runner, which selects scenario scheduler. By default scenarios are run sequentially
+ * by {@link Cucumber} runner. Block-window scheduler ({@link BlockWindowRunner}) is selected
+ * with system property {@value #SYSTEM_PROP_SCHEDULER}={@value #SCHEDULER_BLOCK}.
+ */
+public class AdsCucumber extends Runner implements Filterable {
+
+    private static final String SYSTEM_PROP_SCHEDULER = "ads.scheduler";
+    private static final String SCHEDULER_SEQUENTIAL = "sequential";
+    private static final String SCHEDULER_BLOCK = "block";
+
+    private final ParentRunner<?> runner;
+
+    /**
+     * @param testClass class annotated with Cucumber options
+     * @throws InitializationError when test class is invalid
+     * @throws IOException         when features cannot be read
+     */
+    public AdsCucumber(Class<?> testClass) throws InitializationError, IOException {
+        String scheduler = System.getProperty(SYSTEM_PROP_SCHEDULER, SCHEDULER_SEQUENTIAL);
+        switch (scheduler) {
+            case SCHEDULER_SEQUENTIAL:
+                runner = new Cucumber(testClass);
+                break;
+            case SCHEDULER_BLOCK:
+                runner = new BlockWindowRunner(testClass);
+                break;
+            default:
+                throw new InitializationError("Unknown scheduler: " + scheduler);
+        }
+    }
+
+    @Override
+    public Description getDescription() {
+        return runner.getDescription();
+    }
+
+    @Override
+    public void run(RunNotifier notifier) {
+        runner.run(notifier);
+    }
+
+    @Override
+    public void filter(Filter filter) throws NoTestsRemainException {
+        runner.filter(filter);
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.runner;
+
+import cucumber.api.Result;
+import cucumber.api.event.TestCaseFinished;
+import cucumber.api.event.TestRunFinished;
+import cucumber.runtime.Runtime;
+import cucumber.runtime.RuntimeOptions;
+import cucumber.runtime.RuntimeOptionsFactory;
+import cucumber.runtime.io.MultiLoader;
+import cucumber.runtime.io.ResourceLoader;
+import cucumber.runtime.io.ResourceLoaderClassFinder;
+import cucumber.runtime.model.CucumberFeature;
+import gherkin.events.PickleEvent;
+import gherkin.pickles.PickleLocation;
+import gherkin.pickles.PickleTag;
+import net.adshares.ads.qa.data.UserDataProvider;
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Runs scenarios concurrently, so scenarios waiting for the same block share block boundary instead of waiting
+ * one after another. Suite time depends on number of distinct block phases rather than on sum of scenario waits.
+ * <p>
+ * Cucumber runtime is not thread-safe, therefore every worker thread has its own runtime. Scenarios are ordered:
+ * <ul>
+ * <li>scenarios tagged {@value #DIVIDEND_TAG} are started first and together, so they wait
+ * for the same dividend block,</li>
+ * <li>other scenarios are run concurrently,</li>
+ * <li>scenarios with exclusive tag (they check all accounts or change node state, which is observed
+ * by other scenarios) are run alone, after other scenarios.</li>
+ * </ul>
+ * Accounts used by scenario are held in {@link UserDataProvider}, so concurrent scenarios use disjoint accounts.
+ */
+public class BlockWindowRunner extends ParentRunner<PickleEvent> {
+
+    private static final String SYSTEM_PROP_THREADS = "ads.scheduler.threads";
+    private static final int DEFAULT_THREADS = 8;
+    private static final String SYSTEM_PROP_EXCLUSIVE_TAGS = "ads.scheduler.exclusive";
+    private static final String DEFAULT_EXCLUSIVE_TAGS = "@exclusive,@node,@status,@retrieve_funds,@fee_sharing";
+    /**
+     * Tag of scenarios, which wait for dividend block
+     */
+    private static final String DIVIDEND_TAG = "@dividend";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Class<?> testClass;
+    private final ClassLoader classLoader;
+    private final ResourceLoader resourceLoader;
+    private final boolean isStrict;
+    private final Set<String> exclusiveTags;
+    private final List<PickleEvent> pickles = new ArrayList<>();
+    private final Map<PickleEvent, Description> descriptions = new ConcurrentHashMap<>();
+    /**
+     * Concurrent scenarios hold read lock, exclusive scenarios hold write lock
+     */
+    private final ReadWriteLock exclusiveLock = new ReentrantReadWriteLock(true);
+    private final List<Worker> workers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Worker> worker = ThreadLocal.withInitial(this::createWorker);
+
+    /**
+     * @param testClass class annotated with Cucumber options
+     * @throws InitializationError when test class is invalid
+     */
+    public BlockWindowRunner(Class<?> testClass) throws InitializationError {
+        super(testClass);
+        this.testClass = testClass;
+        this.classLoader = testClass.getClassLoader();
+        this.resourceLoader = new MultiLoader(classLoader);
+
+        RuntimeOptions runtimeOptions = new RuntimeOptionsFactory(testClass).create();
+        this.isStrict = runtimeOptions.isStrict();
+        this.exclusiveTags = new HashSet<>(Arrays.asList(
+                System.getProperty(SYSTEM_PROP_EXCLUSIVE_TAGS, DEFAULT_EXCLUSIVE_TAGS).split(",")));
+
+        Runtime runtime = createRuntime(runtimeOptions);
+        List<PickleEvent> dividendPickles = new ArrayList<>();
+        List<PickleEvent> concurrentPickles = new ArrayList<>();
+        List<PickleEvent> exclusivePickles = new ArrayList<>();
+        for (CucumberFeature feature : runtimeOptions.cucumberFeatures(resourceLoader, runtime.getEventBus())) {
+            for (PickleEvent pickle : runtime.compileFeature(feature)) {
+                if (!runtime.matchesFilters(pickle)) {
+                    continue;
+                }
+                if (isExclusive(pickle)) {
+                    exclusivePickles.add(pickle);
+                } else if (hasTag(pickle, DIVIDEND_TAG)) {
+                    dividendPickles.add(pickle);
+                } else {
+                    concurrentPickles.add(pickle);
+                }
+            }
+        }
+        pickles.addAll(dividendPickles);
+        pickles.addAll(concurrentPickles);
+        pickles.addAll(exclusivePickles);
+
+        setScheduler(new PoolScheduler(Integer.getInteger(SYSTEM_PROP_THREADS, DEFAULT_THREADS)));
+    }
+
+    @Override
+    protected List<PickleEvent> getChildren() {
+        return pickles;
+    }
+
+    @Override
+    protected Description describeChild(PickleEvent pickle) {
+        return descriptions.computeIfAbsent(pickle, p -> {
+            List<PickleLocation> locations = p.pickle.getLocations();
+            String location = p.uri + ":" + locations.get(locations.size() - 1).getLine();
+            return Description.createTestDescription(p.uri, p.pickle.getName(), location);
+        });
+    }
+
+    @Override
+    protected void runChild(PickleEvent pickle, RunNotifier notifier) {
+        Description description = describeChild(pickle);
+        Lock lock = isExclusive(pickle) ? exclusiveLock.writeLock() : exclusiveLock.readLock();
+        lock.lock();
+        try {
+            notifier.fireTestStarted(description);
+            Result result = worker.get().run(pickle);
+            if (result == null) {
+                notifier.fireTestFailure(new Failure(description, new IllegalStateException("Scenario was not run")));
+            } else if (!result.isOk(isStrict)) {
+                Throwable error = result.getError() != null
+                        ? result.getError() : new AssertionError("Scenario status: " + result.getStatus());
+                notifier.fireTestFailure(new Failure(description, error));
+            }
+        } finally {
+            notifier.fireTestFinished(description);
+            lock.unlock();
+        }
+    }
+
+    private boolean isExclusive(PickleEvent pickle) {
+        for (PickleTag tag : pickle.pickle.getTags()) {
+            if (exclusiveTags.contains(tag.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasTag(PickleEvent pickle, String tagName) {
+        for (PickleTag tag : pickle.pickle.getTags()) {
+            if (tagName.equals(tag.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Runtime createRuntime(RuntimeOptions runtimeOptions) {
+        return new Runtime(resourceLoader, new ResourceLoaderClassFinder(resourceLoader, classLoader), classLoader,
+                runtimeOptions);
+    }
+
+    private Worker createWorker() {
+        Worker w = new Worker();
+        workers.add(w);
+        return w;
+    }
+
+    /**
+     * Cucumber runtime of single thread.
+     */
+    private class Worker {
+        private final Runtime runtime;
+        private Result lastResult;
+
+        private Worker() {
+            RuntimeOptions runtimeOptions = new RuntimeOptionsFactory(testClass).create();
+            runtime = createRuntime(runtimeOptions);
+            // plugins are attached to event bus of runtime
+            runtimeOptions.formatter(classLoader);
+            // feature sources are published to plugins
+            runtimeOptions.cucumberFeatures(resourceLoader, runtime.getEventBus());
+            runtime.getEventBus().registerHandlerFor(TestCaseFinished.class, event -> lastResult = event.result);
+        }
+
+        private Result run(PickleEvent pickle) {
+            lastResult = null;
+            UserDataProvider.getInstance().startScenario();
+            try {
+                runtime.getRunner().runPickle(pickle);
+            } finally {
+                UserDataProvider.getInstance().endScenario();
+            }
+            return lastResult;
+        }
+
+        private void finish() {
+            runtime.getEventBus().send(new TestRunFinished(runtime.getEventBus().getTime()));
+            runtime.printSummary();
+        }
+    }
+
+    /**
+     * Runs children on thread pool and waits for all of them.
+     */
+    private class PoolScheduler implements RunnerScheduler {
+        private final int threads;
+        private final List<Future<?>> futures = new ArrayList<>();
+        private ExecutorService executor;
+
+        private PoolScheduler(int threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public void schedule(Runnable childStatement) {
+            if (executor == null) {
+                AtomicInteger threadCount = new AtomicInteger();
+                executor = Executors.newFixedThreadPool(threads, runnable ->
+                        new Thread(runnable, "ads-scenario-" + threadCount.incrementAndGet()));
+            }
+            futures.add(executor.submit(childStatement));
+        }
+
+        @Override
+        public void finished() {
+            try {
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        log.error("Scenario thread failed", e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            } finally {
+                if (executor != null) {
+                    executor.shutdown();
+                }
+                for (Worker w : workers) {
+                    w.finish();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.sim;
+
+import net.adshares.ads.qa.caller.ClientExecutor;
+import net.adshares.ads.qa.data.UserData;
+
+import java.util.List;
+
+/**
+ * Backend, which sends requests to in-process simulated network instead of ADS client.
+ * It is selected with "ads.client=simulator" system property.
+ */
+public class SimulatedClientExecutor implements ClientExecutor {
+
+    private final SimulatedNetwork network;
+
+    public SimulatedClientExecutor() {
+        network = SimulatedNetwork.getInstance();
+    }
+
+    @Override
+    public String execute(UserData userData, List<String> requests, boolean isDryRun) {
+        return network.execute(userData, requests, isDryRun);
+    }
+}
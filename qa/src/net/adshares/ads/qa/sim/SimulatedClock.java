@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.sim;
+
+import net.adshares.ads.qa.util.EscConst;
+
+/**
+ * Clock of simulated network. Network time starts at real time, but it runs faster, so one block period
+ * ({@link EscConst#BLOCK_PERIOD_MS} of network time) passes in configured number of real milliseconds.
+ */
+public class SimulatedClock {
+
+    /**
+     * Real time of single block period in milliseconds
+     */
+    private final long blockPeriodMs;
+    private final long startRealTime;
+    private final long startNetworkTime;
+
+    /**
+     * @param blockPeriodMs real time of single block period in milliseconds
+     */
+    public SimulatedClock(long blockPeriodMs) {
+        if (blockPeriodMs <= 0) {
+            throw new IllegalArgumentException("Block period must be positive: " + blockPeriodMs);
+        }
+        this.blockPeriodMs = blockPeriodMs;
+        this.startRealTime = System.currentTimeMillis();
+        this.startNetworkTime = startRealTime;
+    }
+
+    /**
+     * @return network time in milliseconds
+     */
+    public long currentTimeMillis() {
+        return startNetworkTime + (System.currentTimeMillis() - startRealTime) * EscConst.BLOCK_PERIOD_MS / blockPeriodMs;
+    }
+
+    /**
+     * @return network time in seconds
+     */
+    public long currentTimeSeconds() {
+        return currentTimeMillis() / 1000L;
+    }
+
+    /**
+     * @return start time of current block in seconds
+     */
+    public long getCurrentBlockTime() {
+        return getBlockTime(currentTimeSeconds());
+    }
+
+    /**
+     * @param time time in seconds
+     * @return start time of block, which contains time
+     */
+    public long getBlockTime(long time) {
+        return time - time % EscConst.BLOCK_PERIOD;
+    }
+
+    /**
+     * Converts network time period to real time period.
+     *
+     * @param millis network time period in milliseconds
+     * @return real time period in milliseconds
+     */
+    public long toRealMillis(long millis) {
+        return millis * blockPeriodMs / EscConst.BLOCK_PERIOD_MS;
+    }
+}
@@ -0,0 +1,1083 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.sim;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.adshares.ads.qa.data.Genesis;
+import net.adshares.ads.qa.data.UserData;
+import net.adshares.ads.qa.util.AccountAddress;
+import net.adshares.ads.qa.util.AccountMap;
+import net.adshares.ads.qa.util.AdsAmount;
+import net.adshares.ads.qa.util.Ed25519;
+import net.adshares.ads.qa.util.EscConst;
+import net.adshares.ads.qa.util.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * In-process simulation of ADS network. Network state is loaded from genesis file and requests are processed
+ * in the same way as by client connected to node, but without network and block delays.
+ * <p>
+ * Supported functions: get_me, get_account, get_block, get_blocks, get_log, get_broadcast, get_message_list,
+ * get_message, get_transaction, decode_raw, send_one, send_many, broadcast and change_account_key.
+ * Fees are computed with {@link EscConst} values and amounts are {@link AdsAmount} values. Transfers to other node
+ * are delivered at the end of block.
+ * <p>
+ * Dividends, node profits, fee sharing, dormant fees and retrieve_funds are not simulated, therefore
+ * scenarios tagged @fee_sharing, @dividend and @retrieve_funds (FeeSharingStepDefs, RetrieveFundsStepDefs)
+ * need real network.
+ * <p>
+ * Length of block period is set with "ads.sim.block.period" property (real time in milliseconds).
+ */
+public class SimulatedNetwork {
+
+    private static final String SYSTEM_PROP_GENESIS_FILE = "genesis.file";
+    private static final String DEFAULT_GENESIS_FILE = "genesis.json";
+    private static final String SYSTEM_PROP_BLOCK_PERIOD = "ads.sim.block.period";
+
+    private static final int TYPE_BROADCAST = 3;
+    private static final int TYPE_SEND_ONE = 4;
+    private static final int TYPE_SEND_MANY = 5;
+    private static final int TYPE_CHANGE_ACCOUNT_KEY = 9;
+    private static final AdsAmount MIN_TX_FEE = AdsAmount.valueOf(EscConst.MIN_TX_FEE);
+    private static final AdsAmount MIN_MULTI_TX_PER_RECIPIENT = AdsAmount.valueOf(EscConst.MIN_MULTI_TX_PER_RECIPIENT);
+    private static final AdsAmount LOCAL_TX_FEE_COEFFICIENT = AdsAmount.valueOf(EscConst.LOCAL_TX_FEE_COEFFICIENT);
+    private static final AdsAmount MULTI_TX_FEE_COEFFICIENT = AdsAmount.valueOf(EscConst.MULTI_TX_FEE_COEFFICIENT);
+    private static final AdsAmount REMOTE_TX_FEE_COEFFICIENT = AdsAmount.valueOf(EscConst.REMOTE_TX_FEE_COEFFICIENT);
+    private static final AdsAmount BROADCAST_FEE_PER_BYTE = AdsAmount.valueOf(EscConst.BROADCAST_FEE_PER_BYTE);
+    private static final AdsAmount CHANGE_ACCOUNT_KEY_FEE = AdsAmount.valueOf(EscConst.CHANGE_ACCOUNT_KEY_FEE);
+    private static final AdsAmount USER_MIN_MASS = AdsAmount.valueOf(EscConst.USER_MIN_MASS);
+    private static final AdsAmount BANK_MIN_UMASS = AdsAmount.valueOf(EscConst.BANK_MIN_UMASS);
+    /**
+     * Length of send_one message (32 bytes as hexadecimal String)
+     */
+    private static final int SEND_ONE_MESSAGE_LENGTH = 64;
+    /**
+     * Broadcast message size, which is covered by minimal fee
+     */
+    private static final int BROADCAST_FREE_SIZE = 32;
+    /**
+     * Status bit of vip node
+     */
+    private static final int STATUS_VIP = 2;
+    private static final String ERROR_COMMAND_NOT_SUPPORTED = "Command not supported by simulator";
+    private static final String ERROR_NODE_NOT_FOUND = "Target node does not exist";
+    private static final String ERROR_USER_NOT_FOUND = "Target user does not exist";
+    private static final String ERROR_TRANSACTION_NOT_FOUND = "Transaction not found";
+    private static final String ERROR_MESSAGE_NOT_FOUND = "Message not found";
+    private static final String ERROR_WRONG_SIGNATURE = "Wrong signature";
+
+    private static volatile SimulatedNetwork instance;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final SimulatedClock clock;
+    /**
+     * True, if secret keys and signatures are checked. It requires JVM with Ed25519 support.
+     */
+    private final boolean isSignatureChecked;
+    /**
+     * Accounts by packed address, checksum is ignored
+     */
+    private final AccountMap<Account> accounts = new AccountMap<>();
+    private final Map<Integer, Node> nodes = new TreeMap<>();
+    /**
+     * Public keys derived from secret keys
+     */
+    private final Map<String, String> publicKeys = new HashMap<>();
+    private final Map<String, Transaction> transactions = new HashMap<>();
+    private final Map<String, Transaction> transactionsByData = new HashMap<>();
+    /**
+     * Transactions to other nodes, which were not delivered yet
+     */
+    private final List<Transaction> pendingTransactions = new ArrayList<>();
+    private final JsonParser parser = new JsonParser();
+
+    private SimulatedNetwork(Genesis genesis, SimulatedClock clock) {
+        this.clock = clock;
+        this.isSignatureChecked = Ed25519.isAvailable();
+        if (!isSignatureChecked) {
+            log.warn("Ed25519 is not available, secret keys and signatures are not checked");
+        }
+
+        long time = clock.currentTimeSeconds();
+        int nodeNum = 1;
+        for (Genesis.Node genesisNode : genesis.getNodes()) {
+            Node node = new Node(nodeNum, genesisNode.getPublicKey());
+            nodes.put(nodeNum, node);
+            for (Genesis.Node.Account genesisAccount : genesisNode.getAccounts()) {
+                Account account = new Account(genesisAccount.getAddress(), genesisAccount.getPublicKey(),
+                        AdsAmount.valueOf(new BigDecimal(genesisAccount.getBalance())
+                                .setScale(AdsAmount.SCALE, RoundingMode.FLOOR)), time);
+                accounts.put(AccountAddress.pack(account.node, account.user), account);
+                node.accounts.add(account);
+            }
+            nodeNum++;
+        }
+
+        // nodes with the highest balance are vip nodes
+        List<Node> nodeList = new ArrayList<>(nodes.values());
+        nodeList.sort(Comparator.comparing(Node::getBalance).reversed().thenComparing(n -> n.id));
+        for (int i = 0; i < Math.min(EscConst.VIP_MAX, nodeList.size()); i++) {
+            nodeList.get(i).status |= STATUS_VIP;
+        }
+    }
+
+    /**
+     * Returns simulated network. Network is created from genesis file at first call.
+     *
+     * @return simulated network
+     */
+    public static SimulatedNetwork getInstance() {
+        if (instance == null) {
+            synchronized (SimulatedNetwork.class) {
+                if (instance == null) {
+                    long blockPeriod = Long.getLong(SYSTEM_PROP_BLOCK_PERIOD, EscConst.BLOCK_PERIOD_MS);
+                    instance = new SimulatedNetwork(readGenesis(), new SimulatedClock(blockPeriod));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return simulated network or null, if network was not created
+     */
+    public static SimulatedNetwork getRunningInstance() {
+        return instance;
+    }
+
+    private static Genesis readGenesis() {
+        String genesisFile = System.getProperty(SYSTEM_PROP_GENESIS_FILE, DEFAULT_GENESIS_FILE);
+        try (Reader reader = new FileReader(genesisFile)) {
+            return new Gson().fromJson(reader, Genesis.class);
+        } catch (FileNotFoundException e) {
+            throw new IllegalStateException("Cannot open network definition file: " + genesisFile, e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read network definition file: " + genesisFile, e);
+        }
+    }
+
+    /**
+     * @return clock of network
+     */
+    public SimulatedClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Processes requests in the same way as client.
+     *
+     * @param userData user data
+     * @param requests list of json requests
+     * @param isDryRun true, if transactions should not be sent
+     * @return responses, one json document for each request
+     */
+    public synchronized String execute(UserData userData, List<String> requests, boolean isDryRun) {
+        deliverTransactions();
+
+        StringBuilder sb = new StringBuilder();
+        for (String request : requests) {
+            JsonObject response;
+            try {
+                response = call(userData, request, isDryRun);
+            } catch (RequestException e) {
+                response = createHeader();
+                response.addProperty("error", e.getMessage());
+            }
+            sb.append(response.toString()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private JsonObject parseRequest(String request) throws RequestException {
+        try {
+            JsonElement element = parser.parse(request);
+            if (element.isJsonObject() && element.getAsJsonObject().has("run")) {
+                return element.getAsJsonObject();
+            }
+        } catch (JsonParseException e) {
+            log.debug("Invalid request: {}", e.toString());
+        }
+        throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+    }
+
+    private JsonObject call(UserData userData, String rawRequest, boolean isDryRun) throws RequestException {
+        JsonObject request = parseRequest(rawRequest);
+        Account account = accounts.get(userData.getPackedAddress());
+        if (account == null) {
+            throw new RequestException(EscConst.Error.GET_GLOBAL_USER_FAILED);
+        }
+        checkSecret(account, userData.getSecret());
+
+        String run = getString(request, "run");
+        switch (run) {
+            case "get_me":
+                return getMe(account);
+            case "get_account":
+                return getAccount(request);
+            case "get_block":
+                return getBlock();
+            case "get_blocks":
+                return getBlocks();
+            case "get_log":
+                return getLog(account, request);
+            case "get_broadcast":
+                return getBroadcast(request);
+            case "get_message_list":
+                return getMessageList(request);
+            case "get_message":
+                return getMessage(request);
+            case "get_transaction":
+                return getTransaction(request);
+            case "decode_raw":
+                return decodeRaw(request);
+            case "send_one":
+                return sendOne(account, userData.getSecret(), request, isDryRun);
+            case "send_many":
+                return sendMany(account, userData.getSecret(), request, rawRequest, isDryRun);
+            case "broadcast":
+                return broadcast(account, userData.getSecret(), request, isDryRun);
+            case "change_account_key":
+                return changeAccountKey(account, userData.getSecret(), request, isDryRun);
+            default:
+                throw new RequestException(ERROR_COMMAND_NOT_SUPPORTED + ": " + run);
+        }
+    }
+
+    private JsonObject getMe(Account account) {
+        JsonObject response = createHeader();
+        response.add("account", toJson(account));
+        response.add("network_account", toJson(account));
+        return response;
+    }
+
+    private JsonObject getAccount(JsonObject request) throws RequestException {
+        Account account = findAccount(getString(request, "address"));
+        JsonObject response = createHeader();
+        response.add("account", toJson(account));
+        response.add("network_account", toJson(account));
+        return response;
+    }
+
+    private JsonObject getBlock() {
+        long blockTime = clock.getCurrentBlockTime();
+        JsonArray nodeArray = new JsonArray();
+        // special node 0
+        JsonObject nodeZero = new JsonObject();
+        nodeZero.addProperty("id", "0000");
+        nodeZero.addProperty("status", "0");
+        nodeArray.add(nodeZero);
+        for (Node node : nodes.values()) {
+            JsonObject o = new JsonObject();
+            o.addProperty("id", node.getId());
+            o.addProperty("public_key", node.publicKey);
+            o.addProperty("msid", Integer.toString(node.msid));
+            o.addProperty("balance", format(node.getBalance()));
+            o.addProperty("status", Integer.toString(node.status));
+            o.addProperty("account_count", Integer.toString(node.accounts.size()));
+            nodeArray.add(o);
+        }
+
+        JsonObject block = new JsonObject();
+        block.addProperty("id", toHex(blockTime));
+        block.addProperty("time", Long.toString(blockTime));
+        block.addProperty("node_count", Integer.toString(nodes.size()));
+        block.add("nodes", nodeArray);
+
+        JsonObject response = createHeader();
+        response.add("block", block);
+        return response;
+    }
+
+    private JsonObject getBlocks() {
+        JsonObject response = createHeader();
+        response.addProperty("updated_blocks", "0");
+        return response;
+    }
+
+    private JsonObject getLog(Account account, JsonObject request) throws RequestException {
+        long from = request.has("from") ? parseLong(getString(request, "from"), 10) : 0L;
+        JsonArray logArray = new JsonArray();
+        for (LogEvent event : account.events) {
+            if (event.time >= from) {
+                logArray.add(event.toJson(isConfirmed(event.blockTime)));
+            }
+        }
+
+        JsonObject response = createHeader();
+        response.add("account", toJson(account));
+        response.add("log", logArray);
+        return response;
+    }
+
+    private JsonObject getBroadcast(JsonObject request) throws RequestException {
+        long blockTime = request.has("from") ? parseLong(getString(request, "from"), 16)
+                : clock.getCurrentBlockTime() - EscConst.BLOCK_PERIOD;
+        if (!isConfirmed(blockTime)) {
+            throw new RequestException(EscConst.Error.BROADCAST_NOT_READY);
+        }
+
+        JsonArray broadcastArray = new JsonArray();
+        for (Transaction tx : transactions.values()) {
+            if (tx.typeNo == TYPE_BROADCAST && tx.blockTime == blockTime) {
+                JsonObject o = new JsonObject();
+                o.addProperty("block_time", Long.toString(blockTime));
+                o.addProperty("node", Integer.toString(tx.sender.node));
+                o.addProperty("address", tx.sender.address);
+                o.addProperty("id", tx.id);
+                o.addProperty("time", Long.toString(tx.time));
+                o.addProperty("message", tx.message);
+                o.addProperty("fee", format(tx.fee));
+                broadcastArray.add(o);
+            }
+        }
+
+        JsonObject response = createHeader();
+        response.addProperty("block_time_hex", toHex(blockTime));
+        response.addProperty("broadcast_count", Integer.toString(broadcastArray.size()));
+        if (broadcastArray.size() > 0) {
+            response.add("broadcast", broadcastArray);
+        }
+        return response;
+    }
+
+    private JsonObject getMessageList(JsonObject request) throws RequestException {
+        long blockTime = request.has("block") ? parseLong(getString(request, "block"), 16)
+                : clock.getCurrentBlockTime() - EscConst.BLOCK_PERIOD;
+        if (!isConfirmed(blockTime)) {
+            throw new RequestException(EscConst.Error.NO_MESSAGE_LIST_FILE);
+        }
+
+        Set<String> messageIds = new TreeSet<>();
+        for (Transaction tx : transactions.values()) {
+            if (tx.blockTime == blockTime) {
+                messageIds.add(tx.messageId);
+            }
+        }
+        JsonArray messageArray = new JsonArray();
+        for (String messageId : messageIds) {
+            messageArray.add(messageId);
+        }
+
+        JsonObject response = createHeader();
+        response.addProperty("block_time_hex", toHex(blockTime));
+        response.addProperty("message_count", Integer.toString(messageArray.size()));
+        if (messageArray.size() > 0) {
+            response.add("messages", messageArray);
+        }
+        return response;
+    }
+
+    private JsonObject getMessage(JsonObject request) throws RequestException {
+        String messageId = getString(request, "message_id");
+        JsonArray txArray = new JsonArray();
+        for (Transaction tx : transactions.values()) {
+            if (tx.messageId.equals(messageId)) {
+                JsonObject o = new JsonObject();
+                o.addProperty("id", tx.id);
+                o.addProperty("type", tx.type);
+                o.addProperty("sender_address", tx.sender.address);
+                txArray.add(o);
+            }
+        }
+        if (txArray.size() == 0) {
+            throw new RequestException(ERROR_MESSAGE_NOT_FOUND);
+        }
+
+        JsonObject response = createHeader();
+        response.addProperty("message_id", messageId);
+        response.add("transactions", txArray);
+        return response;
+    }
+
+    private JsonObject getTransaction(JsonObject request) throws RequestException {
+        Transaction tx = transactions.get(getString(request, "txid"));
+        if (tx == null) {
+            throw new RequestException(ERROR_TRANSACTION_NOT_FOUND);
+        }
+        if (!isConfirmed(tx.blockTime)) {
+            // transaction is available, when block is closed
+            throw new RequestException(EscConst.Error.FAILED_TO_PROVIDE_TX_INFO);
+        }
+
+        JsonObject networkTx = new JsonObject();
+        networkTx.addProperty("id", tx.id);
+        networkTx.addProperty("block_time", Long.toString(tx.blockTime));
+        networkTx.addProperty("block_id", toHex(tx.blockTime));
+        networkTx.addProperty("node", Integer.toString(tx.sender.node));
+        networkTx.addProperty("message_id", tx.messageId);
+
+        JsonObject response = createHeader();
+        response.add("network_tx", networkTx);
+        response.add("txn", tx.decoded);
+        return response;
+    }
+
+    private JsonObject decodeRaw(JsonObject request) throws RequestException {
+        Transaction tx = transactionsByData.get(getString(request, "data"));
+        if (tx == null) {
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+        return tx.decoded;
+    }
+
+    private JsonObject sendOne(Account sender, String secret, JsonObject request, boolean isDryRun)
+            throws RequestException {
+        Account receiver = findAccount(getString(request, "address"));
+        AdsAmount amount = parseAmount(getString(request, "amount"));
+        String message = request.has("message") ? getString(request, "message") : null;
+        if (message != null && (message.length() != SEND_ONE_MESSAGE_LENGTH || !isHex(message))) {
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+
+        Transaction tx = new Transaction("send_one", TYPE_SEND_ONE, sender);
+        tx.wires.put(receiver, amount);
+        tx.amount = amount;
+        tx.fee = getTransferFee(sender, tx.wires);
+        tx.message = message;
+        return commit(tx, secret, request, isDryRun);
+    }
+
+    private JsonObject sendMany(Account sender, String secret, JsonObject request, String rawRequest,
+                                boolean isDryRun) throws RequestException {
+        JsonElement wiresElement = request.get("wires");
+        if (wiresElement == null || !wiresElement.isJsonObject()) {
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+        // JsonObject keeps only last value of duplicated key, therefore targets are counted in raw request
+        if (countWires(rawRequest) != wiresElement.getAsJsonObject().size()) {
+            throw new RequestException(EscConst.Error.DUPLICATED_TARGET);
+        }
+
+        Transaction tx = new Transaction("send_many", TYPE_SEND_MANY, sender);
+        tx.amount = AdsAmount.ZERO;
+        for (Map.Entry<String, JsonElement> wire : wiresElement.getAsJsonObject().entrySet()) {
+            Account receiver = findAccount(wire.getKey());
+            AdsAmount amount = parseAmount(wire.getValue().getAsString());
+            if (tx.wires.containsKey(receiver)) {
+                // the same account with different checksum notation
+                throw new RequestException(EscConst.Error.DUPLICATED_TARGET);
+            }
+            tx.wires.put(receiver, amount);
+            tx.amount = tx.amount.add(amount);
+        }
+        if (tx.wires.isEmpty()) {
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+        tx.fee = getTransferFee(sender, tx.wires);
+        return commit(tx, secret, request, isDryRun);
+    }
+
+    private JsonObject broadcast(Account sender, String secret, JsonObject request, boolean isDryRun)
+            throws RequestException {
+        String message;
+        if (request.has("message")) {
+            message = getString(request, "message");
+            if (message.length() % 2 != 0 || !isHex(message)) {
+                throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+            }
+        } else if (request.has("message_ascii")) {
+            message = Utils.byteArrayToHexString(getString(request, "message_ascii").getBytes(StandardCharsets.US_ASCII));
+        } else {
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+        int size = message.length() / 2;
+        if (size > EscConst.BROADCAST_MESSAGE_MAX_SIZE) {
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+
+        Transaction tx = new Transaction("broadcast", TYPE_BROADCAST, sender);
+        tx.amount = AdsAmount.ZERO;
+        tx.fee = MIN_TX_FEE;
+        if (size > BROADCAST_FREE_SIZE) {
+            tx.fee = tx.fee.add(BROADCAST_FEE_PER_BYTE.multiply(size - BROADCAST_FREE_SIZE));
+        }
+        tx.message = message;
+        return commit(tx, secret, request, isDryRun);
+    }
+
+    private JsonObject changeAccountKey(Account sender, String secret, JsonObject request, boolean isDryRun)
+            throws RequestException {
+        String publicKey = getString(request, "public_key");
+        String confirm = getString(request, "confirm");
+        if (publicKey.length() != 64 || !isHex(publicKey) || confirm.length() != 128 || !isHex(confirm)) {
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+        if (isSignatureChecked) {
+            // confirmation is signature of empty String created with new key
+            try {
+                if (!Ed25519.verify(publicKey, new byte[0], confirm)) {
+                    throw new RequestException(ERROR_WRONG_SIGNATURE);
+                }
+            } catch (GeneralSecurityException e) {
+                throw new RequestException(ERROR_WRONG_SIGNATURE);
+            }
+        }
+
+        Transaction tx = new Transaction("change_account_key", TYPE_CHANGE_ACCOUNT_KEY, sender);
+        tx.amount = AdsAmount.ZERO;
+        tx.fee = CHANGE_ACCOUNT_KEY_FEE;
+        tx.publicKey = publicKey;
+        JsonObject response = commit(tx, secret, request, isDryRun);
+        if (!isDryRun) {
+            response.addProperty("result", "PKEY changed");
+        }
+        return response;
+    }
+
+    /**
+     * Signs transaction and, if it is not dry-run, applies it to network.
+     *
+     * @param tx       transaction
+     * @param secret   secret key of sender
+     * @param request  request, it can contain account msid and hash
+     * @param isDryRun true, if transaction should not be applied
+     * @return response
+     * @throws RequestException when transaction is invalid
+     */
+    private JsonObject commit(Transaction tx, String secret, JsonObject request, boolean isDryRun)
+            throws RequestException {
+        Account sender = tx.sender;
+        if (request.has("msid") && parseLong(getString(request, "msid"), 10) != sender.msid) {
+            throw new RequestException(EscConst.Error.BAD_MSID);
+        }
+        if (request.has("hash") && !getString(request, "hash").equalsIgnoreCase(sender.hash)) {
+            throw new RequestException(EscConst.Error.BAD_HASH);
+        }
+
+        AdsAmount deduct = tx.amount.add(tx.fee);
+        AdsAmount minBalance = UserData.isMainAccount(sender.address) ? BANK_MIN_UMASS : USER_MIN_MASS;
+        if (sender.balance.subtract(deduct).compareTo(minBalance) < 0) {
+            throw new RequestException(EscConst.Error.TOO_LOW_BALANCE);
+        }
+
+        tx.time = clock.currentTimeSeconds();
+        tx.msid = sender.msid;
+        String hashIn = sender.hash;
+        tx.data = encode(tx);
+        tx.signature = sign(secret, tx.data);
+        String hashOut = sha256(hashIn + tx.data);
+
+        JsonObject txJson = new JsonObject();
+        txJson.addProperty("data", tx.data);
+        txJson.addProperty("signature", tx.signature);
+        txJson.addProperty("time", Long.toString(tx.time));
+        txJson.addProperty("account_msid", Integer.toString(tx.msid));
+        txJson.addProperty("account_hashin", hashIn);
+        txJson.addProperty("account_hashout", hashOut);
+        txJson.addProperty("deduct", format(deduct));
+        txJson.addProperty("fee", format(tx.fee));
+
+        if (!isDryRun) {
+            Node node = nodes.get(sender.node);
+            node.msid++;
+            tx.blockTime = clock.getBlockTime(tx.time);
+            tx.messageId = String.format("%04X:%08X", node.id, node.msid);
+            tx.id = tx.messageId + ":0001";
+            tx.decoded = decode(tx);
+
+            sender.balance = sender.balance.subtract(deduct);
+            sender.msid++;
+            sender.hash = hashOut;
+            sender.time = tx.time;
+            if (tx.publicKey != null) {
+                sender.publicKey = tx.publicKey;
+            }
+            addSenderEvents(tx);
+
+            transactions.put(tx.id, tx);
+            transactionsByData.put(tx.data, tx);
+            if (!tx.wires.isEmpty()) {
+                pendingTransactions.add(tx);
+                deliverTransactions();
+            }
+            txJson.addProperty("id", tx.id);
+            log.debug("simulated {} {}", tx.type, tx.id);
+        }
+
+        JsonObject response = createHeader();
+        response.add("account", toJson(sender));
+        response.add("tx", txJson);
+        return response;
+    }
+
+    /**
+     * Credits receivers. Transfers in the same node are credited immediately, transfers to other nodes
+     * are credited at the end of block.
+     */
+    private void deliverTransactions() {
+        long now = clock.currentTimeSeconds();
+        Iterator<Transaction> it = pendingTransactions.iterator();
+        while (it.hasNext()) {
+            Transaction tx = it.next();
+            long blockEnd = tx.blockTime + EscConst.BLOCK_PERIOD;
+            boolean isDelivered = true;
+            for (Map.Entry<Account, AdsAmount> wire : tx.wires.entrySet()) {
+                Account receiver = wire.getKey();
+                if (tx.deliveredTo.contains(receiver)) {
+                    continue;
+                }
+                boolean isLocal = receiver.node == tx.sender.node;
+                if (isLocal || now >= blockEnd) {
+                    receiver.balance = receiver.balance.add(wire.getValue());
+                    tx.deliveredTo.add(receiver);
+                    LogEvent event = new LogEvent(isLocal ? tx.time : blockEnd, tx.blockTime);
+                    addTransferProperties(event, tx, tx.sender);
+                    event.entry.addProperty("inout", "in");
+                    event.entry.addProperty("amount", format(wire.getValue()));
+                    event.entry.addProperty("sender_fee", format(AdsAmount.ZERO));
+                    receiver.events.add(event);
+                } else {
+                    isDelivered = false;
+                }
+            }
+            if (isDelivered) {
+                it.remove();
+            }
+        }
+    }
+
+    private void addSenderEvents(Transaction tx) {
+        Account sender = tx.sender;
+        if (tx.wires.isEmpty()) {
+            LogEvent event = new LogEvent(tx.time, tx.blockTime);
+            addTransferProperties(event, tx, null);
+            event.entry.addProperty("inout", "out");
+            AdsAmount amount = (tx.typeNo == TYPE_CHANGE_ACCOUNT_KEY) ? tx.fee.negate() : tx.amount.negate();
+            event.entry.addProperty("amount", format(amount));
+            event.entry.addProperty("sender_fee", format(tx.fee));
+            event.entry.addProperty("sender_balance", format(sender.balance));
+            if (tx.publicKey != null) {
+                event.entry.addProperty("public_key", tx.publicKey);
+            }
+            sender.events.add(event);
+            return;
+        }
+
+        Map<Account, AdsAmount> singleWire = new HashMap<>(1);
+        for (Map.Entry<Account, AdsAmount> wire : tx.wires.entrySet()) {
+            singleWire.clear();
+            singleWire.put(wire.getKey(), wire.getValue());
+
+            LogEvent event = new LogEvent(tx.time, tx.blockTime);
+            addTransferProperties(event, tx, wire.getKey());
+            event.entry.addProperty("inout", "out");
+            event.entry.addProperty("amount", format(wire.getValue().negate()));
+            if (tx.typeNo == TYPE_SEND_MANY) {
+                event.entry.addProperty("sender_fee", format(getTransferFee(sender, singleWire)));
+                event.entry.addProperty("sender_fee_total", format(tx.fee));
+            } else {
+                event.entry.addProperty("sender_fee", format(tx.fee));
+            }
+            event.entry.addProperty("sender_balance", format(sender.balance));
+            sender.events.add(event);
+        }
+    }
+
+    private void addTransferProperties(LogEvent event, Transaction tx, Account other) {
+        JsonObject entry = event.entry;
+        entry.addProperty("type_no", Integer.toString(tx.typeNo));
+        entry.addProperty("type", tx.type);
+        entry.addProperty("id", tx.id);
+        entry.addProperty("block_id", toHex(tx.blockTime));
+        entry.addProperty("account_msid", Integer.toString(tx.msid));
+        if (other != null) {
+            entry.addProperty("node", Integer.toString(other.node));
+            entry.addProperty("user", Integer.toString(other.user));
+            entry.addProperty("address", other.address);
+        }
+        if (tx.message != null) {
+            entry.addProperty("message", tx.message);
+        }
+    }
+
+    /**
+     * Computes transfer fee in the same way as node.
+     *
+     * @param sender sender account
+     * @param wires  receivers and amounts
+     * @return fee
+     */
+    private AdsAmount getTransferFee(Account sender, Map<Account, AdsAmount> wires) {
+        AdsAmount fee = AdsAmount.ZERO;
+        int wireCount = wires.size();
+        AdsAmount coefficient = (wireCount == 1) ? LOCAL_TX_FEE_COEFFICIENT : MULTI_TX_FEE_COEFFICIENT;
+        for (Map.Entry<Account, AdsAmount> wire : wires.entrySet()) {
+            AdsAmount amount = wire.getValue();
+            fee = fee.add(amount.multiplyFloor(coefficient));
+            if (wire.getKey().node != sender.node) {
+                fee = fee.add(amount.multiplyFloor(REMOTE_TX_FEE_COEFFICIENT));
+            }
+        }
+        if (wireCount > 10) {
+            return MIN_MULTI_TX_PER_RECIPIENT.multiply(wireCount).max(fee);
+        }
+        return MIN_TX_FEE.max(fee);
+    }
+
+    /**
+     * Checks, if secret key belongs to account.
+     *
+     * @param account account
+     * @param secret  secret key
+     * @throws RequestException when secret key does not match account public key
+     */
+    private void checkSecret(Account account, String secret) throws RequestException {
+        if (!isSignatureChecked) {
+            return;
+        }
+        String publicKey = publicKeys.get(secret);
+        if (publicKey == null) {
+            try {
+                publicKey = Ed25519.getPublicKey(secret);
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                throw new RequestException(ERROR_WRONG_SIGNATURE);
+            }
+            publicKeys.put(secret, publicKey);
+        }
+        if (!publicKey.equalsIgnoreCase(account.publicKey)) {
+            throw new RequestException(ERROR_WRONG_SIGNATURE);
+        }
+    }
+
+    private String sign(String secret, String data) {
+        if (isSignatureChecked) {
+            try {
+                return Ed25519.sign(secret, Utils.hexStringToByteArray(data));
+            } catch (GeneralSecurityException e) {
+                log.warn("Cannot sign transaction: {}", e.toString());
+            }
+        }
+        return String.join("", Collections.nCopies(128, "0"));
+    }
+
+    /**
+     * Encodes transaction. Encoding is unique for transaction, but it is not binary format of node.
+     *
+     * @param tx transaction
+     * @return encoded transaction as hexadecimal String
+     */
+    private String encode(Transaction tx) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(tx.typeNo).append('|').append(tx.sender.address).append('|').append(tx.msid).append('|')
+                .append(tx.time).append('|').append(format(tx.fee));
+        for (Map.Entry<Account, AdsAmount> wire : tx.wires.entrySet()) {
+            sb.append('|').append(wire.getKey().address).append('=').append(format(wire.getValue()));
+        }
+        if (tx.message != null) {
+            sb.append('|').append(tx.message);
+        }
+        if (tx.publicKey != null) {
+            sb.append('|').append(tx.publicKey);
+        }
+        return Utils.byteArrayToHexString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param tx transaction
+     * @return transaction fields as returned by get_transaction and decode_raw
+     */
+    private JsonObject decode(Transaction tx) {
+        JsonObject o = new JsonObject();
+        o.addProperty("type", tx.type);
+        o.addProperty("node", Integer.toString(tx.sender.node));
+        o.addProperty("user", Integer.toString(tx.sender.user));
+        o.addProperty("msg_id", Integer.toString(tx.msid));
+        o.addProperty("time", Long.toString(tx.time));
+        if (tx.typeNo == TYPE_SEND_ONE) {
+            Map.Entry<Account, AdsAmount> wire = tx.wires.entrySet().iterator().next();
+            o.addProperty("target_node", Integer.toString(wire.getKey().node));
+            o.addProperty("target_user", Integer.toString(wire.getKey().user));
+            o.addProperty("target_address", wire.getKey().address);
+            o.addProperty("amount", format(wire.getValue()));
+        } else if (tx.typeNo == TYPE_SEND_MANY) {
+            JsonArray wireArray = new JsonArray();
+            for (Map.Entry<Account, AdsAmount> wire : tx.wires.entrySet()) {
+                JsonObject w = new JsonObject();
+                w.addProperty("target_node", Integer.toString(wire.getKey().node));
+                w.addProperty("target_user", Integer.toString(wire.getKey().user));
+                w.addProperty("target_address", wire.getKey().address);
+                w.addProperty("amount", format(wire.getValue()));
+                wireArray.add(w);
+            }
+            o.addProperty("wire_count", Integer.toString(tx.wires.size()));
+            o.add("wires", wireArray);
+        } else if (tx.typeNo == TYPE_CHANGE_ACCOUNT_KEY) {
+            o.addProperty("public_key", tx.publicKey);
+        }
+        if (tx.message != null) {
+            o.addProperty("message", tx.message);
+        }
+        o.addProperty("signature", tx.signature);
+        return o;
+    }
+
+    private JsonObject createHeader() {
+        long blockTime = clock.getCurrentBlockTime();
+        JsonObject o = new JsonObject();
+        o.addProperty("current_block_time", Long.toString(blockTime));
+        o.addProperty("previous_block_time", Long.toString(blockTime - EscConst.BLOCK_PERIOD));
+        return o;
+    }
+
+    private JsonObject toJson(Account account) {
+        JsonObject o = new JsonObject();
+        o.addProperty("address", account.address);
+        o.addProperty("node", Integer.toString(account.node));
+        o.addProperty("id", Integer.toString(account.user));
+        o.addProperty("msid", Integer.toString(account.msid));
+        o.addProperty("time", Long.toString(account.time));
+        o.addProperty("date", Utils.formatSecondsAsDate(account.time));
+        o.addProperty("status", "0");
+        o.addProperty("balance", format(account.balance));
+        o.addProperty("public_key", account.publicKey);
+        o.addProperty("hash", account.hash);
+        return o;
+    }
+
+    /**
+     * @param blockTime block start time in seconds
+     * @return true, if block is closed
+     */
+    private boolean isConfirmed(long blockTime) {
+        return blockTime + EscConst.BLOCK_PERIOD <= clock.currentTimeSeconds();
+    }
+
+    private Account findAccount(String address) throws RequestException {
+        long packed = AccountAddress.parse(address);
+        if (packed == AccountAddress.INVALID) {
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+        Account account = accounts.get(packed);
+        if (account == null) {
+            int node = AccountAddress.getNode(packed);
+            throw new RequestException(nodes.containsKey(node) ? ERROR_USER_NOT_FOUND : ERROR_NODE_NOT_FOUND);
+        }
+        return account;
+    }
+
+    private static String getString(JsonObject request, String name) throws RequestException {
+        JsonElement element = request.get(name);
+        if (element == null || !element.isJsonPrimitive()) {
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+        return element.getAsString();
+    }
+
+    private static long parseLong(String value, int radix) throws RequestException {
+        try {
+            return Long.parseLong(value, radix);
+        } catch (NumberFormatException e) {
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+    }
+
+    private static AdsAmount parseAmount(String value) throws RequestException {
+        AdsAmount amount;
+        try {
+            amount = AdsAmount.parse(value);
+        } catch (NumberFormatException | ArithmeticException e) {
+            // not a number, more than 11 decimal places or overflow
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+        if (amount.signum() <= 0) {
+            throw new RequestException(EscConst.Error.AMOUNT_MUST_BE_POSITIVE);
+        }
+        return amount;
+    }
+
+    /**
+     * @param request send_many request
+     * @return number of entries in wires object
+     * @throws RequestException when request is malformed
+     */
+    private static int countWires(String request) throws RequestException {
+        int count = 0;
+        try (JsonReader reader = new JsonReader(new StringReader(request))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("wires".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        reader.nextName();
+                        reader.skipValue();
+                        count++;
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new RequestException(EscConst.Error.COMMAND_PARSE_ERROR);
+        }
+        return count;
+    }
+
+    private static boolean isHex(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String format(AdsAmount amount) {
+        return amount.toString();
+    }
+
+    private static String toHex(long blockTime) {
+        return Long.toHexString(blockTime).toUpperCase();
+    }
+
+    private static String sha256(String data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Utils.byteArrayToHexString(digest.digest(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Error, which is returned in response.
+     */
+    private static class RequestException extends Exception {
+        RequestException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Node {
+        private final int id;
+        private final String publicKey;
+        private final List<Account> accounts = new ArrayList<>();
+        private int msid;
+        private int status;
+
+        Node(int id, String publicKey) {
+            this.id = id;
+            this.publicKey = publicKey;
+        }
+
+        String getId() {
+            return String.format("%04X", id);
+        }
+
+        AdsAmount getBalance() {
+            AdsAmount balance = AdsAmount.ZERO;
+            for (Account account : accounts) {
+                balance = balance.add(account.balance);
+            }
+            return balance;
+        }
+    }
+
+    private static class Account {
+        private final String address;
+        private final int node;
+        private final int user;
+        private final List<LogEvent> events = new ArrayList<>();
+        private String publicKey;
+        private AdsAmount balance;
+        private int msid = 1;
+        private String hash;
+        private long time;
+
+        Account(String address, String publicKey, AdsAmount balance, long time) {
+            this.address = address;
+            long packed = AccountAddress.valueOf(address).getPacked();
+            this.node = AccountAddress.getNode(packed);
+            this.user = (int) AccountAddress.getUser(packed);
+            this.publicKey = publicKey;
+            this.balance = balance;
+            this.hash = sha256(address + publicKey);
+            this.time = time;
+        }
+    }
+
+    private static class Transaction {
+        private final String type;
+        private final int typeNo;
+        private final Account sender;
+        private final Map<Account, AdsAmount> wires = new LinkedHashMap<>();
+        private final Set<Account> deliveredTo = new HashSet<>();
+        private AdsAmount amount;
+        private AdsAmount fee;
+        private String message;
+        private String publicKey;
+        private long time;
+        private long blockTime;
+        private int msid;
+        private String id;
+        private String messageId;
+        private String data;
+        private String signature;
+        private JsonObject decoded;
+
+        Transaction(String type, int typeNo, Account sender) {
+            this.type = type;
+            this.typeNo = typeNo;
+            this.sender = sender;
+        }
+    }
+
+    /**
+     * Account log entry. Confirmation depends on time of request, so it is added, when log is read.
+     */
+    private static class LogEvent {
+        private final long time;
+        private final long blockTime;
+        private final JsonObject entry = new JsonObject();
+
+        LogEvent(long time, long blockTime) {
+            this.time = time;
+            this.blockTime = blockTime;
+            entry.addProperty("time", Long.toString(time));
+            entry.addProperty("date", Utils.formatSecondsAsDate(time));
+        }
+
+        JsonObject toJson(boolean isConfirmed) {
+            JsonObject o = new JsonObject();
+            for (Map.Entry<String, JsonElement> e : entry.entrySet()) {
+                o.add(e.getKey(), e.getValue());
+            }
+            o.addProperty("confirmed", isConfirmed ? "yes" : "no");
+            return o;
+        }
+    }
+}
@@ -37,8 +37,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -69,7 +69,7 @@ public class AccountStepDefs {
      * If the account's key will not be changed, the next account should be created in another node.
      * This set store all nodes that were used for remote account creation.
      */
-    private static Set<String> nodeIdsUsedForCreateRemoteAccount = new HashSet<>();
+    private static final Set<String> nodeIdsUsedForCreateRemoteAccount = ConcurrentHashMap.newKeySet();
 
     @Given("^user, who wants to change key$")
     public void user_who_wants_to_change_key() {
@@ -229,9 +229,7 @@ public class AccountStepDefs {
     }
 
     private void waitForDividendBlock() {
-        while (!EscUtils.isDividendBlock()) {
-            EscUtils.waitForNextBlock();
-        }
+        BlockWatcher.getInstance().awaitDividendBlock();
     }
 
     @Then("^account is created$")
@@ -291,11 +289,7 @@ public class AccountStepDefs {
             assertThat("Cannot create remote account.", attempt < attemptMax);
             // remote account creation cannot be requested in first 8 seconds of block,
             // therefore there is delay
-            try {
-                Thread.sleep(4000L);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            EscUtils.sleep(4000L);
         }
 
         return resp;
@@ -342,9 +336,7 @@ public class AccountStepDefs {
         for (JsonElement je : arr) {
             String tmpNodeId = je.getAsJsonObject().get("id").getAsString();
             if (!"0000".equals(tmpNodeId) && !nodeId.equals(tmpNodeId)
-                    && !nodeIdsUsedForCreateRemoteAccount.contains(tmpNodeId)) {
-                nodeIdsUsedForCreateRemoteAccount.add(tmpNodeId);
-
+                    && nodeIdsUsedForCreateRemoteAccount.add(tmpNodeId)) {
                 return tmpNodeId;
             }
         }
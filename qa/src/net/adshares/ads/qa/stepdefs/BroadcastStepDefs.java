@@ -42,6 +42,11 @@ import static org.hamcrest.Matchers.comparesEqualTo;
 
 public class BroadcastStepDefs {
 
+    /**
+     * Time after block start, which is given to node for preparing broadcast, in milliseconds
+     */
+    private static final long BROADCAST_MARGIN_MS = EscConst.BLOCK_PERIOD_MS / 4;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private List<UserData> userDataList;
@@ -282,12 +287,9 @@ public class BroadcastStepDefs {
     }
 
     private void waitForBlock() {
-        try {
-            Thread.sleep(EscConst.BLOCK_PERIOD_MS);
-        } catch (InterruptedException e) {
-            log.error("Sleep interrupted");
-            log.error(e.toString());
-        }
+        BlockWatcher.getInstance().awaitNextBlock();
+        // broadcast is not available right at block start
+        EscUtils.sleep(BROADCAST_MARGIN_MS);
     }
 
     @Then("^message is rejected$")
@@ -19,8 +19,6 @@
 
 package net.adshares.ads.qa.stepdefs;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import cucumber.api.java.en.Given;
 import cucumber.api.java.en.Then;
@@ -34,8 +32,6 @@ import org.junit.Assert;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.*;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -81,12 +77,12 @@ public class FeeSharingStepDefs {
 
         FunctionCaller fc = FunctionCaller.getInstance();
 
-        BigDecimal amount = new BigDecimal("10");
+        AdsAmount amount = AdsAmount.parse("10");
         Map<String, String> wires = new HashMap<>();
         for (int i = topList.size() - 1; i >= 0; i--) {
             String address = topList.get(i).concat("-00000000-XXXX");
-            wires.put(address, amount.toPlainString());
-            amount = amount.multiply(new BigDecimal("2"));
+            wires.put(address, amount.toString());
+            amount = amount.multiply(2);
         }
         SendManyTransaction command = new SendManyTransaction(userData, wires);
         String resp = fc.sendMany(command);
@@ -121,67 +117,55 @@ public class FeeSharingStepDefs {
         String blockId = getBlockId(u);
         assertThat("BlockId is null", blockId, notNullValue());
 
-
-        LogChecker lc = new LogChecker();
-        LogFilter lf = new LogFilter(true);
-        lf.addFilter("type", "bank_profit");
-        lf.addFilter("block_id", blockId);
-
+        // logs of all accounts are collected in one store and queried by block
+        EventStore store = new EventStore();
+        for (UserData user : userList) {
+            LogTail logTail = new LogTail(user, new LogEventTimestamp(blockTime, 0));
+            logTail.update();
+            store.add(user.getAddress(), logTail.getLogChecker().getEventLog().getEvents());
+        }
+        Map<String, Long> profitTimes = store.query().type(LogEventType.BANK_PROFIT).blockId(blockId)
+                .firstTimeByAccount();
 
         userProfitMap = new HashMap<>();
         for (UserData user : userList) {
-            lc.setResp(fc.getLog(user, blockTime));
-
-            JsonArray arr = lc.getFilteredLogArray(lf);
-            if (arr.size() > 0) {
-                long time = arr.get(0).getAsJsonObject().get("time").getAsLong();
-                lc.setResp(fc.getLog(user, time));
-
-                LogFilter bpLf = new LogFilter(true);
-                bpLf.addFilter("time", Long.toString(time));
-                bpLf.addFilter("type", "bank_profit");
-
-                JsonArray bpArr = lc.getFilteredLogArray(bpLf);
-                String nodeId = user.getNodeId();
-                log.debug("{}:", nodeId);
-                ProfitData profitData = new ProfitData();
-                BigDecimal userProfit = BigDecimal.ZERO;
-                for (JsonElement el : bpArr) {
-                    JsonObject o = el.getAsJsonObject();
-
-                    BigDecimal profit = o.get("profit").getAsBigDecimal();
-                    if (o.has("profit_shared")) {
-                        log.debug("\tprofit: {}", profit.toPlainString());
-                        // if profit_shared is present, it must be subtracted from profitToShare
-                        BigDecimal profitShared = o.get("profit_shared").getAsBigDecimal();
-                        profitData.profitSharedLog = profitShared;
-                        BigDecimal profitDiff = profit.subtract(profitShared);
-                        userProfit = userProfit.add(profitDiff);
-                        log.debug("\tshared: {}", profitShared.toPlainString());
-                        log.debug("\tpro-sh: {}", profitDiff.toPlainString());
-                    } else {
-                        BigDecimal fee = o.get("fee").getAsBigDecimal();
-                        log.debug("\tprofit: {}", profit.subtract(fee).toPlainString());
-                        userProfit = userProfit.add(profit).subtract(fee);
-                    }
-                }
-                String reason = new AssertReason.Builder()
-                        .msg("Field 'profit_shared' is equal 0.")
-                        .req(fc.getLastRequest())
-                        .res(fc.getLastResponse())
-                        .build();
-                assertThat(reason, profitData.profitSharedLog, not(comparesEqualTo(BigDecimal.ZERO)));
-
-                if (!topList.contains(nodeId)) {
-                    // vip node, which doesn't belong to top, doesn't share profitToShare
-                    profitData.profitToShare = BigDecimal.ZERO;
-                } else {
-                    profitData.profitToShare = userProfit;
-                }
-                userProfitMap.put(nodeId, profitData);
-            } else {
+            Long time = profitTimes.get(user.getAddress());
+            if (time == null) {
                 Assert.fail("Cannot find event with block id.");
             }
+
+            String nodeId = user.getNodeId();
+            ProfitData profitData = new ProfitData();
+            // if profit_shared is present, it must be subtracted from profitToShare
+            EventStore.Query sharedQuery = store.query().type(LogEventType.BANK_PROFIT).account(user.getAddress())
+                    .time(time).has(EventStore.Value.PROFIT_SHARED);
+            EventStore.Query notSharedQuery = store.query().type(LogEventType.BANK_PROFIT).account(user.getAddress())
+                    .time(time).hasNot(EventStore.Value.PROFIT_SHARED);
+            AdsAmount profitShared = sharedQuery.last(EventStore.Value.PROFIT_SHARED);
+            if (profitShared != null) {
+                profitData.profitSharedLog = profitShared;
+            }
+            AdsAmount userProfit = sharedQuery.sum(EventStore.Value.PROFIT)
+                    .subtract(sharedQuery.sum(EventStore.Value.PROFIT_SHARED))
+                    .add(notSharedQuery.sum(EventStore.Value.PROFIT))
+                    .subtract(notSharedQuery.sum(EventStore.Value.FEE));
+            log.debug("{}: profit {}, shared {}", nodeId, userProfit,
+                    profitData.profitSharedLog);
+
+            String reason = new AssertReason.Builder()
+                    .msg("Field 'profit_shared' is equal 0.")
+                    .req(fc.getLastRequest())
+                    .res(fc.getLastResponse())
+                    .build();
+            assertThat(reason, profitData.profitSharedLog, not(comparesEqualTo(AdsAmount.ZERO)));
+
+            if (!topList.contains(nodeId)) {
+                // vip node, which doesn't belong to top, doesn't share profitToShare
+                profitData.profitToShare = AdsAmount.ZERO;
+            } else {
+                profitData.profitToShare = userProfit;
+            }
+            userProfitMap.put(nodeId, profitData);
         }
 
         computeShare(userProfitMap);
@@ -199,12 +183,12 @@ public class FeeSharingStepDefs {
             sb.append(":\n");
 
             ProfitData profitData = userProfitMap.get(nodeId);
-            BigDecimal expectedProfitShared = profitData.share.subtract(EscConst.getSharedProfitForTopVip(profitData.profitToShare));
-            sb.append(String.format("\texp : %s-%s=%s\n", profitData.share.toPlainString(), profitData.profitToShare.toPlainString(), expectedProfitShared.toPlainString()));
+            AdsAmount expectedProfitShared = profitData.share.subtract(EscConst.getSharedProfitForTopVip(profitData.profitToShare));
+            sb.append(String.format("\texp : %s-%s=%s\n", profitData.share, profitData.profitToShare, expectedProfitShared));
             sb.append(String.format("\tact : %s\n", profitData.profitSharedLog));
 
-            BigDecimal diff = expectedProfitShared.subtract(profitData.profitSharedLog);
-            sb.append(String.format("\tdiff: %s\n", diff.toPlainString()));
+            AdsAmount diff = expectedProfitShared.subtract(profitData.profitSharedLog);
+            sb.append(String.format("\tdiff: %s\n", diff));
 
             log.debug(sb.toString());
             assertThat(sb.toString(), profitData.profitSharedLog, comparesEqualTo(expectedProfitShared));
@@ -216,29 +200,29 @@ public class FeeSharingStepDefs {
         /**
          * Amount which will be added to pool
          */
-        BigDecimal profitToShare = BigDecimal.ZERO;
+        AdsAmount profitToShare = AdsAmount.ZERO;
         /**
          * Value of profit_shared in get_log response
          */
-        BigDecimal profitSharedLog = BigDecimal.ZERO;
+        AdsAmount profitSharedLog = AdsAmount.ZERO;
         /**
          * Amount which will be taken from pool
          */
-        BigDecimal share = BigDecimal.ZERO;
+        AdsAmount share = AdsAmount.ZERO;
     }
 
     private void computeShare(Map<String, ProfitData> userProfitMap) {
-        BigDecimal totalProfitToShare = BigDecimal.ZERO;
+        AdsAmount totalProfitToShare = AdsAmount.ZERO;
         List<ProfitData> profits = new ArrayList<>(userProfitMap.values());
         for (ProfitData profitData : profits) {
             totalProfitToShare = totalProfitToShare.add(profitData.profitToShare);
         }
         int shareCount = topList.size() + vipList.size();
-        log.debug("totalProfitToShare: {}", totalProfitToShare.toPlainString());
-        BigDecimal sharePerUser = totalProfitToShare.divide(new BigDecimal(shareCount), 11, RoundingMode.FLOOR);
-        log.debug("sharePerUser1     : {}", sharePerUser.toPlainString());
+        log.debug("totalProfitToShare: {}", totalProfitToShare);
+        AdsAmount sharePerUser = totalProfitToShare.divideFloor(shareCount);
+        log.debug("sharePerUser1     : {}", sharePerUser);
         sharePerUser = EscConst.getSharedProfitForTopVip(sharePerUser);
-        log.debug("sharePerUser2     : {}", sharePerUser.toPlainString());
+        log.debug("sharePerUser2     : {}", sharePerUser);
 
         for (String user : topList) {
             ProfitData profitData = userProfitMap.get(user);
@@ -255,44 +239,40 @@ public class FeeSharingStepDefs {
      * @return block id in which transfer was accepted
      */
     private String getBlockId(UserData u) {
-        FunctionCaller fc = FunctionCaller.getInstance();
-        LogChecker lc = new LogChecker();
-
-        LogFilter smLf = new LogFilter(true);
-        smLf.addFilter("type", "send_many");
-        smLf.addFilter("confirmed", "yes");
-
-        String blockId = null;
-        int attempt = 0;
-        final long delay = 3000L;
-        final int attemptMax = 1 + (int) (4 * EscConst.BLOCK_PERIOD_MS / delay);
-        while (attempt++ < attemptMax) {
-            lc.setResp(fc.getLog(u, blockTime));
-
-            JsonArray arr = lc.getFilteredLogArray(smLf);
-            if (arr.size() > 0) {
-                String time = arr.get(0).getAsJsonObject().get("time").getAsString();
-
-                LogFilter biLf = new LogFilter(true);
-                biLf.addFilter("time", time);
-                biLf.addFilter("type", "bank_profit");
-                JsonArray arrBi = lc.getFilteredLogArray(biLf);
-                for (JsonElement el : arrBi) {
-                    if (el.getAsJsonObject().has("block_id")) {
-                        blockId = el.getAsJsonObject().get("block_id").getAsString();
-                        break;
-                    }
-                }
-                break;
+        // transfer is confirmed after block end, dividend block can be in the middle
+        LogTail logTail = new LogTail(u, new LogEventTimestamp(blockTime, 0));
+        EventLog eventLog = new Poller.Builder<EventLog>("fee_sharing_confirmation")
+                .until(tailLog -> getConfirmedSendMany(tailLog) != null)
+                .backoff(Poller.Backoff.exponential(1000L, 8000L))
+                .jitter(0.1)
+                .timeout(4 * EscConst.BLOCK_PERIOD_MS)
+                .failReason("Cannot get confirmation in expected time.")
+                .build()
+                .poll(() -> {
+                    logTail.update();
+                    return logTail.getLogChecker().getEventLog();
+                });
+
+        long time = getConfirmedSendMany(eventLog).getTime();
+        for (LogEvent event : eventLog.getEvents(LogEventType.BANK_PROFIT, time)) {
+            if (event.getBlockId() != null) {
+                return event.getBlockId();
             }
-            assertThat("Cannot get confirmation in expected time.", attempt < attemptMax);
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * @param eventLog log
+     * @return first confirmed send_many event or null, if there is no such event
+     */
+    private LogEvent getConfirmedSendMany(EventLog eventLog) {
+        for (LogEvent event : eventLog.getEvents(LogEventType.SEND_MANY)) {
+            if (event.isConfirmed()) {
+                return event;
             }
         }
-        return blockId;
+        return null;
     }
 
     /**
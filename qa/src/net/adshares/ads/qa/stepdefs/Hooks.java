@@ -19,6 +19,8 @@
 
 package net.adshares.ads.qa.stepdefs;
 
+import cucumber.api.Scenario;
+import cucumber.api.java.After;
 import cucumber.api.java.Before;
 import net.adshares.ads.qa.caller.FunctionCaller;
 
@@ -31,17 +33,31 @@ public class Hooks {
      * Number of started tests
      */
     private static int testCount = 0;
+    /**
+     * Scenario id used by calls, which are done once before all tests
+     */
+    private static final String INIT_SCENARIO_ID = "init";
 
     @Before
-    public void beforeTest() {
-        if (testCount == 0) {
-            // this code will run only once before all tests
+    public void beforeTest(Scenario scenario) {
+        synchronized (Hooks.class) {
+            if (testCount == 0) {
+                // this code will run only once before all tests
+                FunctionCaller.startScenario(INIT_SCENARIO_ID);
 
-            FunctionCaller fc = FunctionCaller.getInstance();
-            fc.deleteCache();
-            fc.waitForCompilation();
+                FunctionCaller fc = FunctionCaller.getInstance();
+                fc.deleteCache();
+                fc.waitForCompilation();
 
+            }
+            testCount++;
         }
-        testCount++;
+
+        FunctionCaller.startScenario(scenario.getId());
+    }
+
+    @After
+    public void afterTest() {
+        FunctionCaller.endScenario();
     }
 }
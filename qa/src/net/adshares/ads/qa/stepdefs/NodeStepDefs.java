@@ -230,8 +230,7 @@ public class NodeStepDefs {
 
     @Then("^node key is changed$")
     public void node_key_is_changed() {
-        EscUtils.waitForNextBlock();
-        EscUtils.waitForNextBlock();
+        BlockWatcher.getInstance().awaitBlocks(2);
         BigDecimal balance = FunctionCaller.getInstance().getUserAccountBalance(userData);
         log.debug("Balance {}", balance.toPlainString());
     }
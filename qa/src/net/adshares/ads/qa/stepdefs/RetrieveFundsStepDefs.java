@@ -137,13 +137,11 @@ public class RetrieveFundsStepDefs {
     public void delay_before_retrieve() {
         // before retrieval account must be inactive for time of:
         // EscConst.BLOCK_DIVIDEND * EscConst.BLOCK_PERIOD (in seconds)
-        try {
-            Thread.sleep(EscConst.BLOCK_PERIOD_MS * EscConst.BLOCK_DIVIDEND);
-        } catch (InterruptedException e) {
-            log.error("Sleep interrupted");
-            log.error(e.toString());
-        }
-        log.info("Account was not active for {} s.", EscConst.BLOCK_PERIOD * EscConst.BLOCK_DIVIDEND);
+        BlockWatcher blockWatcher = BlockWatcher.getInstance();
+        long startBlockTime = blockWatcher.getCurrentBlockTime();
+        long endBlockTime = blockWatcher.awaitBlocks(EscConst.BLOCK_DIVIDEND);
+        log.info("Account was not active for {} blocks.",
+                (endBlockTime - startBlockTime) / EscConst.BLOCK_PERIOD);
     }
 
     @Then("^after processing time inactive account is empty$")
@@ -154,31 +152,23 @@ public class RetrieveFundsStepDefs {
         UserData u = inactiveUser.getUserData();
         LogEventTimestamp timestamp = inactiveUser.getLastEventTimestamp();
         LogChecker lc = new LogChecker();
-        int loopCnt = 0;
-        int loopCntMax = 5;
-        do {
-            assertThat(String.format("Account was not empty in time of %d blocks", loopCntMax), loopCnt < loopCntMax);
-            try {
-                Thread.sleep(EscConst.BLOCK_PERIOD_MS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-            loopCnt++;
-
-            lc.setResp(fc.getLog(u, timestamp));
-            LogFilter lf = new LogFilter(true);
-            lf.addFilter("type", "retrieve_funds");
-            lf.addFilter("inout", "out");
-            retrievedAmount = lc.getBalanceFromLogArray(lf);
-            if (retrievedAmount.compareTo(BigDecimal.ZERO) < 0) {
-                // change sign from '-' to '+'
-                retrievedAmount = BigDecimal.ZERO.subtract(retrievedAmount);
-                break;
-            }
-            timestamp = lc.getLastEventTimestamp();
-
-        } while (true);
-        log.debug("Funds was retrieved after {} block(s)", loopCnt);
+        LogFilter lf = new LogFilter(true);
+        lf.addFilter("type", "retrieve_funds");
+        lf.addFilter("inout", "out");
+        final int blockMax = 5;
+        BlockWatcher.getInstance().awaitNextBlock();
+        new Poller.Builder<String>("retrieve_funds")
+                .until(resp -> {
+                    lc.setResp(resp);
+                    return lc.getBalanceFromLogArray(lf).compareTo(BigDecimal.ZERO) < 0;
+                })
+                .backoff(Poller.Backoff.blockAligned(0L))
+                .maxAttempts(blockMax)
+                .failReason(String.format("Account was not empty in time of %d blocks", blockMax))
+                .build()
+                .poll(() -> fc.getLog(u, timestamp));
+        // change sign from '-' to '+'
+        retrievedAmount = BigDecimal.ZERO.subtract(lc.getBalanceFromLogArray(lf));
 
         String resp = fc.getLog(inactiveUser.getUserData());
         String reason = new AssertReason.Builder().msg("Inactive account balance is different than sum of logged events.")
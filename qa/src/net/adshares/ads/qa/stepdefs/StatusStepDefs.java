@@ -23,10 +23,12 @@ import com.google.gson.JsonObject;
 import cucumber.api.java.en.Given;
 import cucumber.api.java.en.Then;
 import cucumber.api.java.en.When;
+import net.adshares.ads.qa.caller.AsyncFunctionCaller;
 import net.adshares.ads.qa.caller.FunctionCaller;
 import net.adshares.ads.qa.data.UserData;
 import net.adshares.ads.qa.data.UserDataProvider;
 import net.adshares.ads.qa.util.AssertReason;
+import net.adshares.ads.qa.util.BlockWatcher;
 import net.adshares.ads.qa.util.EscConst;
 import net.adshares.ads.qa.util.EscUtils;
 import net.adshares.ads.qa.util.Utils;
@@ -36,6 +38,7 @@ import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -262,12 +265,7 @@ public class StatusStepDefs {
         successfullyChangedBitsSet = new HashSet<>();
 
         // This delay was added in case of error with vip node status change
-        try {
-            Thread.sleep(EscConst.BLOCK_PERIOD_MS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-        EscUtils.waitForNextBlock();
+        BlockWatcher.getInstance().awaitBlocks(2);
 
         final int maxChangeCount = 2;
         String resp;
@@ -353,8 +351,7 @@ public class StatusStepDefs {
                 } while ((++curBit % groupCnt != 0) && ((curBit < bitNo)));
 
                 // wait for block
-                EscUtils.waitForNextBlock();
-                EscUtils.waitForNextBlock();
+                BlockWatcher.getInstance().awaitBlocks(2);
                 statusMap = EscUtils.getNodeStatusMap(chgNodePairList.get(0).getUser());
 
                 // get node status response block
@@ -540,20 +537,24 @@ public class StatusStepDefs {
 
     @When("^they call get_account$")
     public void they_call_get_account() {
-        FunctionCaller fc = FunctionCaller.getInstance();
-        getAccountResponses = new String[3][userDataList.size() * userDataList.size()];
+        AsyncFunctionCaller afc = AsyncFunctionCaller.getInstance();
+        int rows = userDataList.size() * userDataList.size();
+        getAccountResponses = new String[3][rows];
+        List<CompletableFuture<String>> futures = new ArrayList<>(rows);
         int row = 0;
         for (UserData userCalled : userDataList) {
             String requestedAddress = userCalled.getAddress();
             for (UserData userCaller : userDataList) {
                 String callerAddress = userCaller.getAddress();
-                String resp = fc.getAccount(userCaller, requestedAddress);
+                futures.add(afc.getAccount(userCaller, requestedAddress));
                 getAccountResponses[0][row] = requestedAddress;
                 getAccountResponses[1][row] = callerAddress;
-                getAccountResponses[2][row] = resp;
                 ++row;
             }
         }
+        for (row = 0; row < rows; row++) {
+            getAccountResponses[2][row] = AsyncFunctionCaller.join(futures.get(row));
+        }
     }
 
     @Then("^all get_account responses are correct$")
@@ -19,31 +19,31 @@
 
 package net.adshares.ads.qa.stepdefs;
 
-import java.math.BigDecimal;
+import net.adshares.ads.qa.util.AdsAmount;
 
 public class TransferData {
 
-    private BigDecimal amount;
-    private BigDecimal fee;
+    private AdsAmount amount;
+    private AdsAmount fee;
 
     public TransferData() {
-        this.amount = BigDecimal.ZERO;
-        this.fee = BigDecimal.ZERO;
+        this.amount = AdsAmount.ZERO;
+        this.fee = AdsAmount.ZERO;
     }
 
-    public BigDecimal getAmount() {
+    public AdsAmount getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(AdsAmount amount) {
         this.amount = amount;
     }
 
-    public BigDecimal getFee() {
+    public AdsAmount getFee() {
         return fee;
     }
 
-    public void setFee(BigDecimal fee) {
+    public void setFee(AdsAmount fee) {
         this.fee = fee;
     }
 
@@ -20,11 +20,11 @@
 package net.adshares.ads.qa.stepdefs;
 
 import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import cucumber.api.java.en.Given;
 import cucumber.api.java.en.Then;
 import cucumber.api.java.en.When;
+import net.adshares.ads.qa.caller.AsyncFunctionCaller;
 import net.adshares.ads.qa.caller.FunctionCaller;
 import net.adshares.ads.qa.caller.command.SendManyTransaction;
 import net.adshares.ads.qa.caller.command.SendOneTransaction;
@@ -39,6 +39,7 @@ import org.slf4j.LoggerFactory;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -60,6 +61,38 @@ public class TransferStepDefs {
      * Regexp for transfer event in log
      */
     private static final String REGEX_TRANSFER_TYPE = "send_one|send_many";
+    /**
+     * Delay between checks of receiver log
+     */
+    private static final long BALANCE_UPDATE_DELAY_MS = EscConst.BLOCK_PERIOD_MS / 10;
+    /**
+     * Maximal time of waiting for transfer, which must not be received (incorrect transfer)
+     */
+    private static final long INCORRECT_TRANSFER_TIMEOUT_MS = 2 * EscConst.BLOCK_PERIOD_MS;
+    /**
+     * Polls receiver log until transfer is received, not received transfer is detected by balance check
+     */
+    private static final Poller<Boolean> BALANCE_UPDATE_POLLER = new Poller.Builder<Boolean>("balance_update")
+            .until(Boolean::booleanValue)
+            .backoff(Poller.Backoff.fixed(BALANCE_UPDATE_DELAY_MS))
+            .maxAttempts(50)
+            .build();
+    /**
+     * Polls receiver log of incorrect transfer, polling ends early only, if unexpected transfer is received
+     */
+    private static final Poller<Boolean> INCORRECT_TRANSFER_POLLER = new Poller.Builder<Boolean>("balance_unchanged")
+            .until(Boolean::booleanValue)
+            .backoff(Poller.Backoff.fixed(BALANCE_UPDATE_DELAY_MS))
+            .timeout(INCORRECT_TRANSFER_TIMEOUT_MS)
+            .build();
+    /**
+     * Transfer fee constants as fixed-point amounts
+     */
+    private static final AdsAmount LOCAL_TX_FEE_COEFFICIENT = AdsAmount.valueOf(EscConst.LOCAL_TX_FEE_COEFFICIENT);
+    private static final AdsAmount REMOTE_TX_FEE_COEFFICIENT = AdsAmount.valueOf(EscConst.REMOTE_TX_FEE_COEFFICIENT);
+    private static final AdsAmount MULTI_TX_FEE_COEFFICIENT = AdsAmount.valueOf(EscConst.MULTI_TX_FEE_COEFFICIENT);
+    private static final AdsAmount MIN_TX_FEE = AdsAmount.valueOf(EscConst.MIN_TX_FEE);
+    private static final AdsAmount MIN_MULTI_TX_PER_RECIPIENT = AdsAmount.valueOf(EscConst.MIN_MULTI_TX_PER_RECIPIENT);
 
     private TransferUser txSender;
     private List<TransferUser> txReceivers;
@@ -133,25 +166,37 @@ public class TransferStepDefs {
         FunctionCaller fc = FunctionCaller.getInstance();
         UserData sender = txSender.getUserData();
         String senderAddress = sender.getAddress();
-        BigDecimal senderBalance = txSender.getStartBalance();
+        AdsAmount senderBalance = AdsAmount.valueOf(txSender.getStartBalance());
 
         int receiversCount = txReceivers.size();
         // amount to single receiver
-        BigDecimal amount = new BigDecimal(txAmount).setScale(11, RoundingMode.FLOOR);
+        AdsAmount amount;
         // amount from sender to all receivers
-        BigDecimal amountOut = amount.multiply(new BigDecimal(receiversCount)).setScale(11, RoundingMode.FLOOR);
+        AdsAmount amountOut;
+        try {
+            amount = AdsAmount.valueOf(new BigDecimal(txAmount).setScale(AdsAmount.SCALE, RoundingMode.FLOOR));
+            amountOut = amount.multiply(receiversCount);
+        } catch (ArithmeticException e) {
+            // amount is bigger than all funds in network, transfer cannot be accepted
+            amount = null;
+            amountOut = null;
+        }
         // transfer fee payed by sender
-        BigDecimal fee;
+        AdsAmount fee;
         String jsonResp;
 
         if (receiversCount > 1) {
             // send many
             Map<String, String> map = new HashMap<>(receiversCount);
+            // fee is computed from the same rounded amount, which is expected in balance
+            Map<String, AdsAmount> amountMap = new HashMap<>(receiversCount);
             for (TransferUser txReceiver : txReceivers) {
-                map.put(txReceiver.getUserData().getAddress(), txAmount);
+                String receiverAddress = txReceiver.getUserData().getAddress();
+                map.put(receiverAddress, txAmount);
+                amountMap.put(receiverAddress, amount);
             }
             jsonResp = fc.sendMany(new SendManyTransaction(sender, map));
-            fee = getTransferFee(senderAddress, map);
+            fee = (amount != null) ? getTransferFee(senderAddress, amountMap) : null;
         } else {
             // send one
             UserData receiver = txReceivers.get(0).getUserData();
@@ -172,7 +217,7 @@ public class TransferStepDefs {
             ) {
                 throw new TransferBlockedDueToUpcomingDormantFeeException();
             }
-            fee = getTransferFee(senderAddress, receiverAddress, amount);
+            fee = (amount != null) ? getTransferFee(senderAddress, receiverAddress, amount) : null;
         }
 
         boolean isTransactionAccepted = EscUtils.isTransactionAcceptedByNode(jsonResp);
@@ -180,30 +225,31 @@ public class TransferStepDefs {
             JsonObject o = Utils.convertStringToJsonObject(jsonResp);
             long transferTime = o.getAsJsonObject("account").get("time").getAsLong();
 
-            BigDecimal eventsAmount = getTotalAmountOfEventsBeforeTransfer(receiversCount);
+            AdsAmount eventsAmount = getTotalAmountOfEventsBeforeTransfer(receiversCount);
 
-            if (eventsAmount.compareTo(BigDecimal.ZERO) != 0) {
-                log.debug("Additional events amount {}", eventsAmount.toPlainString());
+            if (!eventsAmount.isZero()) {
+                log.debug("Additional events amount {}", eventsAmount);
                 senderBalance = senderBalance.add(eventsAmount);
-                txSender.setStartBalance(senderBalance);
+                txSender.setStartBalance(senderBalance.toBigDecimal());
             }
 
             LogEventTimestamp lastEventTimestamp = getLastTransferEventTimestamp(sender, transferTime);
             txSender.setLastEventTimestamp(lastEventTimestamp.incrementEventNum());
         }
 
-        BigDecimal tmpSenderExpBalance = senderBalance.subtract(amountOut).subtract(fee);
-        BigDecimal minAccountBalance = sender.getMinAllowedBalance();
+        AdsAmount tmpSenderExpBalance = (amount != null) ? senderBalance.subtract(amountOut).subtract(fee) : null;
+        AdsAmount minAccountBalance = AdsAmount.valueOf(sender.getMinAllowedBalance());
 
         AssertReason.Builder assertReasonBuilder = new AssertReason.Builder()
                 .req(fc.getLastRequest()).res(fc.getLastResponse())
                 .msg("Sender: " + txSender.getUserData().getAddress())
-                .msg("\tbalance: " + senderBalance.toPlainString())
-                .msg("\tamount:  " + amountOut.toPlainString())
-                .msg("\tfee:     " + fee.toPlainString());
+                .msg("\tbalance: " + senderBalance)
+                .msg("\tamount:  " + ((amountOut != null) ? amountOut : txAmount + " x " + receiversCount))
+                .msg("\tfee:     " + fee);
 
         // check, if transfer is possible and balance won't be bigger after transfer
-        if (tmpSenderExpBalance.compareTo(minAccountBalance) >= 0 && tmpSenderExpBalance.compareTo(senderBalance) < 0) {
+        if (tmpSenderExpBalance != null
+                && tmpSenderExpBalance.compareTo(minAccountBalance) >= 0 && tmpSenderExpBalance.compareTo(senderBalance) < 0) {
             // update balances, if transfer is possible
             String reason = assertReasonBuilder.msg("Transfer was not accepted by node.").build();
             assertThat(reason, isTransactionAccepted);
@@ -211,16 +257,16 @@ public class TransferStepDefs {
             // receivers
             TransferData txDataIn = new TransferData();
             txDataIn.setAmount(amount);
-            txDataIn.setFee(BigDecimal.ZERO);
+            txDataIn.setFee(AdsAmount.ZERO);
             for (TransferUser txReceiver : txReceivers) {
-                txReceiver.setExpBalance(txReceiver.getStartBalance().add(amount));
+                txReceiver.setExpBalance(txReceiver.getStartBalance().add(amount.toBigDecimal()));
                 txReceiver.setTransferData(txDataIn);
             }
             //sender
             TransferData txDataOut = new TransferData();
             txDataOut.setAmount(amountOut);
             txDataOut.setFee(fee);
-            txSender.setExpBalance(tmpSenderExpBalance);
+            txSender.setExpBalance(tmpSenderExpBalance.toBigDecimal());
             txSender.setTransferData(txDataOut);
 
             checkComputedFeeWithResponse(jsonResp, txDataOut);
@@ -237,30 +283,27 @@ public class TransferStepDefs {
             for (TransferUser txReceiver : txReceivers) {
                 txReceiver.setExpBalance(txReceiver.getStartBalance());
             }
-            txSender.setExpBalance(senderBalance);
+            txSender.setExpBalance(senderBalance.toBigDecimal());
         }
     }
 
-    private BigDecimal getTotalAmountOfEventsBeforeTransfer(int receiversCount) {
-        BigDecimal additionalEventsAmount = BigDecimal.ZERO;
+    private AdsAmount getTotalAmountOfEventsBeforeTransfer(int receiversCount) {
+        AdsAmount additionalEventsAmount = AdsAmount.ZERO;
         FunctionCaller fc = FunctionCaller.getInstance();
 
         String getLogResponse = fc.getLog(txSender.getUserData(), txSender.getLastEventTimestamp());
 
-        LogChecker logChecker = new LogChecker(getLogResponse);
-        JsonArray logArray = logChecker.getLogArray();
-        final int logArraySize = logArray.size();
+        EventLog eventLog = new LogChecker(getLogResponse).getEventLog();
 
         AssertReason.Builder assertReasonBuilder = new AssertReason.Builder()
                 .req(fc.getLastRequest()).res(fc.getLastResponse());
 
-        if (logArraySize <= 0) {
+        if (eventLog.size() <= 0) {
             Assert.fail(assertReasonBuilder.msg("Missing events in log.").build());
         }
 
-        LogFilter transferLogFilter = new LogFilter(true);
-        transferLogFilter.addFilter("type", REGEX_TRANSFER_TYPE);
-        final int numberOfTransfersInLog = logChecker.getFilteredLogArray(transferLogFilter).size();
+        final int numberOfTransfersInLog = eventLog.getEvents(LogEventType.SEND_ONE).size()
+                + eventLog.getEvents(LogEventType.SEND_MANY).size();
         if (numberOfTransfersInLog < receiversCount) {
             Assert.fail(assertReasonBuilder.msg("Missing transfers in log.").build());
         }
@@ -271,33 +314,29 @@ public class TransferStepDefs {
         // look for transfer events, all
         boolean isTransferFound = false;
         int node = txSender.getUserData().getNode();
-        for (JsonElement je : logArray) {
-            final JsonObject logEntry = je.getAsJsonObject();
-            String type = logEntry.get("type").getAsString();
-
-            if (type.matches(REGEX_TRANSFER_TYPE)) {
+        for (LogEvent event : eventLog.getEvents()) {
+            if (isTransfer(event)) {
                 isTransferFound = true;
             } else {
                 if (isTransferFound) {
                     break;
                 }
 
-                if ("dividend".equals(type)) {
-                    additionalEventsAmount = additionalEventsAmount.add(logEntry.get("dividend").getAsBigDecimal());
+                if (event.getType() == LogEventType.DIVIDEND) {
+                    additionalEventsAmount = additionalEventsAmount.add(event.getDividend());
 
-                } else if ("bank_profit".equals(type)) {// type_no == 32785
-                    if (logEntry.has("node") && logEntry.get("node").getAsInt() != node) {
+                } else if (event.getType() == LogEventType.BANK_PROFIT) {
+                    if (event.getNode() != -1 && event.getNode() != node) {
                         log.debug("bank profit for different node");
                     } else {
-                        final BigDecimal logEntryProfit = logEntry.get("profit").getAsBigDecimal();
-                        additionalEventsAmount = additionalEventsAmount.add(logEntryProfit);
-                        if (logEntry.has("fee")) {
-                            final BigDecimal logEntryFee = logEntry.get("fee").getAsBigDecimal();
-                            additionalEventsAmount = additionalEventsAmount.subtract(logEntryFee);
+                        additionalEventsAmount = additionalEventsAmount.add(event.getProfit());
+                        if (event.getFee() != null) {
+                            additionalEventsAmount = additionalEventsAmount.subtract(event.getFee());
                         }
                     }
                 } else {
-                    Assert.fail(assertReasonBuilder.msg(String.format("Unexpected event type: %s", type)).build());
+                    Assert.fail(assertReasonBuilder.msg(
+                            String.format("Unexpected event type: %s", event.getEntry().get("type"))).build());
                 }
             }
         }
@@ -305,18 +344,19 @@ public class TransferStepDefs {
         return additionalEventsAmount;
     }
 
+    private static boolean isTransfer(LogEvent event) {
+        return event.getType() == LogEventType.SEND_ONE || event.getType() == LogEventType.SEND_MANY;
+    }
+
     private LogEventTimestamp getLastTransferEventTimestamp(UserData sender, long transferTime) {
         String getLogResponse = FunctionCaller.getInstance().getLog(sender, transferTime);
-        LogChecker logChecker = new LogChecker(getLogResponse);
-        JsonArray logArray = logChecker.getLogArray();
+        EventLog eventLog = new LogChecker(getLogResponse).getEventLog();
 
         // look for transfer events, all
         boolean isTransferFound = false;
         int eventsCount = 0;
-        for (JsonElement je : logArray) {
-            final JsonObject logEntry = je.getAsJsonObject();
-            String type = logEntry.get("type").getAsString();
-            long transferTimeLog = logEntry.get("time").getAsLong();
+        for (LogEvent event : eventLog.getEvents()) {
+            long transferTimeLog = event.getTime();
             if (transferTime != transferTimeLog) {
                 // very rarely time of transfer event in log is different than returned in transfer response
                 // it this case transferTime must be updated as well as eventsCount
@@ -324,7 +364,7 @@ public class TransferStepDefs {
                 eventsCount = 0;
             }
 
-            if (type.matches(REGEX_TRANSFER_TYPE)) {
+            if (isTransfer(event)) {
                 isTransferFound = true;
             } else {
                 if (isTransferFound) {
@@ -352,10 +392,10 @@ public class TransferStepDefs {
             String receiverAddress = txReceivers.get(0).getUserData().getAddress();
 
             // minimal account balance after transfer
-            BigDecimal minAccountBalance = sender.getMinAllowedBalance();
+            AdsAmount minAccountBalance = AdsAmount.valueOf(sender.getMinAllowedBalance());
             // subtraction, because after transfer balance cannot be lesser than minimal allowed
-            BigDecimal availableAmount = txSender.getStartBalance().subtract(minAccountBalance);
-            BigDecimal txAmount = getMaximalTxAmount(senderAddress, receiverAddress, availableAmount);
+            AdsAmount availableAmount = AdsAmount.valueOf(txSender.getStartBalance()).subtract(minAccountBalance);
+            AdsAmount txAmount = getMaximalTxAmount(senderAddress, receiverAddress, availableAmount);
 
             try {
                 send_ads(txAmount.toString(), null, null);
@@ -370,7 +410,7 @@ public class TransferStepDefs {
                 txSender.setLastEventTimestamp(logChecker.getLastEventTimestamp().incrementEventNum());
 
                 // send again
-                availableAmount = txSender.getStartBalance().subtract(minAccountBalance);
+                availableAmount = AdsAmount.valueOf(txSender.getStartBalance()).subtract(minAccountBalance);
                 txAmount = getMaximalTxAmount(senderAddress, receiverAddress, availableAmount);
                 try {
                     send_ads(txAmount.toString(), null, null);
@@ -381,7 +421,7 @@ public class TransferStepDefs {
         }
     }
 
-    private BigDecimal getMaximalTxAmount(String senderAddress, String receiverAddress, BigDecimal availableAmount) {
+    private AdsAmount getMaximalTxAmount(String senderAddress, String receiverAddress, AdsAmount availableAmount) {
         BigDecimal feeCoefficient;
         if (UserData.isAccountFromSameNode(senderAddress, receiverAddress)) {
             feeCoefficient = BigDecimal.ONE.add(EscConst.LOCAL_TX_FEE_COEFFICIENT);
@@ -389,100 +429,61 @@ public class TransferStepDefs {
             feeCoefficient = BigDecimal.ONE.add(EscConst.LOCAL_TX_FEE_COEFFICIENT).add(EscConst.REMOTE_TX_FEE_COEFFICIENT);
         }
         // approximated value of maximal transfer amount
-        BigDecimal txAmount = availableAmount.divide(feeCoefficient, 11, RoundingMode.FLOOR);
+        AdsAmount txAmount = AdsAmount.valueOf(
+                availableAmount.toBigDecimal().divide(feeCoefficient, AdsAmount.SCALE, RoundingMode.FLOOR));
 
         // increase transfer amount and check if it can be done
-        BigDecimal expectedBalance;
-        BigDecimal minAmount = new BigDecimal("0.00000000001");
+        AdsAmount expectedBalance;
         do {
-            txAmount = txAmount.add(minAmount);
+            txAmount = txAmount.add(AdsAmount.MIN_UNIT);
             expectedBalance = availableAmount.subtract(txAmount).subtract(getTransferFee(senderAddress, receiverAddress, txAmount));
-        } while (expectedBalance.compareTo(BigDecimal.ZERO) >= 0);
-        return txAmount.subtract(minAmount);
+        } while (expectedBalance.signum() >= 0);
+        return txAmount.subtract(AdsAmount.MIN_UNIT);
     }
 
     @When("^wait for balance update")
     public void wait_for_balance_update() {
         log.debug("wait for balance update :start");
         FunctionCaller fc = FunctionCaller.getInstance();
+        AsyncFunctionCaller afc = new AsyncFunctionCaller(fc);
+        final long startTime = System.currentTimeMillis();
 
-        String resp;
-        BigDecimal balanceFromLogArray;
-
-        // set of receiver index in txReceivers array that need to be checked
-        Set<Integer> receiverIds = new HashSet<>(txReceivers.size());
+        // all receivers are checked concurrently on bounded thread pool
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[txReceivers.size()];
         for (int i = 0; i < txReceivers.size(); i++) {
-            receiverIds.add(i);
-        }
-
-        LogChecker logChecker = new LogChecker();
-        // max block delay for account balance update after successful remote transfer
-        int attempt;
-        final int attemptMax = 50;
-        final long delay = EscConst.BLOCK_PERIOD_MS / 10;
-        for (attempt = 0; attempt < attemptMax; attempt++) {
-
-            for (int i = 0; i < txReceivers.size(); i++) {
-                if (!receiverIds.contains(i)) {
-                    // current user received transfer
-                    continue;
-                }
-
-                TransferUser txReceiver = txReceivers.get(i);
-                TransferData transferData = txReceiver.getTransferData();
+            TransferUser txReceiver = txReceivers.get(i);
+            TransferData transferData = txReceiver.getTransferData();
+            LogTail logTail = txReceiver.getLogTail();
+            LogFilter lf = new LogFilter(true);
+            lf.addFilter("type", REGEX_TRANSFER_TYPE);
+            // checks of receivers run concurrently, each one needs own caller
+            FunctionCaller receiverFc = fc.fork();
+            String address = txReceiver.getUserData().getAddress();
+
+            if (transferData == null) {
                 /*
-                Null transfer means that test is for incorrect transfer.
-                In that case waiting time for balance update is extended to maximum. Early break is disabled.
+                Null transfer means that test is for incorrect transfer. In that case log is watched
+                for two blocks and waiting ends early only, if unexpected transfer arrives.
                  */
-                if (transferData != null) {
-                    BigDecimal txAmountIn = transferData.getAmount();
-
-                    UserData receiverData = txReceiver.getUserData();
-                    LogEventTimestamp ts = txReceiver.getLastEventTimestamp();
-                    resp = fc.getLog(receiverData, ts);
-                    logChecker.setResp(resp);
-
-                    LogFilter lf;
-                    lf = new LogFilter(true);
-                    lf.addFilter("type", "send_one|send_many");
-                    lf.addFilter("amount", txAmountIn.toPlainString());
-                    balanceFromLogArray = logChecker.getBalanceFromLogArray(lf);
-
-                    if (txAmountIn.compareTo(balanceFromLogArray) == 0) {
-                        // transfer received
-                        receiverIds.remove(i);
-                    }
-                } else {
-                    //skip check for cancelled transfer after two blocks
-                    if (attempt > 20) {
-                        receiverIds.remove(i);
-                    }
-                }
-            }
-
-            if (receiverIds.isEmpty()) {
-                // all users received transfer
-                break;
+                lf.addFilter("inout", "in");
+                futures[i] = afc.poll(INCORRECT_TRANSFER_POLLER, () -> {
+                    logTail.update(receiverFc);
+                    return !logTail.getLogChecker().getAmountFromLogArray(lf).isZero();
+                }).thenAccept(isReceived -> log.debug("Incorrect transfer to {} received: {}", address, isReceived));
+                continue;
             }
 
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                log.error("Sleep interrupted");
-                log.error(e.toString());
-            }
-            log.debug("");
-            log.debug("period delay: {}", attempt + 1);
-            log.debug("");
-        }
-
-        if (attempt == attemptMax) {
-            log.debug("Balance was not updated in expected time ({} block periods)", attempt);
-        } else {
-            log.debug("Balance was updated in expected time ({} block periods)", attempt + 1);
+            AdsAmount txAmountIn = transferData.getAmount();
+            lf.addFilter("amount", txAmountIn.toString());
+            futures[i] = afc.poll(BALANCE_UPDATE_POLLER, () -> {
+                logTail.update(receiverFc);
+                return txAmountIn.equals(logTail.getLogChecker().getAmountFromLogArray(lf));
+            }).thenAccept(isReceived -> log.debug("Transfer to {} received: {} after {} ms", address, isReceived,
+                    System.currentTimeMillis() - startTime));
         }
+        AsyncFunctionCaller.join(CompletableFuture.allOf(futures));
 
-        log.debug("wait for balance update :end");
+        log.debug("wait for balance update :end ({} ms)", System.currentTimeMillis() - startTime);
     }
 
     @Then("^sender balance is as expected( \\(changed by amount and fee\\))?$")
@@ -523,27 +524,24 @@ public class TransferStepDefs {
         boolean isChangeExpected = change != null;
 
         FunctionCaller fc = FunctionCaller.getInstance();
-        LogChecker logChecker = new LogChecker();
 
         // update expected balance
-        String resp;
         BigDecimal balance;
         BigDecimal balanceFromLog;
         for (int i = 0; i < txReceivers.size(); i++) {
             TransferUser txReceiver = txReceivers.get(i);
-            UserData receiverData = txReceiver.getUserData();
-            LogEventTimestamp ts = txReceiver.getLastEventTimestamp();
-            resp = fc.getLog(receiverData, ts);
-            logChecker.setResp(resp);
+            LogTail logTail = txReceiver.getLogTail();
+            logTail.update();
+            LogChecker logChecker = logTail.getLogChecker();
             balance = logChecker.getBalanceFromAccountObject();
 
             TransferData transferData = txReceiver.getTransferData();
             if (transferData != null) {
-                BigDecimal txAmountIn = transferData.getAmount();
+                AdsAmount txAmountIn = transferData.getAmount();
                 LogFilter lf;
                 lf = new LogFilter(false);
-                lf.addFilter("type", "send_one|send_many");
-                lf.addFilter("amount", txAmountIn.toPlainString());
+                lf.addFilter("type", REGEX_TRANSFER_TYPE);
+                lf.addFilter("amount", txAmountIn.toString());
                 balanceFromLog = logChecker.getBalanceFromLogArray(lf);
             } else {
                 balanceFromLog = logChecker.getBalanceFromLogArray();
@@ -579,11 +577,11 @@ public class TransferStepDefs {
 
         FunctionCaller fc = FunctionCaller.getInstance();
         TransferUser txReceiver = txReceivers.get(0);
-        String resp = fc.getLog(txReceiver.getUserData(), txReceiver.getLastEventTimestamp());
+        LogTail logTail = txReceiver.getLogTail();
+        logTail.update();
         LogFilter lf = new LogFilter(true);
         lf.addFilter("type", "send_one");
-        LogChecker lc = new LogChecker(resp);
-        JsonArray arr = lc.getFilteredLogArray(lf);
+        JsonArray arr = logTail.getLogChecker().getFilteredLogArray(lf);
         String receivedMessage = arr.get(0).getAsJsonObject().get("message").getAsString();
 
         String reason = new AssertReason.Builder().msg("Invalid message.")
@@ -699,10 +697,8 @@ public class TransferStepDefs {
      * @param amount          transfer amount
      * @return transfer fee in tokens
      */
-    private BigDecimal getTransferFee(String senderAddress, String receiverAddress, BigDecimal amount) {
-        Map<String, String> receiverMap = new HashMap<>(1);
-        receiverMap.put(receiverAddress, amount.toPlainString());
-        return getTransferFee(senderAddress, receiverMap);
+    private AdsAmount getTransferFee(String senderAddress, String receiverAddress, AdsAmount amount) {
+        return MIN_TX_FEE.max(getReceiverFee(senderAddress, receiverAddress, amount, LOCAL_TX_FEE_COEFFICIENT));
     }
 
     /**
@@ -712,37 +708,44 @@ public class TransferStepDefs {
      * @param receiverMap   map of receiver - amount pairs
      * @return transfer fee in tokens
      */
-    private BigDecimal getTransferFee(String senderAddress, Map<String, String> receiverMap) {
-        BigDecimal summaryFee = BigDecimal.ZERO;
+    private AdsAmount getTransferFee(String senderAddress, Map<String, AdsAmount> receiverMap) {
+        AdsAmount summaryFee = AdsAmount.ZERO;
 
         int receiverCount = receiverMap.size();
-        for (String receiverAddress : receiverMap.keySet()) {
-            BigDecimal amount = new BigDecimal(receiverMap.get(receiverAddress));
-
-            BigDecimal localFee = amount.multiply(
-                    (receiverCount == 1) ? EscConst.LOCAL_TX_FEE_COEFFICIENT : EscConst.MULTI_TX_FEE_COEFFICIENT);
-            // fee scale must be set, because multiply extends scale
-            localFee = localFee.setScale(11, RoundingMode.FLOOR);
-            summaryFee = summaryFee.add(localFee);
-
-            if (!UserData.isAccountFromSameNode(senderAddress, receiverAddress)) {
-                // users in different nodes
-                BigDecimal remoteFee = amount.multiply(EscConst.REMOTE_TX_FEE_COEFFICIENT);
-                // fee scale must be set, because multiply extends scale
-                remoteFee = remoteFee.setScale(11, RoundingMode.FLOOR);
-                summaryFee = summaryFee.add(remoteFee);
-            }
+        AdsAmount feeCoefficient = (receiverCount == 1) ? LOCAL_TX_FEE_COEFFICIENT : MULTI_TX_FEE_COEFFICIENT;
+        for (Map.Entry<String, AdsAmount> entry : receiverMap.entrySet()) {
+            summaryFee = summaryFee.add(getReceiverFee(senderAddress, entry.getKey(), entry.getValue(),
+                    feeCoefficient));
         }
 
         if (receiverCount > 10) {
             // minimum varies when transfers are sent to more than 10 accounts
-            summaryFee = EscConst.MIN_MULTI_TX_PER_RECIPIENT.multiply(new BigDecimal(receiverCount)).max(summaryFee);
+            summaryFee = MIN_MULTI_TX_PER_RECIPIENT.multiply(receiverCount).max(summaryFee);
         } else {
-            summaryFee = EscConst.MIN_TX_FEE.max(summaryFee);
+            summaryFee = MIN_TX_FEE.max(summaryFee);
         }
         return summaryFee;
     }
 
+    /**
+     * Returns fee for transfer to single receiver without minimal fee.
+     *
+     * @param senderAddress   sender address
+     * @param receiverAddress receiver address
+     * @param amount          transfer amount
+     * @param feeCoefficient  local fee coefficient
+     * @return transfer fee in tokens
+     */
+    private AdsAmount getReceiverFee(String senderAddress, String receiverAddress, AdsAmount amount,
+                                     AdsAmount feeCoefficient) {
+        AdsAmount fee = amount.multiplyFloor(feeCoefficient);
+        if (!UserData.isAccountFromSameNode(senderAddress, receiverAddress)) {
+            // users in different nodes
+            fee = fee.add(amount.multiplyFloor(REMOTE_TX_FEE_COEFFICIENT));
+        }
+        return fee;
+    }
+
     /**
      * Compares transfer amount and computed fee with values returned from send_one function (tx/deduct, tx/fee).
      *
@@ -754,14 +757,14 @@ public class TransferStepDefs {
         JsonObject o = Utils.convertStringToJsonObject(jsonResp);
         o = o.getAsJsonObject("tx");
 
-        BigDecimal fee = o.get("fee").getAsBigDecimal();
-        BigDecimal feeExpected = transferData.getFee();
+        AdsAmount fee = AdsAmount.fromJson(o.get("fee"));
+        AdsAmount feeExpected = transferData.getFee();
         String reason = new AssertReason.Builder().msg("Invalid transfer fee.")
                 .req(fc.getLastRequest()).res(fc.getLastResponse()).build();
         assertThat(reason, fee, comparesEqualTo(feeExpected));
 
-        BigDecimal amount = o.get("deduct").getAsBigDecimal().subtract(fee);
-        BigDecimal amountExpected = transferData.getAmount();
+        AdsAmount amount = AdsAmount.fromJson(o.get("deduct")).subtract(fee);
+        AdsAmount amountExpected = transferData.getAmount();
         reason = new AssertReason.Builder().msg("Invalid transfer amount.")
                 .req(fc.getLastRequest()).res(fc.getLastResponse()).build();
         assertThat(reason, amount, comparesEqualTo(amountExpected));
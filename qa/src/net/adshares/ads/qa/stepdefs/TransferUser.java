@@ -22,6 +22,7 @@ package net.adshares.ads.qa.stepdefs;
 
 import net.adshares.ads.qa.data.UserData;
 import net.adshares.ads.qa.util.LogEventTimestamp;
+import net.adshares.ads.qa.util.LogTail;
 
 import java.math.BigDecimal;
 
@@ -32,6 +33,7 @@ public class TransferUser {
     private BigDecimal expBalance;
     private TransferData transferData;
     private LogEventTimestamp lastEventTimestamp;
+    private LogTail logTail;
 
     public UserData getUserData() {
         return userData;
@@ -39,6 +41,7 @@ public class TransferUser {
 
     public void setUserData(UserData userData) {
         this.userData = userData;
+        this.logTail = null;
     }
 
     public BigDecimal getStartBalance() {
@@ -71,5 +74,16 @@ public class TransferUser {
 
     public void setLastEventTimestamp(LogEventTimestamp lastEventTimestamp) {
         this.lastEventTimestamp = lastEventTimestamp;
+        this.logTail = null;
+    }
+
+    /**
+     * @return log of user since last event timestamp
+     */
+    public LogTail getLogTail() {
+        if (logTail == null) {
+            logTail = new LogTail(userData, lastEventTimestamp);
+        }
+        return logTail;
     }
 }
\ No newline at end of file
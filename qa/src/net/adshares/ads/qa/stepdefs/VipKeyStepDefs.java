@@ -57,11 +57,7 @@ public class VipKeyStepDefs {
         previousVipKeyList = vipKeyList;
         boolean isDelay = "after delay ".equals(delay);
         if (isDelay) {
-            try {
-                Thread.sleep(EscConst.BLOCK_PERIOD_MS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            BlockWatcher.getInstance().awaitNextBlock();
         }
 
         FunctionCaller fc = FunctionCaller.getInstance();
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+/**
+ * Account address, eg. 0001-00000000-9B6F, packed into long: node (16 bits) and user (32 bits).
+ * <p>
+ * Static methods work on packed addresses, so addresses can be parsed, compared and used as keys
+ * (see {@link AccountMap}) without allocation. Instances are immutable wrappers of packed address.
+ */
+public final class AccountAddress implements Comparable<AccountAddress> {
+
+    /**
+     * Value returned, when String is not valid address
+     */
+    public static final long INVALID = -1L;
+    /**
+     * Length of address String
+     */
+    public static final int LENGTH = 18;
+    /**
+     * Checksum, which is accepted in place of computed one
+     */
+    private static final String ANY_CHECKSUM = "XXXX";
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final long packed;
+
+    private AccountAddress(long packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * @param packed packed address
+     * @return address
+     * @throws IllegalArgumentException when value is not packed address
+     */
+    public static AccountAddress of(long packed) {
+        if ((packed & ~0xFFFFFFFFFFFFL) != 0) {
+            throw new IllegalArgumentException("Invalid packed account address: " + packed);
+        }
+        return new AccountAddress(packed);
+    }
+
+    /**
+     * @param address address String, checksum is not verified
+     * @return address
+     * @throws IllegalArgumentException when String is not valid address
+     */
+    public static AccountAddress valueOf(CharSequence address) {
+        long packed = parse(address);
+        if (packed == INVALID) {
+            throw new IllegalArgumentException("Invalid account address: " + address);
+        }
+        return new AccountAddress(packed);
+    }
+
+    /**
+     * @param node node ordinal number, 0 to 0xFFFF
+     * @param user account ordinal number in node, 0 to 0xFFFFFFFF
+     * @return packed address
+     * @throws IllegalArgumentException when node or user is out of range
+     */
+    public static long pack(int node, long user) {
+        if ((node & ~0xFFFF) != 0 || (user & ~0xFFFFFFFFL) != 0) {
+            throw new IllegalArgumentException("Invalid account address: node " + node + ", user " + user);
+        }
+        return ((long) node << 32) | user;
+    }
+
+    /**
+     * @param packed packed address
+     * @return node ordinal number
+     */
+    public static int getNode(long packed) {
+        return (int) (packed >>> 32) & 0xFFFF;
+    }
+
+    /**
+     * @param packed packed address
+     * @return account ordinal number in node
+     */
+    public static long getUser(long packed) {
+        return packed & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @param packed packed address
+     * @return true, if address belongs to main account of node
+     */
+    public static boolean isMainAccount(long packed) {
+        return packed >= 0 && getUser(packed) == 0;
+    }
+
+    /**
+     * Parses address. Hexadecimal digits can be upper or lower case. Checksum must be hexadecimal number or
+     * {@value #ANY_CHECKSUM}, it is not verified.
+     *
+     * @param address address String
+     * @return packed address or {@link #INVALID}, if String is not valid address
+     */
+    public static long parse(CharSequence address) {
+        if (address == null || address.length() != LENGTH || address.charAt(4) != '-' || address.charAt(13) != '-') {
+            return INVALID;
+        }
+        long node = parseHex(address, 0, 4);
+        long user = parseHex(address, 5, 13);
+        if (node < 0 || user < 0 || (parseHex(address, 14, 18) < 0 && !isAnyChecksum(address))) {
+            return INVALID;
+        }
+        return (node << 32) | user;
+    }
+
+    /**
+     * @param address address String
+     * @return true, if String is valid address; checksum is not verified
+     */
+    public static boolean isValid(CharSequence address) {
+        return parse(address) != INVALID;
+    }
+
+    /**
+     * @param address address String
+     * @return true, if String is valid address with correct checksum
+     */
+    public static boolean isChecksumValid(CharSequence address) {
+        long packed = parse(address);
+        return packed != INVALID && parseHex(address, 14, 18) == getChecksum(packed);
+    }
+
+    /**
+     * Computes checksum of address. Checksum is CRC-16/CCITT (polynomial 0x1021, initial value 0x1D0F)
+     * of big-endian node (2 bytes) and user (4 bytes).
+     *
+     * @param packed packed address
+     * @return checksum
+     */
+    public static int getChecksum(long packed) {
+        int crc = 0x1D0F;
+        for (int shift = 40; shift >= 0; shift -= 8) {
+            crc ^= (int) ((packed >>> shift) & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = ((crc & 0x8000) != 0) ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc & 0xFFFF;
+    }
+
+    /**
+     * Appends address with checksum.
+     *
+     * @param sb     StringBuilder
+     * @param packed packed address
+     * @return sb
+     */
+    public static StringBuilder appendTo(StringBuilder sb, long packed) {
+        appendHex(sb, getNode(packed), 4);
+        sb.append('-');
+        appendHex(sb, getUser(packed), 8);
+        sb.append('-');
+        appendHex(sb, getChecksum(packed), 4);
+        return sb;
+    }
+
+    /**
+     * @param packed packed address
+     * @return address with checksum, eg. 0001-00000000-9B6F
+     */
+    public static String format(long packed) {
+        return appendTo(new StringBuilder(LENGTH), packed).toString();
+    }
+
+    /**
+     * @return packed address
+     */
+    public long getPacked() {
+        return packed;
+    }
+
+    /**
+     * @return node ordinal number
+     */
+    public int getNode() {
+        return getNode(packed);
+    }
+
+    /**
+     * @return account ordinal number in node
+     */
+    public long getUser() {
+        return getUser(packed);
+    }
+
+    /**
+     * @return true, if address belongs to main account of node
+     */
+    public boolean isMainAccount() {
+        return isMainAccount(packed);
+    }
+
+    @Override
+    public int compareTo(AccountAddress other) {
+        return Long.compare(packed, other.packed);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof AccountAddress && packed == ((AccountAddress) o).packed);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(packed);
+    }
+
+    @Override
+    public String toString() {
+        return format(packed);
+    }
+
+    /**
+     * @return value of hexadecimal digits from begin (inclusive) to end (exclusive) or -1, if any char is not digit
+     */
+    private static long parseHex(CharSequence s, int begin, int end) {
+        long value = 0;
+        for (int i = begin; i < end; i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static boolean isAnyChecksum(CharSequence address) {
+        for (int i = 0; i < ANY_CHECKSUM.length(); i++) {
+            if (address.charAt(14 + i) != ANY_CHECKSUM.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void appendHex(StringBuilder sb, long value, int digits) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            sb.append(DIGITS[(int) (value >>> shift) & 0xF]);
+        }
+    }
+}
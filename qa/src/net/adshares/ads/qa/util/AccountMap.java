@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import java.util.Arrays;
+
+/**
+ * Map with packed account addresses ({@link AccountAddress}) as keys. Keys are stored in primitive array
+ * with open addressing, so lookups do not box keys nor hash address Strings.
+ * <p>
+ * Map is not thread-safe. Null values are not allowed.
+ *
+ * @param <V> value type
+ */
+public class AccountMap<V> {
+
+    /**
+     * Marker of empty slot, packed addresses are never negative
+     */
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    public AccountMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize expected number of entries
+     */
+    public AccountMap(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        // load factor is at most 0.5
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Visitor of map entries
+     *
+     * @param <V> value type
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long address, V value);
+    }
+
+    /**
+     * @param address packed address
+     * @return value or null, if there is no value for address
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long address) {
+        int slot = find(address);
+        return (keys[slot] == EMPTY) ? null : (V) values[slot];
+    }
+
+    /**
+     * @param address packed address
+     * @return true, if map has value for address
+     */
+    public boolean containsKey(long address) {
+        return keys[find(address)] != EMPTY;
+    }
+
+    /**
+     * @param address packed address
+     * @param value   value
+     * @return previous value or null, if there was no value for address
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long address, V value) {
+        if (address < 0) {
+            throw new IllegalArgumentException("Invalid packed account address: " + address);
+        }
+        if (value == null) {
+            throw new NullPointerException("Null value");
+        }
+        int slot = find(address);
+        if (keys[slot] != EMPTY) {
+            V previous = (V) values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        keys[slot] = address;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * @param address packed address
+     * @return removed value or null, if there was no value for address
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long address) {
+        int slot = find(address);
+        if (keys[slot] == EMPTY) {
+            return null;
+        }
+        V previous = (V) values[slot];
+        --size;
+        // entries after removed one are shifted back, so probe sequences stay unbroken
+        int mask = keys.length - 1;
+        int gap = slot;
+        for (int i = (gap + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            int home = hash(keys[i]) & mask;
+            // entry can fill the gap, if its home slot is not between gap and its current slot
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = null;
+        return previous;
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Visits all entries, order is not specified.
+     *
+     * @param consumer entry consumer
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return slot with address or empty slot, where address should be inserted
+     */
+    private int find(long address) {
+        int mask = keys.length - 1;
+        int slot = hash(address) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != address) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long address) {
+        // accounts of node differ in low bits, mixing spreads node bits as well
+        long h = address * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[capacity];
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
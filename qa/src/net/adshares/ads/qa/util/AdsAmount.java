@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import com.google.gson.JsonElement;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable amount of ADS. Amounts have 11 decimal places, therefore amount is stored as long number
+ * of the smallest units (0.00000000001 ADS).
+ * <p>
+ * Arithmetic is exact: operations, which overflow or need rounding (except explicitly floored multiplication
+ * and division), throw {@link ArithmeticException}.
+ */
+public final class AdsAmount implements Comparable<AdsAmount> {
+
+    /**
+     * Number of decimal places
+     */
+    public static final int SCALE = 11;
+    /**
+     * Number of the smallest units in 1 ADS
+     */
+    private static final long UNIT = 100_000_000_000L;
+    /**
+     * Divisor, which splits fraction part in {@link #multiplyFractions(long, long)}
+     */
+    private static final long FRACTION_SPLIT = 1_000_000L;
+
+    public static final AdsAmount ZERO = new AdsAmount(0L);
+    /**
+     * The smallest amount, 0.00000000001 ADS
+     */
+    public static final AdsAmount MIN_UNIT = new AdsAmount(1L);
+
+    private final long value;
+
+    private AdsAmount(long value) {
+        this.value = value;
+    }
+
+    /**
+     * @param unscaled number of the smallest units
+     * @return amount
+     */
+    public static AdsAmount ofUnscaled(long unscaled) {
+        return (unscaled == 0L) ? ZERO : new AdsAmount(unscaled);
+    }
+
+    /**
+     * Parses decimal number, e.g. "-12.00010000000". Number is parsed without BigDecimal, unless it is
+     * in exponential notation.
+     *
+     * @param s decimal number
+     * @return amount
+     * @throws NumberFormatException when s is not decimal number
+     * @throws ArithmeticException   when s has non-zero digits after 11th decimal place or amount overflows
+     */
+    public static AdsAmount parse(String s) {
+        int length = s.length();
+        if (length == 0) {
+            throw new NumberFormatException("Empty amount");
+        }
+        if (s.indexOf('e') >= 0 || s.indexOf('E') >= 0) {
+            return valueOf(new BigDecimal(s));
+        }
+
+        int i = 0;
+        boolean isNegative = false;
+        char first = s.charAt(0);
+        if (first == '-' || first == '+') {
+            isNegative = first == '-';
+            i++;
+        }
+        long integerPart = 0L;
+        long fractionPart = 0L;
+        int fractionDigits = 0;
+        boolean hasDigits = false;
+        boolean isFraction = false;
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c == '.' && !isFraction) {
+                isFraction = true;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid amount: " + s);
+            }
+            hasDigits = true;
+            int digit = c - '0';
+            if (!isFraction) {
+                integerPart = Math.addExact(Math.multiplyExact(integerPart, 10L), digit);
+            } else if (fractionDigits < SCALE) {
+                fractionPart = fractionPart * 10L + digit;
+                fractionDigits++;
+            } else if (digit != 0) {
+                throw new ArithmeticException("Amount has more than " + SCALE + " decimal places: " + s);
+            }
+        }
+        if (!hasDigits) {
+            throw new NumberFormatException("Invalid amount: " + s);
+        }
+        for (; fractionDigits < SCALE; fractionDigits++) {
+            fractionPart *= 10L;
+        }
+
+        long unscaled = Math.addExact(Math.multiplyExact(integerPart, UNIT), fractionPart);
+        return ofUnscaled(isNegative ? -unscaled : unscaled);
+    }
+
+    /**
+     * @param element json number or string, e.g. "amount" field of log event
+     * @return amount or null, if element is null or it is not primitive
+     */
+    public static AdsAmount fromJson(JsonElement element) {
+        return (element != null && element.isJsonPrimitive()) ? parse(element.getAsString()) : null;
+    }
+
+    /**
+     * @param decimal decimal number
+     * @return amount
+     * @throws ArithmeticException when decimal has non-zero digits after 11th decimal place or amount overflows
+     */
+    public static AdsAmount valueOf(BigDecimal decimal) {
+        return ofUnscaled(decimal.setScale(SCALE).unscaledValue().longValueExact());
+    }
+
+    /**
+     * @return number of the smallest units
+     */
+    public long getUnscaled() {
+        return value;
+    }
+
+    public AdsAmount add(AdsAmount other) {
+        return ofUnscaled(Math.addExact(value, other.value));
+    }
+
+    public AdsAmount subtract(AdsAmount other) {
+        return ofUnscaled(Math.subtractExact(value, other.value));
+    }
+
+    public AdsAmount negate() {
+        return ofUnscaled(Math.negateExact(value));
+    }
+
+    /**
+     * @param multiplier integer multiplier
+     * @return amount multiplied by integer
+     */
+    public AdsAmount multiply(long multiplier) {
+        return ofUnscaled(Math.multiplyExact(value, multiplier));
+    }
+
+    /**
+     * Multiplies amount by coefficient and rounds result down (towards negative infinity),
+     * e.g. transfer fee is computed as amount multiplied by fee coefficient.
+     * <p>
+     * Amount and coefficient are split into integer and fraction parts, so partial products fit in long.
+     *
+     * @param coefficient coefficient
+     * @return amount multiplied by coefficient
+     */
+    public AdsAmount multiplyFloor(AdsAmount coefficient) {
+        long integerPart = Math.floorDiv(value, UNIT);
+        long fractionPart = Math.floorMod(value, UNIT);
+        long coefficientInteger = Math.floorDiv(coefficient.value, UNIT);
+        long coefficientFraction = Math.floorMod(coefficient.value, UNIT);
+        // (i * UNIT + f) * c / UNIT = i * c + f * ci + f * cf / UNIT, only the last term needs rounding
+        long product = Math.addExact(Math.multiplyExact(integerPart, coefficient.value),
+                Math.multiplyExact(fractionPart, coefficientInteger));
+        return ofUnscaled(Math.addExact(product, multiplyFractions(fractionPart, coefficientFraction)));
+    }
+
+    /**
+     * @param a fraction part, 0 &lt;= a &lt; UNIT
+     * @param b fraction part, 0 &lt;= b &lt; UNIT
+     * @return a * b / UNIT rounded down
+     */
+    private static long multiplyFractions(long a, long b) {
+        // a * b may not fit in long, so a is split into high part (< 10^5) and low part (< 10^6)
+        long low = (a % FRACTION_SPLIT) * b;
+        long high = (a / FRACTION_SPLIT) * b + low / FRACTION_SPLIT;
+        // a * b = high * FRACTION_SPLIT + low % FRACTION_SPLIT, the remainder does not change the result
+        return high / (UNIT / FRACTION_SPLIT);
+    }
+
+    /**
+     * Divides amount by integer and rounds result down (towards negative infinity).
+     *
+     * @param divisor integer divisor
+     * @return amount divided by integer
+     */
+    public AdsAmount divideFloor(long divisor) {
+        return ofUnscaled(Math.floorDiv(value, divisor));
+    }
+
+    public AdsAmount max(AdsAmount other) {
+        return (value >= other.value) ? this : other;
+    }
+
+    public AdsAmount min(AdsAmount other) {
+        return (value <= other.value) ? this : other;
+    }
+
+    /**
+     * @return -1, 0 or 1 as amount is negative, zero or positive
+     */
+    public int signum() {
+        return Long.signum(value);
+    }
+
+    public boolean isZero() {
+        return value == 0L;
+    }
+
+    /**
+     * @return amount as BigDecimal with scale 11
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(value, SCALE);
+    }
+
+    @Override
+    public int compareTo(AdsAmount other) {
+        return Long.compare(value, other.value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return (this == o) || (o instanceof AdsAmount && value == ((AdsAmount) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    /**
+     * @return amount with 11 decimal places, e.g. "-12.00010000000"
+     */
+    @Override
+    public String toString() {
+        long integerPart = value / UNIT;
+        long fractionPart = Math.abs(value % UNIT);
+        StringBuilder sb = new StringBuilder(24);
+        if (value < 0L) {
+            sb.append('-');
+        }
+        sb.append(Math.abs(integerPart)).append('.');
+        String fraction = Long.toString(fractionPart);
+        for (int i = fraction.length(); i < SCALE; i++) {
+            sb.append('0');
+        }
+        return sb.append(fraction).toString();
+    }
+}
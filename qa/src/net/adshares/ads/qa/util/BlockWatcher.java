@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import net.adshares.ads.qa.caller.Cassette;
+import net.adshares.ads.qa.caller.FunctionCaller;
+import net.adshares.ads.qa.data.UserData;
+import net.adshares.ads.qa.data.UserDataProvider;
+import org.junit.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks block time of network. Block time is read from every client response and, while there are
+ * threads waiting for block, it is polled by single background thread. Poll is scheduled at the expected
+ * start of next block, which is predicted from offset between node clock and local clock.
+ * Waiting threads are woken up as soon as new block is observed.
+ * <p>
+ * When recorded responses are replayed, there are no polls and waiting for block returns immediately.
+ */
+public class BlockWatcher {
+
+    private static final Pattern BLOCK_TIME_PATTERN = Pattern.compile("\"current_block_time\":\\s*\"?(\\d+)");
+    /**
+     * Delay between polls in milliseconds, when block is expected, but it was not observed yet
+     */
+    private static final long POLL_INTERVAL = 1000L;
+    /**
+     * Additional time in block periods, after which waiting fails
+     */
+    private static final int TIMEOUT_MARGIN = 3;
+
+    private static BlockWatcher instance;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final boolean isReplay = Cassette.getInstance().isReplay();
+    /**
+     * Caller used by watcher thread. It is not bound to any scenario, so polls are not recorded.
+     */
+    private FunctionCaller functionCaller;
+    /**
+     * Last observed block time in seconds, -1 if block was not observed yet
+     */
+    private long blockTime = -1L;
+    /**
+     * Lower bound of difference between node clock and local clock in milliseconds
+     */
+    private long clockOffset = Long.MIN_VALUE;
+    /**
+     * True, if block change was observed shortly after previous observation, so clock offset is precise
+     */
+    private boolean isOffsetPrecise;
+    /**
+     * Local time of last observation in milliseconds
+     */
+    private long lastObservationTime;
+    /**
+     * Number of threads waiting for block
+     */
+    private int waiterCount;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ads-block-watcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private BlockWatcher() {
+    }
+
+    public static synchronized BlockWatcher getInstance() {
+        if (instance == null) {
+            instance = new BlockWatcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Updates block time with value from client response.
+     *
+     * @param resp client response
+     */
+    public void observe(String resp) {
+        if (resp == null) {
+            return;
+        }
+        Matcher matcher = BLOCK_TIME_PATTERN.matcher(resp);
+        if (matcher.find()) {
+            update(Long.parseLong(matcher.group(1)));
+        }
+    }
+
+    /**
+     * Returns current block time. Node is asked for block time, if block could have changed since last observation.
+     *
+     * @return current block time in seconds
+     */
+    public long getCurrentBlockTime() {
+        if (!isReplay && getDelayToNextBlock() <= 0) {
+            poll();
+        }
+        synchronized (this) {
+            if (blockTime < 0) {
+                // node did not respond, time is estimated from local clock
+                blockTime = getBlockTime(EscUtils.currentTimeMillis() / 1000L);
+            }
+            return blockTime;
+        }
+    }
+
+    /**
+     * @return time in milliseconds to expected start of next block. If block is late, short poll interval
+     * is returned.
+     */
+    public long getTimeToNextBlock() {
+        if (isReplay) {
+            return 0L;
+        }
+        if (getDelayToNextBlock() <= 0) {
+            getCurrentBlockTime();
+        }
+        long delay = getDelayToNextBlock();
+        return (delay > 0) ? delay : POLL_INTERVAL;
+    }
+
+    /**
+     * @return true, if current block is dividend block
+     */
+    public boolean isDividendBlock() {
+        return isDividendBlock(getCurrentBlockTime());
+    }
+
+    /**
+     * Waits for start of next block.
+     *
+     * @return block time in seconds
+     */
+    public long awaitNextBlock() {
+        return awaitBlocks(1);
+    }
+
+    /**
+     * Waits until given number of blocks starts.
+     *
+     * @param count number of blocks
+     * @return block time in seconds
+     */
+    public long awaitBlocks(int count) {
+        return awaitBlock(getCurrentBlockTime() + count * EscConst.BLOCK_PERIOD);
+    }
+
+    /**
+     * Waits for dividend block. If current block is dividend block, it returns immediately.
+     *
+     * @return block time in seconds
+     */
+    public long awaitDividendBlock() {
+        long time = getCurrentBlockTime();
+        while (!isDividendBlock(time)) {
+            time += EscConst.BLOCK_PERIOD;
+        }
+        return awaitBlock(time);
+    }
+
+    /**
+     * Waits until block with given time starts.
+     *
+     * @param targetBlockTime block time in seconds
+     * @return observed block time in seconds, it is not lower than target
+     */
+    public synchronized long awaitBlock(long targetBlockTime) {
+        if (isReplay) {
+            // there is no network, time moves only forward
+            blockTime = Math.max(blockTime, targetBlockTime);
+            return blockTime;
+        }
+        if (blockTime >= targetBlockTime) {
+            return blockTime;
+        }
+
+        long lastBlockTime = (blockTime < 0) ? getBlockTime(EscUtils.currentTimeMillis() / 1000L) : blockTime;
+        long timeout = (Math.max(0L, targetBlockTime - lastBlockTime) + TIMEOUT_MARGIN * EscConst.BLOCK_PERIOD) * 1000L;
+        long deadline = System.currentTimeMillis() + EscUtils.getRealDelay(timeout);
+        if (waiterCount++ == 0) {
+            schedulePoll();
+        }
+        try {
+            while (blockTime < targetBlockTime) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    Assert.fail(String.format("Block %X was not observed in time, last block %X",
+                            targetBlockTime, blockTime));
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Assert.fail("Interrupted while waiting for block");
+        } finally {
+            waiterCount--;
+        }
+        log.debug("block {} observed", Long.toHexString(blockTime).toUpperCase());
+        return blockTime;
+    }
+
+    /**
+     * @param blockTime block time in seconds
+     * @return true, if block is dividend block
+     */
+    public static boolean isDividendBlock(long blockTime) {
+        return (blockTime / EscConst.BLOCK_PERIOD) % EscConst.BLOCK_DIVIDEND == EscConst.BLOCK_DIVIDEND - 1;
+    }
+
+    private static long getBlockTime(long time) {
+        return time - time % EscConst.BLOCK_PERIOD;
+    }
+
+    private synchronized void update(long observedBlockTime) {
+        long now = EscUtils.currentTimeMillis();
+        // block started before observation, so node clock is at least block time
+        clockOffset = Math.max(clockOffset, observedBlockTime * 1000L - now);
+        if (observedBlockTime > blockTime) {
+            if (blockTime >= 0 && now - lastObservationTime <= 2 * POLL_INTERVAL) {
+                isOffsetPrecise = true;
+            }
+            blockTime = observedBlockTime;
+            notifyAll();
+        }
+        lastObservationTime = now;
+    }
+
+    /**
+     * Predicts start of next block. Node clock offset is lower bound, so prediction based on it is never early,
+     * but it can be late before offset is measured precisely. Until then prediction based on local clock
+     * is also considered.
+     *
+     * @return time in milliseconds to expected start of next block, not positive if block is expected now
+     */
+    private synchronized long getDelayToNextBlock() {
+        if (blockTime < 0 || clockOffset == Long.MIN_VALUE) {
+            return 0L;
+        }
+        long now = EscUtils.currentTimeMillis();
+        long nextBlock = (blockTime + EscConst.BLOCK_PERIOD) * 1000L;
+        long delay = nextBlock - clockOffset - now;
+        return isOffsetPrecise ? delay : Math.min(delay, nextBlock - now);
+    }
+
+    /**
+     * Reads block time from node. Polls are executed by single thread, so they are not recorded as part
+     * of scenario.
+     */
+    private void poll() {
+        try {
+            scheduler.submit(this::pollNode).get();
+        } catch (ExecutionException e) {
+            log.warn("Cannot read block time: {}", e.getCause().toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void pollNode() {
+        UserData userData = UserDataProvider.getInstance().getMainUserDataList().get(0);
+        try {
+            if (functionCaller == null) {
+                // created lazily in watcher thread, which is the only user
+                functionCaller = FunctionCaller.createDetached();
+            }
+            observe(functionCaller.getMe(userData));
+        } catch (RuntimeException | AssertionError e) {
+            log.warn("Cannot read block time: {}", e.toString());
+        }
+    }
+
+    /**
+     * Schedules poll at expected start of next block. Polls are repeated until there are no waiting threads.
+     */
+    private synchronized void schedulePoll() {
+        long delay = getDelayToNextBlock();
+        // block is late, node is polled in short intervals
+        scheduler.schedule(() -> {
+            pollNode();
+            synchronized (this) {
+                if (waiterCount > 0) {
+                    schedulePoll();
+                }
+            }
+        }, EscUtils.getRealDelay((delay > 0) ? delay : POLL_INTERVAL), TimeUnit.MILLISECONDS);
+    }
+}
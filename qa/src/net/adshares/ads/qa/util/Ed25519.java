@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import java.security.*;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+
+/**
+ * Ed25519 keys and signatures, which are used by ADS. Keys and signatures are hexadecimal Strings.
+ * <p>
+ * Algorithm is provided by JDK 15 or newer. When it is not available, {@link #isAvailable()} returns false.
+ */
+public class Ed25519 {
+
+    private static final String ALGORITHM = "Ed25519";
+    /**
+     * DER prefix of PKCS#8 encoded private key, 32-byte seed follows
+     */
+    private static final String PRIVATE_KEY_PREFIX = "302E020100300506032B657004220420";
+    /**
+     * DER prefix of X.509 encoded public key, 32-byte key follows
+     */
+    private static final String PUBLIC_KEY_PREFIX = "302A300506032B6570032100";
+    private static final int KEY_LENGTH = 32;
+
+    private Ed25519() {
+    }
+
+    /**
+     * @return true, if Ed25519 is supported by JVM
+     */
+    public static boolean isAvailable() {
+        try {
+            KeyFactory.getInstance(ALGORITHM);
+            return true;
+        } catch (NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Derives public key from secret key.
+     *
+     * @param secret secret key (32-byte seed)
+     * @return public key
+     * @throws GeneralSecurityException when Ed25519 is not available or key is invalid
+     */
+    public static String getPublicKey(String secret) throws GeneralSecurityException {
+        return Utils.byteArrayToHexString(getPublicKey(Utils.hexStringToByteArray(secret)));
+    }
+
+    /**
+     * Derives public key from secret key.
+     *
+     * @param seed secret key (32-byte seed)
+     * @return 32-byte public key
+     * @throws GeneralSecurityException when Ed25519 is not available or key is invalid
+     */
+    public static byte[] getPublicKey(byte[] seed) throws GeneralSecurityException {
+        if (seed.length != KEY_LENGTH) {
+            throw new InvalidKeyException("Invalid secret key length");
+        }
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(ALGORITHM);
+        // generator takes seed from random source, so random source returns secret
+        generator.initialize(255, new SecureRandom() {
+            @Override
+            public void nextBytes(byte[] bytes) {
+                System.arraycopy(seed, 0, bytes, 0, Math.min(seed.length, bytes.length));
+            }
+        });
+        byte[] encoded = generator.generateKeyPair().getPublic().getEncoded();
+        byte[] publicKey = new byte[KEY_LENGTH];
+        System.arraycopy(encoded, encoded.length - KEY_LENGTH, publicKey, 0, KEY_LENGTH);
+        return publicKey;
+    }
+
+    /**
+     * Signs data.
+     *
+     * @param secret secret key (32-byte seed)
+     * @param data   data
+     * @return signature
+     * @throws GeneralSecurityException when Ed25519 is not available or key is invalid
+     */
+    public static String sign(String secret, byte[] data) throws GeneralSecurityException {
+        return Utils.byteArrayToHexString(sign(Utils.hexStringToByteArray(secret), data));
+    }
+
+    /**
+     * Signs data.
+     *
+     * @param seed secret key (32-byte seed)
+     * @param data data
+     * @return 64-byte signature
+     * @throws GeneralSecurityException when Ed25519 is not available or key is invalid
+     */
+    public static byte[] sign(byte[] seed, byte[] data) throws GeneralSecurityException {
+        byte[] prefix = Utils.hexStringToByteArray(PRIVATE_KEY_PREFIX);
+        byte[] encoded = Arrays.copyOf(prefix, prefix.length + seed.length);
+        System.arraycopy(seed, 0, encoded, prefix.length, seed.length);
+        PrivateKey privateKey = KeyFactory.getInstance(ALGORITHM).generatePrivate(new PKCS8EncodedKeySpec(encoded));
+        Signature signature = Signature.getInstance(ALGORITHM);
+        signature.initSign(privateKey);
+        signature.update(data);
+        return signature.sign();
+    }
+
+    /**
+     * Verifies signature.
+     *
+     * @param publicKey public key
+     * @param data      signed data
+     * @param signature signature
+     * @return true, if signature is valid
+     * @throws GeneralSecurityException when Ed25519 is not available
+     */
+    public static boolean verify(String publicKey, byte[] data, String signature) throws GeneralSecurityException {
+        PublicKey key;
+        try {
+            key = KeyFactory.getInstance(ALGORITHM).generatePublic(
+                    new X509EncodedKeySpec(Utils.hexStringToByteArray(PUBLIC_KEY_PREFIX + publicKey)));
+        } catch (InvalidKeySpecException e) {
+            return false;
+        }
+        Signature verifier = Signature.getInstance(ALGORITHM);
+        verifier.initVerify(key);
+        verifier.update(data);
+        try {
+            return verifier.verify(Utils.hexStringToByteArray(signature));
+        } catch (SignatureException e) {
+            return false;
+        }
+    }
+}
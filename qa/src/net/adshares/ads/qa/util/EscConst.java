@@ -20,7 +20,6 @@
 package net.adshares.ads.qa.util;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 
 /**
  * ESC constants from default.hpp
@@ -139,11 +138,8 @@ public class EscConst {
      * @param profit user profit during block
      * @return amount, which will be add to top/vip profit pool
      */
-    public static BigDecimal getSharedProfitForTopVip(BigDecimal profit) {
-        return profit
-                .divide(new BigDecimal(5), 11, RoundingMode.FLOOR)
-                .multiply(new BigDecimal(2))
-                .setScale(11, RoundingMode.FLOOR);
+    public static AdsAmount getSharedProfitForTopVip(AdsAmount profit) {
+        return profit.divideFloor(5).multiply(2);
     }
 
     /**
@@ -152,6 +148,8 @@ public class EscConst {
     public class Error {
         public static final String AMOUNT_MUST_BE_POSITIVE = "Amount must be positive";
         //        public static final String BAD_LENGTH = "Bad length";
+        public static final String BAD_HASH = "Bad hash";
+        public static final String BAD_MSID = "Bad msid";
         public static final String BROADCAST_NOT_READY = "Broadcast not ready, try again later";
         // Error below is inactive because field 'broadcast_count' was introduced to show no broadcast message.
         //        public static final String BROADCAST_NO_FILE_TO_SEND = "No broadcast file to send";
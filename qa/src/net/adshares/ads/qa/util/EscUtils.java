@@ -22,8 +22,10 @@ package net.adshares.ads.qa.util;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import net.adshares.ads.qa.caller.Cassette;
 import net.adshares.ads.qa.caller.FunctionCaller;
 import net.adshares.ads.qa.data.UserData;
+import net.adshares.ads.qa.sim.SimulatedNetwork;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -129,32 +131,7 @@ public class EscUtils {
      * @return timestamp of last event in log or 0, if log is empty
      */
     public static LogEventTimestamp getLastLogEventTimestamp(JsonObject jsonObject) {
-        long timeStamp = 0;
-        int eventsCount = 0;
-        if (jsonObject.has("log")) {
-            JsonElement jsonElementLog = jsonObject.get("log");
-            if (jsonElementLog.isJsonArray()) {
-                JsonArray arr = jsonElementLog.getAsJsonArray();
-
-                int size = arr.size();
-                if (size > 0) {
-                    int index = size - 1;
-                    JsonObject entry = arr.get(index).getAsJsonObject();
-                    timeStamp = entry.get("time").getAsLong();
-                    ++eventsCount;
-
-                    while (index > 0) {
-                        --index;
-
-                        if (timeStamp != arr.get(index).getAsJsonObject().get("time").getAsLong()) {
-                            break;
-                        }
-                        ++eventsCount;
-                    }
-                }
-            }
-        }
-        return new LogEventTimestamp(timeStamp, eventsCount);
+        return new LogEvaluator(null, false).evaluate(jsonObject).getLastEventTimestamp();
     }
 
     /**
@@ -246,35 +223,56 @@ public class EscUtils {
      * @return true, if account addess is in correct format, false otherwise
      */
     public static boolean isValidAccountAddress(String address) {
-        if (address != null && address.length() == 18) {
-
-            if ('-' == address.charAt(4) && '-' == address.charAt(13)) {
-                String node = address.substring(0, 4);
-                String num = address.substring(5, 13);
-                String checksum = address.substring(14);
-                try {
-                    Integer.valueOf(node, 16);
-                    Integer.valueOf(num, 16);
-                    if (!"XXXX".equals(checksum)) {
-                        Integer.valueOf(checksum, 16);
-                    }
-                    return true;
-                } catch (NumberFormatException nfe) {
-                    return false;
-                }
-            }
-        }
-        return false;
+        return AccountAddress.isValid(address);
     }
 
     /**
      * Waits for start of next block.
+     *
+     * @see BlockWatcher#awaitNextBlock()
      */
     public static void waitForNextBlock() {
-        long timeAfterLastBlock = System.currentTimeMillis() % EscConst.BLOCK_PERIOD_MS;
+        BlockWatcher.getInstance().awaitNextBlock();
+    }
+
+    /**
+     * Returns network time. It differs from system time, when simulated network is used.
+     *
+     * @return network time in milliseconds
+     */
+    public static long currentTimeMillis() {
+        SimulatedNetwork network = SimulatedNetwork.getRunningInstance();
+        return (network == null) ? System.currentTimeMillis() : network.getClock().currentTimeMillis();
+    }
 
+    /**
+     * Converts network time period to real delay. When recorded responses are replayed, there is no delay.
+     * When simulated network is used, delay is shortened in the same way as block period.
+     *
+     * @param millis network time period in milliseconds
+     * @return real delay in milliseconds
+     */
+    public static long getRealDelay(long millis) {
+        if (Cassette.getInstance().isReplay()) {
+            return 0L;
+        }
+        SimulatedNetwork network = SimulatedNetwork.getRunningInstance();
+        return (network == null) ? millis : network.getClock().toRealMillis(millis);
+    }
+
+    /**
+     * Sleeps for given network time period.
+     *
+     * @param millis time in milliseconds
+     * @see #getRealDelay(long)
+     */
+    public static void sleep(long millis) {
+        long delay = getRealDelay(millis);
+        if (delay <= 0) {
+            return;
+        }
         try {
-            Thread.sleep(EscConst.BLOCK_PERIOD_MS - timeAfterLastBlock);
+            Thread.sleep(delay);
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
@@ -286,8 +284,6 @@ public class EscUtils {
      * @return true, if current block is dividend, false otherwise
      */
     public static boolean isDividendBlock() {
-        long l = System.currentTimeMillis() % (EscConst.BLOCK_DIVIDEND * EscConst.BLOCK_PERIOD_MS);
-
-        return l >= 3 * EscConst.BLOCK_PERIOD_MS;
+        return BlockWatcher.getInstance().isDividendBlock();
     }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+import java.util.*;
+
+/**
+ * Parsed account log. Events are indexed by kind, time, block id and transaction id, so queries
+ * like "bank_profit events in block" or "send_many with id" do not scan whole log.
+ */
+public class EventLog {
+
+    private final List<LogEvent> events = new ArrayList<>();
+    private final Map<LogEventType, List<LogEvent>> byType = new EnumMap<>(LogEventType.class);
+    private final NavigableMap<Long, List<LogEvent>> byTime = new TreeMap<>();
+    private final Map<String, List<LogEvent>> byBlockId = new HashMap<>();
+    private final Map<String, List<LogEvent>> byId = new HashMap<>();
+
+    /**
+     * @param logArray array of log entries from get_log response
+     */
+    public EventLog(JsonArray logArray) {
+        for (JsonElement je : logArray) {
+            add(new LogEvent(je.getAsJsonObject()));
+        }
+    }
+
+    private void add(LogEvent event) {
+        events.add(event);
+        byType.computeIfAbsent(event.getType(), key -> new ArrayList<>()).add(event);
+        byTime.computeIfAbsent(event.getTime(), key -> new ArrayList<>()).add(event);
+        if (event.getBlockId() != null) {
+            byBlockId.computeIfAbsent(event.getBlockId(), key -> new ArrayList<>()).add(event);
+        }
+        if (event.getId() != null) {
+            byId.computeIfAbsent(event.getId(), key -> new ArrayList<>()).add(event);
+        }
+    }
+
+    /**
+     * @return all events in log order
+     */
+    public List<LogEvent> getEvents() {
+        return Collections.unmodifiableList(events);
+    }
+
+    /**
+     * @param type kind of event
+     * @return events of kind in log order
+     */
+    public List<LogEvent> getEvents(LogEventType type) {
+        return unmodifiable(byType.get(type));
+    }
+
+    /**
+     * @param type kind of event
+     * @param time time in seconds
+     * @return events of kind, which happened at time
+     */
+    public List<LogEvent> getEvents(LogEventType type, long time) {
+        return filter(byTime.get(time), type);
+    }
+
+    /**
+     * @param time time in seconds
+     * @return events, which happened at time
+     */
+    public List<LogEvent> getEventsAt(long time) {
+        return unmodifiable(byTime.get(time));
+    }
+
+    /**
+     * @param type    kind of event
+     * @param blockId block id
+     * @return events of kind in block
+     */
+    public List<LogEvent> getEventsInBlock(LogEventType type, String blockId) {
+        return filter(byBlockId.get(blockId), type);
+    }
+
+    /**
+     * @param id transaction id
+     * @return events of transaction
+     */
+    public List<LogEvent> getEventsById(String id) {
+        return unmodifiable(byId.get(id));
+    }
+
+    /**
+     * @return time of latest event or 0, if log is empty
+     */
+    public long getLastEventTime() {
+        return byTime.isEmpty() ? 0L : byTime.lastKey();
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    private static List<LogEvent> filter(List<LogEvent> list, LogEventType type) {
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        List<LogEvent> filtered = new ArrayList<>();
+        for (LogEvent event : list) {
+            if (event.getType() == type) {
+                filtered.add(event);
+            }
+        }
+        return filtered;
+    }
+
+    private static List<LogEvent> unmodifiable(List<LogEvent> list) {
+        return (list != null) ? Collections.unmodifiableList(list) : Collections.emptyList();
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import java.util.*;
+
+/**
+ * In-memory columnar store of log events from many accounts. Columns are primitive arrays, strings (account
+ * address, block id) are dictionary-encoded and amounts are numbers of the smallest units
+ * ({@link AdsAmount#getUnscaled()}), so group-by queries over events of whole network scan arrays
+ * without parsing entries.
+ */
+public class EventStore {
+
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * Value of missing amount
+     */
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * Numeric columns
+     */
+    public enum Value {
+        AMOUNT, FEE, PROFIT, PROFIT_SHARED, DIVIDEND
+    }
+
+    private final Dictionary accounts = new Dictionary();
+    private final Dictionary blockIds = new Dictionary();
+
+    private int size;
+    private int[] account = new int[INITIAL_CAPACITY];
+    private int[] type = new int[INITIAL_CAPACITY];
+    private long[] time = new long[INITIAL_CAPACITY];
+    private int[] node = new int[INITIAL_CAPACITY];
+    private int[] blockId = new int[INITIAL_CAPACITY];
+    private final long[][] values = new long[Value.values().length][INITIAL_CAPACITY];
+
+    /**
+     * Adds events of account.
+     *
+     * @param address account address
+     * @param events  events from account log
+     */
+    public void add(String address, Iterable<LogEvent> events) {
+        int accountCode = accounts.encode(address);
+        for (LogEvent event : events) {
+            ensureCapacity(size + 1);
+            account[size] = accountCode;
+            type[size] = event.getType().ordinal();
+            time[size] = event.getTime();
+            node[size] = event.getNode();
+            blockId[size] = blockIds.encode(event.getBlockId());
+            values[Value.AMOUNT.ordinal()][size] = toUnscaled(event.getAmount());
+            values[Value.FEE.ordinal()][size] = toUnscaled(event.getFee());
+            values[Value.PROFIT.ordinal()][size] = toUnscaled(event.getProfit());
+            values[Value.PROFIT_SHARED.ordinal()][size] = toUnscaled(event.getProfitShared());
+            values[Value.DIVIDEND.ordinal()][size] = toUnscaled(event.getDividend());
+            ++size;
+        }
+    }
+
+    /**
+     * @return number of stored events
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return new query over all stored events
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= account.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, account.length * 2);
+        account = Arrays.copyOf(account, newCapacity);
+        type = Arrays.copyOf(type, newCapacity);
+        time = Arrays.copyOf(time, newCapacity);
+        node = Arrays.copyOf(node, newCapacity);
+        blockId = Arrays.copyOf(blockId, newCapacity);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Arrays.copyOf(values[i], newCapacity);
+        }
+    }
+
+    private static long toUnscaled(AdsAmount amount) {
+        return (amount != null) ? amount.getUnscaled() : NONE;
+    }
+
+    /**
+     * Selection of events. Conditions are combined with AND.
+     */
+    public class Query {
+        private int typeCode = -1;
+        private int accountCode = Dictionary.ANY;
+        private int blockIdCode = Dictionary.ANY;
+        private int nodeValue = -1;
+        private long timeValue = NONE;
+        private final List<Value> present = new ArrayList<>();
+        private final List<Value> missing = new ArrayList<>();
+        /**
+         * True, if condition refers to value, which is not stored, so no event matches
+         */
+        private boolean isEmpty;
+
+        private Query() {
+        }
+
+        public Query type(LogEventType eventType) {
+            typeCode = eventType.ordinal();
+            return this;
+        }
+
+        public Query account(String address) {
+            accountCode = accounts.find(address);
+            isEmpty |= accountCode == Dictionary.ANY;
+            return this;
+        }
+
+        public Query blockId(String id) {
+            blockIdCode = blockIds.find(id);
+            isEmpty |= blockIdCode == Dictionary.ANY;
+            return this;
+        }
+
+        public Query node(int nodeNo) {
+            nodeValue = nodeNo;
+            return this;
+        }
+
+        public Query time(long seconds) {
+            timeValue = seconds;
+            return this;
+        }
+
+        /**
+         * @param value numeric column
+         * @return query for events, which have value
+         */
+        public Query has(Value value) {
+            present.add(value);
+            return this;
+        }
+
+        /**
+         * @param value numeric column
+         * @return query for events, which do not have value
+         */
+        public Query hasNot(Value value) {
+            missing.add(value);
+            return this;
+        }
+
+        private boolean matches(int row) {
+            if ((typeCode != -1 && type[row] != typeCode)
+                    || (accountCode != Dictionary.ANY && account[row] != accountCode)
+                    || (blockIdCode != Dictionary.ANY && blockId[row] != blockIdCode)
+                    || (nodeValue != -1 && node[row] != nodeValue)
+                    || (timeValue != NONE && time[row] != timeValue)) {
+                return false;
+            }
+            for (Value value : present) {
+                if (values[value.ordinal()][row] == NONE) {
+                    return false;
+                }
+            }
+            for (Value value : missing) {
+                if (values[value.ordinal()][row] != NONE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return number of matching events
+         */
+        public int count() {
+            int count = 0;
+            for (int row = 0; !isEmpty && row < size; row++) {
+                if (matches(row)) {
+                    ++count;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @param value numeric column
+         * @return sum of values of matching events, missing values are skipped
+         */
+        public AdsAmount sum(Value value) {
+            long[] column = values[value.ordinal()];
+            long sum = 0;
+            for (int row = 0; !isEmpty && row < size; row++) {
+                if (column[row] != NONE && matches(row)) {
+                    sum = Math.addExact(sum, column[row]);
+                }
+            }
+            return AdsAmount.ofUnscaled(sum);
+        }
+
+        /**
+         * @param value numeric column
+         * @return value of last matching event, which has value, or null
+         */
+        public AdsAmount last(Value value) {
+            long[] column = values[value.ordinal()];
+            for (int row = size - 1; !isEmpty && row >= 0; row--) {
+                if (column[row] != NONE && matches(row)) {
+                    return AdsAmount.ofUnscaled(column[row]);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param value numeric column
+         * @return sums of values of matching events by node
+         */
+        public Map<Integer, AdsAmount> sumByNode(Value value) {
+            Map<Integer, Long> sums = new TreeMap<>();
+            sumBy(node, value, sums);
+            Map<Integer, AdsAmount> result = new TreeMap<>();
+            sums.forEach((key, sum) -> result.put(key, AdsAmount.ofUnscaled(sum)));
+            return result;
+        }
+
+        /**
+         * @param value numeric column
+         * @return sums of values of matching events by block id
+         */
+        public Map<String, AdsAmount> sumByBlockId(Value value) {
+            return decode(sumBy(blockId, value, new HashMap<>()), blockIds);
+        }
+
+        /**
+         * @param value numeric column
+         * @return sums of values of matching events by account address
+         */
+        public Map<String, AdsAmount> sumByAccount(Value value) {
+            return decode(sumBy(account, value, new HashMap<>()), accounts);
+        }
+
+        /**
+         * @return time of first matching event by account address
+         */
+        public Map<String, Long> firstTimeByAccount() {
+            Map<String, Long> result = new HashMap<>();
+            for (int row = 0; !isEmpty && row < size; row++) {
+                if (matches(row)) {
+                    result.putIfAbsent(accounts.decode(account[row]), time[row]);
+                }
+            }
+            return result;
+        }
+
+        private Map<Integer, Long> sumBy(int[] keys, Value value, Map<Integer, Long> sums) {
+            long[] column = values[value.ordinal()];
+            for (int row = 0; !isEmpty && row < size; row++) {
+                if (column[row] != NONE && matches(row)) {
+                    sums.merge(keys[row], column[row], Math::addExact);
+                }
+            }
+            return sums;
+        }
+
+        private Map<String, AdsAmount> decode(Map<Integer, Long> sums, Dictionary dictionary) {
+            Map<String, AdsAmount> result = new HashMap<>();
+            sums.forEach((key, sum) -> result.put(dictionary.decode(key), AdsAmount.ofUnscaled(sum)));
+            return result;
+        }
+    }
+
+    /**
+     * Dictionary encoding of strings. Null is encoded as {@value #NULL}.
+     */
+    private static class Dictionary {
+        private static final int NULL = -1;
+        private static final int ANY = -2;
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        private int encode(String s) {
+            if (s == null) {
+                return NULL;
+            }
+            return codes.computeIfAbsent(s, key -> {
+                strings.add(key);
+                return strings.size() - 1;
+            });
+        }
+
+        /**
+         * @return code of string or {@value #ANY}, if string was not encoded
+         */
+        private int find(String s) {
+            if (s == null) {
+                return NULL;
+            }
+            return codes.getOrDefault(s, ANY);
+        }
+
+        private String decode(int code) {
+            return (code == NULL) ? null : strings.get(code);
+        }
+    }
+}
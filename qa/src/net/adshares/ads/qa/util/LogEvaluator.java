@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Single-pass evaluator of get_log response. It computes balance from log events, timestamp of last event
+ * and optionally array of filtered events.
+ * <p>
+ * String response is read with {@link JsonReader} and only one log entry is kept in memory at a time,
+ * so memory use does not depend on log size (unless filtered events are collected).
+ */
+public class LogEvaluator {
+
+    private static final Logger log = LoggerFactory.getLogger(LogEvaluator.class);
+
+    private final LogFilter filter;
+    private final boolean isCollectingEvents;
+
+    /**
+     * @param filter             LogFilter, null for all events
+     * @param isCollectingEvents true, if events matching filter should be returned in result
+     */
+    public LogEvaluator(LogFilter filter, boolean isCollectingEvents) {
+        this.filter = filter;
+        this.isCollectingEvents = isCollectingEvents;
+    }
+
+    /**
+     * @param resp get_log response
+     * @return evaluation result
+     */
+    public Result evaluate(String resp) {
+        return evaluate(new StringReader(resp));
+    }
+
+    /**
+     * @param reader reader of get_log response
+     * @return evaluation result
+     * @throws JsonParseException when response is not valid json object
+     */
+    public Result evaluate(Reader reader) {
+        Result result = new Result(filter, isCollectingEvents);
+        JsonParser parser = new JsonParser();
+        try (JsonReader jsonReader = new JsonReader(reader)) {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                String name = jsonReader.nextName();
+                if ("account".equals(name) && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                    result.setAccount(parser.parse(jsonReader).getAsJsonObject());
+                } else if ("log".equals(name)) {
+                    result.hasLog = true;
+                    if (jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                        jsonReader.beginArray();
+                        while (jsonReader.hasNext()) {
+                            result.add(parser.parse(jsonReader).getAsJsonObject());
+                        }
+                        jsonReader.endArray();
+                    } else {
+                        jsonReader.skipValue();
+                    }
+                } else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+        result.finish();
+        return result;
+    }
+
+    /**
+     * Evaluates response, which is already parsed.
+     *
+     * @param resp get_log response
+     * @return evaluation result
+     */
+    public Result evaluate(JsonObject resp) {
+        Result result = new Result(filter, isCollectingEvents);
+        if (resp.has("account") && resp.get("account").isJsonObject()) {
+            result.setAccount(resp.getAsJsonObject("account"));
+        }
+        if (resp.has("log")) {
+            result.hasLog = true;
+            JsonElement jsonElementLog = resp.get("log");
+            if (jsonElementLog.isJsonArray()) {
+                for (JsonElement je : jsonElementLog.getAsJsonArray()) {
+                    result.add(je.getAsJsonObject());
+                }
+            }
+        }
+        result.finish();
+        return result;
+    }
+
+    /**
+     * Result of evaluation.
+     */
+    public static class Result {
+        private final LogFilter filter;
+        private final JsonArray events;
+        /**
+         * In case of "send_many" event, field "sender_fee" is not reliable. It's value is not always correct.
+         * Current solution is depended on that all out transfers are counted together.
+         * Field "sender_fee_total" value is subtract once for all "send_many" events with same id.
+         */
+        private final Set<String> sendManyTxIds = new HashSet<>();
+        /**
+         * Bank profits by node. Profit is counted only for node of account, which may be unknown
+         * until whole response is read.
+         */
+        private final Map<Integer, AdsAmount> bankProfits = new HashMap<>();
+
+        private JsonObject account;
+        private boolean hasLog;
+        private AdsAmount balance = AdsAmount.ZERO;
+        private long lastEventTime;
+        private int lastEventCount;
+
+        private Result(LogFilter filter, boolean isCollectingEvents) {
+            this.filter = filter;
+            this.events = isCollectingEvents ? new JsonArray() : null;
+        }
+
+        /**
+         * @return true, if response has account object
+         */
+        public boolean hasAccount() {
+            return account != null;
+        }
+
+        /**
+         * @return true, if response has log field
+         */
+        public boolean hasLog() {
+            return hasLog;
+        }
+
+        /**
+         * @return account object from response or null, if it is missing
+         */
+        public JsonObject getAccount() {
+            return account;
+        }
+
+        /**
+         * @return balance from account object (account.balance)
+         */
+        public AdsAmount getAccountBalance() {
+            return AdsAmount.fromJson(account.get("balance"));
+        }
+
+        /**
+         * @return balance computed from filtered operations in log array
+         */
+        public AdsAmount getBalance() {
+            return balance;
+        }
+
+        /**
+         * @return timestamp of last event in log or 0, if log is empty; filter is not applied
+         */
+        public LogEventTimestamp getLastEventTimestamp() {
+            return new LogEventTimestamp(lastEventTime, lastEventCount);
+        }
+
+        /**
+         * @return array of events matching filter or null, if events were not collected
+         */
+        public JsonArray getEvents() {
+            return events;
+        }
+
+        private void setAccount(JsonObject account) {
+            this.account = account;
+        }
+
+        private void add(JsonObject logEntry) {
+            long time = logEntry.has("time") ? logEntry.get("time").getAsLong() : 0;
+            if (time == lastEventTime && lastEventCount > 0) {
+                ++lastEventCount;
+            } else {
+                lastEventTime = time;
+                lastEventCount = 1;
+            }
+
+            // checking entry with filter
+            if (filter != null && !filter.processEntry(logEntry)) {
+                log.debug("skipping: {}", logEntry.get("type"));
+                return;
+            }
+            if (events != null) {
+                events.add(logEntry);
+            }
+            balance = balance.add(getAmount(new LogEvent(logEntry)));
+        }
+
+        private void finish() {
+            if (!bankProfits.isEmpty()) {
+                int node = (account != null && account.has("node")) ? account.get("node").getAsInt() : -1;
+                for (Map.Entry<Integer, AdsAmount> entry : bankProfits.entrySet()) {
+                    if (entry.getKey() == node) {
+                        balance = balance.add(entry.getValue());
+                    } else {
+                        log.debug("bank profit for different node");
+                    }
+                }
+            }
+        }
+
+        private AdsAmount getAmount(LogEvent event) {
+            AdsAmount amount;
+            switch (event.getType()) {
+                case CREATE_ACCOUNT:
+                case SEND_ONE:
+                case BROADCAST:
+                case RETRIEVE_FUNDS:
+                case LOG_ACCOUNT:
+                case CREATE_NODE:
+                    amount = getTransferAmount(event);
+                    break;
+
+                case SEND_MANY:
+                    amount = event.getAmount();
+                    // please, check description of sendManyTxIds
+                    if (event.isOut() && sendManyTxIds.add(event.getId())) {
+                        AdsAmount senderFee = event.getSenderFeeTotal();
+                        log.debug("send_many with fee_total ({})", senderFee);
+                        amount = amount.subtract(senderFee);
+                    }
+                    break;
+
+                case DIVIDEND:
+                    amount = event.getDividend();
+                    break;
+
+                case NODE_STARTED:
+                    amount = AdsAmount.fromJson(event.getEntry().getAsJsonObject("account").get("balance"));
+                    if (event.getDividend() != null) {
+                        amount = amount.add(event.getDividend());
+                    }
+                    break;
+
+                case BANK_PROFIT:
+                    amount = event.getProfit();
+                    if (event.getFee() != null) {
+                        amount = amount.subtract(event.getFee());
+                    }
+                    if (event.getNode() != -1) {
+                        // profit is added, when node of account is known
+                        bankProfits.merge(event.getNode(), amount, AdsAmount::add);
+                        amount = AdsAmount.ZERO;
+                    }
+                    break;
+
+                case ACCOUNT_CREATED:
+                    // amount is present, when account was not created
+                    amount = (event.getAmount() != null) ? event.getAmount() : AdsAmount.ZERO;
+                    break;
+
+                case CREATE_NODE_ACCEPTED:
+                    amount = AdsAmount.ZERO;
+                    break;
+
+                case RETRIEVE_FUNDS_RESPONSE:
+                case CHANGE_ACCOUNT_KEY:
+                    // sender_fee is included in amount
+                    amount = event.getAmount();
+                    break;
+
+                case SET_ACCOUNT_STATUS:
+                case UNSET_ACCOUNT_STATUS:
+                case SET_NODE_STATUS:
+                case UNSET_NODE_STATUS:
+                case CHANGE_NODE_KEY:
+                    amount = event.isOut() ? event.getSenderFee().negate() : AdsAmount.ZERO;
+                    break;
+
+                default:
+                    amount = getUnknownAmount(event);
+                    break;
+            }
+            log.debug("{}:{}", event.getType(), amount);
+            return amount;
+        }
+
+        private static AdsAmount getTransferAmount(LogEvent event) {
+            AdsAmount amount = event.getAmount();
+            if (event.isOut()) {
+                amount = amount.subtract(event.getSenderFee());
+            }
+            return amount;
+        }
+
+        private static AdsAmount getUnknownAmount(LogEvent event) {
+            JsonObject entry = event.getEntry();
+            log.warn("Unknown type: " + entry.get("type") + ", no " + entry.get("type_no"));
+            return AdsAmount.ZERO;
+        }
+    }
+}
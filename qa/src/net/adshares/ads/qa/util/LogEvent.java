@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Immutable log entry (get_log event). Common fields are parsed, other fields are available in original entry.
+ */
+public class LogEvent {
+
+    private final JsonObject entry;
+    private final LogEventType type;
+    private final long time;
+    private final String blockId;
+    private final String id;
+    private final boolean isOut;
+    private final boolean isConfirmed;
+    private final int node;
+    private final String address;
+    private final AdsAmount amount;
+    private final AdsAmount senderFee;
+    private final AdsAmount senderFeeTotal;
+    private final AdsAmount fee;
+    private final AdsAmount profit;
+    private final AdsAmount profitShared;
+    private final AdsAmount dividend;
+
+    /**
+     * @param entry log entry from get_log response
+     */
+    public LogEvent(JsonObject entry) {
+        this.entry = entry;
+        this.type = LogEventType.of(getInt(entry, "type_no"), getString(entry, "type"));
+        this.time = entry.has("time") ? entry.get("time").getAsLong() : 0L;
+        this.blockId = getString(entry, "block_id");
+        this.id = getString(entry, "id");
+        this.isOut = "out".equals(getString(entry, "inout"));
+        this.isConfirmed = "yes".equals(getString(entry, "confirmed"));
+        this.node = getInt(entry, "node");
+        this.address = getString(entry, "address");
+        this.amount = getAmount(entry, "amount");
+        this.senderFee = getAmount(entry, "sender_fee");
+        this.senderFeeTotal = getAmount(entry, "sender_fee_total");
+        this.fee = getAmount(entry, "fee");
+        this.profit = getAmount(entry, "profit");
+        this.profitShared = getAmount(entry, "profit_shared");
+        this.dividend = getAmount(entry, "dividend");
+    }
+
+    /**
+     * @return original log entry
+     */
+    public JsonObject getEntry() {
+        return entry;
+    }
+
+    public LogEventType getType() {
+        return type;
+    }
+
+    /**
+     * @return event time in seconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return block id or null, if event has no block id
+     */
+    public String getBlockId() {
+        return blockId;
+    }
+
+    /**
+     * @return transaction id or null, if event has no id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return true, if event is outgoing (inout is "out")
+     */
+    public boolean isOut() {
+        return isOut;
+    }
+
+    /**
+     * @return true, if event is marked as confirmed
+     */
+    public boolean isConfirmed() {
+        return isConfirmed;
+    }
+
+    /**
+     * @return node or -1, if event has no node
+     */
+    public int getNode() {
+        return node;
+    }
+
+    /**
+     * @return address or null, if event has no address
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * @return amount or null, if event has no amount
+     */
+    public AdsAmount getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return sender fee or null, if event has no sender fee
+     */
+    public AdsAmount getSenderFee() {
+        return senderFee;
+    }
+
+    /**
+     * @return total sender fee (send_many) or null, if event has no total sender fee
+     */
+    public AdsAmount getSenderFeeTotal() {
+        return senderFeeTotal;
+    }
+
+    /**
+     * @return fee or null, if event has no fee
+     */
+    public AdsAmount getFee() {
+        return fee;
+    }
+
+    /**
+     * @return profit or null, if event has no profit
+     */
+    public AdsAmount getProfit() {
+        return profit;
+    }
+
+    /**
+     * @return shared profit or null, if event has no shared profit
+     */
+    public AdsAmount getProfitShared() {
+        return profitShared;
+    }
+
+    /**
+     * @return dividend or null, if event has no dividend
+     */
+    public AdsAmount getDividend() {
+        return dividend;
+    }
+
+    @Override
+    public String toString() {
+        return entry.toString();
+    }
+
+    private static String getString(JsonObject entry, String name) {
+        JsonElement element = entry.get(name);
+        return (element != null && !element.isJsonNull()) ? element.getAsString() : null;
+    }
+
+    private static int getInt(JsonObject entry, String name) {
+        JsonElement element = entry.get(name);
+        return (element != null && !element.isJsonNull()) ? element.getAsInt() : -1;
+    }
+
+    private static AdsAmount getAmount(JsonObject entry, String name) {
+        return AdsAmount.fromJson(entry.get(name));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Kind of log entry (get_log event). Kind is identified by numeric type (type_no). Responses have the highest bit
+ * of numeric type set, so requests and responses of the same function (eg. retrieve_funds) share text type.
+ */
+public enum LogEventType {
+    BROADCAST(3, "broadcast"),
+    SEND_ONE(4, "send_one"),
+    SEND_MANY(5, "send_many"),
+    CREATE_ACCOUNT(6, "create_account"),
+    CREATE_NODE(7, "create_node"),
+    RETRIEVE_FUNDS(8, "retrieve_funds"),
+    CHANGE_ACCOUNT_KEY(9, "change_account_key"),
+    CHANGE_NODE_KEY(10, "change_node_key"),
+    SET_ACCOUNT_STATUS(11, "set_account_status"),
+    SET_NODE_STATUS(12, "set_node_status"),
+    UNSET_ACCOUNT_STATUS(13, "unset_account_status"),
+    UNSET_NODE_STATUS(14, "unset_node_status"),
+    LOG_ACCOUNT(15, "log_account"),
+    NODE_STARTED(32768, "node_started"),
+    /**
+     * Response for create remote account
+     */
+    ACCOUNT_CREATED(32770, "account_created"),
+    /**
+     * create_node request accepted
+     */
+    CREATE_NODE_ACCEPTED(32775, "create_node"),
+    /**
+     * Response for retrieve_funds
+     */
+    RETRIEVE_FUNDS_RESPONSE(32776, "retrieve_funds"),
+    DIVIDEND(32784, "dividend"),
+    BANK_PROFIT(32785, "bank_profit"),
+    UNKNOWN(-1, "");
+
+    private static final Map<Integer, LogEventType> byTypeNo = new HashMap<>();
+    /**
+     * Kinds with unique text type. It is used, when numeric type is not known.
+     */
+    private static final Map<String, LogEventType> byUniqueType = new HashMap<>();
+
+    static {
+        Set<String> duplicatedTypes = new HashSet<>();
+        for (LogEventType eventType : values()) {
+            if (eventType == UNKNOWN) {
+                continue;
+            }
+            byTypeNo.put(eventType.typeNo, eventType);
+            if (byUniqueType.put(eventType.type, eventType) != null) {
+                duplicatedTypes.add(eventType.type);
+            }
+        }
+        byUniqueType.keySet().removeAll(duplicatedTypes);
+    }
+
+    private final int typeNo;
+    private final String type;
+
+    LogEventType(int typeNo, String type) {
+        this.typeNo = typeNo;
+        this.type = type;
+    }
+
+    /**
+     * @return numeric type (type_no)
+     */
+    public int getTypeNo() {
+        return typeNo;
+    }
+
+    /**
+     * @return text type (type)
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns kind of log entry. Kind is found by numeric type, text type is used only if numeric type
+     * is not known or it does not match text type.
+     *
+     * @param typeNo numeric type (type_no)
+     * @param type   text type (type)
+     * @return kind of log entry, UNKNOWN if it was not found
+     */
+    public static LogEventType of(int typeNo, String type) {
+        LogEventType eventType = byTypeNo.get(typeNo);
+        if (eventType != null && eventType.type.equals(type)) {
+            return eventType;
+        }
+        return byUniqueType.getOrDefault(type, UNKNOWN);
+    }
+}
@@ -19,42 +19,69 @@
 
 package net.adshares.ads.qa.util;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
-import java.util.HashMap;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 /**
- * Used for selecting/excluding events from log (get_log response)
+ * Used for selecting/excluding events from log (get_log response).
+ * <p>
+ * Criteria are compiled, when they are added: value without regex metacharacters is compared with
+ * {@link String#equals(Object)}, other values are compiled to {@link Pattern}. Filters can be combined
+ * with {@link #and(LogFilter)}, {@link #or(LogFilter)} and {@link #negate()}.
  */
 public class LogFilter {
+    /**
+     * Characters, which make value a regular expression
+     */
+    private static final String REGEX_METACHARACTERS = "\\.[]{}()<>*+-=!?^$|";
+
     /**
      * filter type: true - require, false - exclude
      */
-    private boolean isRequired;
+    private final boolean isRequired;
     /**
      * filter criterions:<br />
      * - key is Json object field name, <br />
-     * - value is value of that field.
+     * - value is compiled matcher of that field value.
      */
-    private Map<String, String> filterMap;
+    private final Map<String, Predicate<String>> filterMap;
+    /**
+     * Predicate of composed filter, null for filter with criteria
+     */
+    private final Predicate<JsonObject> predicate;
 
     /**
      * @param isRequired filter type: true - require, false - exclude
      */
     public LogFilter(boolean isRequired) {
         this.isRequired = isRequired;
-        this.filterMap = new HashMap<>();
+        this.filterMap = new LinkedHashMap<>();
+        this.predicate = null;
+    }
+
+    private LogFilter(Predicate<JsonObject> predicate) {
+        this.isRequired = true;
+        this.filterMap = null;
+        this.predicate = predicate;
     }
 
     /**
      * Adds filter criterion.
      *
      * @param key   Json object field name
-     * @param value value of Json field
+     * @param value regular expression, which must match whole value of Json field
      */
     public void addFilter(String key, String value) {
-        filterMap.put(key, value);
+        if (filterMap == null) {
+            throw new IllegalStateException("Criterion cannot be added to composed filter");
+        }
+        filterMap.put(key, compile(value));
     }
 
     /**
@@ -64,22 +91,109 @@ public class LogFilter {
      * @return true if entry should be processed, false if entry should be skipped
      */
     public boolean processEntry(JsonObject o) {
-        boolean isMatch = false;
-
-        if (o != null) {
-            for (String key : filterMap.keySet()) {
-                if (o.has(key)) {
-                    isMatch = o.get(key).getAsString().matches(filterMap.get(key));
-                } else {
-                    isMatch = false;
-                }
-                if (!isMatch) {
-                    break;
-                }
+        boolean isMatch = o != null && matches(o);
+        return isMatch == isRequired;
+    }
+
+    private boolean matches(JsonObject o) {
+        if (predicate != null) {
+            return predicate.test(o);
+        }
+        if (filterMap.isEmpty()) {
+            return false;
+        }
+        for (Map.Entry<String, Predicate<String>> entry : filterMap.entrySet()) {
+            JsonElement element = o.get(entry.getKey());
+            if (element == null || !entry.getValue().test(element.getAsString())) {
+                return false;
             }
         }
+        return true;
+    }
+
+    /**
+     * @param other filter
+     * @return filter, which processes entries processed by both filters
+     */
+    public LogFilter and(LogFilter other) {
+        return new LogFilter(o -> processEntry(o) && other.processEntry(o));
+    }
 
-        return (isMatch && isRequired) || (!isMatch && !isRequired);
+    /**
+     * @param other filter
+     * @return filter, which processes entries processed by any of filters
+     */
+    public LogFilter or(LogFilter other) {
+        return new LogFilter(o -> processEntry(o) || other.processEntry(o));
+    }
+
+    /**
+     * @return filter, which processes entries skipped by this filter
+     */
+    public LogFilter negate() {
+        return new LogFilter(o -> !processEntry(o));
     }
 
+    /**
+     * @param key   Json object field name
+     * @param value regular expression, which must match whole value of Json field
+     * @return filter requiring field value
+     */
+    public static LogFilter field(String key, String value) {
+        LogFilter filter = new LogFilter(true);
+        filter.addFilter(key, value);
+        return filter;
+    }
+
+    /**
+     * @param from minimal time in seconds (inclusive)
+     * @param to   maximal time in seconds (inclusive)
+     * @return filter requiring event time in range
+     */
+    public static LogFilter timeBetween(long from, long to) {
+        return new LogFilter(o -> {
+            JsonElement element = o.get("time");
+            if (element == null) {
+                return false;
+            }
+            long time = element.getAsLong();
+            return time >= from && time <= to;
+        });
+    }
+
+    /**
+     * @param min minimal amount (inclusive), null for no limit
+     * @param max maximal amount (inclusive), null for no limit
+     * @return filter requiring event amount in range
+     */
+    public static LogFilter amountBetween(BigDecimal min, BigDecimal max) {
+        return range("amount", min, max);
+    }
+
+    /**
+     * @param key Json object field name
+     * @param min minimal value (inclusive), null for no limit
+     * @param max maximal value (inclusive), null for no limit
+     * @return filter requiring numeric field value in range
+     */
+    public static LogFilter range(String key, BigDecimal min, BigDecimal max) {
+        return new LogFilter(o -> {
+            JsonElement element = o.get(key);
+            if (element == null) {
+                return false;
+            }
+            BigDecimal value = element.getAsBigDecimal();
+            return (min == null || value.compareTo(min) >= 0) && (max == null || value.compareTo(max) <= 0);
+        });
+    }
+
+    private static Predicate<String> compile(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (REGEX_METACHARACTERS.indexOf(value.charAt(i)) >= 0) {
+                Pattern pattern = Pattern.compile(value);
+                return s -> pattern.matcher(s).matches();
+            }
+        }
+        return value::equals;
+    }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import net.adshares.ads.qa.caller.FunctionCaller;
+import net.adshares.ads.qa.data.UserData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Incrementally read log of single account. Every update downloads only events after cursor and merges them
+ * into history, so log is not downloaded and parsed again by every check.
+ * <p>
+ * Events are identified by time, id, direction and address (events without id by their content).
+ * Cursor is not moved past unconfirmed event, so event is downloaded again until it is confirmed
+ * and its history entry is replaced.
+ */
+public class LogTail {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final UserData userData;
+    /**
+     * History entries by event key, in order of events
+     */
+    private final Map<String, JsonObject> history = new LinkedHashMap<>();
+    /**
+     * Keys of events, which happened before start timestamp, but in the same second
+     */
+    private final Set<String> skippedKeys = new HashSet<>();
+    private final List<Consumer<JsonObject>> subscribers = new ArrayList<>();
+    private final LogEventTimestamp startTimestamp;
+    /**
+     * Time in seconds, from which next update downloads events
+     */
+    private long cursor;
+    private JsonObject account;
+
+    /**
+     * @param userData       user data
+     * @param startTimestamp timestamp of first event in history
+     */
+    public LogTail(UserData userData, LogEventTimestamp startTimestamp) {
+        this.userData = userData;
+        this.startTimestamp = startTimestamp;
+        this.cursor = startTimestamp.getTimestamp();
+    }
+
+    /**
+     * Adds subscriber, which is notified about every new event.
+     *
+     * @param subscriber subscriber
+     */
+    public synchronized void subscribe(Consumer<JsonObject> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Downloads events after cursor and merges them into history.
+     *
+     * @return list of new events
+     */
+    public List<JsonObject> update() {
+        return update(FunctionCaller.getInstance());
+    }
+
+    /**
+     * Downloads events after cursor and merges them into history.
+     *
+     * @param functionCaller function caller of scenario, it is needed when update is called from other thread
+     * @return list of new events
+     */
+    public List<JsonObject> update(FunctionCaller functionCaller) {
+        long from;
+        synchronized (this) {
+            from = cursor;
+        }
+        return merge(functionCaller.getLog(userData, from));
+    }
+
+    /**
+     * Merges get_log response into history.
+     *
+     * @param resp get_log response, which contains events from cursor
+     * @return list of new events
+     */
+    synchronized List<JsonObject> merge(String resp) {
+        JsonObject o = Utils.convertStringToJsonObject(resp);
+        if (!o.has("account") || !o.has("log")) {
+            log.warn("Invalid log response for {}: {}", userData.getAddress(), resp);
+            return Collections.emptyList();
+        }
+        account = o.getAsJsonObject("account");
+
+        List<JsonObject> newEvents = new ArrayList<>();
+        JsonElement logElement = o.get("log");
+        if (logElement.isJsonArray()) {
+            int startSecondCount = 0;
+            for (JsonElement je : logElement.getAsJsonArray()) {
+                JsonObject entry = je.getAsJsonObject();
+                String key = getKey(entry);
+                long time = entry.get("time").getAsLong();
+                if (time == startTimestamp.getTimestamp() && !history.containsKey(key)
+                        && ++startSecondCount < startTimestamp.getEventNum()) {
+                    // event happened before start timestamp
+                    skippedKeys.add(key);
+                }
+                if (skippedKeys.contains(key)) {
+                    continue;
+                }
+                if (history.put(key, entry) == null) {
+                    newEvents.add(entry);
+                }
+            }
+        }
+        cursor = computeCursor();
+
+        for (JsonObject entry : newEvents) {
+            for (Consumer<JsonObject> subscriber : subscribers) {
+                subscriber.accept(entry);
+            }
+        }
+        log.debug("{} new events for {}, cursor {}", newEvents.size(), userData.getAddress(), cursor);
+        return newEvents;
+    }
+
+    /**
+     * @return time of first unconfirmed event or time of last event
+     */
+    private long computeCursor() {
+        long lastTime = cursor;
+        for (JsonObject entry : history.values()) {
+            long time = entry.get("time").getAsLong();
+            if (entry.has("confirmed") && !"yes".equals(entry.get("confirmed").getAsString())) {
+                return time;
+            }
+            lastTime = Math.max(lastTime, time);
+        }
+        return lastTime;
+    }
+
+    /**
+     * @return all events since start timestamp
+     */
+    public synchronized JsonArray getHistory() {
+        JsonArray arr = new JsonArray();
+        for (JsonObject entry : history.values()) {
+            arr.add(entry);
+        }
+        return arr;
+    }
+
+    /**
+     * @return log checker for account object from last update and all events since start timestamp
+     */
+    public synchronized LogChecker getLogChecker() {
+        JsonObject o = new JsonObject();
+        o.add("account", (account != null) ? account : new JsonObject());
+        o.add("log", getHistory());
+        LogChecker logChecker = new LogChecker();
+        logChecker.setResp(o);
+        return logChecker;
+    }
+
+    /**
+     * @return user data
+     */
+    public UserData getUserData() {
+        return userData;
+    }
+
+    private static String getKey(JsonObject entry) {
+        if (entry.has("id")) {
+            // send_many has one event for every receiver, all with the same id
+            return entry.get("time").getAsString() + '|' + entry.get("id").getAsString()
+                    + '|' + getString(entry, "inout") + '|' + getString(entry, "address");
+        }
+        JsonObject copy = new JsonObject();
+        for (Map.Entry<String, JsonElement> e : entry.entrySet()) {
+            if (!"confirmed".equals(e.getKey())) {
+                copy.add(e.getKey(), e.getValue());
+            }
+        }
+        return copy.toString();
+    }
+
+    private static String getString(JsonObject entry, String name) {
+        return entry.has(name) ? entry.get(name).getAsString() : "";
+    }
+}
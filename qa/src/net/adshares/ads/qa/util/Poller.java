@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import org.junit.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Repeats call until result is accepted, terminal result is returned or limit of attempts (or time) is reached.
+ * Delay between attempts is defined by {@link Backoff}. Every poll is recorded in {@link PollerMetrics}
+ * under name of poller.
+ * <p>
+ * Poller is immutable and can be shared, it is created with {@link Builder}:
+ * <pre>
+ * String resp = new Poller.Builder&lt;String&gt;("get_block")
+ *         .until(this::isBlockAvailable)
+ *         .backoff(Poller.Backoff.fixed(3000L))
+ *         .maxAttempts(10)
+ *         .failReason("Cannot get block info after delay")
+ *         .build()
+ *         .poll(() -&gt; getBlockSingleCall(userData));
+ * </pre>
+ *
+ * @param <T> result type
+ */
+public class Poller<T> {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String name;
+    private final Predicate<T> isAccepted;
+    private final Predicate<T> isTerminal;
+    private final Backoff backoff;
+    private final double jitter;
+    private final int maxAttempts;
+    private final long timeout;
+    private final String failReason;
+
+    private Poller(Builder<T> builder) {
+        this.name = builder.name;
+        this.isAccepted = builder.isAccepted;
+        this.isTerminal = builder.isTerminal;
+        this.backoff = builder.backoff;
+        this.jitter = builder.jitter;
+        this.maxAttempts = builder.maxAttempts;
+        this.timeout = builder.timeout;
+        this.failReason = builder.failReason;
+    }
+
+    /**
+     * Calls until result is accepted.
+     *
+     * @param call call
+     * @return accepted or terminal result. If limit is reached and fail reason is not set, last result is returned.
+     */
+    public T poll(Supplier<T> call) {
+        Run run = new Run();
+        while (true) {
+            T result = call.get();
+            long delay = run.next(result);
+            if (delay < 0) {
+                return result;
+            }
+
+            long waitStart = System.currentTimeMillis();
+            EscUtils.sleep(delay);
+            run.waitTime += System.currentTimeMillis() - waitStart;
+        }
+    }
+
+    /**
+     * Calls until result is accepted. Calls are run on executor and next attempt is scheduled on scheduler,
+     * so no thread is blocked while waiting for next attempt.
+     *
+     * @param call      call
+     * @param executor  executor, which runs calls
+     * @param scheduler scheduler of next attempts
+     * @return future accepted or terminal result. If limit is reached and fail reason is not set, last result
+     * is returned, otherwise future fails with assertion error.
+     */
+    public CompletableFuture<T> pollAsync(Supplier<T> call, Executor executor, ScheduledExecutorService scheduler) {
+        return pollAsync(() -> CompletableFuture.supplyAsync(call, executor), scheduler);
+    }
+
+    /**
+     * Calls until result is accepted. Call is asynchronous, e.g. it is composed of other asynchronous calls,
+     * and next attempt is scheduled on scheduler, so no thread is blocked during polling.
+     *
+     * @param call      asynchronous call
+     * @param scheduler scheduler of next attempts
+     * @return future accepted or terminal result. If limit is reached and fail reason is not set, last result
+     * is returned, otherwise future fails with assertion error.
+     */
+    public CompletableFuture<T> pollAsync(Supplier<CompletableFuture<T>> call, ScheduledExecutorService scheduler) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        attempt(new Run(), call, scheduler, future);
+        return future;
+    }
+
+    private void attempt(Run run, Supplier<CompletableFuture<T>> call, ScheduledExecutorService scheduler,
+                         CompletableFuture<T> future) {
+        CompletableFuture<T> attemptFuture;
+        try {
+            attemptFuture = call.get();
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            return;
+        }
+        attemptFuture.whenComplete((result, error) -> {
+            if (error != null) {
+                future.completeExceptionally((error instanceof CompletionException && error.getCause() != null)
+                        ? error.getCause() : error);
+                return;
+            }
+            try {
+                long delay = run.next(result);
+                if (delay < 0) {
+                    future.complete(result);
+                    return;
+                }
+
+                long realDelay = EscUtils.getRealDelay(delay);
+                run.waitTime += realDelay;
+                scheduler.schedule(() -> attempt(run, call, scheduler, future), realDelay, TimeUnit.MILLISECONDS);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+    }
+
+    /**
+     * State of single polling.
+     */
+    private class Run {
+        private final long startTime = System.currentTimeMillis();
+        private final long startNetworkTime = EscUtils.currentTimeMillis();
+        private long waitTime;
+        private int attempt;
+
+        /**
+         * Checks result of next attempt.
+         *
+         * @param result result of attempt
+         * @return delay before next attempt in milliseconds (network time) or -1, if polling is finished
+         */
+        private long next(T result) {
+            attempt++;
+            if (isAccepted.test(result)) {
+                log.debug("{}: accepted in {} attempt", name, attempt);
+                record(PollerMetrics.Outcome.ACCEPTED);
+                return -1L;
+            }
+            if (isTerminal.test(result)) {
+                log.debug("{}: terminal result in {} attempt", name, attempt);
+                record(PollerMetrics.Outcome.TERMINAL);
+                return -1L;
+            }
+
+            long delay = applyJitter(backoff.getDelay(attempt));
+            boolean isTimeout = EscUtils.currentTimeMillis() + delay - startNetworkTime > timeout;
+            if (attempt >= maxAttempts || isTimeout) {
+                log.debug("{}: not accepted in {} attempts", name, attempt);
+                record(PollerMetrics.Outcome.EXHAUSTED);
+                if (failReason != null) {
+                    Assert.fail(failReason);
+                }
+                return -1L;
+            }
+            return Math.max(0L, delay);
+        }
+
+        private void record(PollerMetrics.Outcome outcome) {
+            PollerMetrics.getInstance().record(name, outcome, attempt, waitTime,
+                    System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private long applyJitter(long delay) {
+        if (jitter <= 0 || delay <= 0) {
+            return delay;
+        }
+        double factor = 1.0 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1.0);
+        return Math.round(delay * factor);
+    }
+
+    /**
+     * Delay before next attempt.
+     */
+    public interface Backoff {
+
+        /**
+         * @param attempt number of finished attempts, starting from 1
+         * @return delay in milliseconds (network time)
+         */
+        long getDelay(int attempt);
+
+        /**
+         * @param delay delay in milliseconds
+         * @return the same delay after every attempt
+         */
+        static Backoff fixed(long delay) {
+            return attempt -> delay;
+        }
+
+        /**
+         * @param initialDelay delay after first attempt in milliseconds
+         * @param maxDelay     maximal delay in milliseconds
+         * @return delay doubled after every attempt, but not longer than maxDelay
+         */
+        static Backoff exponential(long initialDelay, long maxDelay) {
+            return attempt -> (attempt > 31) ? maxDelay : Math.min(maxDelay, initialDelay << (attempt - 1));
+        }
+
+        /**
+         * Delay lasts to the start of next block. It is suitable for data, which changes only with block.
+         *
+         * @param offset additional delay after block start in milliseconds
+         * @return delay to next block
+         */
+        static Backoff blockAligned(long offset) {
+            return attempt -> BlockWatcher.getInstance().getTimeToNextBlock() + offset;
+        }
+    }
+
+    public static class Builder<T> {
+
+        private final String name;
+        private Predicate<T> isAccepted = result -> true;
+        private Predicate<T> isTerminal = result -> false;
+        private Backoff backoff = Backoff.fixed(3000L);
+        private double jitter;
+        private int maxAttempts = Integer.MAX_VALUE;
+        private long timeout = Long.MAX_VALUE;
+        private String failReason;
+
+        /**
+         * @param name name of poller, it identifies poll site in metrics
+         */
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param isAccepted check of result, polling ends when result is accepted
+         * @return builder
+         */
+        public Builder<T> until(Predicate<T> isAccepted) {
+            this.isAccepted = isAccepted;
+            return this;
+        }
+
+        /**
+         * @param isTerminal check of result, polling ends when result is terminal (e.g. unexpected error)
+         * @return builder
+         */
+        public Builder<T> terminal(Predicate<T> isTerminal) {
+            this.isTerminal = isTerminal;
+            return this;
+        }
+
+        public Builder<T> backoff(Backoff backoff) {
+            this.backoff = backoff;
+            return this;
+        }
+
+        /**
+         * @param jitter fraction of delay, by which delay is randomly changed (e.g. 0.1 for +/-10%)
+         * @return builder
+         */
+        public Builder<T> jitter(double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        public Builder<T> maxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param timeout maximal time of polling in milliseconds (network time)
+         * @return builder
+         */
+        public Builder<T> timeout(long timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * @param failReason message of assertion error, when result was not accepted in time. If it is not set,
+         *                   last result is returned.
+         * @return builder
+         */
+        public Builder<T> failReason(String failReason) {
+            this.failReason = failReason;
+            return this;
+        }
+
+        public Poller<T> build() {
+            return new Poller<>(this);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of polls grouped by poller name: number of polls and attempts, total wait time and latency
+ * of accepted results. Summary is logged when tests end.
+ */
+public class PollerMetrics {
+
+    public enum Outcome {
+        /**
+         * Result was accepted.
+         */
+        ACCEPTED,
+        /**
+         * Terminal result was returned.
+         */
+        TERMINAL,
+        /**
+         * Result was not accepted in time.
+         */
+        EXHAUSTED
+    }
+
+    private static PollerMetrics instance;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+
+    private PollerMetrics() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> log.info(getSummary()), "ads-poller-metrics"));
+    }
+
+    public static synchronized PollerMetrics getInstance() {
+        if (instance == null) {
+            instance = new PollerMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Records finished poll.
+     *
+     * @param name     poller name
+     * @param outcome  outcome of poll
+     * @param attempts number of attempts
+     * @param waitTime time spent on waiting between attempts in milliseconds
+     * @param latency  time from start to end of poll in milliseconds
+     */
+    public void record(String name, Outcome outcome, int attempts, long waitTime, long latency) {
+        Site site = sites.computeIfAbsent(name, k -> new Site());
+        site.polls[outcome.ordinal()].increment();
+        site.attempts.add(attempts);
+        site.waitTime.add(waitTime);
+        if (outcome == Outcome.ACCEPTED) {
+            site.acceptedLatency.add(latency);
+            site.maxAcceptedLatency.accumulate(latency);
+        }
+    }
+
+    /**
+     * @return statistics of all pollers, one line per poller
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder("Poller metrics:");
+        for (Map.Entry<String, Site> entry : new TreeMap<>(sites).entrySet()) {
+            Site site = entry.getValue();
+            long accepted = site.polls[Outcome.ACCEPTED.ordinal()].sum();
+            sb.append(System.lineSeparator()).append(String.format(
+                    "%s: polls=%d/%d/%d (accepted/terminal/exhausted), attempts=%d, wait=%d ms, latency avg=%d ms max=%d ms",
+                    entry.getKey(), accepted, site.polls[Outcome.TERMINAL.ordinal()].sum(),
+                    site.polls[Outcome.EXHAUSTED.ordinal()].sum(), site.attempts.sum(), site.waitTime.sum(),
+                    (accepted > 0) ? site.acceptedLatency.sum() / accepted : 0L, site.maxAcceptedLatency.get()));
+        }
+        return sb.toString();
+    }
+
+    private static class Site {
+        private final LongAdder[] polls = new LongAdder[Outcome.values().length];
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder waitTime = new LongAdder();
+        private final LongAdder acceptedLatency = new LongAdder();
+        private final LongAccumulator maxAcceptedLatency = new LongAccumulator(Math::max, 0L);
+
+        private Site() {
+            for (int i = 0; i < polls.length; i++) {
+                polls[i] = new LongAdder();
+            }
+        }
+    }
+}
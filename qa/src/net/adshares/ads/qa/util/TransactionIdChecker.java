@@ -28,8 +28,8 @@ import org.junit.Assert;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class TransactionIdChecker {
 
@@ -37,12 +37,12 @@ public class TransactionIdChecker {
 
     private static TransactionIdChecker instance;
     private static UserData userData;
-    private Queue<TransactionData> txQueue = new LinkedList<>();
+    private final Queue<TransactionData> txQueue = new ConcurrentLinkedQueue<>();
 
     private TransactionIdChecker() {
     }
 
-    public static TransactionIdChecker getInstance() {
+    public static synchronized TransactionIdChecker getInstance() {
         if (instance == null) {
             instance = new TransactionIdChecker();
             userData = UserDataProvider.getInstance().getUserDataList(1).get(0);
@@ -77,8 +77,9 @@ public class TransactionIdChecker {
     }
 
     public void checkAll() {
-        while (!txQueue.isEmpty()) {
-            check(txQueue.remove());
+        TransactionData transactionData;
+        while ((transactionData = txQueue.poll()) != null) {
+            check(transactionData);
         }
     }
 
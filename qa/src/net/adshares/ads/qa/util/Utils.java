@@ -98,6 +98,46 @@ public class Utils {
         return gson.toJson(json);
     }
 
+    /**
+     * Converts hexadecimal String to byte array.
+     *
+     * @param hex hexadecimal String, length must be even
+     * @return byte array
+     * @throws IllegalArgumentException when String is not hexadecimal
+     */
+    public static byte[] hexStringToByteArray(String hex) {
+        int len = hex.length();
+        if (len % 2 != 0) {
+            throw new IllegalArgumentException("Odd length of hexadecimal String");
+        }
+        byte[] bytes = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            int high = Character.digit(hex.charAt(i), 16);
+            int low = Character.digit(hex.charAt(i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hexadecimal String");
+            }
+            bytes[i / 2] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    /**
+     * Converts byte array to hexadecimal String.
+     *
+     * @param bytes byte array
+     * @return upper case hexadecimal String
+     */
+    public static String byteArrayToHexString(byte[] bytes) {
+        final char[] digits = "0123456789ABCDEF".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = digits[(bytes[i] >> 4) & 0x0F];
+            hex[2 * i + 1] = digits[bytes[i] & 0x0F];
+        }
+        return new String(hex);
+    }
+
     /**
      * Return file content as String.
      *
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CassetteTest {
+
+    private static final String SCENARIO_ID = "transfer;send-one";
+    private static final String ADDRESS = "0001-00000000-9B6F";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keyIgnoresWhitespaceOutsideStrings() {
+        Cassette cassette = new Cassette(Cassette.Mode.OFF, new File("unused"));
+        String key1 = cassette.createKey(SCENARIO_ID, ADDRESS, false,
+                Collections.singletonList("{\"run\":\"send_one\", \"message\":\"a b\"}"));
+        String key2 = cassette.createKey(SCENARIO_ID, ADDRESS, false,
+                Collections.singletonList("{ \"run\" : \"send_one\",\n\"message\" : \"a b\" }"));
+        String key3 = cassette.createKey(SCENARIO_ID, ADDRESS, false,
+                Collections.singletonList("{\"run\":\"send_one\", \"message\":\"ab\"}"));
+        assertEquals(key1, key2);
+        assertNotEquals(key1, key3);
+    }
+
+    @Test
+    public void keyIgnoresVolatileFields() {
+        Cassette cassette = new Cassette(Cassette.Mode.OFF, new File("unused"));
+        String key1 = cassette.createKey(SCENARIO_ID, ADDRESS, false, Arrays.asList("{\"run\":\"get_me\"}",
+                "{\"run\":\"send_one\",\"msid\":12,\"hash\":\"AB12\",\"amount\":\"1\"}"));
+        String key2 = cassette.createKey(SCENARIO_ID, ADDRESS, false, Arrays.asList("{\"run\":\"get_me\"}",
+                "{\"run\":\"send_one\",\"msid\":13,\"hash\":\"CD34\",\"amount\":\"1\"}"));
+        String key3 = cassette.createKey(SCENARIO_ID, ADDRESS, false, Arrays.asList("{\"run\":\"get_me\"}",
+                "{\"run\":\"send_one\",\"msid\":13,\"hash\":\"CD34\",\"amount\":\"2\"}"));
+        assertEquals(key1, key2);
+        assertNotEquals(key1, key3);
+    }
+
+    @Test
+    public void keyDependsOnScenarioSubjectAndDryRun() {
+        Cassette cassette = new Cassette(Cassette.Mode.OFF, new File("unused"));
+        String key = cassette.createKey(SCENARIO_ID, ADDRESS, false, Collections.singletonList("{}"));
+        assertNotEquals(key, cassette.createKey("other", ADDRESS, false, Collections.singletonList("{}")));
+        assertNotEquals(key, cassette.createKey(SCENARIO_ID, "sh", false, Collections.singletonList("{}")));
+        assertNotEquals(key, cassette.createKey(SCENARIO_ID, ADDRESS, true, Collections.singletonList("{}")));
+    }
+
+    @Test
+    public void replaysRecordedResponsesInOrder() throws IOException {
+        File file = folder.newFile();
+        Cassette recorder = new Cassette(Cassette.Mode.RECORD, file);
+        recorder.record("a", "{\"n\":1}", 10L);
+        recorder.record("b", "{\"n\":\"ł\"}", 20L);
+        recorder.record("a", "{\"n\":2}", 30L);
+
+        Cassette player = new Cassette(Cassette.Mode.REPLAY, file);
+        assertTrue(player.isReplay());
+        assertEquals("{\"n\":1}", player.replay("a"));
+        assertEquals("{\"n\":2}", player.replay("a"));
+        assertNull(player.replay("a"));
+        assertEquals("{\"n\":\"ł\"}", player.replay("b"));
+        assertNull(player.replay("c"));
+    }
+
+    @Test
+    public void skipsTruncatedRecord() throws IOException {
+        File file = folder.newFile();
+        Cassette recorder = new Cassette(Cassette.Mode.RECORD, file);
+        recorder.record("a", "{\"n\":1}", 10L);
+        recorder.record("b", "{\"n\":2}", 10L);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(bytes, 0, bytes.length - 3);
+        }
+
+        Cassette player = new Cassette(Cassette.Mode.REPLAY, file);
+        assertEquals("{\"n\":1}", player.replay("a"));
+        assertNull(player.replay("b"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsFileWithoutHeader() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), "not a cassette".getBytes());
+        new Cassette(Cassette.Mode.REPLAY, file).replay("a");
+    }
+}
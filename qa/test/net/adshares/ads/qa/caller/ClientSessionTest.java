@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.*;
+
+public class ClientSessionTest {
+
+    /**
+     * Client, which answers every request with the request itself
+     */
+    private static final List<String> ECHO_CLIENT = Collections.singletonList("cat");
+
+    @Test
+    public void returnsResponsesInOrder() throws IOException {
+        try (ClientSession session = new ClientSession(ECHO_CLIENT, () -> {
+        })) {
+            List<String> requests = Arrays.asList("{\"run\":\"get_me\"}", "{\"run\":\"get_block\"}");
+            assertEquals(requests, session.execute(requests));
+            assertTrue(session.isAlive());
+        }
+    }
+
+    @Test
+    public void probeKeepsResponsiveSession() throws IOException {
+        try (ClientSession session = new ClientSession(ECHO_CLIENT, () -> {
+        })) {
+            session.probe();
+            assertTrue(session.isAlive());
+            assertEquals(Collections.singletonList("{}"), session.execute(Collections.singletonList("{}")));
+        }
+    }
+
+    @Test
+    public void probeFailsOnUnterminatedResponse() throws IOException {
+        AtomicInteger closeCount = new AtomicInteger();
+        ClientSession session = new ClientSession(
+                Arrays.asList("sh", "-c", "read line; printf '{\"a\":'; cat > /dev/null"), closeCount::incrementAndGet);
+        try {
+            session.probe();
+            fail("Probe should fail");
+        } catch (RequestsSentException e) {
+            fail("Probe failure should allow restart: " + e);
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString("Unterminated response"));
+        }
+        assertFalse(session.isAlive());
+        assertEquals(1, closeCount.get());
+    }
+
+    @Test
+    public void failsOnUnterminatedResponseOfTerminatedClient() throws IOException {
+        ClientSession session = new ClientSession(Arrays.asList("sh", "-c", "read line; printf '{\"a\":'"), () -> {
+        });
+        try {
+            session.execute(Collections.singletonList("{\"run\":\"send_one\"}"));
+            fail("Call should fail");
+        } catch (RequestsSentException e) {
+            assertThat(e.getMessage(), containsString("Unterminated response"));
+            assertEquals("", e.getResponse());
+        }
+        assertFalse(session.isAlive());
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongFunction;
+
+import static org.junit.Assert.*;
+
+public class LogCacheTest {
+
+    private static final String ADDRESS = "0001-00000000-9B6F";
+    /**
+     * Events older than 1000 - 2 * 32 seconds are finalised
+     */
+    private static final long CURRENT_BLOCK_TIME = 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mergesCachedAndFetchedEvents() throws IOException {
+        Node node = new Node(event(900, "yes"), event(935, "yes"), event(936, "yes"), event(990, "no"));
+        LogCache logCache = new LogCache(folder.newFolder());
+
+        assertEquals(times(900, 935, 936, 990), times(logCache.getLog(ADDRESS, 0L, node)));
+        assertEquals(0L, node.lastFrom);
+
+        // events before 936 are cached
+        assertEquals(times(900, 935, 936, 990), times(logCache.getLog(ADDRESS, 0L, node)));
+        assertEquals(936L, node.lastFrom);
+        assertEquals(times(935, 936, 990), times(logCache.getLog(ADDRESS, 901L, node)));
+        assertEquals(936L, node.lastFrom);
+        assertEquals(times(990), times(logCache.getLog(ADDRESS, 950L, node)));
+        assertEquals(950L, node.lastFrom);
+    }
+
+    @Test
+    public void stopsAtUnconfirmedEvent() throws IOException {
+        Node node = new Node(event(900, "yes"), event(910, "no"), event(920, "yes"));
+        LogCache logCache = new LogCache(folder.newFolder());
+
+        logCache.getLog(ADDRESS, 0L, node);
+        assertEquals(times(900, 910, 920), times(logCache.getLog(ADDRESS, 0L, node)));
+        assertEquals(910L, node.lastFrom);
+
+        // cache is extended, when event is confirmed
+        node.events.set(1, event(910, "yes"));
+        logCache.getLog(ADDRESS, 0L, node);
+        assertEquals(times(900, 910, 920), times(logCache.getLog(ADDRESS, 0L, node)));
+        assertEquals(936L, node.lastFrom);
+    }
+
+    @Test
+    public void doesNotCacheEventsAfterCursor() throws IOException {
+        Node node = new Node(event(900, "yes"), event(910, "yes"));
+        LogCache logCache = new LogCache(folder.newFolder());
+
+        // events before 905 were not downloaded, so nothing is cached
+        logCache.getLog(ADDRESS, 905L, node);
+        logCache.getLog(ADDRESS, 0L, node);
+        assertEquals(0L, node.lastFrom);
+    }
+
+    @Test
+    public void keepsCacheBetweenInstances() throws IOException {
+        File dir = folder.newFolder();
+        Node node = new Node(event(900, "yes"), event(990, "yes"));
+        new LogCache(dir).getLog(ADDRESS, 0L, node);
+
+        node.events.set(0, event(900, "modified"));
+        assertEquals("yes", getLog(new LogCache(dir).getLog(ADDRESS, 0L, node)).get(0).getAsJsonObject()
+                .get("confirmed").getAsString());
+        assertEquals(936L, node.lastFrom);
+    }
+
+    @Test
+    public void ignoresTailOfInterruptedWrite() throws IOException {
+        File dir = folder.newFolder();
+        Node node = new Node(event(900, "yes"), event(990, "yes"));
+        new LogCache(dir).getLog(ADDRESS, 0L, node);
+        try (FileOutputStream output = new FileOutputStream(new File(dir, ADDRESS + ".seg"), true)) {
+            output.write(new byte[]{0, 0, 0, 0, 0, 0, 3, (byte) 0x80, 0, 0, 0, 100});
+        }
+
+        assertEquals(times(900, 990), times(new LogCache(dir).getLog(ADDRESS, 0L, node)));
+    }
+
+    @Test
+    public void clearsCacheWithInvalidIndex() throws IOException {
+        File dir = folder.newFolder();
+        Node node = new Node(event(900, "yes"), event(990, "yes"));
+        new LogCache(dir).getLog(ADDRESS, 0L, node);
+        try (FileOutputStream output = new FileOutputStream(new File(dir, ADDRESS + ".idx"))) {
+            output.write(new byte[]{1, 2, 3});
+        }
+
+        LogCache logCache = new LogCache(dir);
+        assertEquals(times(900, 990), times(logCache.getLog(ADDRESS, 0L, node)));
+        assertEquals(0L, node.lastFrom);
+        assertEquals(times(900, 990), times(logCache.getLog(ADDRESS, 0L, node)));
+        assertEquals(936L, node.lastFrom);
+    }
+
+    @Test
+    public void returnsErrorResponse() throws IOException {
+        LogCache logCache = new LogCache(folder.newFolder());
+        String error = "{\"error\":\"Failed to get global user info\"}";
+
+        assertEquals(error, logCache.getLog(ADDRESS, 0L, from -> error));
+        assertEquals("not json", logCache.getLog(ADDRESS, 0L, from -> "not json"));
+    }
+
+    @Test
+    public void isDisabledWithoutDirectory() {
+        assertFalse(new LogCache(null).isEnabled());
+    }
+
+    /**
+     * Fake node, which returns events from requested time
+     */
+    private static class Node implements LongFunction<String> {
+        private final List<JsonObject> events = new ArrayList<>();
+        private long lastFrom = -1L;
+
+        private Node(JsonObject... events) {
+            Collections.addAll(this.events, events);
+        }
+
+        @Override
+        public String apply(long from) {
+            lastFrom = from;
+            JsonArray log = new JsonArray();
+            for (JsonObject event : events) {
+                if (event.get("time").getAsLong() >= from) {
+                    log.add(event);
+                }
+            }
+            JsonObject resp = new JsonObject();
+            resp.addProperty("current_block_time", Long.toString(CURRENT_BLOCK_TIME));
+            resp.add("account", new JsonObject());
+            resp.add("log", log);
+            return resp.toString();
+        }
+    }
+
+    private static JsonObject event(long time, String confirmed) {
+        JsonObject event = new JsonObject();
+        event.addProperty("time", Long.toString(time));
+        event.addProperty("type", "send_one");
+        event.addProperty("confirmed", confirmed);
+        return event;
+    }
+
+    private static JsonArray getLog(String resp) {
+        return new JsonParser().parse(resp).getAsJsonObject().getAsJsonArray("log");
+    }
+
+    private static List<Long> times(String resp) {
+        List<Long> times = new ArrayList<>();
+        for (JsonElement je : getLog(resp)) {
+            times.add(je.getAsJsonObject().get("time").getAsLong());
+        }
+        return times;
+    }
+
+    private static List<Long> times(long... values) {
+        List<Long> times = new ArrayList<>();
+        for (long value : values) {
+            times.add(value);
+        }
+        return times;
+    }
+}
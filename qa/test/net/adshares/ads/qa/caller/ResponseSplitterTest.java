@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.caller;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResponseSplitterTest {
+
+    @Test
+    public void splitsConcatenatedDocuments() {
+        String output = "{\"a\":1}\n{\"b\":{\"c\":[1,2]}}{\"d\":\"\"}";
+        assertEquals(Arrays.asList("{\"a\":1}", "{\"b\":{\"c\":[1,2]}}", "{\"d\":\"\"}"),
+                ResponseSplitter.split(output));
+    }
+
+    @Test
+    public void keepsDocumentsAsPrinted() {
+        String document = "{\n    \"amount\": \"0.10000000000\",\n    \"list\": [ ]\n}";
+        assertEquals(Collections.singletonList(document), ResponseSplitter.split(document + "\n"));
+    }
+
+    @Test
+    public void ignoresBracesInStrings() {
+        String document = "{\"message\":\"}{ ][ \\\" \\\\\",\"x\":\"{\"}";
+        assertEquals(Arrays.asList(document, document), ResponseSplitter.split(document + document));
+    }
+
+    @Test
+    public void splitsArrays() {
+        assertEquals(Arrays.asList("[1,{\"a\":[]}]", "{}"), ResponseSplitter.split("[1,{\"a\":[]}]{}"));
+    }
+
+    @Test
+    public void skipsTextOutsideDocuments() {
+        List<String> documents = ResponseSplitter.split("warning: \"x\" } ]\n{\"a\":1}\ntrailing");
+        assertEquals(Collections.singletonList("{\"a\":1}"), documents);
+    }
+
+    @Test
+    public void skipsIncompleteDocument() {
+        assertEquals(Collections.singletonList("{\"a\":1}"), ResponseSplitter.split("{\"a\":1}{\"b\":"));
+        assertEquals(Collections.emptyList(), ResponseSplitter.split(""));
+    }
+
+    @Test
+    public void returnsLastDocument() {
+        assertEquals("{\"b\":2}", ResponseSplitter.getLast("{\"a\":1}\n{\"b\":2}\n"));
+    }
+
+    @Test
+    public void returnsWholeOutputWithoutDocument() {
+        assertEquals("error", ResponseSplitter.getLast("error"));
+    }
+
+    @Test
+    public void reportsDocumentBoundaries() {
+        ResponseSplitter splitter = new ResponseSplitter();
+        String output = " {\"a\":\"}\"}";
+        int[] expected = new int[output.length()];
+        expected[1] = ResponseSplitter.DOCUMENT_START;
+        expected[output.length() - 1] = ResponseSplitter.DOCUMENT_END;
+        for (int i = 0; i < output.length(); i++) {
+            assertEquals("at " + i, expected[i], splitter.next(output.charAt(i)));
+        }
+    }
+}
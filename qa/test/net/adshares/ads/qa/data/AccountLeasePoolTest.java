@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.data;
+
+import net.adshares.ads.qa.data.AccountLeasePool.Lease;
+import net.adshares.ads.qa.data.AccountLeasePool.Selection;
+import net.adshares.ads.qa.util.AccountAddress;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class AccountLeasePoolTest {
+
+    private static final long TIMEOUT = 60_000L;
+
+    private final Object ownerA = "A";
+    private final Object ownerB = "B";
+    private final Object ownerC = "C";
+
+    @Test
+    public void leasesFreeAccounts() {
+        AccountLeasePool pool = new AccountLeasePool(registry(1, 2), TIMEOUT);
+
+        Lease lease = pool.tryAcquire(ownerA, Selection.ANY, 2);
+        assertEquals(2, lease.getUsers().size());
+        assertNotEquals(lease.getUsers().get(0).getAddress(), lease.getUsers().get(1).getAddress());
+        for (UserData user : lease.getUsers()) {
+            assertTrue(pool.isHeldByOthers(user.getAddress(), ownerB));
+            assertFalse(pool.isHeldByOthers(user.getAddress(), ownerA));
+        }
+        assertFalse(lease.isExpired());
+    }
+
+    @Test
+    public void rejectsConflictingLease() {
+        AccountLeasePool pool = new AccountLeasePool(registry(1, 2), TIMEOUT);
+        Lease lease = pool.tryAcquire(ownerA, Selection.ANY, 1);
+
+        assertNull(pool.tryAcquire(ownerB, Selection.ANY, 2));
+        // rolled back claim does not block account
+        Lease leaseB = pool.tryAcquire(ownerB, Selection.ANY, 1);
+        assertNotNull(leaseB);
+        assertNotEquals(address(lease), address(leaseB));
+        // owner can lease accounts, which it already holds
+        assertNotNull(pool.tryAcquire(ownerA, Selection.ANY, 1));
+        assertEquals(address(lease), address(pool.tryAcquire(ownerA, Selection.ANY, 1)));
+    }
+
+    @Test
+    public void selectsNodes() {
+        AccountLeasePool pool = new AccountLeasePool(registry(3, 2), TIMEOUT);
+
+        Set<Integer> nodes = new HashSet<>();
+        for (UserData user : pool.tryAcquire(ownerA, Selection.DISTINCT_NODES, 2).getUsers()) {
+            nodes.add(user.getNode());
+        }
+        assertEquals(2, nodes.size());
+
+        // only one node has both accounts free
+        Lease lease = pool.tryAcquire(ownerB, Selection.SAME_NODE, 2);
+        assertEquals(lease.getUsers().get(0).getNode(), lease.getUsers().get(1).getNode());
+        assertFalse(nodes.contains(lease.getUsers().get(0).getNode()));
+        assertNull(pool.tryAcquire(ownerC, Selection.SAME_NODE, 2));
+        // remaining accounts are on nodes of first lease
+        for (UserData user : pool.tryAcquire(ownerC, Selection.DISTINCT_NODES, 2).getUsers()) {
+            assertTrue(nodes.contains(user.getNode()));
+        }
+        assertNull(pool.tryAcquire("D", Selection.ANY, 1));
+    }
+
+    @Test
+    public void releasesLeaseOnce() {
+        AccountLeasePool pool = new AccountLeasePool(registry(1, 1), TIMEOUT);
+        Lease lease1 = pool.tryAcquire(ownerA, Selection.ANY, 1);
+        Lease lease2 = pool.tryAcquire(ownerA, Selection.ANY, 1);
+
+        pool.release(lease1);
+        pool.release(lease1);
+        // second lease of owner still holds account
+        assertTrue(pool.isHeldByOthers(address(lease2), ownerB));
+        assertNull(pool.tryAcquire(ownerB, Selection.ANY, 1));
+
+        lease2.close();
+        assertFalse(pool.isHeldByOthers(address(lease2), ownerB));
+        Lease leaseB = pool.tryAcquire(ownerB, Selection.ANY, 1);
+        assertNotNull(leaseB);
+
+        // late release does not affect other owner
+        pool.release(lease2);
+        assertTrue(pool.isHeldByOthers(address(leaseB), ownerA));
+    }
+
+    @Test
+    public void takesOverExpiredLease() throws InterruptedException {
+        AccountLeasePool pool = new AccountLeasePool(registry(1, 1), 50L);
+        Lease leaseA = pool.tryAcquire(ownerA, Selection.ANY, 1);
+        assertNull(pool.tryAcquire(ownerB, Selection.ANY, 1));
+
+        Thread.sleep(100L);
+        assertTrue(leaseA.isExpired());
+        assertFalse(pool.isHeldByOthers(address(leaseA), ownerB));
+        Lease leaseB = pool.tryAcquire(ownerB, Selection.ANY, 1);
+        assertNotNull(leaseB);
+
+        // release of expired lease does not release account taken over
+        pool.release(leaseA);
+        assertTrue(pool.isHeldByOthers(address(leaseB), ownerA));
+    }
+
+    @Test
+    public void sharesAccounts() {
+        AccountLeasePool pool = new AccountLeasePool(registry(1, 2), TIMEOUT);
+        Lease leaseA = pool.share(ownerA, Selection.ANY, 1);
+        // free account is preferred
+        Lease leaseB = pool.share(ownerB, Selection.ANY, 1);
+        assertNotEquals(address(leaseA), address(leaseB));
+
+        // all accounts are held, so account is shared
+        Lease leaseC = pool.share(ownerC, Selection.ANY, 1);
+        String address = address(leaseC);
+        Lease shared = address.equals(address(leaseA)) ? leaseA : leaseB;
+        Object sharedOwner = (shared == leaseA) ? ownerA : ownerB;
+        assertTrue(pool.isHeldByOthers(address, ownerC));
+        assertTrue(pool.isHeldByOthers(address, sharedOwner));
+
+        pool.release(leaseC);
+        assertFalse(pool.isHeldByOthers(address, sharedOwner));
+        assertTrue(pool.isHeldByOthers(address, ownerC));
+        pool.release(shared);
+        assertFalse(pool.isHeldByOthers(address, ownerC));
+    }
+
+    @Test
+    public void releasesSharedAccountWhenAllOwnersRelease() {
+        AccountLeasePool pool = new AccountLeasePool(registry(1, 1), TIMEOUT);
+        Lease leaseA = pool.share(ownerA, Selection.ANY, 1);
+        Lease leaseB = pool.share(ownerB, Selection.ANY, 1);
+        String address = address(leaseA);
+
+        pool.release(leaseA);
+        assertNull(pool.tryAcquire(ownerC, Selection.ANY, 1));
+        // remaining owner does not hold account only by itself, until other owner leaves
+        assertNotNull(pool.tryAcquire(ownerB, Selection.ANY, 1));
+        pool.release(leaseB);
+        assertTrue(pool.isHeldByOthers(address, ownerC));
+    }
+
+    @Test
+    public void returnsNullWhenThereAreNotEnoughAccounts() {
+        AccountLeasePool pool = new AccountLeasePool(registry(1, 1), TIMEOUT);
+
+        assertNull(pool.acquire(ownerA, Selection.ANY, 2, TIMEOUT));
+    }
+
+    @Test
+    public void returnsNullAfterWaitingTimeout() {
+        AccountLeasePool pool = new AccountLeasePool(registry(1, 1), TIMEOUT);
+        pool.tryAcquire(ownerA, Selection.ANY, 1);
+
+        long start = System.currentTimeMillis();
+        assertNull(pool.acquire(ownerB, Selection.ANY, 1, 100L));
+        assertTrue(System.currentTimeMillis() - start >= 100L);
+    }
+
+    @Test
+    public void servesWaitingOwnersInOrder() throws InterruptedException {
+        AccountLeasePool pool = new AccountLeasePool(registry(1, 1), TIMEOUT);
+        Lease leaseA = pool.tryAcquire(ownerA, Selection.ANY, 1);
+        List<Object> order = Collections.synchronizedList(new ArrayList<>());
+
+        Thread threadB = startWaiter(pool, ownerB, order);
+        Thread threadC = startWaiter(pool, ownerC, order);
+        pool.release(leaseA);
+        threadB.join(10_000L);
+        threadC.join(10_000L);
+
+        assertEquals(Arrays.asList(ownerB, ownerC), order);
+    }
+
+    /**
+     * Starts thread, which waits for lease, records owner and releases lease. Method returns, when thread waits.
+     */
+    private static Thread startWaiter(AccountLeasePool pool, Object owner, List<Object> order)
+            throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            Lease lease = pool.acquire(owner, Selection.ANY, 1, 10_000L);
+            if (lease != null) {
+                order.add(owner);
+                lease.close();
+            }
+        });
+        thread.start();
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (thread.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1L);
+        }
+        assertEquals(Thread.State.TIMED_WAITING, thread.getState());
+        return thread;
+    }
+
+    private static String address(Lease lease) {
+        return lease.getUsers().get(0).getAddress();
+    }
+
+    private static AccountRegistry registry(int nodeCount, int userCount) {
+        List<UserData> users = new ArrayList<>();
+        for (int node = 1; node <= nodeCount; node++) {
+            for (int user = 0; user < userCount; user++) {
+                String address = AccountAddress.format(AccountAddress.pack(node, user));
+                users.add(new UserData("9001", "127.0.0.1", address, "00"));
+            }
+        }
+        return new AccountRegistry(users);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.data;
+
+import net.adshares.ads.qa.util.AccountAddress;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AccountRegistryTest {
+
+    private AccountRegistry registry;
+
+    /**
+     * Node 1 has accounts 0-3, node 2 has accounts 0-1, node 3 has account 0
+     */
+    @Before
+    public void setUp() {
+        registry = new AccountRegistry(Arrays.asList(
+                user(1, 0), user(1, 1), user(1, 2), user(1, 3),
+                user(2, 0), user(2, 1),
+                user(3, 0)));
+    }
+
+    @Test
+    public void indexesAccounts() {
+        assertEquals(7, registry.getUsers().size());
+        assertEquals(3, registry.getNodeCount());
+        assertEquals(4, registry.getNodeUsers(1).size());
+        assertTrue(registry.getNodeUsers(4).isEmpty());
+        assertEquals(addresses(user(1, 0), user(2, 0), user(3, 0)), addresses(registry.getMainUsers()));
+        assertEquals(address(2, 1), registry.get(address(2, 1)).getAddress());
+        assertNull(registry.get(address(2, 2)));
+    }
+
+    @Test
+    public void replacesAccount() {
+        List<UserData> users = registry.getUsers();
+        UserData user = new UserData("9002", "127.0.0.1", address(1, 1), "01");
+        registry.put(user);
+        registry.put(user(4, 1));
+
+        assertSame(user, registry.get(address(1, 1)));
+        assertEquals(8, registry.getUsers().size());
+        assertEquals(address(4, 1), registry.getUsers().get(7).getAddress());
+        assertEquals(address(1, 1), registry.getUsers().get(6).getAddress());
+        assertEquals(4, registry.getNodeCount());
+        // previous snapshot is not changed
+        assertEquals(7, users.size());
+        assertEquals("00", users.get(1).getSecret());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void usersAreUnmodifiable() {
+        registry.getUsers().clear();
+    }
+
+    @Test
+    public void selectsCyclicallyFromOffset() {
+        assertEquals(addresses(user(1, 0), user(1, 1)), addresses(registry.select(2, u -> true)));
+        assertEquals(addresses(user(3, 0), user(1, 0)), addresses(registry.select(2, u -> true, 6)));
+        assertEquals(addresses(user(3, 0), user(1, 0)), addresses(registry.select(2, u -> true, -1)));
+        assertEquals(addresses(user(1, 1), user(1, 2)), addresses(registry.select(2, u -> true, 8)));
+        // main accounts are skipped
+        assertEquals(addresses(user(2, 1), user(1, 1)), addresses(registry.select(2, u -> !u.isMainAccount(), 5)));
+        // not enough accounts
+        assertEquals(3, registry.select(5, UserData::isMainAccount).size());
+    }
+
+    @Test
+    public void selectsFromSingleNode() {
+        assertEquals(addresses(user(1, 0), user(1, 1), user(1, 2)),
+                addresses(registry.selectFromSingleNode(3, u -> true)));
+        // node 1 with offset 1: accounts from 1, node 2 with offset 1: accounts from 1
+        assertEquals(addresses(user(2, 1), user(2, 0)),
+                addresses(registry.selectFromSingleNode(2, u -> true, 1)));
+        // node 2 and 3 do not have enough accounts, node 1 is selected
+        assertEquals(addresses(user(1, 1), user(1, 2), user(1, 3)),
+                addresses(registry.selectFromSingleNode(3, u -> true, 1)));
+        // no node has enough accounts, accounts of first node with any account are returned
+        assertEquals(addresses(user(2, 1)),
+                addresses(registry.selectFromSingleNode(2, u -> u.getNode() > 1 && !u.isMainAccount())));
+        assertTrue(registry.selectFromSingleNode(1, u -> false).isEmpty());
+    }
+
+    @Test
+    public void selectsFromDifferentNodes() {
+        assertEquals(addresses(user(1, 0), user(2, 0), user(3, 0)),
+                addresses(registry.selectFromDifferentNodes(3, u -> true)));
+        assertEquals(addresses(user(1, 1), user(2, 1)),
+                addresses(registry.selectFromDifferentNodes(3, u -> !u.isMainAccount())));
+        assertEquals(addresses(user(2, 1), user(3, 0)),
+                addresses(registry.selectFromDifferentNodes(2, u -> true, 1)));
+        assertEquals(3, registry.selectFromDifferentNodes(5, u -> true).size());
+    }
+
+    @Test
+    public void selectsFromEmptyRegistry() {
+        AccountRegistry empty = new AccountRegistry(new ArrayList<>());
+
+        assertTrue(empty.select(1, u -> true, 3).isEmpty());
+        assertTrue(empty.selectFromSingleNode(1, u -> true, 3).isEmpty());
+        assertTrue(empty.selectFromDifferentNodes(1, u -> true, 3).isEmpty());
+    }
+
+    private static UserData user(int node, long user) {
+        return new UserData("9001", "127.0.0.1", address(node, user), "00");
+    }
+
+    private static String address(int node, long user) {
+        return AccountAddress.format(AccountAddress.pack(node, user));
+    }
+
+    private static List<String> addresses(UserData... users) {
+        return addresses(Arrays.asList(users));
+    }
+
+    private static List<String> addresses(List<UserData> users) {
+        List<String> addresses = new ArrayList<>();
+        for (UserData user : users) {
+            addresses.add(user.getAddress());
+        }
+        return addresses;
+    }
+}
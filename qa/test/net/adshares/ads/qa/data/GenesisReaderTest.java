@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.data;
+
+import org.junit.Test;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GenesisReaderTest {
+
+    @Test
+    public void readsAccountsOfNodes() throws IOException {
+        String genesis = "{\"comment\":{\"nested\":[1,2]},"
+                + "\"nodes\":["
+                + "{\"public_key\":\"AB\",\"accounts\":["
+                + "{\"_address\":\"0001-00000000-9B6F\",\"balance\":1000,\"_secret\":\"AA\",\"_sign\":\"00\"},"
+                + "{\"public_key\":\"CD\",\"_address\":\"0001-00000001-8B4E\"},"
+                + "{\"balance\":5}"
+                + "]},"
+                + "{\"accounts\":[]},"
+                + "{\"ipv4\":\"127.0.0.1\",\"accounts\":[{\"_secret\":\"BB\",\"_address\":\"0003-00000000-XXXX\"}]}"
+                + "],"
+                + "\"after\":[\"nodes\"]}";
+        List<String> accounts = new ArrayList<>();
+
+        int nodeCount = GenesisReader.read(new StringReader(genesis),
+                (nodeIndex, address, secret) -> accounts.add(nodeIndex + " " + address + " " + secret));
+        assertEquals(3, nodeCount);
+        assertEquals(Arrays.asList(
+                "0 0001-00000000-9B6F AA",
+                "0 0001-00000001-8B4E null",
+                "2 0003-00000000-XXXX BB"), accounts);
+    }
+
+    @Test
+    public void readsGenesisWithoutNodes() throws IOException {
+        assertEquals(0, GenesisReader.read(new StringReader("{\"nodes\":null}"), (n, a, s) -> fail()));
+        assertEquals(0, GenesisReader.read(new StringReader("{}"), (n, a, s) -> fail()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsInvalidGenesis() throws IOException {
+        GenesisReader.read(new StringReader("[{\"nodes\":[]}]"), (n, a, s) -> fail());
+    }
+
+    @Test
+    public void readsGenesisFile() throws IOException {
+        List<String> accounts = new ArrayList<>();
+        int nodeCount;
+        try (Reader reader = new FileReader("qa/config/genesis/genesis-20x20-rf.json")) {
+            nodeCount = GenesisReader.read(reader, (nodeIndex, address, secret) -> {
+                assertEquals(nodeIndex + 1, Integer.parseInt(address.substring(0, 4), 16));
+                assertNotNull(secret);
+                accounts.add(address);
+            });
+        }
+        assertEquals(20, nodeCount);
+        assertEquals(400, accounts.size());
+        assertEquals("0002-00000002-55FF", accounts.get(22));
+    }
+
+    @Test
+    public void keepsSecret() {
+        String secret = "BB3425F914CA9F661CA6F3B908E07092B5AFB7F2FDAE2E94EDE12C83207CA743";
+        UserData user = new UserData("9001", "127.0.0.1", "0002-00000002-55FF", secret);
+        assertEquals(secret, user.getSecret());
+        assertEquals(" -P9001 -H127.0.0.1 -A0002-00000002-55FF -s" + secret, user.getDataAsEscParams());
+
+        // secrets, which are not canonical hexadecimal strings, are kept as they are
+        for (String s : new String[]{secret.toLowerCase(), "ABC", "", "not hex", null}) {
+            user.setSecret(s);
+            assertEquals(s, user.getSecret());
+        }
+    }
+}
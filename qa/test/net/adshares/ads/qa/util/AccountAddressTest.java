@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class AccountAddressTest {
+
+    @Test
+    public void computesChecksum() {
+        assertEquals(0x9B6F, AccountAddress.getChecksum(AccountAddress.pack(1, 0)));
+        assertEquals(0x8B4E, AccountAddress.getChecksum(AccountAddress.pack(1, 1)));
+        assertEquals(0x75BD, AccountAddress.getChecksum(AccountAddress.pack(2, 0)));
+        assertEquals(0x55FF, AccountAddress.getChecksum(AccountAddress.pack(2, 2)));
+    }
+
+    @Test
+    public void computesChecksumOfGenesisAddresses() throws IOException {
+        String genesis = new String(Files.readAllBytes(Paths.get("qa/config/genesis/genesis-20x20-rf.json")),
+                StandardCharsets.UTF_8);
+        Matcher matcher = Pattern.compile("\"_address\"\\s*:\\s*\"([^\"]+)\"").matcher(genesis);
+        int count = 0;
+        while (matcher.find()) {
+            String address = matcher.group(1);
+            assertTrue(address, AccountAddress.isChecksumValid(address));
+            assertEquals(address, AccountAddress.format(AccountAddress.parse(address)));
+            ++count;
+        }
+        assertEquals(400, count);
+    }
+
+    @Test
+    public void packsNodeAndUser() {
+        long packed = AccountAddress.pack(0xFFFF, 0xFFFFFFFFL);
+
+        assertEquals(0xFFFFFFFFFFFFL, packed);
+        assertEquals(0xFFFF, AccountAddress.getNode(packed));
+        assertEquals(0xFFFFFFFFL, AccountAddress.getUser(packed));
+        assertEquals(0x12, AccountAddress.getNode(AccountAddress.pack(0x12, 0x345)));
+        assertEquals(0x345, AccountAddress.getUser(AccountAddress.pack(0x12, 0x345)));
+        assertTrue(AccountAddress.isMainAccount(AccountAddress.pack(3, 0)));
+        assertFalse(AccountAddress.isMainAccount(AccountAddress.pack(3, 1)));
+        assertFalse(AccountAddress.isMainAccount(AccountAddress.INVALID));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNodeOutOfRange() {
+        AccountAddress.pack(0x10000, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUserOutOfRange() {
+        AccountAddress.pack(1, 0x100000000L);
+    }
+
+    @Test
+    public void parsesAddress() {
+        assertEquals(AccountAddress.pack(1, 0), AccountAddress.parse("0001-00000000-9B6F"));
+        assertEquals(AccountAddress.pack(0xAB, 0xCDEF), AccountAddress.parse("00ab-0000cdef-0000"));
+        // any checksum is accepted by parse, but it is not valid
+        assertEquals(AccountAddress.pack(2, 5), AccountAddress.parse("0002-00000005-XXXX"));
+        assertFalse(AccountAddress.isChecksumValid("0002-00000005-XXXX"));
+        assertTrue(AccountAddress.isValid("0001-00000000-0000"));
+        assertFalse(AccountAddress.isChecksumValid("0001-00000000-0000"));
+        assertTrue(AccountAddress.isChecksumValid("0001-00000000-9b6f"));
+    }
+
+    @Test
+    public void rejectsInvalidAddress() {
+        for (String s : new String[]{null, "", "0001-00000000-9B6", "0001-00000000-9B6F0", "0001_00000000-9B6F",
+                "0001-00000000_9B6F", "000G-00000000-9B6F", "0001-0000000G-9B6F", "0001-00000000-9B6G",
+                "0001-00000000-xxxx", "0001-00000000-XXX0"}) {
+            assertEquals(s, AccountAddress.INVALID, AccountAddress.parse(s));
+            assertFalse(s, AccountAddress.isChecksumValid(s));
+        }
+    }
+
+    @Test
+    public void wrapsPackedAddress() {
+        AccountAddress address = AccountAddress.valueOf("0002-00000002-XXXX");
+
+        assertEquals(AccountAddress.pack(2, 2), address.getPacked());
+        assertEquals(2, address.getNode());
+        assertEquals(2L, address.getUser());
+        assertFalse(address.isMainAccount());
+        assertEquals("0002-00000002-55FF", address.toString());
+        assertEquals(AccountAddress.of(address.getPacked()), address);
+        assertEquals(AccountAddress.of(address.getPacked()).hashCode(), address.hashCode());
+        assertTrue(address.compareTo(AccountAddress.valueOf("0002-00000003-XXXX")) < 0);
+        assertTrue(address.compareTo(AccountAddress.valueOf("0001-FFFFFFFF-XXXX")) > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidPackedAddress() {
+        AccountAddress.of(1L << 48);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidAddressString() {
+        AccountAddress.valueOf("0001-00000000");
+    }
+}
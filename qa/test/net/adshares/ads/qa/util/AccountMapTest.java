@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AccountMapTest {
+
+    @Test
+    public void putsAndGetsValues() {
+        AccountMap<String> map = new AccountMap<>();
+        long address = AccountAddress.pack(1, 2);
+
+        assertTrue(map.isEmpty());
+        assertNull(map.put(address, "a"));
+        assertEquals("a", map.put(address, "b"));
+        assertEquals("b", map.get(address));
+        assertTrue(map.containsKey(address));
+        assertFalse(map.containsKey(AccountAddress.pack(2, 1)));
+        assertNull(map.get(AccountAddress.pack(2, 1)));
+        assertNull(map.get(AccountAddress.INVALID));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void removesValues() {
+        AccountMap<String> map = new AccountMap<>();
+        long address = AccountAddress.pack(1, 2);
+        map.put(address, "a");
+
+        assertNull(map.remove(AccountAddress.pack(1, 3)));
+        assertEquals("a", map.remove(address));
+        assertNull(map.remove(address));
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(address));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidAddress() {
+        new AccountMap<String>().put(AccountAddress.INVALID, "a");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rejectsNullValue() {
+        new AccountMap<String>().put(AccountAddress.pack(1, 0), null);
+    }
+
+    @Test
+    public void growsAndVisitsEntries() {
+        AccountMap<Long> map = new AccountMap<>(4);
+        for (int node = 0; node < 50; node++) {
+            for (long user = 0; user < 50; user++) {
+                long address = AccountAddress.pack(node, user);
+                map.put(address, address);
+            }
+        }
+
+        assertEquals(2500, map.size());
+        long[] count = {0};
+        map.forEach((address, value) -> {
+            assertEquals(address, value.longValue());
+            ++count[0];
+        });
+        assertEquals(2500, count[0]);
+    }
+
+    /**
+     * Random operations on small key space cause long probe sequences, so removals shift entries back
+     * across wrapped and interleaved clusters.
+     */
+    @Test
+    public void behavesLikeHashMap() {
+        Random random = new Random(42);
+        AccountMap<Integer> map = new AccountMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            long address = AccountAddress.pack(random.nextInt(4), random.nextInt(64));
+            switch (random.nextInt(3)) {
+                case 0:
+                case 1:
+                    assertEquals(expected.put(address, i), map.put(address, i));
+                    break;
+                default:
+                    assertEquals(expected.remove(address), map.remove(address));
+                    break;
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int node = 0; node < 4; node++) {
+            for (long user = 0; user < 64; user++) {
+                long address = AccountAddress.pack(node, user);
+                assertEquals(expected.get(address), map.get(address));
+                assertEquals(expected.containsKey(address), map.containsKey(address));
+            }
+        }
+    }
+}
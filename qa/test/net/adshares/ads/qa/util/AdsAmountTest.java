@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import com.google.gson.JsonNull;
+import com.google.gson.JsonPrimitive;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AdsAmountTest {
+
+    @Test
+    public void parsesDecimals() {
+        assertEquals(1_200_010_000_000L, AdsAmount.parse("12.00010000000").getUnscaled());
+        assertEquals(-1_200_010_000_000L, AdsAmount.parse("-12.0001").getUnscaled());
+        assertEquals(100_000_000_000L, AdsAmount.parse("+1").getUnscaled());
+        assertEquals(50_000_000_000L, AdsAmount.parse(".5").getUnscaled());
+        assertEquals(100_000_000_000L, AdsAmount.parse("1.").getUnscaled());
+        assertEquals(1L, AdsAmount.parse("0.00000000001").getUnscaled());
+        assertSame(AdsAmount.ZERO, AdsAmount.parse("-0.00000000000"));
+    }
+
+    @Test
+    public void parsesExponentialNotation() {
+        assertEquals(AdsAmount.parse("0.0005"), AdsAmount.parse("5E-4"));
+        assertEquals(AdsAmount.parse("1200"), AdsAmount.parse("1.2e3"));
+    }
+
+    @Test
+    public void parsesTrailingZerosAfterScale() {
+        assertEquals(AdsAmount.parse("1.5"), AdsAmount.parse("1.500000000000000"));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void rejectsMoreThanElevenDecimalPlaces() {
+        AdsAmount.parse("0.000000000001");
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void rejectsMoreThanElevenDecimalPlacesInExponentialNotation() {
+        AdsAmount.parse("1E-12");
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void rejectsOverflow() {
+        AdsAmount.parse("92233720.36854775808");
+    }
+
+    @Test
+    public void rejectsInvalidNumbers() {
+        for (String s : new String[]{"", "-", ".", "1.2.3", "1,5", "abc", " 1", "1-"}) {
+            try {
+                AdsAmount.parse(s);
+                fail("Parsed: " + s);
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void convertsJsonAndBigDecimal() {
+        assertEquals(AdsAmount.parse("1.5"), AdsAmount.fromJson(new JsonPrimitive("1.50000000000")));
+        assertEquals(AdsAmount.parse("1.5"), AdsAmount.fromJson(new JsonPrimitive(1.5)));
+        assertNull(AdsAmount.fromJson(null));
+        assertNull(AdsAmount.fromJson(JsonNull.INSTANCE));
+
+        assertEquals(AdsAmount.parse("-0.25"), AdsAmount.valueOf(new BigDecimal("-0.250")));
+        assertEquals(new BigDecimal("-0.25000000000"), AdsAmount.parse("-0.25").toBigDecimal());
+        assertEquals(11, AdsAmount.parse("3").toBigDecimal().scale());
+    }
+
+    @Test
+    public void formatsWithElevenDecimalPlaces() {
+        assertEquals("12.00010000000", AdsAmount.parse("12.0001").toString());
+        assertEquals("-0.00000000001", AdsAmount.MIN_UNIT.negate().toString());
+        assertEquals("-3.50000000000", AdsAmount.parse("-3.5").toString());
+        assertEquals("0.00000000000", AdsAmount.ZERO.toString());
+        assertEquals("92233720.36854775807", AdsAmount.ofUnscaled(Long.MAX_VALUE).toString());
+        assertEquals("-92233720.36854775808", AdsAmount.ofUnscaled(Long.MIN_VALUE).toString());
+    }
+
+    @Test
+    public void computesExactly() {
+        AdsAmount a = AdsAmount.parse("0.1");
+        AdsAmount b = AdsAmount.parse("0.2");
+
+        assertEquals(AdsAmount.parse("0.3"), a.add(b));
+        assertEquals(AdsAmount.parse("-0.1"), a.subtract(b));
+        assertEquals(AdsAmount.parse("0.7"), a.multiply(7));
+        assertEquals(b, a.max(b));
+        assertEquals(a, a.min(b));
+        assertEquals(-1, a.negate().signum());
+        assertTrue(a.subtract(a).isZero());
+        assertTrue(a.compareTo(b) < 0);
+        assertEquals(a.hashCode(), AdsAmount.parse("0.10000000000").hashCode());
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void rejectsOverflowOfAddition() {
+        AdsAmount.ofUnscaled(Long.MAX_VALUE).add(AdsAmount.MIN_UNIT);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void rejectsOverflowOfMultiplication() {
+        AdsAmount.parse("50000000").multiply(2);
+    }
+
+    @Test
+    public void multipliesWithRoundingDown() {
+        AdsAmount fee = AdsAmount.parse("0.0005");
+
+        assertEquals(AdsAmount.parse("0.0005"), AdsAmount.parse("1").multiplyFloor(fee));
+        // 0.00000000999 * 0.0005 = 0.000000000004995
+        assertEquals(AdsAmount.ZERO, AdsAmount.parse("0.00000000999").multiplyFloor(fee));
+        assertEquals(AdsAmount.MIN_UNIT.negate(), AdsAmount.parse("-0.00000000999").multiplyFloor(fee));
+        assertEquals(AdsAmount.parse("0.00617283945"), AdsAmount.parse("12.3456789").multiplyFloor(fee));
+    }
+
+    @Test
+    public void multipliesLargeAmountsWithRoundingDown() {
+        // unscaled product overflows long
+        AdsAmount amount = AdsAmount.parse("90000000.00000000001");
+
+        assertEquals(AdsAmount.parse("45000.00000000000"), amount.multiplyFloor(AdsAmount.parse("0.0005")));
+        assertEquals(AdsAmount.parse("-45000.00000000001"), amount.negate().multiplyFloor(AdsAmount.parse("0.0005")));
+        assertEquals(amount, amount.multiplyFloor(AdsAmount.parse("1")));
+    }
+
+    @Test
+    public void multipliesLikeBigDecimal() {
+        Random random = new Random(42);
+        long[] coefficients = {50_000_000L, 1L, 99_999_999_999L, 100_000_000_000L, 123_456_789_012L, -50_000_000L};
+        for (int i = 0; i < 100_000; i++) {
+            AdsAmount amount = AdsAmount.ofUnscaled(random.nextLong() / 1_000_000L);
+            AdsAmount coefficient = AdsAmount.ofUnscaled((i % 2 == 0)
+                    ? coefficients[i / 2 % coefficients.length]
+                    : random.nextLong() / 1_000_000_000_000L);
+            BigDecimal expected = amount.toBigDecimal().multiply(coefficient.toBigDecimal())
+                    .setScale(AdsAmount.SCALE, RoundingMode.FLOOR);
+            assertEquals(amount + " * " + coefficient, AdsAmount.valueOf(expected), amount.multiplyFloor(coefficient));
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void rejectsOverflowOfFlooredMultiplication() {
+        AdsAmount.parse("50000000").multiplyFloor(AdsAmount.parse("2"));
+    }
+
+    @Test
+    public void dividesWithRoundingDown() {
+        assertEquals(AdsAmount.parse("0.33333333333"), AdsAmount.parse("1").divideFloor(3));
+        assertEquals(AdsAmount.parse("-0.33333333334"), AdsAmount.parse("-1").divideFloor(3));
+        assertEquals(AdsAmount.parse("0.5"), AdsAmount.parse("1").divideFloor(2));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import com.google.gson.JsonArray;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EventLogTest {
+
+    @Test
+    public void resolvesTypeByNumberAndName() {
+        assertEquals(LogEventType.RETRIEVE_FUNDS, LogEventType.of(8, "retrieve_funds"));
+        assertEquals(LogEventType.RETRIEVE_FUNDS_RESPONSE, LogEventType.of(32776, "retrieve_funds"));
+        assertEquals(LogEventType.CREATE_NODE_ACCEPTED, LogEventType.of(32775, "create_node"));
+        // unique name is enough, when number is missing
+        assertEquals(LogEventType.DIVIDEND, LogEventType.of(-1, "dividend"));
+        // duplicated name needs number
+        assertEquals(LogEventType.UNKNOWN, LogEventType.of(-1, "retrieve_funds"));
+        // name wins, when number does not match it
+        assertEquals(LogEventType.SEND_MANY, LogEventType.of(4, "send_many"));
+        assertEquals(LogEventType.UNKNOWN, LogEventType.of(4, "unknown_type"));
+    }
+
+    @Test
+    public void parsesCommonFields() {
+        LogEvent event = new LogEvent(Utils.convertStringToJsonObject("{\"time\":\"100\",\"type_no\":\"5\","
+                + "\"type\":\"send_many\",\"block_id\":\"5A000000\",\"id\":\"0001:00000003:0001\",\"inout\":\"out\","
+                + "\"confirmed\":\"yes\",\"node\":\"1\",\"address\":\"0001-00000001-8B4E\","
+                + "\"amount\":\"-1.00000000000\",\"sender_fee_total\":\"0.00100000000\"}"));
+
+        assertEquals(LogEventType.SEND_MANY, event.getType());
+        assertEquals(100L, event.getTime());
+        assertEquals("5A000000", event.getBlockId());
+        assertEquals("0001:00000003:0001", event.getId());
+        assertTrue(event.isOut());
+        assertTrue(event.isConfirmed());
+        assertEquals(1, event.getNode());
+        assertEquals("0001-00000001-8B4E", event.getAddress());
+        assertEquals(AdsAmount.parse("-1"), event.getAmount());
+        assertEquals(AdsAmount.parse("0.001"), event.getSenderFeeTotal());
+        assertNull(event.getSenderFee());
+        assertNull(event.getDividend());
+    }
+
+    @Test
+    public void parsesMissingFields() {
+        LogEvent event = new LogEvent(Utils.convertStringToJsonObject("{\"type\":\"dividend\"}"));
+
+        assertEquals(LogEventType.DIVIDEND, event.getType());
+        assertEquals(0L, event.getTime());
+        assertNull(event.getBlockId());
+        assertNull(event.getId());
+        assertFalse(event.isOut());
+        assertFalse(event.isConfirmed());
+        assertEquals(-1, event.getNode());
+        assertNull(event.getAmount());
+    }
+
+    @Test
+    public void indexesEvents() {
+        EventLog eventLog = new EventLog(logArray(
+                "{\"time\":\"100\",\"type_no\":\"4\",\"type\":\"send_one\",\"id\":\"0001:00000001:0001\"}",
+                "{\"time\":\"100\",\"type_no\":\"32785\",\"type\":\"bank_profit\",\"block_id\":\"5A000000\"}",
+                "{\"time\":\"120\",\"type_no\":\"5\",\"type\":\"send_many\",\"id\":\"0001:00000002:0001\"}",
+                "{\"time\":\"120\",\"type_no\":\"5\",\"type\":\"send_many\",\"id\":\"0001:00000002:0001\"}",
+                "{\"time\":\"130\",\"type_no\":\"32785\",\"type\":\"bank_profit\",\"block_id\":\"5A000020\"}"));
+
+        assertEquals(5, eventLog.size());
+        assertEquals(130L, eventLog.getLastEventTime());
+        assertEquals(2, eventLog.getEvents(LogEventType.BANK_PROFIT).size());
+        assertEquals(0, eventLog.getEvents(LogEventType.DIVIDEND).size());
+        assertEquals(2, eventLog.getEventsAt(100L).size());
+        assertEquals(0, eventLog.getEventsAt(110L).size());
+
+        List<LogEvent> events = eventLog.getEvents(LogEventType.SEND_ONE, 100L);
+        assertEquals(1, events.size());
+        assertEquals("0001:00000001:0001", events.get(0).getId());
+
+        events = eventLog.getEventsInBlock(LogEventType.BANK_PROFIT, "5A000020");
+        assertEquals(1, events.size());
+        assertEquals(130L, events.get(0).getTime());
+        assertEquals(0, eventLog.getEventsInBlock(LogEventType.DIVIDEND, "5A000020").size());
+
+        assertEquals(2, eventLog.getEventsById("0001:00000002:0001").size());
+        assertEquals(0, eventLog.getEventsById("0001:00000009:0001").size());
+    }
+
+    @Test
+    public void emptyLog() {
+        EventLog eventLog = new EventLog(new JsonArray());
+
+        assertEquals(0, eventLog.size());
+        assertEquals(0L, eventLog.getLastEventTime());
+        assertTrue(eventLog.getEvents().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void eventsAreUnmodifiable() {
+        EventLog eventLog = new EventLog(logArray("{\"time\":\"100\",\"type_no\":\"4\",\"type\":\"send_one\"}"));
+        eventLog.getEvents(LogEventType.SEND_ONE).clear();
+    }
+
+    private static JsonArray logArray(String... events) {
+        return Utils.convertStringToJsonObject("{\"log\":[" + String.join(",", events) + "]}").getAsJsonArray("log");
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class EventStoreTest {
+
+    private static final String ACCOUNT_1 = "0001-00000000-9B6F";
+    private static final String ACCOUNT_2 = "0002-00000000-75BD";
+
+    private EventStore store;
+
+    @Before
+    public void setUp() {
+        store = new EventStore();
+        store.add(ACCOUNT_1, Arrays.asList(
+                event("{\"time\":\"100\",\"type_no\":\"32785\",\"type\":\"bank_profit\",\"node\":\"1\","
+                        + "\"block_id\":\"5A000000\",\"profit\":\"3.00000000000\",\"fee\":\"1.00000000000\"}"),
+                event("{\"time\":\"132\",\"type_no\":\"32785\",\"type\":\"bank_profit\",\"node\":\"1\","
+                        + "\"block_id\":\"5A000020\",\"profit\":\"2.00000000000\"}"),
+                event("{\"time\":\"132\",\"type_no\":\"32784\",\"type\":\"dividend\","
+                        + "\"block_id\":\"5A000020\",\"dividend\":\"0.00000000020\"}")));
+        store.add(ACCOUNT_2, Arrays.asList(
+                event("{\"time\":\"101\",\"type_no\":\"32785\",\"type\":\"bank_profit\",\"node\":\"2\","
+                        + "\"block_id\":\"5A000000\",\"profit\":\"5.00000000000\",\"fee\":\"0.50000000000\"}"),
+                event("{\"time\":\"110\",\"type_no\":\"4\",\"type\":\"send_one\",\"amount\":\"-1.00000000000\"}")));
+    }
+
+    @Test
+    public void countsMatchingEvents() {
+        assertEquals(5, store.size());
+        assertEquals(5, store.query().count());
+        assertEquals(3, store.query().type(LogEventType.BANK_PROFIT).count());
+        assertEquals(2, store.query().type(LogEventType.BANK_PROFIT).account(ACCOUNT_1).count());
+        assertEquals(2, store.query().blockId("5A000020").count());
+        assertEquals(1, store.query().node(2).count());
+        assertEquals(2, store.query().time(132L).count());
+        assertEquals(2, store.query().type(LogEventType.BANK_PROFIT).has(EventStore.Value.FEE).count());
+        assertEquals(1, store.query().type(LogEventType.BANK_PROFIT).hasNot(EventStore.Value.FEE).count());
+    }
+
+    @Test
+    public void unknownValueMatchesNothing() {
+        assertEquals(0, store.query().account("0003-00000000-XXXX").count());
+        assertEquals(0, store.query().blockId("5A000040").count());
+        assertTrue(store.query().account("0003-00000000-XXXX").sum(EventStore.Value.PROFIT).isZero());
+        assertNull(store.query().blockId("5A000040").last(EventStore.Value.PROFIT));
+        assertTrue(store.query().blockId("5A000040").sumByNode(EventStore.Value.PROFIT).isEmpty());
+    }
+
+    @Test
+    public void eventsWithoutBlockIdMatchNullBlockId() {
+        assertEquals(1, store.query().blockId(null).count());
+    }
+
+    @Test
+    public void sumsValues() {
+        assertEquals(AdsAmount.parse("10"), store.query().sum(EventStore.Value.PROFIT));
+        assertEquals(AdsAmount.parse("1.5"), store.query().sum(EventStore.Value.FEE));
+        assertEquals(AdsAmount.parse("-1"), store.query().sum(EventStore.Value.AMOUNT));
+        // events are in order of adding
+        assertEquals(AdsAmount.parse("5"), store.query().last(EventStore.Value.PROFIT));
+        assertEquals(AdsAmount.parse("2"), store.query().account(ACCOUNT_1).last(EventStore.Value.PROFIT));
+        assertNull(store.query().account(ACCOUNT_2).last(EventStore.Value.DIVIDEND));
+    }
+
+    @Test
+    public void groupsSums() {
+        Map<Integer, AdsAmount> byNode = store.query().type(LogEventType.BANK_PROFIT)
+                .sumByNode(EventStore.Value.PROFIT);
+        assertEquals(2, byNode.size());
+        assertEquals(AdsAmount.parse("5"), byNode.get(1));
+        assertEquals(AdsAmount.parse("5"), byNode.get(2));
+
+        Map<String, AdsAmount> byBlockId = store.query().sumByBlockId(EventStore.Value.PROFIT);
+        assertEquals(AdsAmount.parse("8"), byBlockId.get("5A000000"));
+        assertEquals(AdsAmount.parse("2"), byBlockId.get("5A000020"));
+
+        Map<String, AdsAmount> byAccount = store.query().sumByAccount(EventStore.Value.FEE);
+        assertEquals(AdsAmount.parse("1"), byAccount.get(ACCOUNT_1));
+        assertEquals(AdsAmount.parse("0.5"), byAccount.get(ACCOUNT_2));
+
+        Map<String, Long> firstTime = store.query().type(LogEventType.BANK_PROFIT).firstTimeByAccount();
+        assertEquals(Long.valueOf(100L), firstTime.get(ACCOUNT_1));
+        assertEquals(Long.valueOf(101L), firstTime.get(ACCOUNT_2));
+    }
+
+    @Test
+    public void growsColumns() {
+        List<LogEvent> events = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            events.add(event("{\"time\":\"" + (200 + i) + "\",\"type_no\":\"32784\",\"type\":\"dividend\","
+                    + "\"dividend\":\"0.00000000001\"}"));
+        }
+        store.add(ACCOUNT_2, events);
+
+        assertEquals(1005, store.size());
+        assertEquals(AdsAmount.parse("0.00000001020"), store.query().sum(EventStore.Value.DIVIDEND));
+        assertEquals(1, store.query().time(1199L).count());
+    }
+
+    private static LogEvent event(String entry) {
+        return new LogEvent(Utils.convertStringToJsonObject(entry));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import com.google.gson.JsonSyntaxException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LogEvaluatorTest {
+
+    private static final String SEND_ONE_OUT = "{\"time\":\"100\",\"type_no\":\"4\",\"type\":\"send_one\","
+            + "\"id\":\"0001:00000001:0001\",\"inout\":\"out\",\"amount\":\"-1.00000000000\","
+            + "\"sender_fee\":\"0.00050000000\"}";
+    private static final String SEND_ONE_IN = "{\"time\":\"100\",\"type_no\":\"4\",\"type\":\"send_one\","
+            + "\"id\":\"0001:00000002:0001\",\"inout\":\"in\",\"amount\":\"2.50000000000\","
+            + "\"sender_fee\":\"0.00125000000\"}";
+    private static final String SEND_MANY_OUT_1 = "{\"time\":\"101\",\"type_no\":\"5\",\"type\":\"send_many\","
+            + "\"id\":\"0001:00000003:0001\",\"inout\":\"out\",\"amount\":\"-1.00000000000\","
+            + "\"sender_fee\":\"0.00050000000\",\"sender_fee_total\":\"0.00100000000\"}";
+    private static final String SEND_MANY_OUT_2 = "{\"time\":\"101\",\"type_no\":\"5\",\"type\":\"send_many\","
+            + "\"id\":\"0001:00000003:0001\",\"inout\":\"out\",\"amount\":\"-1.00000000000\","
+            + "\"sender_fee\":\"0.00050000000\",\"sender_fee_total\":\"0.00100000000\"}";
+    private static final String DIVIDEND = "{\"time\":\"102\",\"type_no\":\"32784\",\"type\":\"dividend\","
+            + "\"dividend\":\"0.00000000020\"}";
+    private static final String SET_STATUS_OUT = "{\"time\":\"103\",\"type_no\":\"11\",\"type\":\"set_account_status\","
+            + "\"inout\":\"out\",\"sender_fee\":\"0.00001000000\"}";
+    private static final String BANK_PROFIT_NODE_1 = "{\"time\":\"104\",\"type_no\":\"32785\",\"type\":\"bank_profit\","
+            + "\"node\":\"1\",\"profit\":\"3.00000000000\",\"fee\":\"1.00000000000\"}";
+    private static final String BANK_PROFIT_NODE_2 = "{\"time\":\"104\",\"type_no\":\"32785\",\"type\":\"bank_profit\","
+            + "\"node\":\"2\",\"profit\":\"5.00000000000\"}";
+    private static final String UNKNOWN = "{\"time\":\"105\",\"type_no\":\"999\",\"type\":\"unknown_type\","
+            + "\"amount\":\"7.00000000000\"}";
+
+    @Test
+    public void computesBalanceOfTransfers() {
+        LogEvaluator.Result result = evaluate(null, log(SEND_ONE_OUT, SEND_ONE_IN));
+
+        assertEquals(AdsAmount.parse("1.49950000000"), result.getBalance());
+        assertEquals(AdsAmount.parse("10"), result.getAccountBalance());
+    }
+
+    @Test
+    public void subtractsSendManyTotalFeeOnce() {
+        LogEvaluator.Result result = evaluate(null, log(SEND_MANY_OUT_1, SEND_MANY_OUT_2));
+
+        assertEquals(AdsAmount.parse("-2.00100000000"), result.getBalance());
+    }
+
+    @Test
+    public void computesBalanceOfOtherEvents() {
+        LogEvaluator.Result result = evaluate(null, log(DIVIDEND, SET_STATUS_OUT, UNKNOWN));
+
+        assertEquals(AdsAmount.parse("-0.00000999980"), result.getBalance());
+    }
+
+    @Test
+    public void countsBankProfitOfAccountNodeOnly() {
+        // account is after log, profit is counted when whole response is read
+        String resp = "{\"log\":[" + BANK_PROFIT_NODE_1 + "," + BANK_PROFIT_NODE_2 + "],"
+                + "\"account\":{\"node\":\"1\",\"balance\":\"2.00000000000\"}}";
+        LogEvaluator.Result result = new LogEvaluator(null, false).evaluate(resp);
+
+        assertEquals(AdsAmount.parse("2"), result.getBalance());
+    }
+
+    @Test
+    public void parsedAndStreamedResponsesAreEqual() {
+        String resp = log(SEND_ONE_OUT, SEND_ONE_IN, SEND_MANY_OUT_1, SEND_MANY_OUT_2, DIVIDEND, BANK_PROFIT_NODE_1);
+        LogFilter filter = new LogFilter(true);
+        filter.addFilter("inout", "out");
+        LogEvaluator evaluator = new LogEvaluator(filter, true);
+
+        LogEvaluator.Result streamed = evaluator.evaluate(resp);
+        LogEvaluator.Result parsed = evaluator.evaluate(Utils.convertStringToJsonObject(resp));
+        assertEquals(streamed.getBalance(), parsed.getBalance());
+        assertEquals(streamed.getEvents(), parsed.getEvents());
+        assertEquals(streamed.getLastEventTimestamp().getTimestamp(), parsed.getLastEventTimestamp().getTimestamp());
+        assertEquals(streamed.getLastEventTimestamp().getEventNum(), parsed.getLastEventTimestamp().getEventNum());
+    }
+
+    @Test
+    public void appliesFilterToBalanceAndEvents() {
+        LogFilter filter = new LogFilter(true);
+        filter.addFilter("type", "send_one");
+        LogEvaluator.Result result = evaluate(filter, log(SEND_ONE_OUT, SEND_ONE_IN, DIVIDEND));
+
+        assertEquals(AdsAmount.parse("1.49950000000"), result.getBalance());
+        assertEquals(2, result.getEvents().size());
+        assertNull(new LogEvaluator(filter, false).evaluate(log(SEND_ONE_OUT)).getEvents());
+    }
+
+    @Test
+    public void lastEventTimestampIgnoresFilter() {
+        LogFilter filter = new LogFilter(true);
+        filter.addFilter("type", "dividend");
+        LogEvaluator.Result result = evaluate(filter, log(SEND_ONE_OUT, DIVIDEND, SEND_ONE_IN));
+
+        LogEventTimestamp timestamp = result.getLastEventTimestamp();
+        assertEquals(100L, timestamp.getTimestamp());
+        assertEquals(1, timestamp.getEventNum());
+
+        timestamp = evaluate(null, log(SEND_ONE_OUT, SEND_ONE_IN)).getLastEventTimestamp();
+        assertEquals(100L, timestamp.getTimestamp());
+        assertEquals(2, timestamp.getEventNum());
+
+        timestamp = evaluate(null, log()).getLastEventTimestamp();
+        assertEquals(0L, timestamp.getTimestamp());
+    }
+
+    @Test
+    public void reportsMissingFields() {
+        LogEvaluator evaluator = new LogEvaluator(null, false);
+
+        LogEvaluator.Result result = evaluator.evaluate("{\"log\":\"empty\"}");
+        assertFalse(result.hasAccount());
+        assertTrue(result.hasLog());
+        assertTrue(result.getBalance().isZero());
+
+        result = evaluator.evaluate("{\"account\":{\"balance\":\"1.00000000000\"}}");
+        assertTrue(result.hasAccount());
+        assertFalse(result.hasLog());
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void rejectsInvalidResponse() {
+        new LogEvaluator(null, false).evaluate("[\"not an object\"]");
+    }
+
+    private static LogEvaluator.Result evaluate(LogFilter filter, String resp) {
+        return new LogEvaluator(filter, true).evaluate(resp);
+    }
+
+    private static String log(String... events) {
+        return "{\"account\":{\"node\":\"1\",\"balance\":\"10.00000000000\"},"
+                + "\"log\":[" + String.join(",", events) + "]}";
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LogFilterTest {
+
+    private static final String[] ENTRIES = {
+            "{\"type\":\"send_one\",\"type_no\":\"4\",\"inout\":\"out\",\"amount\":\"-1.00000000000\"}",
+            "{\"type\":\"send_many\",\"type_no\":\"5\",\"inout\":\"in\",\"amount\":\"2.00000000000\"}",
+            "{\"type\":\"retrieve_funds\",\"type_no\":\"32776\",\"amount\":\"0.50000000000\"}",
+            "{\"type\":\"dividend\",\"type_no\":\"32784\",\"dividend\":\"0.00000000020\"}",
+            "{\"type\":\"send_one.x\",\"type_no\":\"4\",\"inout\":\"out\"}",
+            "{}",
+    };
+
+    /**
+     * Criteria as key-value pairs
+     */
+    private static final String[][] CRITERIA = {
+            {},
+            {"type", "send_one"},
+            {"type", "send_.*"},
+            {"type", "send"},
+            {"type", "send_one.x"},
+            {"type", "retrieve_funds", "type_no", "32776"},
+            {"type", "retrieve_funds", "type_no", "8"},
+            {"type_no", "4|5"},
+            {"type_no", "[0-9]"},
+            {"inout", "out"},
+            {"inout", "(?!out).*"},
+            {"amount", "-.*"},
+            {"missing", ".*"},
+    };
+
+    @Test
+    public void matchesLegacyFilter() {
+        for (String[] criteria : CRITERIA) {
+            for (boolean isRequired : new boolean[]{true, false}) {
+                LogFilter filter = new LogFilter(isRequired);
+                Map<String, String> filterMap = new HashMap<>();
+                for (int i = 0; i < criteria.length; i += 2) {
+                    filter.addFilter(criteria[i], criteria[i + 1]);
+                    filterMap.put(criteria[i], criteria[i + 1]);
+                }
+                for (String entry : ENTRIES) {
+                    JsonObject o = Utils.convertStringToJsonObject(entry);
+                    assertEquals(String.join(",", criteria) + " " + isRequired + " " + entry,
+                            processEntryLegacy(filterMap, isRequired, o), filter.processEntry(o));
+                }
+                assertEquals(processEntryLegacy(filterMap, isRequired, null), filter.processEntry(null));
+            }
+        }
+    }
+
+    @Test
+    public void replacesCriterionForTheSameKey() {
+        LogFilter filter = new LogFilter(true);
+        filter.addFilter("type", "send_one");
+        filter.addFilter("type", "dividend");
+
+        assertFalse(filter.processEntry(entry(0)));
+        assertTrue(filter.processEntry(entry(3)));
+    }
+
+    @Test
+    public void combinesFilters() {
+        LogFilter out = LogFilter.field("inout", "out");
+        LogFilter sendOne = LogFilter.field("type", "send_one");
+        LogFilter notSendOne = new LogFilter(false);
+        notSendOne.addFilter("type", "send_one");
+
+        assertTrue(out.and(sendOne).processEntry(entry(0)));
+        assertFalse(out.and(sendOne).processEntry(entry(4)));
+        assertTrue(out.or(sendOne).processEntry(entry(4)));
+        assertFalse(out.or(sendOne).processEntry(entry(1)));
+        assertTrue(sendOne.negate().processEntry(entry(1)));
+        assertFalse(sendOne.negate().processEntry(entry(0)));
+        // negation of exclusive filter requires criteria
+        assertTrue(notSendOne.negate().processEntry(entry(0)));
+        assertFalse(notSendOne.negate().processEntry(entry(1)));
+    }
+
+    @Test
+    public void matchesRanges() {
+        LogFilter positive = LogFilter.amountBetween(BigDecimal.ZERO, null);
+        assertFalse(positive.processEntry(entry(0)));
+        assertTrue(positive.processEntry(entry(1)));
+        // entry without amount
+        assertFalse(positive.processEntry(entry(3)));
+
+        LogFilter range = LogFilter.range("amount", new BigDecimal("-1"), new BigDecimal("0.5"));
+        assertTrue(range.processEntry(entry(0)));
+        assertFalse(range.processEntry(entry(1)));
+        assertTrue(range.processEntry(entry(2)));
+
+        LogFilter time = LogFilter.timeBetween(100L, 200L);
+        assertTrue(time.processEntry(Utils.convertStringToJsonObject("{\"time\":\"100\"}")));
+        assertTrue(time.processEntry(Utils.convertStringToJsonObject("{\"time\":\"200\"}")));
+        assertFalse(time.processEntry(Utils.convertStringToJsonObject("{\"time\":\"201\"}")));
+        assertFalse(time.processEntry(entry(5)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsCriterionOfComposedFilter() {
+        LogFilter.field("inout", "out").negate().addFilter("type", "send_one");
+    }
+
+    private static JsonObject entry(int index) {
+        return Utils.convertStringToJsonObject(ENTRIES[index]);
+    }
+
+    /**
+     * LogFilter.processEntry before criteria were compiled
+     */
+    private static boolean processEntryLegacy(Map<String, String> filterMap, boolean isRequired, JsonObject o) {
+        boolean isMatch = false;
+
+        if (o != null) {
+            for (String key : filterMap.keySet()) {
+                if (o.has(key)) {
+                    isMatch = o.get(key).getAsString().matches(filterMap.get(key));
+                } else {
+                    isMatch = false;
+                }
+                if (!isMatch) {
+                    break;
+                }
+            }
+        }
+
+        return (isMatch && isRequired) || (!isMatch && !isRequired);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018 Adshares sp. z. o.o.
+ *
+ * This file is part of ADS Tests
+ *
+ * ADS Tests is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ADS Tests is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ADS Tests. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.adshares.ads.qa.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.adshares.ads.qa.data.UserData;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogTailTest {
+
+    private static final UserData USER = new UserData("9001", "127.0.0.1", "0001-00000000-9B6F", "00");
+    private static final long START = 1500000000L;
+
+    @Test
+    public void returnsEveryEventOnce() {
+        LogTail logTail = new LogTail(USER, new LogEventTimestamp(START, 1));
+        String event1 = event(START, "0001:00000001:0001", "out", "yes");
+        String event2 = event(START + 5, "0001:00000002:0001", "out", "yes");
+
+        assertEquals(1, logTail.merge(response(event1)).size());
+        List<JsonObject> newEvents = logTail.merge(response(event1, event2));
+        assertEquals(1, newEvents.size());
+        assertEquals("0001:00000002:0001", newEvents.get(0).get("id").getAsString());
+        assertEquals(0, logTail.merge(response(event2)).size());
+        assertEquals(2, logTail.getHistory().size());
+    }
+
+    @Test
+    public void replacesUnconfirmedEvent() {
+        LogTail logTail = new LogTail(USER, new LogEventTimestamp(START, 1));
+        logTail.merge(response(event(START + 1, "0001:00000001:0001", "out", "no")));
+
+        // confirmed event is the same event, it is not reported again
+        assertEquals(0, logTail.merge(response(event(START + 1, "0001:00000001:0001", "out", "yes"))).size());
+        JsonArray history = logTail.getHistory();
+        assertEquals(1, history.size());
+        assertEquals("yes", history.get(0).getAsJsonObject().get("confirmed").getAsString());
+    }
+
+    @Test
+    public void distinguishesSendManyEvents() {
+        LogTail logTail = new LogTail(USER, new LogEventTimestamp(START, 1));
+        JsonObject wire1 = parse(event(START, "0001:00000001:0001", "out", "yes"));
+        wire1.addProperty("address", "0001-00000001-8B4E");
+        JsonObject wire2 = parse(event(START, "0001:00000001:0001", "out", "yes"));
+        wire2.addProperty("address", "0002-00000000-75BD");
+
+        assertEquals(2, logTail.merge(response(wire1.toString(), wire2.toString())).size());
+    }
+
+    @Test
+    public void skipsEventsBeforeStartInTheSameSecond() {
+        LogTail logTail = new LogTail(USER, new LogEventTimestamp(START, 2));
+        String before = event(START, "0001:00000001:0001", "out", "yes");
+        String first = event(START, "0001:00000002:0001", "out", "yes");
+
+        List<JsonObject> newEvents = logTail.merge(response(before, first));
+        assertEquals(1, newEvents.size());
+        assertEquals("0001:00000002:0001", newEvents.get(0).get("id").getAsString());
+        assertEquals(0, logTail.merge(response(before, first)).size());
+    }
+
+    @Test
+    public void notifiesSubscribers() {
+        LogTail logTail = new LogTail(USER, new LogEventTimestamp(START, 1));
+        List<JsonObject> received = new ArrayList<>();
+        logTail.subscribe(received::add);
+
+        logTail.merge(response(event(START, "0001:00000001:0001", "out", "yes")));
+        logTail.merge(response(event(START, "0001:00000001:0001", "out", "yes"),
+                event(START + 1, "0001:00000002:0001", "out", "yes")));
+        assertEquals(2, received.size());
+    }
+
+    @Test
+    public void ignoresInvalidResponse() {
+        LogTail logTail = new LogTail(USER, new LogEventTimestamp(START, 1));
+        assertTrue(logTail.merge("{\"error\":\"Failed to get global user info\"}").isEmpty());
+        assertEquals(0, logTail.getHistory().size());
+    }
+
+    @Test
+    public void createsLogCheckerWithAccount() {
+        LogTail logTail = new LogTail(USER, new LogEventTimestamp(START, 1));
+        logTail.merge(response(event(START, "0001:00000001:0001", "out", "yes")));
+
+        LogChecker logChecker = logTail.getLogChecker();
+        assertEquals(1, logChecker.getLogArray().size());
+        assertEquals(0, logChecker.getBalanceFromAccountObject().compareTo(new BigDecimal("10")));
+    }
+
+    private static String event(long time, String id, String inout, String confirmed) {
+        return String.format("{\"time\":\"%d\",\"type_no\":\"4\",\"type\":\"send_one\",\"id\":\"%s\",\"inout\":\"%s\","
+                + "\"amount\":\"-1.00000000000\",\"sender_fee\":\"0.00050000000\","
+                + "\"confirmed\":\"%s\"}", time, id, inout, confirmed);
+    }
+
+    private static String response(String... events) {
+        return "{\"account\":{\"balance\":\"10.00000000000\"},\"log\":[" + String.join(",", events) + "]}";
+    }
+
+    private static JsonObject parse(String json) {
+        return Utils.convertStringToJsonObject(json);
+    }
+}